@@ -1,4 +1,13 @@
+import biuoop.GUI;
 import gameLogic.Game;
+import gameLogic.Layouts;
+import gameLogic.SessionStats;
+import gameLogic.SpectatorClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
 
 /**
  * The Ass5Game class is the entry point for the game application.
@@ -7,15 +16,70 @@ import gameLogic.Game;
  * Version: 14.7.2024
  */
 public class Ass5Game {
+    private static final long ALLOCATION_WARMUP = 10_000_000_000L; // Nanoseconds before --alloc-budget applies
+
     /**
      * The main method is the entry point of the application.
      * It creates and runs the game.
      *
-     * @param args command line arguments (not used).
+     * @param args command line arguments; "--event-driven" enables event-driven collision handling,
+     *             "--fixed-point" enables deterministic fixed-point physics, not together with "--event-driven",
+     *             "--ball-collisions" makes balls bounce off each other,
+     *             "--compact-blocks" keeps the blocks in a compact block store,
+     *             "--level FILE" plays the blocks of a memory-mapped level file,
+     *             "--campaign" plays the built-in levels one after the other, not together with "--level",
+     *             "--world WxH" plays in an arena of the given size, at least the size of the window,
+     *             "--fps N" draws N > 0 frames per second, interpolating between the 60 simulation steps per second,
+     *             "--framebuffer" draws frames with the software rasterizer,
+     *             "--tiles N" draws frames with the software rasterizer in parallel tiles N pixels high,
+     *             "--alloc-budget N" measures the bytes allocated per tick, and reports the ticks that
+     *             allocate more than N bytes once the first ten seconds are over,
+     *             "--timestamped-input" moves the paddle by how long its keys were held during each step,
+     *             "--governor" lowers the quality of the game loop in steps while frames run over budget,
+     *             "--pause-when-inactive" pauses the game while its window does not have the focus or is
+     *             minimized; the P key pauses and resumes the game in any case,
+     *             "--hit-log DIR" appends every hit to a memory-mapped log in a new session directory in DIR,
+     *             "--spectators PORT" streams the game to spectators connecting to PORT;
+     *             "--analyze DIR" prints statistics of the sessions logged in DIR instead of playing,
+     *             "--spectate HOST:PORT" watches the game streamed by HOST on PORT instead of playing; an IPv6
+     *             HOST may be written in brackets, e.g. [::1]:4000.
+     * @throws IOException if the level file cannot be mapped, the logged sessions cannot be read, or the
+     *                     spectator connection fails.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--analyze")) {
+            System.out.print(SessionStats.analyze(Paths.get(args[1])).report());
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--spectate")) {
+            InetSocketAddress address;
+            try {
+                address = parseAddress(args[1]);
+            } catch (IllegalArgumentException e) {
+                usage(e.getMessage());
+                return;
+            }
+            SpectatorClient client;
+            try {
+                client = new SpectatorClient(SocketChannel.open(address));
+            } catch (IOException e) {
+                System.err.println("Ass5Game: cannot connect to " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            GUI gui = new GUI("Arkanoid spectator", 800, 600);
+            client.run(gui);
+            gui.close();
+            return;
+        }
         // Create a new gameLogic.Game instance
         Game game = new Game();
+        try {
+            parseOptions(game, args);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            usage(e.getMessage());
+            return;
+        }
 
         // Initialize the game (setting up game elements, loading resources, etc.)
         game.initialize();
@@ -23,4 +87,130 @@ public class Ass5Game {
         // Run the game (starting the game loop)
         game.run();
     }
+
+    /**
+     * Applies the command line options to a game.
+     *
+     * @param game the game.
+     * @param args the command line arguments, as described in main.
+     * @throws IOException              if the level file cannot be mapped or the hit log cannot be created.
+     * @throws IllegalArgumentException if an option has a malformed value.
+     * @throws IllegalStateException    if options that cannot be combined are given together.
+     */
+    private static void parseOptions(Game game, String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--level") && i + 1 < args.length) {
+                game.loadLevel(Paths.get(args[++i]));
+            } else if (arg.equals("--world") && i + 1 < args.length) {
+                String size = args[++i];
+                int x = size.indexOf('x');
+                if (x < 0) {
+                    throw new IllegalArgumentException("--world takes WIDTHxHEIGHT, e.g. 1600x1200, got " + size);
+                }
+                game.setWorldSize(parseSize(size.substring(0, x)), parseSize(size.substring(x + 1)));
+            } else if (arg.equals("--fps") && i + 1 < args.length) {
+                game.setFrameRate(parseNumber(arg, args[++i]));
+            } else if (arg.equals("--framebuffer")) {
+                game.enableFramebuffer();
+            } else if (arg.equals("--tiles") && i + 1 < args.length) {
+                game.enableTiledFramebuffer(parseNumber(arg, args[++i]));
+            } else if (arg.equals("--alloc-budget") && i + 1 < args.length) {
+                game.enableAllocationMeter().setBudget(parseNumber(arg, args[++i]), ALLOCATION_WARMUP);
+            } else if (arg.equals("--timestamped-input")) {
+                game.enableTimestampedInput();
+            } else if (arg.equals("--governor")) {
+                game.enableFrameGovernor();
+            } else if (arg.equals("--pause-when-inactive")) {
+                game.enablePauseWhenInactive();
+            } else if (arg.equals("--hit-log") && i + 1 < args.length) {
+                game.enableHitLog(Paths.get(args[++i]).resolve("session-" + System.currentTimeMillis()));
+            } else if (arg.equals("--spectators") && i + 1 < args.length) {
+                game.enableSpectators(parseNumber(arg, args[++i]));
+            } else if (arg.equals("--campaign")) {
+                game.addLevel(Layouts.stairs());
+                game.addLevel(Layouts.pyramid());
+                game.addLevel(Layouts.checkerboard());
+            } else if (arg.equals("--event-driven")) {
+                game.enableEventDrivenCollisions();
+            } else if (arg.equals("--fixed-point")) {
+                game.enableFixedPointPhysics();
+            } else if (arg.equals("--ball-collisions")) {
+                game.enableBallCollisions();
+            } else if (arg.equals("--compact-blocks")) {
+                game.enableCompactBlocks();
+            }
+        }
+    }
+
+    /**
+     * Parses the number given to an option.
+     *
+     * @param option the option, e.g. "--fps".
+     * @param value  the number.
+     * @return the number.
+     * @throws IllegalArgumentException if the value is not a number.
+     */
+    private static int parseNumber(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " takes a number, got \"" + value + "\"");
+        }
+    }
+
+    /**
+     * Parses the HOST:PORT given to --spectate. The port follows the last colon, so an IPv6 host may be given
+     * with or without brackets.
+     *
+     * @param address the address, e.g. localhost:4000 or [::1]:4000.
+     * @return the address, resolved.
+     * @throws IllegalArgumentException if the host is missing or unknown, or the port is not a number from 1
+     *                                  to 65535.
+     */
+    private static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? "" : address.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        if (host.isEmpty()) {
+            throw new IllegalArgumentException("--spectate takes HOST:PORT, e.g. localhost:4000, got " + address);
+        }
+        int port = parseNumber("--spectate", address.substring(colon + 1));
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("--spectate takes a port from 1 to 65535, got " + port);
+        }
+        InetSocketAddress resolved = new InetSocketAddress(host, port);
+        if (resolved.isUnresolved()) {
+            throw new IllegalArgumentException("--spectate cannot resolve the host " + host);
+        }
+        return resolved;
+    }
+
+    /**
+     * Parses a side of the --world size.
+     *
+     * @param side the side, in pixels.
+     * @return the side.
+     * @throws IllegalArgumentException if the side is not a number.
+     */
+    private static int parseSize(String side) {
+        try {
+            return Integer.parseInt(side);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--world takes WIDTHxHEIGHT, e.g. 1600x1200, got a side of \""
+                    + side + "\"");
+        }
+    }
+
+    /**
+     * Prints why the command line was rejected, and exits with status 2.
+     *
+     * @param message what is wrong with the command line.
+     */
+    private static void usage(String message) {
+        System.err.println("Ass5Game: " + message);
+        System.exit(2);
+    }
 }
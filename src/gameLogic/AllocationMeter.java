@@ -0,0 +1,245 @@
+package gameLogic;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * The gameLogic.AllocationMeter class measures the bytes the game thread allocates during each tick of the
+ * game loop, broken down by phase: updating the sprites, dispatching hits to the hit listeners, and drawing.
+ * It reads the thread's allocation counter at every phase boundary, which itself allocates nothing.
+ * Phases nest: the bytes allocated while hits are dispatched during an update are charged to the hits only.
+ * Once the game has warmed up, a tick that allocates more than the budget is counted as over budget; the
+ * game reports it and goes on, while a test running the game headless fails on it.
+ */
+public class AllocationMeter {
+    public static final int UPDATE = 0;            // Moving the sprites and resolving collisions
+    public static final int HITS = 1;              // Hit listeners reacting to hits
+    public static final int DRAW = 2;              // Drawing the frame
+    private static final String[] PHASE_NAMES = {"update", "hits", "draw"};
+    private com.sun.management.ThreadMXBean threads; // Source of the thread's allocation counter
+    private long mark;                             // The allocation counter when a phase was last charged
+    private int current;                           // The phase being measured, or -1 between phases
+    private int[] enclosing;                       // The phases interrupted by nested phases
+    private int depth;                             // Number of interrupted phases; phases nest at most once each
+    private long[] tick;                           // Bytes allocated in each phase during the current tick
+    private long[] total;                          // Bytes allocated in each phase during all steady ticks
+    private long ticks;                            // Number of ticks measured
+    private long steadyTicks;                      // Number of ticks measured after the warm-up
+    private long worstTick;                        // Most bytes allocated by a steady tick
+    private long[] worstPhase;                     // Most bytes allocated in each phase by a steady tick
+    private long overBudgetTicks;                  // Number of steady ticks that allocated more than the budget
+    private long budget;                           // Most bytes a steady tick may allocate
+    private long warmupNanos;                      // Time from the first tick not checked, e.g. while the JIT compiles
+    private long warmupTicks;                      // Number of first ticks not checked, whatever the time they take
+    private long firstTickStart;                   // System.nanoTime() when the first tick began
+
+    /**
+     * Constructs a new gameLogic.AllocationMeter with no budget.
+     *
+     * @throws UnsupportedOperationException if the JVM cannot measure the bytes a thread allocates.
+     */
+    public AllocationMeter() {
+        this.threads = ManagementFactory.getPlatformMXBean(com.sun.management.ThreadMXBean.class);
+        if (this.threads == null || !this.threads.isThreadAllocatedMemorySupported()) {
+            throw new UnsupportedOperationException("Thread allocation measurement is not supported");
+        }
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.current = -1;
+        this.enclosing = new int[PHASE_NAMES.length + 1];
+        this.tick = new long[PHASE_NAMES.length];
+        this.total = new long[PHASE_NAMES.length];
+        this.worstPhase = new long[PHASE_NAMES.length];
+        this.budget = Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets the most bytes a tick may allocate once the game has warmed up. The warm-up is a time rather than
+     * a number of ticks, so that it lasts as long whatever the frame rate.
+     *
+     * @param bytesPerTick the budget, in bytes.
+     * @param warmupNanos  the time from the start of the first tick during which ticks are not checked.
+     */
+    public void setBudget(long bytesPerTick, long warmupNanos) {
+        this.budget = bytesPerTick;
+        this.warmupNanos = warmupNanos;
+        this.warmupTicks = 0;
+    }
+
+    /**
+     * Sets the most bytes a tick may allocate after a number of warm-up ticks. Unlike a warm-up time, the
+     * ticks checked do not depend on how fast the machine plays them, so a test checks the same ticks
+     * on every run.
+     *
+     * @param bytesPerTick the budget, in bytes.
+     * @param warmupTicks  the number of first ticks that are not checked.
+     */
+    public void setBudgetAfterTicks(long bytesPerTick, long warmupTicks) {
+        this.budget = bytesPerTick;
+        this.warmupNanos = 0;
+        this.warmupTicks = warmupTicks;
+    }
+
+    /**
+     * Starts measuring a tick.
+     */
+    public void beginTick() {
+        if (this.ticks == 0) {
+            this.firstTickStart = System.nanoTime();
+        }
+        Arrays.fill(this.tick, 0);
+        this.current = -1;
+        this.depth = 0;
+        this.mark = this.threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Starts measuring a phase. If another phase is being measured, it is interrupted until this one exits.
+     *
+     * @param phase the phase, e.g. UPDATE.
+     */
+    public void enter(int phase) {
+        charge();
+        this.enclosing[this.depth++] = this.current;
+        this.current = phase;
+    }
+
+    /**
+     * Stops measuring the phase last entered, and resumes the phase it interrupted, if any.
+     */
+    public void exit() {
+        charge();
+        this.current = this.enclosing[--this.depth];
+    }
+
+    /**
+     * Finishes measuring a tick and checks it against the budget.
+     *
+     * @return true if the game has warmed up and the tick allocated more than the budget, false otherwise.
+     */
+    public boolean endTick() {
+        charge();
+        this.ticks++;
+        if (this.ticks <= this.warmupTicks || System.nanoTime() - this.firstTickStart < this.warmupNanos) {
+            return false;
+        }
+        long bytes = 0;
+        for (int phase = 0; phase < this.tick.length; phase++) {
+            bytes += this.tick[phase];
+            this.total[phase] += this.tick[phase];
+            this.worstPhase[phase] = Math.max(this.worstPhase[phase], this.tick[phase]);
+        }
+        this.steadyTicks++;
+        this.worstTick = Math.max(this.worstTick, bytes);
+        if (bytes > this.budget) {
+            this.overBudgetTicks++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the bytes allocated in a phase during the last tick.
+     *
+     * @param phase the phase, e.g. UPDATE.
+     * @return the number of bytes.
+     */
+    public long getLastTick(int phase) {
+        return this.tick[phase];
+    }
+
+    /**
+     * Describes the bytes allocated in each phase during the last tick.
+     *
+     * @return a line such as "update 120.0, hits 0.0, draw 48.0".
+     */
+    public String describeLastTick() {
+        return describe(this.tick, 1);
+    }
+
+    /**
+     * Returns the most bytes allocated by a tick after the warm-up.
+     *
+     * @return the number of bytes, or 0 if no tick was measured after the warm-up.
+     */
+    public long getWorstTick() {
+        return this.worstTick;
+    }
+
+    /**
+     * Returns the most bytes allocated in a phase by a tick after the warm-up.
+     *
+     * @param phase the phase, e.g. DRAW.
+     * @return the number of bytes, or 0 if no tick was measured after the warm-up.
+     */
+    public long getWorstTick(int phase) {
+        return this.worstPhase[phase];
+    }
+
+    /**
+     * Returns the average bytes allocated in a phase per tick after the warm-up.
+     *
+     * @param phase the phase, e.g. DRAW.
+     * @return the number of bytes, or 0 if no tick was measured after the warm-up.
+     */
+    public double getAverageTick(int phase) {
+        return (double) this.total[phase] / Math.max(1, this.steadyTicks);
+    }
+
+    /**
+     * Returns the number of ticks measured after the warm-up.
+     *
+     * @return the number of ticks.
+     */
+    public long getSteadyTicks() {
+        return this.steadyTicks;
+    }
+
+    /**
+     * Returns the number of ticks after the warm-up that allocated more than the budget.
+     *
+     * @return the number of ticks.
+     */
+    public long getOverBudgetTicks() {
+        return this.overBudgetTicks;
+    }
+
+    /**
+     * Returns the average bytes allocated per tick after the warm-up, in each phase.
+     *
+     * @return a line such as "update 120.0, hits 0.0, draw 48.0 bytes/tick over 600 ticks, worst 400, 0 over
+     *         budget".
+     */
+    public String report() {
+        return describe(this.total, Math.max(1, this.steadyTicks)) + " bytes/tick over " + this.steadyTicks
+                + " ticks, worst " + this.worstTick + ", " + this.overBudgetTicks + " over budget";
+    }
+
+    /**
+     * Charges the bytes allocated since the last charge to the phase being measured.
+     */
+    private void charge() {
+        long now = this.threads.getCurrentThreadAllocatedBytes();
+        if (this.current >= 0) {
+            this.tick[this.current] += now - this.mark;
+        }
+        this.mark = now;
+    }
+
+    /**
+     * Describes the bytes allocated in each phase.
+     *
+     * @param bytes   the bytes allocated in each phase.
+     * @param divisor the number to divide the bytes by, e.g. the number of ticks.
+     * @return a line such as "update 120.0, hits 0.0, draw 48.0".
+     */
+    private static String describe(long[] bytes, long divisor) {
+        StringBuilder line = new StringBuilder();
+        for (int phase = 0; phase < bytes.length; phase++) {
+            if (phase > 0) {
+                line.append(", ");
+            }
+            line.append(PHASE_NAMES[phase]).append(' ').append((double) bytes[phase] / divisor);
+        }
+        return line.toString();
+    }
+}
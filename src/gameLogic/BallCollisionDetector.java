@@ -0,0 +1,243 @@
+package gameLogic;
+
+import geometry.Point;
+import geometry.Velocity;
+import spritesAndCollisonDetection.Ball;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The gameLogic.BallCollisionDetector class makes balls bounce off each other.
+ * Pairs are found with a sort-and-sweep broadphase along the x-axis: the balls are kept sorted by the
+ * left side of their bounding box, and each ball is only tested against the following balls whose left
+ * side lies before its right side. Because balls move little between frames, the list stays almost
+ * sorted and is re-sorted with insertion sort in close to linear time.
+ * A step that merges several frames is swept back over the frames it covers, so that balls that touched
+ * and passed each other within the step still collide.
+ * Colliding pairs exchange momentum elastically and are reported to the registered gameLogic.HitListener
+ * objects through ballCollisionEvent.
+ */
+public class BallCollisionDetector implements HitNotifier {
+    private List<Ball> sortedBalls;         // Balls, sorted by the left side of their bounding box
+    private List<HitListener> hitListeners; // Listeners notified of ball-ball collisions
+
+    /**
+     * Constructs a new gameLogic.BallCollisionDetector with no balls.
+     */
+    public BallCollisionDetector() {
+        this.sortedBalls = new ArrayList<>();
+        this.hitListeners = new ArrayList<>();
+    }
+
+    /**
+     * Adds a ball to the detection. The list is re-sorted on the next call to detect.
+     *
+     * @param ball the ball to add.
+     */
+    public void addBall(Ball ball) {
+        this.sortedBalls.add(ball);
+    }
+
+    /**
+     * Removes a ball from the detection.
+     *
+     * @param ball the ball to remove.
+     */
+    public void removeBall(Ball ball) {
+        this.sortedBalls.remove(ball);
+    }
+
+    /**
+     * Finds every pair of balls that touched during the last step while moving towards each other and
+     * resolves their collision. A step of one frame tests where the balls are; a longer one also tests where
+     * they were during the frames it covers, going back along their velocities.
+     *
+     * @param stepLength the number of frames the last step covered.
+     */
+    public void detect(int stepLength) {
+        insertionSort();
+        int count = this.sortedBalls.size();
+        double span = stepLength - 1; // Frames back in time the balls may have touched
+        double slack = span * 2 * maxSpeedX(); // How far apart on the x-axis balls that touched may have moved
+        for (int i = 0; i < count; i++) {
+            Ball first = this.sortedBalls.get(i);
+            double right = first.getCenter().getX() + first.getSize() + slack;
+            for (int j = i + 1; j < count; j++) {
+                Ball second = this.sortedBalls.get(j);
+                if (left(second) > right) {
+                    break; // No later ball can overlap the first one on the x-axis
+                }
+                if (resolve(first, second, span)) {
+                    notifyHit(first, second);
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-sorts the balls by the left side of their bounding box. The list is almost sorted from the
+     * previous frame, so insertion sort runs in close to linear time.
+     */
+    private void insertionSort() {
+        for (int i = 1; i < this.sortedBalls.size(); i++) {
+            Ball ball = this.sortedBalls.get(i);
+            double key = left(ball);
+            int j = i - 1;
+            while (j >= 0 && left(this.sortedBalls.get(j)) > key) {
+                this.sortedBalls.set(j + 1, this.sortedBalls.get(j));
+                j--;
+            }
+            this.sortedBalls.set(j + 1, ball);
+        }
+    }
+
+    /**
+     * Returns the fastest horizontal speed of the balls.
+     *
+     * @return the largest absolute dx of the balls' velocities, in pixels per frame.
+     */
+    private double maxSpeedX() {
+        double max = 0;
+        for (int i = 0; i < this.sortedBalls.size(); i++) {
+            max = Math.max(max, Math.abs(this.sortedBalls.get(i).getVelocity().getDx()));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the left side of a ball's bounding box.
+     *
+     * @param ball the ball.
+     * @return the smallest x coordinate covered by the ball.
+     */
+    private static double left(Ball ball) {
+        return ball.getCenter().getX() - ball.getSize();
+    }
+
+    /**
+     * Resolves the collision of two balls if they overlap, or overlapped during the last span frames, and
+     * approach each other there. The balls' masses are proportional to their area, and the collision is
+     * perfectly elastic. Balls that collided during the span move on from there with their new velocities.
+     *
+     * @param first  the first ball.
+     * @param second the second ball.
+     * @param span   the number of frames back in time the balls may have touched, 0 to test them as they are.
+     * @return true if the balls collided, false otherwise.
+     */
+    private boolean resolve(Ball first, Ball second, double span) {
+        Point p1 = first.getCenter();
+        Point p2 = second.getCenter();
+        Velocity v1 = first.getVelocity();
+        Velocity v2 = second.getVelocity();
+        double vx = v2.getDx() - v1.getDx();
+        double vy = v2.getDy() - v1.getDy();
+        double reach = first.getSize() + second.getSize();
+        double back = contactTime(p2.getX() - p1.getX(), p2.getY() - p1.getY(), vx, vy, reach, span);
+        if (back < 0) {
+            return false;
+        }
+        // The line of centers when the balls touched
+        double nx = p2.getX() - p1.getX() - back * vx;
+        double ny = p2.getY() - p1.getY() - back * vy;
+        double distSquared = nx * nx + ny * ny;
+        if (distSquared == 0) {
+            return false;
+        }
+        // Relative velocity along the line of centers (scaled by the distance)
+        double approach = vx * nx + vy * ny;
+        if (approach >= 0) {
+            return false; // Already separating
+        }
+        double m1 = (double) first.getSize() * first.getSize();
+        double m2 = (double) second.getSize() * second.getSize();
+        double impulse = 2 * approach / ((m1 + m2) * distSquared);
+        Velocity after1 = new Velocity(v1.getDx() + impulse * m2 * nx, v1.getDy() + impulse * m2 * ny);
+        Velocity after2 = new Velocity(v2.getDx() - impulse * m1 * nx, v2.getDy() - impulse * m1 * ny);
+        if (back == 0) {
+            first.setVelocity(after1);
+            second.setVelocity(after2);
+            return true;
+        }
+        // Go back to where the balls touched, and move on from there with the new velocities
+        first.advance(-back);
+        second.advance(-back);
+        first.setVelocity(after1);
+        second.setVelocity(after2);
+        first.moveFor(back);
+        second.moveFor(back);
+        return true;
+    }
+
+    /**
+     * Returns how long ago two balls started touching, going back along their relative velocity from where
+     * they are now; a contact before the span is moved to its start, where the balls still touched. Balls
+     * that touch now and approach each other touch now, as do touching balls when there is no span.
+     *
+     * @param nx    the second ball's center minus the first one's, x coordinate.
+     * @param ny    the second ball's center minus the first one's, y coordinate.
+     * @param vx    the second ball's velocity minus the first one's, x component.
+     * @param vy    the second ball's velocity minus the first one's, y component.
+     * @param reach the distance between the centers of touching balls.
+     * @param span  the number of frames back in time to search.
+     * @return the time back to the contact in frames, from 0 to span, or -1 if the balls did not touch.
+     */
+    private static double contactTime(double nx, double ny, double vx, double vy, double reach, double span) {
+        double c = nx * nx + ny * ny - reach * reach; // Not positive while the balls touch
+        double b = nx * vx + ny * vy; // Positive while the balls move apart, so that they were closer before
+        if (c <= 0 && (span == 0 || b <= 0)) {
+            return 0;
+        }
+        double a = vx * vx + vy * vy;
+        double disc = b * b - a * c;
+        if (span == 0 || b <= 0 || disc < 0) {
+            return -1;
+        }
+        double root = Math.sqrt(disc);
+        if (c > 0 && (b - root) / a > span) {
+            return -1; // They stopped touching before the span
+        }
+        return Math.min(span, (b + root) / a);
+    }
+
+    /**
+     * Notifies all registered listeners that two balls collided.
+     *
+     * @param first  the first ball.
+     * @param second the second ball.
+     */
+    private void notifyHit(Ball first, Ball second) {
+        HitDispatchEvent event = new HitDispatchEvent();
+        event.begin();
+        // Make a copy of the hitListeners before iterating over them.
+        List<HitListener> listeners = new ArrayList<>(this.hitListeners);
+        for (HitListener hl : listeners) {
+            hl.ballCollisionEvent(first, second);
+        }
+        if (event.shouldCommit()) {
+            event.setListeners(listeners.size());
+            event.setBallCollision(true);
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds a listener to be notified of ball-ball collisions.
+     *
+     * @param hl The listener to add.
+     */
+    @Override
+    public void addHitListener(HitListener hl) {
+        this.hitListeners.add(hl);
+    }
+
+    /**
+     * Removes a listener from the list of listeners to be notified of ball-ball collisions.
+     *
+     * @param hl The listener to remove.
+     */
+    @Override
+    public void removeHitListener(HitListener hl) {
+        this.hitListeners.remove(hl);
+    }
+}
@@ -27,12 +27,17 @@ public class BallRemover implements HitListener {
      * Called when a ball hits a block.
      * The ball is removed from the game, and the count of remaining balls is decremented.
      * This method assumes that the spritesAndCollisonDetection.Ball class has a method to remove itself from the game.
+     * The loss is added to the hit's record in the game's gameLogic.HitLog, if hits are logged.
      *
      * @param beingHit the block that is being hit by the ball
      * @param hitter   the ball that is hitting the block
      */
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
+        HitLog log = HitLog.of(hitter); // Before the ball leaves the game's environment
+        if (log != null) {
+            log.mark(HitLog.BALL_LOST);
+        }
         // Remove the ball from the game
         hitter.removeFromGame(game);
         // Decrease the count of remaining balls
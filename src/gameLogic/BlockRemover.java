@@ -28,6 +28,8 @@ public class BlockRemover implements HitListener {
      * If the color of the ball does not match the block's color, the block is removed
      * from the game, and the count of remaining blocks is decremented.
      * Also removes this gameLogic.BlockRemover as a listener from the block being removed.
+     * The removal is added to the hit's record in the game's gameLogic.HitLog, if hits are logged, and
+     * streamed to spectators by its gameLogic.SpectatorFeed, if the game is streamed.
      *
      * @param beingHit the block that is being hit
      * @param hitter   the ball that is hitting the block
@@ -42,6 +44,14 @@ public class BlockRemover implements HitListener {
             beingHit.removeFromGame(this.game);
             // Decrease the count of remaining blocks
             this.remainingBlocks.decrease(1);
+            HitLog log = HitLog.of(hitter);
+            if (log != null) {
+                log.mark(HitLog.BLOCK_REMOVED);
+            }
+            SpectatorFeed spectators = SpectatorFeed.of(hitter);
+            if (spectators != null) {
+                spectators.blockRemoved(beingHit);
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+package gameLogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The gameLogic.CollisionQueryEvent class is a JDK Flight Recorder event for one query of
+ * gameLogic.GameEnvironment.getClosestCollision: a ball's path swept against every candidate it may hit.
+ */
+@Name("arkanoid.CollisionQuery")
+@Label("Collision Query")
+@Category({"Arkanoid", "Physics"})
+@Description("A ball's path swept against the collidables and blocks it may hit")
+public class CollisionQueryEvent extends Event {
+    @Label("Candidates")
+    @Description("Collidables and stored blocks the path was tested against")
+    private int candidates;
+
+    @Label("Hit")
+    @Description("Whether the ball hits something along the path")
+    private boolean hit;
+
+    /**
+     * Sets the number of collidables and stored blocks the path was tested against.
+     *
+     * @param candidates the number of candidates.
+     */
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Sets whether the ball hits something along the path.
+     *
+     * @param hit true if a collision was found, false otherwise.
+     */
+    public void setHit(boolean hit) {
+        this.hit = hit;
+    }
+}
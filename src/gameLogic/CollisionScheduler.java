@@ -0,0 +1,244 @@
+package gameLogic;
+
+import spritesAndCollisonDetection.Ball;
+import spritesAndCollisonDetection.Collidable;
+import spritesAndCollisonDetection.CollisionInfo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The gameLogic.CollisionScheduler class runs the ball physics as an event-driven (kinetic) simulation.
+ * The next time of impact of every ball is predicted once and kept in a priority queue; between impacts
+ * balls move analytically, so the collidables are only queried again when a ball bounces or when the
+ * collidables change. Collision work therefore scales with the number of bounces rather than with
+ * frames times balls.
+ */
+public class CollisionScheduler {
+    private static final int MAX_EVENTS_PER_BALL = 64; // Guard against balls pinned between two collidables
+    private GameEnvironment environment;        // The environment holding the collidables
+    private PriorityQueue<ImpactEvent> events;  // Pending impacts, earliest first (may contain stale events)
+    private Map<Ball, ImpactEvent> predictions; // The current prediction of every scheduled ball
+    private double now;                         // The current simulation time, in frames
+    private long sequence;                      // Creation counter for tie-breaking events
+    private long processedEvents;               // Number of impacts resolved so far
+
+    /**
+     * Constructs a new gameLogic.CollisionScheduler over the given environment.
+     *
+     * @param environment the environment holding the collidables.
+     */
+    public CollisionScheduler(GameEnvironment environment) {
+        this.environment = environment;
+        this.events = new PriorityQueue<>();
+        this.predictions = new LinkedHashMap<>();
+    }
+
+    /**
+     * Starts scheduling the collisions of a ball.
+     *
+     * @param ball the ball to schedule.
+     */
+    public void addBall(Ball ball) {
+        predict(ball);
+    }
+
+    /**
+     * Stops scheduling the collisions of a ball. Its queued impact becomes stale and is skipped.
+     *
+     * @param ball the ball to remove.
+     */
+    public void removeBall(Ball ball) {
+        ImpactEvent current = this.predictions.remove(ball);
+        if (current != null) {
+            current.syncTo(this.now);
+        }
+    }
+
+    /**
+     * Called when the velocity or the center of a ball was changed from outside the scheduler, e.g. by a
+     * ball-ball collision or the paddle pushing the ball. The ball's center must be up to date, which holds
+     * between calls to advance.
+     *
+     * @param ball the ball whose velocity changed.
+     */
+    public void velocityChanged(Ball ball) {
+        if (this.predictions.containsKey(ball)) {
+            predict(ball);
+        }
+    }
+
+    /**
+     * Called when a collidable is added. Only balls that would now hit it earlier are re-predicted.
+     *
+     * @param c the added collidable.
+     */
+    public void collidableAdded(Collidable c) {
+        for (Ball ball : new ArrayList<>(this.predictions.keySet())) {
+            checkNewObstacle(ball, c);
+        }
+    }
+
+    /**
+     * Called when a collidable is removed. Only balls that were about to hit it are re-predicted.
+     *
+     * @param c the removed collidable.
+     */
+    public void collidableRemoved(Collidable c) {
+        for (Ball ball : new ArrayList<>(this.predictions.keySet())) {
+            if (isTarget(ball, c)) {
+                predict(ball);
+            }
+        }
+    }
+
+    /**
+     * Called when many collidables change at once, such as when a block store is added.
+     * Every ball is re-predicted.
+     */
+    public void collidablesChanged() {
+        for (Ball ball : new ArrayList<>(this.predictions.keySet())) {
+            predict(ball);
+        }
+    }
+
+    /**
+     * Called when a collidable changes its collision rectangle. Balls that were about to hit it are
+     * re-predicted, and every other ball is only tested against the moved collidable.
+     *
+     * @param c the moved collidable.
+     */
+    public void collidableMoved(Collidable c) {
+        for (Ball ball : new ArrayList<>(this.predictions.keySet())) {
+            if (isTarget(ball, c)) {
+                predict(ball);
+            } else {
+                checkNewObstacle(ball, c);
+            }
+        }
+    }
+
+    /**
+     * Advances the simulation by the given number of frames, resolving every impact that happens
+     * on the way in time order, and leaves every ball at its position at the end of the interval.
+     * The number of impacts resolved is bounded per frame of the interval, so a merged step may resolve as
+     * many as the steps it covers.
+     *
+     * @param frames the amount of time to advance, in frames.
+     */
+    public void advance(double frames) {
+        double end = this.now + frames;
+        int budget = MAX_EVENTS_PER_BALL * (int) Math.ceil(frames) * (this.predictions.size() + 1);
+        while (!this.events.isEmpty() && this.events.peek().getTime() <= end && budget > 0) {
+            ImpactEvent event = this.events.poll();
+            Ball ball = event.getBall();
+            if (this.predictions.get(ball) != event) {
+                continue; // Stale prediction, superseded by a newer one
+            }
+            budget--;
+            this.now = Math.max(this.now, event.getTime());
+            event.syncTo(this.now);
+            this.processedEvents++;
+            ball.collide(event.getCollision());
+            if (this.predictions.containsKey(ball)) {
+                predict(ball);
+            }
+        }
+        this.now = end;
+        for (ImpactEvent event : this.predictions.values()) {
+            event.syncTo(this.now);
+        }
+        if (this.events.size() > 4 * this.predictions.size() + 64) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the current simulation time.
+     *
+     * @return the simulation time, in frames.
+     */
+    public double getTime() {
+        return this.now;
+    }
+
+    /**
+     * Returns the number of impacts resolved so far.
+     *
+     * @return the number of processed events.
+     */
+    public long getProcessedEvents() {
+        return this.processedEvents;
+    }
+
+    /**
+     * Brings a ball up to date and predicts its next impact against all collidables.
+     *
+     * @param ball the ball to predict.
+     */
+    private void predict(Ball ball) {
+        ImpactEvent current = this.predictions.get(ball);
+        if (current != null) {
+            current.syncTo(this.now);
+        }
+        schedule(ball, this.environment.getClosestCollision(ball.getCenter(), ball.getSize(), ball.getVelocity(),
+                Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * Tests a ball against a single collidable and replaces its prediction if the new impact is earlier.
+     *
+     * @param ball the ball to test.
+     * @param c    the collidable that appeared in the ball's way.
+     */
+    private void checkNewObstacle(Ball ball, Collidable c) {
+        ImpactEvent current = this.predictions.get(ball);
+        current.syncTo(this.now);
+        CollisionInfo impact = this.environment.getImpact(c, ball.getCenter(), ball.getSize(), ball.getVelocity(),
+                Double.POSITIVE_INFINITY);
+        if (impact != null && this.now + impact.time() < current.getTime()) {
+            schedule(ball, impact);
+        }
+    }
+
+    /**
+     * Checks whether the current prediction of a ball is an impact with the given collidable.
+     *
+     * @param ball the ball to check.
+     * @param c    the collidable.
+     * @return true if the ball is predicted to hit c next, false otherwise.
+     */
+    private boolean isTarget(Ball ball, Collidable c) {
+        CollisionInfo collision = this.predictions.get(ball).getCollision();
+        return collision != null && collision.collisionObject() == c;
+    }
+
+    /**
+     * Records a new prediction for a ball whose center is up to date, and queues it if it ever happens.
+     *
+     * @param ball   the ball.
+     * @param impact the predicted impact, relative to now, or null if the ball never hits anything.
+     */
+    private void schedule(Ball ball, CollisionInfo impact) {
+        double time = impact == null ? Double.POSITIVE_INFINITY : this.now + impact.time();
+        ImpactEvent event = new ImpactEvent(ball, impact, time, this.now, this.sequence++);
+        this.predictions.put(ball, event);
+        if (impact != null) {
+            this.events.add(event);
+        }
+    }
+
+    /**
+     * Drops the stale events that piled up in the queue, e.g. from a paddle that keeps moving.
+     */
+    private void compact() {
+        this.events.clear();
+        for (ImpactEvent event : this.predictions.values()) {
+            if (event.getCollision() != null) {
+                this.events.add(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package gameLogic;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The gameLogic.CommandQueue class is a lock-free queue of commands with many producers and a single consumer.
+ * Any thread may offer commands; only the game thread drains them. Commands are kept in a linked list:
+ * a producer swaps its node in as the tail with a single atomic exchange and then links the previous tail
+ * to it, so producers never wait for each other or for the consumer. The consumer only follows links,
+ * so draining an empty queue is a single volatile read. A command whose producer has swapped the tail but
+ * not yet linked it is simply left for the next drain.
+ */
+public class CommandQueue {
+    private AtomicReference<Node> tail; // The last node offered; producers swap themselves in here
+    private Node head;                  // The last node drained; only read and written by the consumer
+
+    /**
+     * A command in the queue, linked to the command offered after it.
+     */
+    private static final class Node {
+        private GameCommand command; // The command, or null for the initial node
+        private volatile Node next;  // The node offered after this one, or null if not linked yet
+
+        /**
+         * Constructs a new node.
+         *
+         * @param command the command.
+         */
+        Node(GameCommand command) {
+            this.command = command;
+        }
+    }
+
+    /**
+     * Constructs a new empty gameLogic.CommandQueue.
+     */
+    public CommandQueue() {
+        this.head = new Node(null);
+        this.tail = new AtomicReference<>(this.head);
+    }
+
+    /**
+     * Adds a command at the end of the queue. Safe to call from any thread; never blocks.
+     *
+     * @param command the command.
+     */
+    public void offer(GameCommand command) {
+        if (command == null) {
+            throw new IllegalArgumentException("command is null");
+        }
+        Node node = new Node(command);
+        Node previous = this.tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Checks whether the consumer would find no command. Must only be called by the consumer.
+     *
+     * @return true if there is no command to drain, false otherwise.
+     */
+    public boolean isEmpty() {
+        return this.head.next == null;
+    }
+
+    /**
+     * Executes the commands in the queue, in the order they were offered. Commands offered while draining
+     * may be executed too. A command that throws is reported on the standard error stream and dropped, and
+     * the commands after it are still executed, so a faulty command cannot stop the game loop. Must only be
+     * called by the consumer.
+     *
+     * @param game the game to execute the commands on.
+     * @return the number of commands executed, including those that threw.
+     */
+    public int drain(Game game) {
+        int count = 0;
+        Node next = this.head.next;
+        while (next != null) {
+            this.head = next; // Drained even if the command throws, so it is not executed twice
+            try {
+                next.command.execute(game);
+            } catch (RuntimeException e) {
+                System.err.println("Game command failed: " + e);
+            }
+            count++;
+            next = next.next;
+        }
+        return count;
+    }
+}
@@ -1,12 +1,18 @@
 package gameLogic;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The gameLogic.Counter class represents a simple integer counter that can be incremented or decremented.
  * It maintains a count value that can be accessed or modified through provided methods.
+ * Registered gameLogic.CounterListener objects are notified whenever the value changes.
  */
 public class Counter {
     // The current count value
     private int count;
+    // Listeners notified when the value changes
+    private List<CounterListener> listeners;
 
     /**
      * Constructs a new gameLogic.Counter with the specified initial count.
@@ -15,6 +21,7 @@ public class Counter {
      */
     public Counter(int initialCount) {
         this.count = initialCount;
+        this.listeners = new ArrayList<>();
     }
 
     /**
@@ -24,6 +31,9 @@ public class Counter {
      */
     public void increase(int number) {
         this.count += number; // Add the specified number to the current count
+        if (number != 0) {
+            notifyChanged();
+        }
     }
 
     /**
@@ -33,6 +43,9 @@ public class Counter {
      */
     public void decrease(int number) {
         this.count -= number; // Subtract the specified number from the current count
+        if (number != 0) {
+            notifyChanged();
+        }
     }
 
     /**
@@ -43,4 +56,33 @@ public class Counter {
     public int getValue() {
         return this.count; // Return the current value of the counter
     }
+
+    /**
+     * Adds a listener to be notified whenever the value changes.
+     *
+     * @param cl the listener to add
+     */
+    public void addCounterListener(CounterListener cl) {
+        this.listeners.add(cl);
+    }
+
+    /**
+     * Removes a listener from the list of listeners notified when the value changes.
+     *
+     * @param cl the listener to remove
+     */
+    public void removeCounterListener(CounterListener cl) {
+        this.listeners.remove(cl);
+    }
+
+    /**
+     * Notifies all registered listeners that the value changed.
+     */
+    private void notifyChanged() {
+        // Make a copy of the listeners before iterating over them.
+        List<CounterListener> copy = new ArrayList<>(this.listeners);
+        for (CounterListener cl : copy) {
+            cl.counterChanged(this);
+        }
+    }
 }
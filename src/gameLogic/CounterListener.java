@@ -0,0 +1,15 @@
+package gameLogic;
+
+/**
+ * The gameLogic.CounterListener interface is used to define a listener that is notified whenever the value
+ * of a gameLogic.Counter changes, so that displays of the value only need to update when it does.
+ */
+public interface CounterListener {
+
+    /**
+     * This method is called whenever the value of the counter changes.
+     *
+     * @param counter the counter whose value changed.
+     */
+    void counterChanged(Counter counter);
+}
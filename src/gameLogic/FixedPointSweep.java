@@ -0,0 +1,286 @@
+package gameLogic;
+
+import geometry.FixedPoint;
+import geometry.Point;
+import geometry.Rectangle;
+import spritesAndCollisonDetection.BlockStore;
+import spritesAndCollisonDetection.Collidable;
+import spritesAndCollisonDetection.CollisionInfo;
+
+import java.util.List;
+
+/**
+ * The gameLogic.FixedPointSweep class is the fixed-point twin of the swept-circle query in
+ * gameLogic.GameEnvironment. All positions, velocities and times are geometry.FixedPoint values, so the
+ * result depends only on integer math and is bit-identical across runs and JVMs. The returned
+ * spritesAndCollisonDetection.CollisionInfo holds exact double images of the fixed-point results.
+ */
+final class FixedPointSweep {
+
+    /**
+     * Not instantiable; all queries are static.
+     */
+    private FixedPointSweep() {
+    }
+
+    /**
+     * Gets the first collision of a ball moving with a constant velocity.
+     *
+     * @param collidables the collidables to test against.
+     * @param blockStores the block stores to test against.
+     * @param px          the x coordinate of the ball's center.
+     * @param py          the y coordinate of the ball's center.
+     * @param radius      the radius of the ball.
+     * @param dx          the velocity of the ball on the x-axis, per frame.
+     * @param dy          the velocity of the ball on the y-axis, per frame.
+     * @param maxTime     the length of the movement, in frames.
+     * @return the collision information of the earliest impact, or null if the ball hits nothing in time.
+     */
+    static CollisionInfo closest(List<Collidable> collidables, List<BlockStore> blockStores, long px, long py,
+                                 long radius, long dx, long dy, long maxTime) {
+        CollisionInfo closestImpact = null;
+        for (Collidable c : collidables) {
+            CollisionInfo impact = impact(c, px, py, radius, dx, dy, maxTime);
+            if (impact != null && (closestImpact == null || impact.time() < closestImpact.time())) {
+                closestImpact = impact;
+            }
+        }
+        for (BlockStore store : blockStores) {
+            CollisionInfo impact = storeImpact(store, px, py, radius, dx, dy, maxTime);
+            if (impact != null && (closestImpact == null || impact.time() < closestImpact.time())) {
+                closestImpact = impact;
+            }
+        }
+        return closestImpact;
+    }
+
+    /**
+     * Sweeps a ball against the blocks of a store that lie near its path. The movement of a frame is short,
+     * so the whole path is looked up in the store's grid at once. Blocks are tested in the grid's order,
+     * which only depends on the store's contents, so the result stays deterministic.
+     *
+     * @param store   the block store.
+     * @param px      the x coordinate of the ball's center.
+     * @param py      the y coordinate of the ball's center.
+     * @param radius  the radius of the ball.
+     * @param dx      the velocity of the ball on the x-axis, per frame.
+     * @param dy      the velocity of the ball on the y-axis, per frame.
+     * @param maxTime the length of the movement, in frames.
+     * @return the collision information of the earliest impact, or null if the ball hits no block in time.
+     */
+    private static CollisionInfo storeImpact(BlockStore store, long px, long py, long radius,
+                                             long dx, long dy, long maxTime) {
+        long endX = px + FixedPoint.mul(dx, maxTime);
+        long endY = py + FixedPoint.mul(dy, maxTime);
+        int count = store.query(FixedPoint.toDouble(Math.min(px, endX) - radius),
+                FixedPoint.toDouble(Math.min(py, endY) - radius), FixedPoint.toDouble(Math.max(px, endX) + radius),
+                FixedPoint.toDouble(Math.max(py, endY) + radius));
+        CollisionInfo closestImpact = null;
+        int closestId = -1;
+        for (int k = 0; k < count; k++) {
+            int id = store.found(k);
+            long minX = FixedPoint.fromDouble(store.getX(id));
+            long minY = FixedPoint.fromDouble(store.getY(id));
+            CollisionInfo impact = impact(null, minX, minY, minX + FixedPoint.fromDouble(store.getWidth(id)),
+                    minY + FixedPoint.fromDouble(store.getHeight(id)), px, py, radius, dx, dy, maxTime);
+            if (impact != null && (closestImpact == null || impact.time() < closestImpact.time())) {
+                closestImpact = impact;
+                closestId = id;
+            }
+        }
+        if (closestImpact == null) {
+            return null;
+        }
+        return new CollisionInfo(closestImpact.collisionPoint(), store.view(closestId), closestImpact.time(),
+                closestImpact.edge(), closestImpact.normalX(), closestImpact.normalY());
+    }
+
+    /**
+     * Sweeps a ball against a single collidable, like GameEnvironment.getImpact.
+     *
+     * @param c       the collidable to test against.
+     * @param px      the x coordinate of the ball's center.
+     * @param py      the y coordinate of the ball's center.
+     * @param radius  the radius of the ball.
+     * @param dx      the velocity of the ball on the x-axis, per frame.
+     * @param dy      the velocity of the ball on the y-axis, per frame.
+     * @param maxTime the length of the movement, in frames.
+     * @return the collision information, or null if the ball does not hit the collidable in time.
+     */
+    private static CollisionInfo impact(Collidable c, long px, long py, long radius, long dx, long dy,
+                                        long maxTime) {
+        Rectangle rect = c.getCollisionRectangle();
+        long minX = FixedPoint.fromDouble(rect.getUpperLeft().getX());
+        long minY = FixedPoint.fromDouble(rect.getUpperLeft().getY());
+        return impact(c, minX, minY, minX + FixedPoint.fromDouble(rect.getWidth()),
+                minY + FixedPoint.fromDouble(rect.getHeight()), px, py, radius, dx, dy, maxTime);
+    }
+
+    /**
+     * Sweeps a ball against an axis-aligned box.
+     *
+     * @param c       the collidable reported in the result.
+     * @param minX    the left side of the box.
+     * @param minY    the top side of the box.
+     * @param maxX    the right side of the box.
+     * @param maxY    the bottom side of the box.
+     * @param px      the x coordinate of the ball's center.
+     * @param py      the y coordinate of the ball's center.
+     * @param radius  the radius of the ball.
+     * @param dx      the velocity of the ball on the x-axis, per frame.
+     * @param dy      the velocity of the ball on the y-axis, per frame.
+     * @param maxTime the length of the movement, in frames.
+     * @return the collision information, or null if the ball does not hit the box in time.
+     */
+    private static CollisionInfo impact(Collidable c, long minX, long minY, long maxX, long maxY,
+                                        long px, long py, long radius, long dx, long dy, long maxTime) {
+        // A ball already touching the rectangle only collides if it moves further in
+        long qx = Math.max(minX, Math.min(maxX, px));
+        long qy = Math.max(minY, Math.min(maxY, py));
+        long distSquared = FixedPoint.mul(px - qx, px - qx) + FixedPoint.mul(py - qy, py - qy);
+        if (distSquared <= FixedPoint.mul(radius, radius)) {
+            return overlapImpact(c, px, py, dx, dy, qx, qy, minX, minY, maxX, maxY, distSquared);
+        }
+
+        // Clip the center's ray against the slabs of the rectangle grown by the radius
+        long enterX = Long.MIN_VALUE;
+        long exitX = Long.MAX_VALUE;
+        if (dx == 0) {
+            if (px < minX - radius || px > maxX + radius) {
+                return null;
+            }
+        } else {
+            long t1 = FixedPoint.div(minX - radius - px, dx);
+            long t2 = FixedPoint.div(maxX + radius - px, dx);
+            enterX = Math.min(t1, t2);
+            exitX = Math.max(t1, t2);
+        }
+        long enterY = Long.MIN_VALUE;
+        long exitY = Long.MAX_VALUE;
+        if (dy == 0) {
+            if (py < minY - radius || py > maxY + radius) {
+                return null;
+            }
+        } else {
+            long t1 = FixedPoint.div(minY - radius - py, dy);
+            long t2 = FixedPoint.div(maxY + radius - py, dy);
+            enterY = Math.min(t1, t2);
+            exitY = Math.max(t1, t2);
+        }
+        long tEnter = Math.max(enterX, enterY);
+        long tExit = Math.min(maxTime, Math.min(exitX, exitY));
+        if (tEnter > tExit || tExit < 0) {
+            return null;
+        }
+        boolean enterOnX = enterX >= enterY;
+
+        // Entering through a face of the grown rectangle, unless the center already lies in a corner region
+        boolean inCorner = tEnter < 0;
+        tEnter = Math.max(tEnter, 0);
+        long hx = px + FixedPoint.mul(dx, tEnter);
+        long hy = py + FixedPoint.mul(dy, tEnter);
+        if (!inCorner && enterOnX && hy >= minY && hy <= maxY) {
+            int edge = dx > 0 ? CollisionInfo.LEFT_EDGE : CollisionInfo.RIGHT_EDGE;
+            return info(c, dx > 0 ? minX : maxX, hy, tEnter, edge, dx > 0 ? -FixedPoint.ONE : FixedPoint.ONE, 0);
+        }
+        if (!inCorner && !enterOnX && hx >= minX && hx <= maxX) {
+            int edge = dy > 0 ? CollisionInfo.TOP_EDGE : CollisionInfo.BOTTOM_EDGE;
+            return info(c, hx, dy > 0 ? minY : maxY, tEnter, edge, 0, dy > 0 ? -FixedPoint.ONE : FixedPoint.ONE);
+        }
+
+        // Entering through a corner region: intersect with the rounded corner, relative to the entry
+        // point so that the products stay small
+        long cornerX = hx < minX ? minX : maxX;
+        long cornerY = hy < minY ? minY : maxY;
+        long ox = hx - cornerX;
+        long oy = hy - cornerY;
+        long a = FixedPoint.mul(dx, dx) + FixedPoint.mul(dy, dy);
+        long halfB = FixedPoint.mul(ox, dx) + FixedPoint.mul(oy, dy);
+        long cTerm = FixedPoint.mul(ox, ox) + FixedPoint.mul(oy, oy) - FixedPoint.mul(radius, radius);
+        if (a == 0 || halfB > 0) {
+            return null;
+        }
+        long discriminant = FixedPoint.mul(halfB, halfB) - FixedPoint.mul(a, cTerm);
+        if (discriminant < 0) {
+            return null;
+        }
+        long dt = Math.max(0, FixedPoint.div(-halfB - FixedPoint.sqrt(discriminant), a));
+        if (tEnter + dt > maxTime) {
+            return null;
+        }
+        long nx = FixedPoint.div(ox + FixedPoint.mul(dx, dt), radius);
+        long ny = FixedPoint.div(oy + FixedPoint.mul(dy, dt), radius);
+        return info(c, cornerX, cornerY, tEnter + dt, CollisionInfo.CORNER, nx, ny);
+    }
+
+    /**
+     * Builds the immediate collision of a ball that already touches or overlaps a collision rectangle.
+     *
+     * @param c           the overlapped collidable.
+     * @param px          the x coordinate of the ball's center.
+     * @param py          the y coordinate of the ball's center.
+     * @param dx          the velocity of the ball on the x-axis.
+     * @param dy          the velocity of the ball on the y-axis.
+     * @param qx          the x coordinate of the rectangle's point closest to the center.
+     * @param qy          the y coordinate of the rectangle's point closest to the center.
+     * @param minX        the left side of the rectangle.
+     * @param minY        the top side of the rectangle.
+     * @param maxX        the right side of the rectangle.
+     * @param maxY        the bottom side of the rectangle.
+     * @param distSquared the squared distance between the center and the rectangle.
+     * @return the collision information at time 0, or null if the ball is already moving out.
+     */
+    private static CollisionInfo overlapImpact(Collidable c, long px, long py, long dx, long dy, long qx, long qy,
+                                               long minX, long minY, long maxX, long maxY, long distSquared) {
+        long nx = 0;
+        long ny = 0;
+        long dist = FixedPoint.sqrt(distSquared);
+        if (dist > 0) {
+            nx = FixedPoint.div(px - qx, dist);
+            ny = FixedPoint.div(py - qy, dist);
+        } else {
+            // The center is inside the rectangle: leave through the closest edge
+            long closest = Math.min(Math.min(px - minX, maxX - px), Math.min(py - minY, maxY - py));
+            if (closest == py - minY) {
+                ny = -FixedPoint.ONE;
+                qy = minY;
+            } else if (closest == maxY - py) {
+                ny = FixedPoint.ONE;
+                qy = maxY;
+            } else if (closest == px - minX) {
+                nx = -FixedPoint.ONE;
+                qx = minX;
+            } else {
+                nx = FixedPoint.ONE;
+                qx = maxX;
+            }
+        }
+        if (FixedPoint.mul(nx, dx) + FixedPoint.mul(ny, dy) >= 0) {
+            return null;
+        }
+        int edge = CollisionInfo.CORNER;
+        if (nx == 0) {
+            edge = ny < 0 ? CollisionInfo.TOP_EDGE : CollisionInfo.BOTTOM_EDGE;
+        } else if (ny == 0) {
+            edge = nx < 0 ? CollisionInfo.LEFT_EDGE : CollisionInfo.RIGHT_EDGE;
+        }
+        return info(c, qx, qy, 0, edge, nx, ny);
+    }
+
+    /**
+     * Converts fixed-point collision results into a spritesAndCollisonDetection.CollisionInfo.
+     *
+     * @param c    the collided object.
+     * @param x    the x coordinate of the collision point.
+     * @param y    the y coordinate of the collision point.
+     * @param time the time of impact.
+     * @param edge the hit edge.
+     * @param nx   the x component of the surface normal.
+     * @param ny   the y component of the surface normal.
+     * @return the collision information.
+     */
+    private static CollisionInfo info(Collidable c, long x, long y, long time, int edge, long nx, long ny) {
+        return new CollisionInfo(new Point(FixedPoint.toDouble(x), FixedPoint.toDouble(y)), c,
+                FixedPoint.toDouble(time), edge, FixedPoint.toDouble(nx), FixedPoint.toDouble(ny));
+    }
+}
@@ -0,0 +1,83 @@
+package gameLogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The gameLogic.FrameEvent class is a JDK Flight Recorder event for one pass of the game loop: the simulation
+ * steps run to catch up with the clock and the frame drawn after them. Its duration is the time the pass took,
+ * not counting the sleep until the next frame.
+ */
+@Name("arkanoid.Frame")
+@Label("Frame")
+@Category({"Arkanoid", "Game Loop"})
+@Description("One pass of the game loop: the simulation steps and the frame drawn after them")
+public class FrameEvent extends Event {
+    @Label("Steps")
+    @Description("Simulation steps run before the frame was drawn")
+    private int steps;
+
+    @Label("Sprites")
+    @Description("Sprites in the world, not counting entities")
+    private int sprites;
+
+    @Label("Entities")
+    @Description("Entities in the game's entity store")
+    private int entities;
+
+    @Label("Collidables")
+    @Description("Collidables in the game environment, not counting blocks kept in block stores")
+    private int collidables;
+
+    @Label("Quality")
+    @Description("Quality level chosen by the frame governor; 0 is full quality")
+    private int quality;
+
+    /**
+     * Sets the number of simulation steps run before the frame was drawn.
+     *
+     * @param steps the number of steps.
+     */
+    public void setSteps(int steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Sets the number of sprites in the world.
+     *
+     * @param sprites the number of sprites.
+     */
+    public void setSprites(int sprites) {
+        this.sprites = sprites;
+    }
+
+    /**
+     * Sets the number of entities in the game's entity store.
+     *
+     * @param entities the number of entities.
+     */
+    public void setEntities(int entities) {
+        this.entities = entities;
+    }
+
+    /**
+     * Sets the number of collidables in the game environment.
+     *
+     * @param collidables the number of collidables.
+     */
+    public void setCollidables(int collidables) {
+        this.collidables = collidables;
+    }
+
+    /**
+     * Sets the quality level the game loop ran at.
+     *
+     * @param quality the level, from gameLogic.FrameGovernor.FULL to gameLogic.FrameGovernor.MERGED_STEPS.
+     */
+    public void setQuality(int quality) {
+        this.quality = quality;
+    }
+}
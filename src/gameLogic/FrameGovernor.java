@@ -0,0 +1,164 @@
+package gameLogic;
+
+/**
+ * The gameLogic.FrameGovernor class keeps the game responsive when frames take longer than the frame budget.
+ * It watches the load of the game loop, the part of each half second the game thread spends working rather
+ * than sleeping until the next frame, and lowers the quality of the loop in steps while the load is too high:
+ * first the walls and blocks are drawn once into a cached layer and only what moves is drawn over it each
+ * frame, then the frame rate is halved as well, then every two simulation steps are run as one step twice as
+ * long. The simulation keeps up with the clock at every level. Once the load is low again for a while, the
+ * governor restores the quality one level at a time. Every decision is recorded as a
+ * gameLogic.QualityChangeEvent.
+ */
+public class FrameGovernor {
+    public static final int FULL = 0;             // Every frame drawn, at the full frame rate
+    public static final int SKIP_STATIC = 1;      // What does not move is drawn from a cached layer
+    public static final int HALF_RATE = 2;        // Also, frames are drawn at half the frame rate
+    public static final int MERGED_STEPS = 3;     // Also, two simulation steps are run as one
+    private static final String[] LEVEL_NAMES = {
+            "full quality", "skip static redraws", "half frame rate", "merged physics steps"
+    };
+    private static final long WINDOW = 500_000_000L; // Length of the windows the load is measured over
+    private static final double DEGRADE_LOAD = 0.9;  // Load above which the quality is lowered
+    private static final double RESTORE_LOAD = 0.4;  // Load below which the quality may be restored
+    private static final int CALM_WINDOWS = 2;       // Windows in a row below RESTORE_LOAD before restoring
+    private int level;                            // The current quality level
+    private int maxLevel;                         // The lowest quality the governor may choose
+    private long windowStart;                     // Start of the current window, or -1 before the first frame
+    private long busy;                            // Time spent working during the current window
+    private int frames;                           // Frames during the current window
+    private int calmWindows;                      // Windows in a row whose load was below RESTORE_LOAD
+    private double lastLoad;                      // Load of the last window
+    private int degrades;                         // Number of times the quality was lowered
+    private int restores;                         // Number of times the quality was restored
+
+    /**
+     * Constructs a new gameLogic.FrameGovernor at full quality.
+     */
+    public FrameGovernor() {
+        this.maxLevel = MERGED_STEPS;
+        this.windowStart = -1;
+    }
+
+    /**
+     * Limits how far the governor may lower the quality, e.g. to HALF_RATE when the simulation must run
+     * one step at a time to stay deterministic.
+     *
+     * @param maxLevel the lowest quality level allowed.
+     */
+    public void setMaxLevel(int maxLevel) {
+        this.maxLevel = maxLevel;
+        this.level = Math.min(this.level, maxLevel);
+    }
+
+    /**
+     * Records the time a frame took, and lowers or restores the quality at the end of each window.
+     *
+     * @param start the time the frame started, from System.nanoTime.
+     * @param work  the time the frame took, not counting the sleep until the next frame, in nanoseconds.
+     * @return true if the quality level changed, false otherwise.
+     */
+    public boolean frameDone(long start, long work) {
+        if (this.windowStart < 0) {
+            this.windowStart = start;
+        }
+        this.busy += work;
+        this.frames++;
+        long elapsed = start + work - this.windowStart;
+        if (elapsed < WINDOW) {
+            return false;
+        }
+        this.lastLoad = Math.min(1, (double) this.busy / elapsed);
+        long frameTime = this.busy / this.frames;
+        this.windowStart = start + work;
+        this.busy = 0;
+        this.frames = 0;
+        this.calmWindows = this.lastLoad < RESTORE_LOAD ? this.calmWindows + 1 : 0;
+        int next = this.level;
+        if (this.lastLoad > DEGRADE_LOAD && this.level < this.maxLevel) {
+            next = this.level + 1;
+            this.degrades++;
+        } else if (this.calmWindows >= CALM_WINDOWS && this.level > FULL) {
+            next = this.level - 1;
+            this.restores++;
+            this.calmWindows = 0; // Measure the restored level before restoring another one
+        }
+        if (next == this.level) {
+            return false;
+        }
+        QualityChangeEvent event = new QualityChangeEvent();
+        if (event.shouldCommit()) {
+            event.setFromLevel(this.level);
+            event.setToLevel(next);
+            event.setLoad(this.lastLoad);
+            event.setFrameTime(frameTime);
+            event.commit();
+        }
+        this.level = next;
+        return true;
+    }
+
+    /**
+     * Checks whether the walls and blocks should be drawn from a cached layer rather than every frame.
+     *
+     * @return true if static redraws are skipped, false otherwise.
+     */
+    public boolean cachesStaticLayer() {
+        return this.level >= SKIP_STATIC;
+    }
+
+    /**
+     * Returns how many frame periods each frame lasts.
+     *
+     * @return 2 at half the frame rate, 1 otherwise.
+     */
+    public int getFrameInterval() {
+        return this.level >= HALF_RATE ? 2 : 1;
+    }
+
+    /**
+     * Returns how many simulation steps are run as one.
+     *
+     * @return 2 when steps are merged, 1 otherwise.
+     */
+    public int getStepsMerged() {
+        return this.level >= MERGED_STEPS ? 2 : 1;
+    }
+
+    /**
+     * Returns the current quality level.
+     *
+     * @return the level, from FULL to MERGED_STEPS.
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Returns the number of times the quality was lowered.
+     *
+     * @return the number of decisions.
+     */
+    public int getDegrades() {
+        return this.degrades;
+    }
+
+    /**
+     * Returns the number of times the quality was restored.
+     *
+     * @return the number of decisions.
+     */
+    public int getRestores() {
+        return this.restores;
+    }
+
+    /**
+     * Describes the current quality level and the decisions taken so far.
+     *
+     * @return a line such as "level 1 (skip static redraws) at 93% load, 1 lowered, 0 restored".
+     */
+    public String report() {
+        return String.format("level %d (%s) at %.0f%% load, %d lowered, %d restored", this.level,
+                LEVEL_NAMES[this.level], 100 * this.lastLoad, this.degrades, this.restores);
+    }
+}
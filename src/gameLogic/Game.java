@@ -10,47 +10,465 @@ import geometry.Rectangle;
 import geometry.Velocity;
 import spritesAndCollisonDetection.Ball;
 import spritesAndCollisonDetection.Block;
+import spritesAndCollisonDetection.BlockStore;
+import spritesAndCollisonDetection.Camera;
 import spritesAndCollisonDetection.Collidable;
+import spritesAndCollisonDetection.EntityStore;
+import spritesAndCollisonDetection.FramebufferSurface;
 import spritesAndCollisonDetection.Paddle;
 import spritesAndCollisonDetection.Sprite;
 import spritesAndCollisonDetection.SpriteCollection;
+import spritesAndCollisonDetection.StaticLayer;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The gameLogic.Game class represents the Arkanoid game, handling game initialization,
  * game loop, and interactions between game elements such as sprites and collidables.
  * It sets up the game environment, manages the game state, and updates the display.
+ * The game is confined to the thread running it; other threads change it by submitting
+ * gameLogic.GameCommand objects, which the game executes at the start of each simulation step.
  * Author: Afek Nuttman
  * Version: 14.7.2024
  */
 public class Game {
 
-    private SpriteCollection sprites;      // Collection of all sprites in the game
+    private SpriteCollection sprites;      // Collection of all sprites in the game, in world coordinates
+    private SpriteCollection hud;          // Heads-up display sprites, in window coordinates
+    private EntityStore entities;          // The blocks, paddle and balls, drawn and updated after the sprites
+    private Camera camera;                 // Maps the visible part of the world onto the window
+    private FramebufferSurface framebuffer; // Software rasterizer frames are drawn into, or null to draw directly
     private GameEnvironment environment;    // Environment containing all collidables
-    private GUI gui;                        // The graphical user interface
+    private CollisionScheduler scheduler;   // Event-driven collision scheduler, or null for per-frame checks
+    private BallCollisionDetector ballCollisions; // Ball-ball collision detection, or null if balls pass through
+    private boolean compactBlocks;          // Whether the level's blocks are kept in a compact block store
+    private MappedLevel level;              // Memory-mapped level played instead of the built-in blocks, or null
+    private List<Ball> balls;               // The balls currently in the game
+    private Paddle paddle;                  // The player's paddle
+    private CommandQueue commands;          // Commands from other threads, executed at the start of each step
+    private boolean paused;                 // Whether the simulation is stopped
+    private IdleMonitor idleMonitor;        // Wakes the game loop while it waits for something to do
+    private boolean pauseWhenInactive;      // Whether the game waits while its window is not active
+    private long pausePresses;              // Presses of the pause key handled so far
+    private AllocationMeter allocationMeter; // Measures the bytes allocated by each tick, or null
+    private FrameGovernor governor;         // Lowers the quality of the loop when frames run late, or null
+    private StaticLayer staticLayer;        // Walls and blocks drawn once for many frames, or null until needed
+    private long storeChanges;              // Block stores added and removed, counted into the static version
+    private HitLog hitLog;                  // Log every hit of a block is appended to, or null
+    private SpectatorFeed spectators;       // Streams the game to spectators after each step, or null
+    private int stepsPlayed;                // Simulation steps played, not counting paused ones
+    private List<LevelLayout> campaign;     // Layouts of the campaign levels, played in order
+    private int levelIndex;                 // Index of the campaign level being played
+    private PreparedLevel currentLevel;     // The campaign level being played, or null
+    private Future<PreparedLevel> nextLevel; // The next campaign level, being built in the background, or null
+    private ExecutorService preloader;      // Background thread that builds the next campaign level
+    private BlockRemover blockRemover;      // Removes hit blocks and counts the remaining ones
+    private ScoreTrackingListener scoreListener; // Adds points for hit blocks
+    private LevelCache levelCache;          // Cache of built levels shared between games, or null
+    private GUI gui;                        // The graphical user interface, or null for a headless game
     private KeyboardSensor keyboard;        // Keyboard sensor for user input
+    private KeyInput input;                 // Timestamped key transitions sampled before each step, or null
     private static final int SCREEN_WIDTH = 800;  // Width of the game screen
     private static final int SCREEN_HEIGHT = 600; // Height of the game screen
+    private static final int HUD_HEIGHT = 20;     // Height of the heads-up display above the arena
+    private static final int BORDER = 5;          // Thickness of the arena's walls
+    private int worldWidth;                 // Width of the arena
+    private int worldHeight;                // Height of the arena
+    private static final int STEPS_PER_SECOND = 60;   // Rate of the simulation, whatever the frame rate
+    private static final int MAX_STEPS_PER_FRAME = 5; // Steps caught up before dropping time after a stall
+    private int framesPerSecond;            // Rate at which frames are drawn
     private Counter remainingBlocks;        // gameLogic.Counter for remaining blocks in the game
     private Counter remainingBalls;         // gameLogic.Counter for remaining balls in the game
     private Counter scoreIndicator;         // gameLogic.Counter for the player's score
-    private static final Color[] ROW_COLORS = {
+    private Counter measuredFrameRate;      // gameLogic.Counter for the frames drawn during the last second
+    static final Color[] ROW_COLORS = {
             Color.GRAY, Color.RED, Color.YELLOW, Color.BLUE, Color.PINK, Color.GREEN, Color.ORANGE
-    };  // Colors used for the blocks
+    };  // Colors used for the blocks, also by gameLogic.Layouts
 
     /**
      * Constructs a new gameLogic.Game object, initializing the game environment, GUI,
      * keyboard sensor, and counters.
      */
     public Game() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new gameLogic.Game object. Given a keyboard sensor, the game runs headless, e.g. in a test:
+     * it opens no window, draws its frames into the software rasterizer only, and is never idle.
+     *
+     * @param keyboard the keyboard sensor moving the paddle, or null to open the window and read its keyboard.
+     */
+    Game(KeyboardSensor keyboard) {
         this.sprites = new SpriteCollection();
+        this.hud = new SpriteCollection();
+        this.entities = new EntityStore();
+        this.worldWidth = SCREEN_WIDTH;
+        this.worldHeight = SCREEN_HEIGHT;
+        this.framesPerSecond = STEPS_PER_SECOND;
         this.environment = new GameEnvironment();
-        this.gui = new GUI("Arkanoid", SCREEN_WIDTH, SCREEN_HEIGHT);
-        this.keyboard = gui.getKeyboardSensor();
+        this.balls = new ArrayList<>();
+        this.commands = new CommandQueue();
+        this.campaign = new ArrayList<>();
+        this.idleMonitor = new IdleMonitor();
+        if (keyboard == null) {
+            this.idleMonitor.install(); // Before the window opens, so that it sees the window and its keys
+            this.gui = new GUI("Arkanoid", SCREEN_WIDTH, SCREEN_HEIGHT);
+            this.keyboard = gui.getKeyboardSensor();
+        } else {
+            this.keyboard = keyboard;
+            this.framebuffer = new FramebufferSurface(SCREEN_WIDTH, SCREEN_HEIGHT, Color.WHITE);
+        }
         this.remainingBlocks = new Counter(0); // Initialize the block counter with 0
         this.remainingBalls = new Counter(0);  // Initialize the ball counter with 0
         this.scoreIndicator = new Counter(0); // Initialize the score counter with 0
+        this.measuredFrameRate = new Counter(0);
+    }
+
+    /**
+     * Sets the size of the arena, which may be larger than the window; the camera then follows the balls.
+     * By default the arena is the size of the window. Must be called before initialize.
+     *
+     * @param width  the width of the arena, at least the width of the window.
+     * @param height the height of the arena, at least the height of the window.
+     * @throws IllegalArgumentException if the arena is smaller than the window.
+     */
+    public void setWorldSize(int width, int height) {
+        if (width < SCREEN_WIDTH || height < SCREEN_HEIGHT) {
+            throw new IllegalArgumentException("the world must be at least " + SCREEN_WIDTH + "x" + SCREEN_HEIGHT
+                    + ", got " + width + "x" + height);
+        }
+        this.worldWidth = width;
+        this.worldHeight = height;
+    }
+
+    /**
+     * Sets the rate at which frames are drawn, e.g. the refresh rate of the display. The simulation keeps
+     * stepping at 60 steps per second; frames drawn between two steps show the balls and the paddle
+     * interpolated between their positions at those steps.
+     *
+     * @param framesPerSecond the number of frames drawn per second, at least 1.
+     * @throws IllegalArgumentException if the rate is not positive.
+     */
+    public void setFrameRate(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("the frame rate must be positive, got " + framesPerSecond);
+        }
+        this.framesPerSecond = framesPerSecond;
+    }
+
+    /**
+     * Draws frames with a software rasterizer into an int array, and hands each finished frame to the window
+     * as a single image instead of one drawing command per shape.
+     */
+    public void enableFramebuffer() {
+        this.framebuffer = new FramebufferSurface(SCREEN_WIDTH, SCREEN_HEIGHT, Color.WHITE);
+    }
+
+    /**
+     * Draws frames with the software rasterizer like enableFramebuffer, but splits each frame into
+     * horizontal tiles that are rasterized in parallel.
+     *
+     * @param tileHeight the height of a tile, in pixels.
+     */
+    public void enableTiledFramebuffer(int tileHeight) {
+        this.framebuffer = new FramebufferSurface(SCREEN_WIDTH, SCREEN_HEIGHT, Color.WHITE, tileHeight);
+    }
+
+    /**
+     * Switches the game to event-driven collision handling: each ball's next impact is predicted and
+     * queued, and balls move analytically between impacts instead of querying the environment every frame.
+     * Must be called before initialize. The scheduler moves balls in floating point, so it cannot be combined
+     * with enableFixedPointPhysics.
+     *
+     * @throws IllegalStateException if fixed-point physics is enabled.
+     */
+    public void enableEventDrivenCollisions() {
+        if (environment.isFixedPoint()) {
+            throw new IllegalStateException("event-driven collisions cannot be combined with fixed-point physics");
+        }
+        this.scheduler = new CollisionScheduler(environment);
+        this.environment.setScheduler(scheduler);
+    }
+
+    /**
+     * Switches the game to deterministic fixed-point physics: balls move and collide using integer
+     * arithmetic only, so a game replays bit for bit on any JVM. Must be called before initialize, and cannot
+     * be combined with enableEventDrivenCollisions.
+     *
+     * @throws IllegalStateException if event-driven collisions are enabled.
+     */
+    public void enableFixedPointPhysics() {
+        if (scheduler != null) {
+            throw new IllegalStateException("fixed-point physics cannot be combined with event-driven collisions");
+        }
+        this.environment.setFixedPoint(true);
+    }
+
+    /**
+     * Measures the bytes the game thread allocates during each pass of the game loop, broken down into
+     * updating the sprites, dispatching hits and drawing, and prints the average once per second.
+     * Set a budget on the returned meter to have the ticks that allocate more counted and reported; the
+     * first one is printed in detail, and the game goes on.
+     *
+     * @return the meter.
+     */
+    public AllocationMeter enableAllocationMeter() {
+        this.allocationMeter = new AllocationMeter();
+        this.environment.setAllocationMeter(allocationMeter);
+        return this.allocationMeter;
+    }
+
+    /**
+     * Lets the game lower the quality of the game loop in steps when frames take longer than the frame
+     * budget, and restore it when they are fast again, so heavy scenes stay responsive. Each decision is
+     * printed and recorded as a gameLogic.QualityChangeEvent.
+     *
+     * @return the governor.
+     */
+    public FrameGovernor enableFrameGovernor() {
+        this.governor = new FrameGovernor();
+        return this.governor;
+    }
+
+    /**
+     * Appends every hit of a block to a memory-mapped hit log in a directory, for gameplay analytics.
+     * The log is closed when the game ends.
+     *
+     * @param directory the directory of the log, created if missing; it must not hold a log already.
+     * @throws IOException if the log cannot be created.
+     */
+    public void enableHitLog(Path directory) throws IOException {
+        this.hitLog = new HitLog(directory, HitLog.DEFAULT_RECORDS_PER_SEGMENT);
+        this.environment.setHitLog(hitLog);
+    }
+
+    /**
+     * Streams the game to spectators connecting to a TCP port, e.g. with gameLogic.SpectatorClient: a keyframe
+     * when one joins and every two seconds, and what changed after each simulation step in between.
+     * The networking runs on a background thread, so the game thread never waits for the spectators.
+     * The server is closed when the game ends.
+     *
+     * @param port the port to listen on, or 0 to pick a free port.
+     * @return the server, e.g. to read the port it listens on.
+     * @throws IOException if the server cannot listen on the port.
+     */
+    public SpectatorServer enableSpectators(int port) throws IOException {
+        SpectatorServer server = new SpectatorServer(new InetSocketAddress(port));
+        this.spectators = new SpectatorFeed(server, entities, environment, balls, scoreIndicator);
+        this.environment.setSpectatorFeed(spectators);
+        return server;
+    }
+
+    /**
+     * Makes the game wait, as if paused, while its window does not have the focus or is minimized, and resume
+     * when the window is active again. By default the game goes on in the background.
+     */
+    public void enablePauseWhenInactive() {
+        this.pauseWhenInactive = true;
+    }
+
+    /**
+     * Reads the keyboard as timestamped key transitions sampled right before each simulation step, instead of
+     * polling which keys are down, and prints the input-to-display latency once per second.
+     * The paddle moves by the part of each step its keys were held. Must be called before initialize.
+     */
+    public void enableTimestampedInput() {
+        this.input = new KeyInput();
+        this.input.install();
+        this.keyboard = this.input;
+    }
+
+    /**
+     * Makes balls bounce off each other elastically instead of passing through each other.
+     * Every ball-ball collision is reported to the listeners of the returned detector.
+     *
+     * @return the detector, to register hit listeners on.
+     */
+    public BallCollisionDetector enableBallCollisions() {
+        this.ballCollisions = new BallCollisionDetector();
+        return this.ballCollisions;
+    }
+
+    /**
+     * Keeps the level's blocks in a compact spritesAndCollisonDetection.BlockStore instead of one
+     * spritesAndCollisonDetection.Block object each. Must be called before initialize.
+     */
+    public void enableCompactBlocks() {
+        this.compactBlocks = true;
+    }
+
+    /**
+     * Plays the blocks of a level file instead of the built-in blocks. The file is memory-mapped, and blocks
+     * are only created near the balls (see gameLogic.MappedLevel). Must be called before initialize, and
+     * cannot be combined with campaign levels.
+     *
+     * @param file the level file.
+     * @throws IOException           if the file cannot be mapped.
+     * @throws IllegalStateException if campaign levels were added.
+     */
+    public void loadLevel(Path file) throws IOException {
+        if (!campaign.isEmpty()) {
+            throw new IllegalStateException("a level file cannot be combined with campaign levels");
+        }
+        this.level = MappedLevel.open(file);
+    }
+
+    /**
+     * Adds a level to the campaign. Campaign levels are played in the order they were added, with the
+     * blocks in a compact store; while a level is played, the next one is built on a background thread.
+     * Must be called before initialize, and cannot be combined with a level file.
+     *
+     * @param layout the layout of the level.
+     * @throws IllegalStateException if a level file was loaded.
+     */
+    public void addLevel(LevelLayout layout) {
+        if (level != null) {
+            throw new IllegalStateException("campaign levels cannot be combined with a level file");
+        }
+        this.campaign.add(layout);
+    }
+
+    /**
+     * Takes the compact levels of this game from a cache of built levels instead of building them.
+     * The cache can be shared by many games. Must be called before initialize.
+     *
+     * @param cache the level cache.
+     */
+    public void setLevelCache(LevelCache cache) {
+        this.levelCache = cache;
+    }
+
+    /**
+     * Submits a command to be executed on the game thread at the start of the next simulation step.
+     * The game's other methods are not thread-safe, so other threads change a running game through
+     * commands only. Safe to call from any thread; never blocks. An idle game is woken to execute it. A
+     * command that throws is reported and dropped without stopping the game.
+     *
+     * @param command the command.
+     */
+    public void submit(GameCommand command) {
+        this.commands.offer(command);
+        this.idleMonitor.wake();
+    }
+
+    /**
+     * Stops or resumes the simulation. A paused game waits without using the CPU, and only executes
+     * commands and redraws its frame when it is woken by a command, an input or a window event. The player
+     * pauses and resumes the game with the P key.
+     *
+     * @param paused true to pause the game, false to resume it.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Checks whether the simulation is stopped.
+     *
+     * @return true if the game is paused, false otherwise.
+     */
+    public boolean isPaused() {
+        return this.paused;
+    }
+
+    /**
+     * Returns the player's paddle.
+     *
+     * @return the paddle, or null before initialize.
+     */
+    public Paddle getPaddle() {
+        return this.paddle;
+    }
+
+    /**
+     * Returns the player's score, e.g. for a test to compare with what spectators are shown.
+     *
+     * @return the score.
+     */
+    int getScore() {
+        return this.scoreIndicator.getValue();
+    }
+
+    /**
+     * Adds a new ball to the running game, moving in the game's environment and counted with the
+     * remaining balls.
+     *
+     * @param b The ball, created in the game's entity store and with its velocity set.
+     */
+    public void spawnBall(Ball b) {
+        b.setGameEnvironment(environment);
+        b.addToGame(this);
+        remainingBalls.increase(1);
+    }
+
+    /**
+     * Adds a new block to the running game, with the listeners that remove it and score it when hit,
+     * counted with the remaining blocks.
+     *
+     * @param block The block, created in the game's entity store.
+     */
+    public void spawnBlock(Block block) {
+        block.addToGame(this);
+        block.addHitListener(blockRemover);
+        block.addHitListener(scoreListener);
+        remainingBlocks.increase(1);
+        if (spectators != null) {
+            spectators.requestKeyframe(); // Spectators only hear of blocks that change or go
+        }
+    }
+
+    /**
+     * Removes a block from the running game without scoring it, and no longer counts it with the
+     * remaining blocks.
+     *
+     * @param block The block, added with spawnBlock or by the level.
+     */
+    public void removeBlock(Block block) {
+        if (spectators != null) {
+            spectators.blockRemoved(block);
+        }
+        block.removeFromGame(this);
+        remainingBlocks.decrease(1);
+    }
+
+    /**
+     * Registers a ball with the game's ball-level physics (event-driven scheduling and ball-ball collisions).
+     *
+     * @param b The ball that was added to the game.
+     */
+    public void addBall(Ball b) {
+        balls.add(b);
+        if (scheduler != null) {
+            scheduler.addBall(b);
+        }
+        if (ballCollisions != null) {
+            ballCollisions.addBall(b);
+        }
+    }
+
+    /**
+     * Unregisters a ball from the game's ball-level physics.
+     *
+     * @param b The ball that was removed from the game.
+     */
+    public void removeBall(Ball b) {
+        balls.remove(b);
+        if (scheduler != null) {
+            scheduler.removeBall(b);
+        }
+        if (ballCollisions != null) {
+            ballCollisions.removeBall(b);
+        }
     }
 
     /**
@@ -71,6 +489,27 @@ public class Game {
         environment.removeCollidable(c);
     }
 
+    /**
+     * Adds a compact store of blocks to the game, registering it with the game environment. Its blocks are
+     * drawn with the walls, before the sprites.
+     *
+     * @param store The block store to be added.
+     */
+    public void addBlockStore(BlockStore store) {
+        this.environment.addBlockStore(store);
+        this.storeChanges++;
+    }
+
+    /**
+     * Removes a compact store of blocks from the game.
+     *
+     * @param store The block store to be removed.
+     */
+    public void removeBlockStore(BlockStore store) {
+        this.environment.removeBlockStore(store);
+        this.storeChanges += store.getVersion() + 1; // The static version still grows, as the store's leaves it
+    }
+
     /**
      * Removes a sprite from the sprite collection.
      *
@@ -80,6 +519,25 @@ public class Game {
         sprites.removeSprite(s);
     }
 
+    /**
+     * Returns the store of the game's entities. Blocks, balls and the paddle are created with their entities
+     * in it, on the game's thread; it draws them after the other sprites and updates the ones with a behaviour.
+     *
+     * @return the entity store.
+     */
+    public EntityStore getEntities() {
+        return this.entities;
+    }
+
+    /**
+     * Adds a sprite to the heads-up display, which is drawn in window coordinates on top of the arena.
+     *
+     * @param s The sprite to be added to the display.
+     */
+    public void addHudSprite(Sprite s) {
+        this.hud.addSprite(s);
+    }
+
     /**
      * Adds a sprite to the sprite collection.
      *
@@ -95,16 +553,24 @@ public class Game {
      */
     public void initialize() {
         // Create and add border blocks
-        BlockRemover blockRemover = new BlockRemover(this, remainingBlocks);
-        Block topBorder = new Block(new Rectangle(new Point(0, 20), SCREEN_WIDTH, 5), Color.GRAY);
-        Block bottomBorder = new Block(new Rectangle(new Point(0, SCREEN_HEIGHT - 5), SCREEN_WIDTH, 5), Color.WHITE);
-        Block leftBorder = new Block(new Rectangle(new Point(0, 25), 5, SCREEN_HEIGHT - 30), Color.GRAY);
-        Block rightBorder = new Block(new Rectangle(new Point(SCREEN_WIDTH - 5, 25),
-                5, SCREEN_HEIGHT - 30), Color.GRAY);
+        blockRemover = new BlockRemover(this, remainingBlocks);
+        Block topBorder = new Block(entities, new Rectangle(new Point(0, HUD_HEIGHT), worldWidth, BORDER), Color.GRAY);
+        Block bottomBorder = new Block(entities, new Rectangle(new Point(0, worldHeight - BORDER), worldWidth, BORDER),
+                Color.WHITE);
+        Block leftBorder = new Block(entities, new Rectangle(new Point(0, HUD_HEIGHT + BORDER), BORDER,
+                worldHeight - HUD_HEIGHT - 2 * BORDER), Color.GRAY);
+        Block rightBorder = new Block(entities, new Rectangle(new Point(worldWidth - BORDER, HUD_HEIGHT + BORDER),
+                BORDER, worldHeight - HUD_HEIGHT - 2 * BORDER), Color.GRAY);
+        camera = new Camera(SCREEN_WIDTH, SCREEN_HEIGHT, worldWidth, worldHeight);
         BallRemover ballRemover = new BallRemover(this, remainingBalls); // Handles ball removal when needed
-        ScoreTrackingListener scoreIndic = new ScoreTrackingListener(scoreIndicator);
+        scoreListener = new ScoreTrackingListener(scoreIndicator);
 
         // Add border blocks to the game
+        for (Block border : new Block[] {topBorder, bottomBorder, leftBorder, rightBorder}) {
+            border.setBorder(true); // Hits on the walls neither swap colors nor count
+        }
+        bottomBorder.setOutlined(false);
+        bottomBorder.setFloor(true); // Balls reaching it are logged as lost
         topBorder.addToGame(this);
         bottomBorder.addToGame(this);
         leftBorder.addToGame(this);
@@ -113,82 +579,519 @@ public class Game {
         remainingBalls.increase(3); // Initialize with 3 balls
 
         // Create and add game blocks
-        for (int i = 0; i <= 5; i++) {
-            for (int j = 0; j < 12 - i; j++) {
-                Rectangle rect = new Rectangle(new Point(740 - j * 55, 100 + (i + 1) * 30), 55, 30);
-                Block block = new Block(rect, ROW_COLORS[i]);
-                block.addToGame(this);
-                block.addHitListener(blockRemover); // Add listener to handle block removal
-                block.addHitListener(scoreIndic);    // Add listener to update score
-                remainingBlocks.increase(1); // Increment the counter for each block added
-            }
+        if (!campaign.isEmpty()) {
+            startLevel(prepareLevel(campaign.get(0)));
+            preloader = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "level-preloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            preloadNextLevel();
+        } else if (level != null) {
+            List<HitListener> listeners = new ArrayList<>();
+            listeners.add(blockRemover);  // Add listener to handle block removal
+            listeners.add(scoreListener); // Add listener to update score
+            level.addToGame(this, environment, listeners);
+            remainingBlocks.increase(level.getBlockCount());
+        } else {
+            addBuiltInBlocks();
         }
 
         // Create and add paddle
-        Rectangle paddleRect = new Rectangle(new Point(350, 575), 80, 20);
-        Paddle paddle = new Paddle(paddleRect, ROW_COLORS[ROW_COLORS.length - 1], keyboard, 10);
+        Rectangle paddleRect = new Rectangle(new Point(worldWidth / 2 - 50, worldHeight - 25), 80, 20);
+        paddle = new Paddle(entities, paddleRect, ROW_COLORS[ROW_COLORS.length - 1], keyboard, 10);
+        paddle.setMovementBounds(BORDER, worldWidth - BORDER);
+        paddle.setGameEnvironment(environment);
+        paddle.setBalls(balls);
+        if (input != null) {
+            paddle.setInput(input);
+        }
         paddle.addToGame(this);
+        if (spectators != null) {
+            spectators.setPaddle(paddle);
+        }
 
-        // Create and add score indicator
-        Rectangle scoreRect = new Rectangle(new Point(0, 0), 800, 20);
-        ScoreIndicator scoreIndicator1 = new ScoreIndicator(scoreRect, scoreIndicator);
-        scoreIndicator1.addToGame(this);
+        // Create and add the heads-up display
+        Hud hudBar = new Hud(new Rectangle(new Point(0, 0), SCREEN_WIDTH, HUD_HEIGHT));
+        hudBar.addIndicator("Score: ", scoreIndicator);
+        hudBar.addIndicator("Balls: ", remainingBalls);
+        hudBar.addIndicator("Blocks: ", remainingBlocks);
+        hudBar.addIndicator("FPS: ", measuredFrameRate);
+        hudBar.addToGame(this);
+        scoreIndicator.addCounterListener(c -> System.out.println(c.getValue())); // Print the score as it changes
 
         // Create and add balls
-        Ball ball = new Ball(new Point(200, 300), 5, Color.GRAY);
+        Ball ball = new Ball(entities, new Point(200, 300), 5, Color.GRAY);
         ball.setVelocity(Velocity.fromAngleAndSpeed(45, 4));
         ball.setGameEnvironment(environment);
         ball.addToGame(this);
 
-        Ball ball1 = new Ball(new Point(300, 300), 5, Color.GREEN);
+        Ball ball1 = new Ball(entities, new Point(300, 300), 5, Color.GREEN);
         ball1.setVelocity(Velocity.fromAngleAndSpeed(45, 3));
         ball1.setGameEnvironment(environment);
         ball1.addToGame(this);
 
-        Ball ball2 = new Ball(new Point(250, 300), 5, Color.RED);
+        Ball ball2 = new Ball(entities, new Point(250, 300), 5, Color.RED);
         ball2.setVelocity(Velocity.fromAngleAndSpeed(45, 5));
         ball2.setGameEnvironment(environment);
         ball2.addToGame(this);
     }
 
     /**
-     * Runs the game loop, which repeatedly draws the current state of the game on the GUI,
-     * updates the state of the sprites, and handles game termination conditions.
+     * Creates the built-in rows of blocks and adds them to the game.
      */
-    public void run() {
-        Sleeper sleeper = new Sleeper();
-        int framesPerSecond = 60;
-        int millisecondsPerFrame = 1000 / framesPerSecond;
+    private void addBuiltInBlocks() {
+        if (compactBlocks) {
+            // All stored blocks share a single listener group
+            startLevel(prepareLevel(Layouts.stairs()));
+            return;
+        }
+        for (int i = 0; i <= 5; i++) {
+            for (int j = 0; j < 12 - i; j++) {
+                Rectangle rect = new Rectangle(new Point(740 - j * 55, 100 + (i + 1) * 30), 55, 30);
+                Block block = new Block(entities, rect, ROW_COLORS[i]);
+                block.addToGame(this);
+                block.addHitListener(blockRemover);  // Add listener to handle block removal
+                block.addHitListener(scoreListener); // Add listener to update score
+                remainingBlocks.increase(1); // Increment the counter for each block added
+            }
+        }
+    }
 
-        while (true) {
-            long startTime = System.currentTimeMillis();
-            DrawSurface d = gui.getDrawSurface();
+    /**
+     * Builds a level, or copies it from the level cache, and attaches the game's listeners to its blocks.
+     *
+     * @param layout the layout of the level.
+     * @return the level, ready to be played.
+     */
+    private PreparedLevel prepareLevel(LevelLayout layout) {
+        BlockStore store = levelCache != null ? levelCache.get(layout) : PreparedLevel.build(layout);
+        return new PreparedLevel(store, blockRemover, scoreListener);
+    }
 
-            // Draw all sprites
-            this.sprites.drawAllOn(d);
-            gui.show(d);
+    /**
+     * Replaces the blocks of the current level with those of a prepared level. The level is fully built,
+     * so the swap only exchanges one block store for another.
+     *
+     * @param prepared the level to play.
+     */
+    private void startLevel(PreparedLevel prepared) {
+        if (currentLevel != null) {
+            removeBlockStore(currentLevel.getStore());
+        }
+        addBlockStore(prepared.getStore());
+        remainingBlocks.increase(prepared.getBlockCount());
+        currentLevel = prepared;
+        if (spectators != null) {
+            spectators.requestKeyframe();
+        }
+    }
+
+    /**
+     * Starts building the campaign level after the current one on the background thread, if there is one.
+     */
+    private void preloadNextLevel() {
+        nextLevel = null;
+        if (levelIndex + 1 < campaign.size()) {
+            LevelLayout layout = campaign.get(levelIndex + 1);
+            nextLevel = preloader.submit(() -> prepareLevel(layout));
+        }
+    }
+
+    /**
+     * Moves on to the next campaign level. The level was preloaded, so this normally does not wait.
+     *
+     * @return true if there was a next level, false if the campaign is over.
+     */
+    private boolean advanceLevel() {
+        if (nextLevel == null) {
+            return false;
+        }
+        try {
+            startLevel(nextLevel.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot build level " + (levelIndex + 2), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        levelIndex++;
+        preloadNextLevel();
+        return true;
+    }
 
-            // Notify all sprites that time has passed
-            this.sprites.notifyAllTimePassed();
+    /**
+     * Points the camera at the average position of the balls, or at the center of the arena if there are no
+     * balls, without allocating.
+     *
+     * @param alpha how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    private void followBalls(double alpha) {
+        if (balls.isEmpty()) {
+            camera.follow(worldWidth / 2.0, worldHeight / 2.0);
+            return;
+        }
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            int ball = balls.get(i).getId(); // A ball's id is its entity
+            x += entities.getInterpolatedX(ball, alpha);
+            y += entities.getInterpolatedY(ball, alpha);
+        }
+        camera.follow(x / balls.size(), y / balls.size());
+    }
 
-            // Check game termination conditions
-            if (remainingBlocks.getValue() < 0 || remainingBalls.getValue() <= 0) {
-                sleeper.sleepFor(200);
-                gui.close();
-                return; // Exit the game loop when no more blocks or balls are available
+    /**
+     * Returns the area every ball may cover during the next step.
+     *
+     * @return one area per ball.
+     */
+    private List<Rectangle> ballReach() {
+        List<Rectangle> areas = new ArrayList<>();
+        for (Ball b : balls) {
+            double reach = b.getSize() + environment.getStepLength()
+                    * (Math.abs(b.getVelocity().getDx()) + Math.abs(b.getVelocity().getDy()));
+            areas.add(new Rectangle(new Point(b.getCenter().getX() - reach, b.getCenter().getY() - reach),
+                    2 * reach, 2 * reach));
+        }
+        return areas;
+    }
+
+    /**
+     * Runs the game loop. The simulation steps at a fixed rate, and frames are drawn at the frame rate
+     * in between, with moving sprites interpolated between the last two steps, so drawing faster than
+     * the simulation costs no extra physics. Each pass of the loop is recorded as a gameLogic.FrameEvent
+     * when Flight Recorder is on. With a frame governor, the walls and blocks may be drawn from a cached
+     * layer, frames drawn less often, and steps merged, while the loop runs over budget. While the game is
+     * paused, with the P key or setPaused, or its window is not active and the game pauses when inactive, the
+     * loop waits instead, and the time spent waiting is not simulated.
+     */
+    public void run() {
+        Sleeper sleeper = new Sleeper();
+        long nanosecondsPerStep = 1_000_000_000L / STEPS_PER_SECOND;
+        long nanosecondsPerFrame = 1_000_000_000L / framesPerSecond;
+        long previousTime = System.nanoTime();
+        long lag = nanosecondsPerStep; // Time not simulated yet; the first frame starts with one step
+        long rateWindowStart = previousTime; // Start of the second the frames are being counted in
+        int framesInWindow = 0;
+        if (governor != null && environment.isFixedPoint()) {
+            governor.setMaxLevel(FrameGovernor.HALF_RATE); // Merged steps would change the replayed trajectory
+        }
+
+        while (true) {
+            readPauseKey();
+            if (isIdle()) {
+                measuredFrameRate.increase(-measuredFrameRate.getValue());
+                waitWhileIdle();
+                previousTime = System.nanoTime(); // Resume where the game stopped
+                lag = 0;
+                rateWindowStart = previousTime;
+                framesInWindow = 0;
             }
-            if (remainingBlocks.getValue() == 0) {
-                scoreIndicator.increase(100); // Add bonus points for clearing all blocks
-                remainingBlocks.decrease(1);  // Ensure the loop can exit
+            FrameEvent frame = new FrameEvent();
+            frame.begin();
+            long frameStart = System.nanoTime();
+            lag += frameStart - previousTime;
+            previousTime = frameStart;
+            if (allocationMeter != null) {
+                allocationMeter.beginTick();
+                allocationMeter.enter(AllocationMeter.UPDATE);
+            }
+            int merged = governor != null ? governor.getStepsMerged() : 1;
+            long stepNanos = merged * nanosecondsPerStep; // Time simulated by each step run
+            environment.setStepLength(merged);
+            int steps = 0;
+            for (; lag >= stepNanos; steps++) {
+                if (steps == MAX_STEPS_PER_FRAME) {
+                    lag = 0; // Drop the time lost to a stall rather than fall further behind
+                    break;
+                }
+                if (input != null) {
+                    long stepEnd = frameStart - lag + stepNanos; // The step simulates the oldest lag
+                    input.sample(stepEnd - stepNanos, stepEnd);
+                }
+                if (!step()) {
+                    sleeper.sleepFor(200);
+                    if (preloader != null) {
+                        preloader.shutdownNow();
+                    }
+                    closeHitLog();
+                    if (spectators != null) {
+                        spectators.close();
+                    }
+                    if (gui != null) {
+                        gui.close();
+                    }
+                    return; // Exit the game loop when no more blocks or balls are available
+                }
+                lag -= stepNanos;
+            }
+            if (allocationMeter != null) {
+                allocationMeter.exit();
+                allocationMeter.enter(AllocationMeter.DRAW);
+            }
+            drawFrame(paused ? 1 : (double) lag / stepNanos); // A paused game is drawn where it stopped
+            framesInWindow++;
+            if (allocationMeter != null) {
+                allocationMeter.exit();
+                if (allocationMeter.endTick() && allocationMeter.getOverBudgetTicks() == 1) {
+                    System.err.println("Allocation budget exceeded: " + allocationMeter.describeLastTick()
+                            + " bytes in one tick; the next ticks over budget are only counted");
+                }
+            }
+            if (frame.shouldCommit()) {
+                frame.setSteps(steps);
+                frame.setQuality(governor != null ? governor.getLevel() : FrameGovernor.FULL);
+                frame.setSprites(sprites.size());
+                frame.setEntities(entities.size());
+                frame.setCollidables(environment.getCollidables().size());
+                frame.commit();
+            }
+            if (frameStart - rateWindowStart >= 1_000_000_000L) {
+                measuredFrameRate.increase(framesInWindow - measuredFrameRate.getValue());
+                framesInWindow = 0;
+                rateWindowStart = frameStart;
+                if (allocationMeter != null) {
+                    System.out.println("Allocated: " + allocationMeter.report());
+                }
+                String latency = input != null ? input.report() : null;
+                if (latency != null) {
+                    System.out.println("Input latency: " + latency);
+                }
             }
-            System.out.println(scoreIndicator.getValue()); // Print the current score to the console
 
             // Calculate and sleep for the remaining time to maintain the frame rate
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
+            long work = System.nanoTime() - frameStart;
+            long frameNanos = nanosecondsPerFrame;
+            if (governor != null) {
+                if (governor.frameDone(frameStart, work)) {
+                    System.out.println("Quality: " + governor.report());
+                }
+                frameNanos *= governor.getFrameInterval();
+            }
+            long milliSecondLeftToSleep = (frameNanos - work) / 1_000_000;
             if (milliSecondLeftToSleep > 0) {
                 sleeper.sleepFor(milliSecondLeftToSleep);
             }
         }
     }
+
+    /**
+     * Plays one pass of the game loop without waiting or catching up: one simulation step and one frame,
+     * measured by the allocation meter if it is enabled. Used to run a headless game as fast as it goes.
+     *
+     * @param alpha where the frame is drawn between the step before and the step just played, from 0 to 1.
+     * @return true if the game goes on, false if it is over.
+     */
+    boolean tick(double alpha) {
+        return tick(alpha, 1);
+    }
+
+    /**
+     * Plays one pass of the game loop like tick(alpha), with a step covering several frames, as the game
+     * loop plays when the frame governor merges steps.
+     *
+     * @param alpha  where the frame is drawn between the step before and the step just played, from 0 to 1.
+     * @param merged the number of frames the step covers.
+     * @return true if the game goes on, false if it is over.
+     */
+    boolean tick(double alpha, int merged) {
+        if (allocationMeter != null) {
+            allocationMeter.beginTick();
+            allocationMeter.enter(AllocationMeter.UPDATE);
+        }
+        environment.setStepLength(merged);
+        boolean goesOn = step();
+        if (allocationMeter != null) {
+            allocationMeter.exit();
+            allocationMeter.enter(AllocationMeter.DRAW);
+        }
+        drawFrame(alpha);
+        if (allocationMeter != null) {
+            allocationMeter.exit();
+            allocationMeter.endTick();
+        }
+        return goesOn;
+    }
+
+    /**
+     * Closes the hit log, if hits are logged.
+     */
+    private void closeHitLog() {
+        if (hitLog == null) {
+            return;
+        }
+        try {
+            hitLog.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot close the hit log", e);
+        }
+        System.out.println("Logged " + hitLog.getRecords() + " hits");
+    }
+
+    /**
+     * Toggles the pause for every press of the pause key since the last call.
+     */
+    private void readPauseKey() {
+        long presses = idleMonitor.getPausePresses();
+        if ((presses - pausePresses) % 2 == 1) {
+            paused = !paused;
+        }
+        pausePresses = presses;
+    }
+
+    /**
+     * Checks whether the game should wait rather than play.
+     *
+     * @return true if the game is paused, or pauses when inactive and its window is not active.
+     */
+    private boolean isIdle() {
+        return paused || (pauseWhenInactive && !idleMonitor.isActive());
+    }
+
+    /**
+     * Waits, without using the CPU, while the game is idle: paused, or set to pause when inactive while its
+     * window does not have the focus or is minimized. Whenever a command, an input or a window event wakes
+     * the game, it executes the submitted commands, reads the pause key and redraws the frame where the game
+     * stopped, then waits again. Returns early if the game thread is interrupted, and the loop then polls as
+     * it does when active.
+     */
+    private void waitWhileIdle() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long seen = idleMonitor.getWakeups(); // Before checking, so that no wake-up in between is missed
+            commands.drain(this);
+            readPauseKey();
+            if (!isIdle()) {
+                return;
+            }
+            drawFrame(1);
+            idleMonitor.await(seen);
+        }
+    }
+
+    /**
+     * Draws one frame: the visible walls and blocks, the sprites and what moves, between the last two simulation
+     * steps, then the heads-up display. When the frame governor skips static redraws, the walls and blocks
+     * come from the static layer, which is drawn again only when they change or the camera leaves it.
+     *
+     * @param alpha how far the frame is from the previous step to the current one, from 0 to 1.
+     */
+    private void drawFrame(double alpha) {
+        DrawSurface window = gui != null ? gui.getDrawSurface() : null;
+        DrawSurface d = framebuffer != null ? framebuffer : window;
+        followBalls(alpha);
+        Rectangle viewport = camera.getViewport();
+        DrawSurface world = camera.wrap(d);
+        if (governor != null && governor.cachesStaticLayer()) {
+            if (staticLayer == null) {
+                staticLayer = new StaticLayer(SCREEN_WIDTH, SCREEN_HEIGHT, Color.WHITE);
+            }
+            long version = staticVersion();
+            if (!staticLayer.isCurrent(version, viewport)) {
+                drawStatic(staticLayer.redraw(version, viewport), staticLayer.getArea());
+            }
+            if (framebuffer != null) {
+                staticLayer.startFrame(framebuffer, viewport);
+            } else {
+                staticLayer.drawOn(d, viewport);
+            }
+        } else {
+            if (framebuffer != null) {
+                framebuffer.clear();
+            }
+            drawStatic(world, viewport);
+        }
+        this.sprites.drawAllOn(world, viewport, alpha);
+        this.entities.drawMovingOn(world, viewport, alpha);
+        this.hud.drawAllOn(d);
+        if (window == null) {
+            return; // Headless: the frame stays in the framebuffer
+        }
+        if (framebuffer != null) {
+            framebuffer.blitTo(window);
+        }
+        gui.show(window);
+        if (input != null) {
+            input.frameShown(System.nanoTime());
+        }
+    }
+
+    /**
+     * Draws what does not move: the blocks of the block stores, and the walls and blocks of the entity store.
+     *
+     * @param world    the surface to draw on, in world coordinates.
+     * @param viewport the part of the world to draw.
+     */
+    private void drawStatic(DrawSurface world, Rectangle viewport) {
+        List<BlockStore> stores = environment.getBlockStores();
+        for (int i = 0; i < stores.size(); i++) {
+            stores.get(i).drawOn(world, viewport);
+        }
+        this.entities.drawStaticOn(world, viewport);
+    }
+
+    /**
+     * Returns a number that grows whenever what drawStatic draws changes: the sum of the versions of the
+     * static boxes, of the block stores, and of the stores added and removed.
+     *
+     * @return the static version.
+     */
+    private long staticVersion() {
+        long version = entities.getStaticVersion() + storeChanges;
+        List<BlockStore> stores = environment.getBlockStores();
+        for (int i = 0; i < stores.size(); i++) {
+            version += stores.get(i).getVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Advances the simulation by one step: executes the submitted commands, then, unless the game is paused,
+     * moves the sprites, resolves the collisions, streams the changes to spectators and checks the game
+     * termination conditions.
+     *
+     * @return true if the game goes on, false if it is over.
+     */
+    private boolean step() {
+        commands.drain(this); // The only point where other threads change the game
+        if (paused) {
+            return true;
+        }
+        if (level != null) {
+            int regions = level.getMaterializedRegions();
+            level.update(ballReach()); // Create the blocks the balls may reach during this step
+            if (spectators != null && level.getMaterializedRegions() != regions) {
+                spectators.requestKeyframe(); // Blocks appeared or were dropped
+            }
+        }
+        if (hitLog != null) {
+            hitLog.setFrame(stepsPlayed);
+        }
+        stepsPlayed += environment.getStepLength();
+
+        // Notify all sprites that time has passed
+        this.sprites.notifyAllTimePassed();
+        this.entities.timePassed();
+        if (scheduler != null) {
+            scheduler.advance(environment.getStepLength()); // Resolve the impacts that happen during this step
+        }
+        if (ballCollisions != null) {
+            ballCollisions.detect(environment.getStepLength());
+        }
+        if (spectators != null) {
+            spectators.stepDone(stepsPlayed);
+        }
+
+        // Check game termination conditions
+        if (remainingBlocks.getValue() < 0 || remainingBalls.getValue() <= 0) {
+            return false;
+        }
+        if (remainingBlocks.getValue() == 0) {
+            scoreIndicator.increase(100); // Add bonus points for clearing all blocks
+            if (!advanceLevel()) {
+                remainingBlocks.decrease(1);  // Ensure the loop can exit
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,16 @@
+package gameLogic;
+
+/**
+ * The gameLogic.GameCommand interface is a change to a running game requested from another thread,
+ * e.g. spawning a ball or pausing the game. Commands are submitted with gameLogic.Game.submit and executed
+ * on the game thread at the start of the next simulation step, where they may call any method of the game.
+ */
+public interface GameCommand {
+
+    /**
+     * Applies the command to the game. Called on the game thread.
+     *
+     * @param game the game to change.
+     */
+    void execute(Game game);
+}
@@ -1,7 +1,10 @@
 package gameLogic;
 
-import geometry.Line;
+import geometry.Intersections;
 import geometry.Point;
+import geometry.Rectangle;
+import geometry.Velocity;
+import spritesAndCollisonDetection.BlockStore;
 import spritesAndCollisonDetection.Collidable;
 import spritesAndCollisonDetection.CollisionInfo;
 
@@ -16,12 +19,22 @@ import java.util.List;
  */
 public class GameEnvironment {
     private List<Collidable> collidables; // List of collidable objects in the game environment
+    private List<BlockStore> blockStores; // Compact stores of static blocks, queried through their grids
+    private CollisionScheduler scheduler;  // Event-driven scheduler notified of changes, or null
+    private boolean fixedPoint;            // Whether balls move with deterministic fixed-point physics
+    private int candidates;                // Collidables and stored blocks tested by the current query
+    private AllocationMeter allocationMeter; // Meter charged with the allocations of hits, or null
+    private HitLog hitLog;                 // Log the hits of blocks are appended to, or null
+    private SpectatorFeed spectators;      // Feed the hits of blocks are streamed to spectators by, or null
+    private int stepLength;                // Frames each simulation step covers; more than 1 when steps are merged
 
     /**
      * Constructs a new gameLogic.GameEnvironment object, initializing the list of collidables.
      */
     public GameEnvironment() {
         this.collidables = new ArrayList<>();
+        this.blockStores = new ArrayList<>();
+        this.stepLength = 1;
     }
 
     /**
@@ -31,6 +44,9 @@ public class GameEnvironment {
      */
     public void addCollidable(Collidable c) {
         this.collidables.add(c);
+        if (this.scheduler != null) {
+            this.scheduler.collidableAdded(c);
+        }
     }
 
     /**
@@ -39,7 +55,163 @@ public class GameEnvironment {
      * @param c The collidable object to remove.
      */
     public void removeCollidable(Collidable c) {
+        // Views of stored blocks are not in the list, but balls may still be about to hit them
         this.collidables.remove(c);
+        if (this.scheduler != null) {
+            this.scheduler.collidableRemoved(c);
+        }
+    }
+
+    /**
+     * Adds a compact store of static blocks to the game environment.
+     *
+     * @param store The block store to add.
+     */
+    public void addBlockStore(BlockStore store) {
+        this.blockStores.add(store);
+        if (this.scheduler != null) {
+            this.scheduler.collidablesChanged();
+        }
+    }
+
+    /**
+     * Removes a compact store of static blocks from the game environment.
+     *
+     * @param store The block store to remove.
+     */
+    public void removeBlockStore(BlockStore store) {
+        if (this.blockStores.remove(store) && this.scheduler != null) {
+            this.scheduler.collidablesChanged();
+        }
+    }
+
+    /**
+     * Notifies the environment that a collidable object has changed its collision rectangle.
+     *
+     * @param c The collidable object that moved.
+     */
+    public void collidableMoved(Collidable c) {
+        if (this.scheduler != null) {
+            this.scheduler.collidableMoved(c);
+        }
+    }
+
+    /**
+     * Sets the event-driven collision scheduler that is notified whenever collidables change.
+     *
+     * @param scheduler The scheduler, or null to run without one.
+     */
+    public void setScheduler(CollisionScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the event-driven collision scheduler of this environment.
+     *
+     * @return The scheduler, or null if collisions are checked every frame.
+     */
+    public CollisionScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Sets the meter that balls charge with the bytes allocated while the objects they hit react to the hit.
+     *
+     * @param allocationMeter the meter, or null to stop measuring.
+     */
+    public void setAllocationMeter(AllocationMeter allocationMeter) {
+        this.allocationMeter = allocationMeter;
+    }
+
+    /**
+     * Returns the meter that balls charge with the bytes allocated while the objects they hit react to the hit.
+     *
+     * @return the meter, or null if allocations are not measured.
+     */
+    public AllocationMeter getAllocationMeter() {
+        return this.allocationMeter;
+    }
+
+    /**
+     * Sets the log that the hits of blocks by the balls of this environment are appended to.
+     *
+     * @param hitLog the log, or null to stop logging.
+     */
+    public void setHitLog(HitLog hitLog) {
+        this.hitLog = hitLog;
+    }
+
+    /**
+     * Returns the log that the hits of blocks by the balls of this environment are appended to.
+     *
+     * @return the log, or null if hits are not logged.
+     */
+    public HitLog getHitLog() {
+        return this.hitLog;
+    }
+
+    /**
+     * Sets the feed that the hits of blocks by the balls of this environment are streamed to spectators by.
+     *
+     * @param spectators the feed, or null to stop streaming.
+     */
+    public void setSpectatorFeed(SpectatorFeed spectators) {
+        this.spectators = spectators;
+    }
+
+    /**
+     * Returns the feed that the hits of blocks by the balls of this environment are streamed to spectators by.
+     *
+     * @return the feed, or null if the game is not streamed.
+     */
+    public SpectatorFeed getSpectatorFeed() {
+        return this.spectators;
+    }
+
+    /**
+     * Returns the compact stores of static blocks in the game environment.
+     *
+     * @return the block stores, in the order they were added; not to be modified.
+     */
+    public List<BlockStore> getBlockStores() {
+        return this.blockStores;
+    }
+
+    /**
+     * Sets whether balls in this environment move with deterministic fixed-point physics.
+     *
+     * @param fixedPoint true to use fixed-point physics, false to use double precision.
+     */
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+    }
+
+    /**
+     * Checks whether balls in this environment move with deterministic fixed-point physics.
+     *
+     * @return true if fixed-point physics is used, false otherwise.
+     */
+    public boolean isFixedPoint() {
+        return this.fixedPoint;
+    }
+
+    /**
+     * Sets how many frames each simulation step covers. Balls and the paddle move that many frames' worth
+     * in one step, so merging steps saves their cost without slowing the game down.
+     *
+     * @param stepLength the number of frames per step, 1 unless steps are merged.
+     */
+    public void setStepLength(int stepLength) {
+        this.stepLength = stepLength;
+    }
+
+    /**
+     * Returns how many frames each simulation step covers.
+     *
+     * @return the number of frames per step.
+     */
+    public int getStepLength() {
+        return this.stepLength;
     }
 
     /**
@@ -52,54 +224,284 @@ public class GameEnvironment {
     }
 
     /**
-     * Gets the closest collision information along the given trajectory.
+     * Gets the first collision of a ball (a circle) moving from center with a constant velocity.
+     * The ball is swept continuously, so it cannot tunnel through thin collidables at high speed.
+     * Block stores are only searched in the grid cells along the ball's path.
+     * Each query is recorded as a gameLogic.CollisionQueryEvent when Flight Recorder is on.
      *
-     * @param trajectory The trajectory of the moving object.
-     * @return The collision information of the closest collision, or null if no collision occurs.
+     * @param center   The current center of the ball.
+     * @param radius   The radius of the ball.
+     * @param velocity The velocity of the ball, per frame.
+     * @param maxTime  The length of the movement, in frames (may be infinite).
+     * @return The collision information of the earliest impact, or null if the ball hits nothing in time.
      */
-    public CollisionInfo getClosestCollision(Line trajectory) {
-        CollisionInfo closestCollision = null;
-        double closestDistance = Double.POSITIVE_INFINITY; // Initialize to a very large value
+    public CollisionInfo getClosestCollision(Point center, double radius, Velocity velocity, double maxTime) {
+        CollisionQueryEvent event = new CollisionQueryEvent();
+        event.begin();
+        this.candidates = this.collidables.size();
+        CollisionInfo closestImpact = null;
         for (Collidable c : this.collidables) {
-            Point collisionPoint = trajectory.closestIntersectionToStartOfLine(c.getCollisionRectangle());
-            if (collisionPoint != null) {
-                double distance = trajectory.start().distance(collisionPoint);
-                if (distance < closestDistance) {
-                    closestDistance = distance;
-                    closestCollision = new CollisionInfo(collisionPoint, c);
-                }
+            CollisionInfo impact = getImpact(c, center, radius, velocity, maxTime);
+            if (impact != null && (closestImpact == null || impact.time() < closestImpact.time())) {
+                closestImpact = impact;
             }
         }
-        return closestCollision;
+        for (BlockStore store : this.blockStores) {
+            CollisionInfo impact = getStoreImpact(store, center.getX(), center.getY(), radius,
+                    velocity.getDx(), velocity.getDy(), maxTime);
+            if (impact != null && (closestImpact == null || impact.time() < closestImpact.time())) {
+                closestImpact = impact;
+            }
+        }
+        if (event.shouldCommit()) {
+            event.setCandidates(this.candidates);
+            event.setHit(closestImpact != null);
+            event.commit();
+        }
+        return closestImpact;
     }
 
     /**
-     * Checks if a given point is inside any of the collidable blocks.
+     * Sweeps a ball against the blocks of a store. The path is walked in windows about one grid cell long,
+     * and only the blocks near each window are tested, so a query that ends early never looks at the
+     * blocks further along the path. A view of the hit block is materialized for the result only.
      *
-     * @param point The point to check.
-     * @return The collidable object if the point is inside a block, null otherwise.
+     * @param store   The block store.
+     * @param px      The x coordinate of the ball's center.
+     * @param py      The y coordinate of the ball's center.
+     * @param radius  The radius of the ball.
+     * @param dx      The velocity of the ball on the x-axis, per frame.
+     * @param dy      The velocity of the ball on the y-axis, per frame.
+     * @param maxTime The length of the movement, in frames (may be infinite).
+     * @return The collision information of the earliest impact, or null if the ball hits no block in time.
      */
-    public Collidable isInsideBlocks(Point point) {
-        for (Collidable c : collidables) {
-            if (c.getCollisionRectangle().contains(point)) {
-                return c;
+    private CollisionInfo getStoreImpact(BlockStore store, double px, double py, double radius,
+                                         double dx, double dy, double maxTime) {
+        Rectangle bounds = store.getBounds();
+        if (bounds == null) {
+            return null;
+        }
+        double minX = bounds.getUpperLeft().getX() - radius;
+        double minY = bounds.getUpperLeft().getY() - radius;
+        double maxX = bounds.getUpperLeft().getX() + bounds.getWidth() + radius;
+        double maxY = bounds.getUpperLeft().getY() + bounds.getHeight() + radius;
+        double tIn = Math.max(Intersections.slabEntry(px, dx, minX, maxX), Intersections.slabEntry(py, dy, minY, maxY));
+        double tOut = Math.min(Intersections.slabExit(px, dx, minX, maxX), Intersections.slabExit(py, dy, minY, maxY));
+        if (!(tIn <= tOut) || tOut < 0 || tIn > maxTime) {
+            return null; // The path never comes near the store
+        }
+        double end = Math.min(maxTime, tOut);
+        double speed = Math.max(Math.abs(dx), Math.abs(dy));
+        double window = speed == 0 ? 0 : store.getCellSize() / speed;
+        CollisionInfo closestImpact = null;
+        int closestId = -1;
+        for (double t0 = Math.max(0, tIn); ; t0 += window) {
+            double t1 = Math.min(end, t0 + window);
+            double x0 = px + dx * t0;
+            double x1 = px + dx * t1;
+            double y0 = py + dy * t0;
+            double y1 = py + dy * t1;
+            int count = store.query(Math.min(x0, x1) - radius, Math.min(y0, y1) - radius,
+                    Math.max(x0, x1) + radius, Math.max(y0, y1) + radius);
+            this.candidates += count;
+            for (int k = 0; k < count; k++) {
+                int id = store.found(k);
+                double blockX = store.getX(id);
+                double blockY = store.getY(id);
+                CollisionInfo impact = sweepBox(null, blockX, blockY, blockX + store.getWidth(id),
+                        blockY + store.getHeight(id), px, py, radius, dx, dy, maxTime);
+                if (impact != null && (closestImpact == null || impact.time() < closestImpact.time())) {
+                    closestImpact = impact;
+                    closestId = id;
+                }
+            }
+            // Blocks outside this window can only be hit after t1
+            if (t1 >= end || speed == 0 || (closestImpact != null && closestImpact.time() <= t1)) {
+                break;
             }
         }
-        return null;
+        if (closestImpact == null) {
+            return null;
+        }
+        return new CollisionInfo(closestImpact.collisionPoint(), store.view(closestId), closestImpact.time(),
+                closestImpact.edge(), closestImpact.normalX(), closestImpact.normalY());
     }
 
     /**
-     * Checks if a given point is inside any of the collidable blocks.
+     * Gets the first collision of a ball using fixed-point arithmetic only (see geometry.FixedPoint).
+     * The query mirrors getClosestCollision, but its result is bit-identical across runs and JVMs.
      *
-     * @param point The point to check.
-     * @return true if the point is inside a block, false otherwise.
+     * @param x       The x coordinate of the ball's center, in fixed point.
+     * @param y       The y coordinate of the ball's center, in fixed point.
+     * @param radius  The radius of the ball, in fixed point.
+     * @param dx      The velocity of the ball on the x-axis, in fixed point per frame.
+     * @param dy      The velocity of the ball on the y-axis, in fixed point per frame.
+     * @param maxTime The length of the movement, in fixed-point frames.
+     * @return The collision information of the earliest impact, or null if the ball hits nothing in time.
      */
-    public boolean isInsideBlock(Point point) {
-        for (Collidable c : collidables) {
-            if (c.getCollisionRectangle().contains(point)) {
-                return true;
+    public CollisionInfo getClosestCollisionFixed(long x, long y, long radius, long dx, long dy, long maxTime) {
+        return FixedPointSweep.closest(this.collidables, this.blockStores, x, y, radius, dx, dy, maxTime);
+    }
+
+    /**
+     * Sweeps a ball against a single collidable. The ball's center is clipped against the collision
+     * rectangle grown by the radius (its Minkowski sum with the ball), whose corners are rounded:
+     * an entry point in a corner region is refined against a circle around the rectangle's corner.
+     * A ball that already overlaps the rectangle and moves further into it collides immediately,
+     * with the normal pointing out of the rectangle, so it is pushed out instead of sticking.
+     *
+     * @param c        The collidable to test against.
+     * @param center   The current center of the ball.
+     * @param radius   The radius of the ball.
+     * @param velocity The velocity of the ball, per frame.
+     * @param maxTime  The length of the movement, in frames (may be infinite).
+     * @return The collision information, or null if the ball does not hit the collidable in time.
+     */
+    public CollisionInfo getImpact(Collidable c, Point center, double radius, Velocity velocity,
+                                   double maxTime) {
+        Rectangle rect = c.getCollisionRectangle();
+        double minX = rect.getUpperLeft().getX();
+        double minY = rect.getUpperLeft().getY();
+        return sweepBox(c, minX, minY, minX + rect.getWidth(), minY + rect.getHeight(),
+                center.getX(), center.getY(), radius, velocity.getDx(), velocity.getDy(), maxTime);
+    }
+
+    /**
+     * Sweeps a ball against an axis-aligned box, as described in getImpact.
+     *
+     * @param c       The collidable reported in the result.
+     * @param minX    The left side of the box.
+     * @param minY    The top side of the box.
+     * @param maxX    The right side of the box.
+     * @param maxY    The bottom side of the box.
+     * @param px      The x coordinate of the ball's center.
+     * @param py      The y coordinate of the ball's center.
+     * @param radius  The radius of the ball.
+     * @param dx      The velocity of the ball on the x-axis, per frame.
+     * @param dy      The velocity of the ball on the y-axis, per frame.
+     * @param maxTime The length of the movement, in frames (may be infinite).
+     * @return The collision information, or null if the ball does not hit the box in time.
+     */
+    private CollisionInfo sweepBox(Collidable c, double minX, double minY, double maxX, double maxY,
+                                   double px, double py, double radius, double dx, double dy, double maxTime) {
+        // A ball already touching the rectangle only collides if it moves further in
+        double qx = Math.max(minX, Math.min(maxX, px));
+        double qy = Math.max(minY, Math.min(maxY, py));
+        double distSquared = (px - qx) * (px - qx) + (py - qy) * (py - qy);
+        if (distSquared <= radius * radius) {
+            return overlapImpact(c, minX, minY, maxX, maxY, px, py, dx, dy, distSquared);
+        }
+
+        // Clip the center's ray against the slabs of the rectangle grown by the radius
+        double enterX = Intersections.slabEntry(px, dx, minX - radius, maxX + radius);
+        double enterY = Intersections.slabEntry(py, dy, minY - radius, maxY + radius);
+        double tEnter = Math.max(enterX, enterY);
+        double tExit = Math.min(maxTime, Math.min(Intersections.slabExit(px, dx, minX - radius, maxX + radius),
+                Intersections.slabExit(py, dy, minY - radius, maxY + radius)));
+        if (!(tEnter <= tExit) || tExit < 0) {
+            return null; // Also rejects the NaN of a slab that is never entered
+        }
+        boolean enterOnX = enterX >= enterY;
+
+        // Entering through a face of the grown rectangle. If the center is already inside the grown
+        // rectangle without touching the ball, it lies in a corner region.
+        boolean inCorner = tEnter < 0;
+        tEnter = Math.max(tEnter, 0);
+        double hx = px + dx * tEnter;
+        double hy = py + dy * tEnter;
+        if (!inCorner && enterOnX && hy >= minY && hy <= maxY) {
+            int edge = dx > 0 ? CollisionInfo.LEFT_EDGE : CollisionInfo.RIGHT_EDGE;
+            return new CollisionInfo(new Point(dx > 0 ? minX : maxX, hy), c, tEnter, edge, dx > 0 ? -1 : 1, 0);
+        }
+        if (!inCorner && !enterOnX && hx >= minX && hx <= maxX) {
+            int edge = dy > 0 ? CollisionInfo.TOP_EDGE : CollisionInfo.BOTTOM_EDGE;
+            return new CollisionInfo(new Point(hx, dy > 0 ? minY : maxY), c, tEnter, edge, 0, dy > 0 ? -1 : 1);
+        }
+
+        // Entering through a corner region: intersect with the rounded corner
+        double cornerX = hx < minX ? minX : maxX;
+        double cornerY = hy < minY ? minY : maxY;
+        double time = Intersections.rayCircleEntry(px, py, dx, dy, cornerX, cornerY, radius);
+        if (!(time <= maxTime)) {
+            return null; // Also rejects NaN, for a ray that misses the corner
+        }
+        double ox = px - cornerX;
+        double oy = py - cornerY;
+        double nx = (ox + dx * time) / radius;
+        double ny = (oy + dy * time) / radius;
+        return new CollisionInfo(new Point(cornerX, cornerY), c, time, CollisionInfo.CORNER, nx, ny);
+    }
+
+    /**
+     * Builds the immediate collision of a ball that already touches or overlaps a collision rectangle.
+     * The contact point is the point of the rectangle closest to the ball's center; if the center itself
+     * is inside the rectangle, the closest edge is used.
+     *
+     * @param c           The overlapped collidable.
+     * @param minX        The left side of the rectangle.
+     * @param minY        The top side of the rectangle.
+     * @param maxX        The right side of the rectangle.
+     * @param maxY        The bottom side of the rectangle.
+     * @param px          The x coordinate of the ball's center.
+     * @param py          The y coordinate of the ball's center.
+     * @param dx          The velocity of the ball on the x-axis.
+     * @param dy          The velocity of the ball on the y-axis.
+     * @param distSquared The squared distance between the center and the rectangle.
+     * @return The collision information at time 0, or null if the ball is already moving out.
+     */
+    private CollisionInfo overlapImpact(Collidable c, double minX, double minY, double maxX, double maxY,
+                                        double px, double py, double dx, double dy, double distSquared) {
+        double qx = Math.max(minX, Math.min(maxX, px));
+        double qy = Math.max(minY, Math.min(maxY, py));
+        double nx;
+        double ny;
+        if (distSquared > 0) {
+            double dist = Math.sqrt(distSquared);
+            nx = (px - qx) / dist;
+            ny = (py - qy) / dist;
+        } else {
+            // The center is inside the rectangle: leave through the closest edge
+            double left = px - minX;
+            double right = maxX - px;
+            double top = py - minY;
+            double bottom = maxY - py;
+            double closest = Math.min(Math.min(left, right), Math.min(top, bottom));
+            nx = 0;
+            ny = 0;
+            if (closest == top) {
+                ny = -1;
+                qy = minY;
+            } else if (closest == bottom) {
+                ny = 1;
+                qy = maxY;
+            } else if (closest == left) {
+                nx = -1;
+                qx = minX;
+            } else {
+                nx = 1;
+                qx = maxX;
             }
         }
-        return false;
+        if (nx * dx + ny * dy >= 0) {
+            return null;
+        }
+        return new CollisionInfo(new Point(qx, qy), c, 0, edgeOf(nx, ny), nx, ny);
+    }
+
+    /**
+     * Returns the edge of a rectangle that has the given outward normal.
+     *
+     * @param nx The x component of the normal.
+     * @param ny The y component of the normal.
+     * @return The edge index as defined in CollisionInfo, or CollisionInfo.CORNER for a diagonal normal.
+     */
+    private static int edgeOf(double nx, double ny) {
+        if (nx == 0) {
+            return ny < 0 ? CollisionInfo.TOP_EDGE : CollisionInfo.BOTTOM_EDGE;
+        }
+        if (ny == 0) {
+            return nx < 0 ? CollisionInfo.LEFT_EDGE : CollisionInfo.RIGHT_EDGE;
+        }
+        return CollisionInfo.CORNER;
     }
 }
@@ -0,0 +1,191 @@
+package gameLogic;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * The gameLogic.GlyphCache class draws text and numbers from pre-rendered glyph images.
+ * Each character is rendered with Java2D once, the first time it is needed; afterwards text is drawn glyph by
+ * glyph with image copies. Numbers are split into digits in a reused buffer, so drawing a number allocates
+ * no string. Characters are placed at their integer advances, which is how Java2D lays out the same text
+ * without kerning or fractional metrics.
+ */
+public class GlyphCache {
+    private static final int GLYPHS = 128; // Characters cached; others are drawn as '?'
+    private Font font;               // The font the glyphs are rendered in
+    private Color color;             // The color the glyphs are rendered in
+    private BufferedImage[] glyphs;  // The rendered glyph of each character, or null if not rendered yet
+    private int[] advances;          // The advance of each character, in pixels
+    private int ascent;              // Distance from the baseline to the top of the glyph images
+    private int descent;             // Distance from the baseline to the bottom of the glyph images
+    private char[] digits;           // Buffer the digits of a number are written to
+
+    /**
+     * Constructs a new gameLogic.GlyphCache.
+     *
+     * @param font  the font to render the glyphs in.
+     * @param color the color to render the glyphs in.
+     */
+    public GlyphCache(Font font, Color color) {
+        this.font = font;
+        this.color = color;
+        this.glyphs = new BufferedImage[GLYPHS];
+        this.advances = new int[GLYPHS];
+        this.digits = new char[11]; // Enough for any int, sign included
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        FontMetrics metrics = g.getFontMetrics(font);
+        this.ascent = metrics.getMaxAscent();
+        this.descent = metrics.getMaxDescent();
+        for (char c = 0; c < GLYPHS; c++) {
+            this.advances[c] = metrics.charWidth(c);
+        }
+        g.dispose();
+    }
+
+    /**
+     * Returns the distance from the baseline to the top of the tallest glyph.
+     *
+     * @return the ascent, in pixels.
+     */
+    public int getAscent() {
+        return this.ascent;
+    }
+
+    /**
+     * Returns the distance from the baseline to the bottom of the lowest glyph.
+     *
+     * @return the descent, in pixels.
+     */
+    public int getDescent() {
+        return this.descent;
+    }
+
+    /**
+     * Returns the width of a text.
+     *
+     * @param text the text.
+     * @return the width, in pixels.
+     */
+    public int width(String text) {
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += this.advances[index(text.charAt(i))];
+        }
+        return width;
+    }
+
+    /**
+     * Returns the width of a number written in decimal.
+     *
+     * @param value the number.
+     * @return the width, in pixels.
+     */
+    public int width(int value) {
+        int width = 0;
+        for (int i = writeDigits(value); i < this.digits.length; i++) {
+            width += this.advances[this.digits[i]];
+        }
+        return width;
+    }
+
+    /**
+     * Draws a text.
+     *
+     * @param g        the graphics to draw on.
+     * @param text     the text.
+     * @param x        the left side of the text.
+     * @param baseline the baseline of the text.
+     * @return the x coordinate right after the text.
+     */
+    public int draw(Graphics2D g, String text, int x, int baseline) {
+        for (int i = 0; i < text.length(); i++) {
+            x = drawGlyph(g, index(text.charAt(i)), x, baseline);
+        }
+        return x;
+    }
+
+    /**
+     * Draws a number in decimal.
+     *
+     * @param g        the graphics to draw on.
+     * @param value    the number.
+     * @param x        the left side of the number.
+     * @param baseline the baseline of the number.
+     * @return the x coordinate right after the number.
+     */
+    public int draw(Graphics2D g, int value, int x, int baseline) {
+        for (int i = writeDigits(value); i < this.digits.length; i++) {
+            x = drawGlyph(g, this.digits[i], x, baseline);
+        }
+        return x;
+    }
+
+    /**
+     * Draws one glyph, rendering it first if it is not cached yet.
+     *
+     * @param g        the graphics to draw on.
+     * @param c        the character, below GLYPHS.
+     * @param x        the left side of the glyph.
+     * @param baseline the baseline of the glyph.
+     * @return the x coordinate after the glyph's advance.
+     */
+    private int drawGlyph(Graphics2D g, int c, int x, int baseline) {
+        BufferedImage glyph = this.glyphs[c];
+        if (glyph == null) {
+            glyph = render((char) c);
+            this.glyphs[c] = glyph;
+        }
+        g.drawImage(glyph, x, baseline - this.ascent, null);
+        return x + this.advances[c];
+    }
+
+    /**
+     * Renders one character into a transparent image, with the baseline at the ascent.
+     *
+     * @param c the character.
+     * @return the image.
+     */
+    private BufferedImage render(char c) {
+        // Leave room on the right for glyphs that extend past their advance
+        int width = Math.max(1, this.advances[c] + this.font.getSize() / 2);
+        BufferedImage glyph = new BufferedImage(width, this.ascent + this.descent, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = glyph.createGraphics();
+        g.setFont(this.font);
+        g.setColor(this.color);
+        g.drawString(String.valueOf(c), 0, this.ascent);
+        g.dispose();
+        return glyph;
+    }
+
+    /**
+     * Writes the decimal digits of a number, sign included, at the end of the digit buffer.
+     *
+     * @param value the number.
+     * @return the index in the buffer of the first character written.
+     */
+    private int writeDigits(int value) {
+        long rest = Math.abs((long) value);
+        int start = this.digits.length;
+        do {
+            this.digits[--start] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            this.digits[--start] = '-';
+        }
+        return start;
+    }
+
+    /**
+     * Returns the cache index of a character.
+     *
+     * @param c the character.
+     * @return the character itself if it is cached, otherwise '?'.
+     */
+    private static int index(char c) {
+        return c < GLYPHS ? c : '?';
+    }
+}
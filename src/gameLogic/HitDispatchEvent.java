@@ -0,0 +1,44 @@
+package gameLogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The gameLogic.HitDispatchEvent class is a JDK Flight Recorder event for one hit reported to the
+ * gameLogic.HitListener objects of a block or of the ball-ball collision detector. Its duration is the time
+ * the listeners took, e.g. removing the block and updating the score.
+ */
+@Name("arkanoid.HitDispatch")
+@Label("Hit Dispatch")
+@Category({"Arkanoid", "Physics"})
+@Description("A hit reported to the hit listeners")
+public class HitDispatchEvent extends Event {
+    @Label("Listeners")
+    @Description("Hit listeners notified")
+    private int listeners;
+
+    @Label("Ball Collision")
+    @Description("Whether two balls collided, rather than a ball hitting a block")
+    private boolean ballCollision;
+
+    /**
+     * Sets the number of hit listeners notified.
+     *
+     * @param listeners the number of listeners.
+     */
+    public void setListeners(int listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * Sets whether two balls collided, rather than a ball hitting a block.
+     *
+     * @param ballCollision true for a ball-ball collision, false for a block being hit.
+     */
+    public void setBallCollision(boolean ballCollision) {
+        this.ballCollision = ballCollision;
+    }
+}
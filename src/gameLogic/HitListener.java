@@ -20,4 +20,14 @@ public interface HitListener {
      * Ball that is causing the hit. This object represents the source of the hit.
      */
     void hitEvent(Block beingHit, Ball hitter);
+
+    /**
+     * This method is called whenever two balls collide with each other.
+     * Listeners that only care about blocks being hit can ignore it.
+     *
+     * @param first  The first ball of the colliding pair.
+     * @param second The second ball of the colliding pair.
+     */
+    default void ballCollisionEvent(Ball first, Ball second) {
+    }
 }
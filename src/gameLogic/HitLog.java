@@ -0,0 +1,268 @@
+package gameLogic;
+
+import spritesAndCollisonDetection.Ball;
+import spritesAndCollisonDetection.Block;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The gameLogic.HitLog class appends every hit of a block by a ball to an append-only log of fixed-size
+ * binary records, for gameplay analytics. The log is a directory of segment files of a fixed size, each
+ * memory-mapped: appending a record only writes to memory, and the operating system writes the pages out
+ * in the background. The next segment is created and mapped on a background thread before it is needed,
+ * and a full segment is forced to disk there too, so the game thread never waits for the disk.
+ * <p>
+ * A hit is recorded in three parts: spritesAndCollisonDetection.Block opens the record when it notifies its
+ * listeners, the listeners add what they did (gameLogic.BlockRemover removes the block,
+ * gameLogic.ScoreTrackingListener scores it, gameLogic.BallRemover loses the ball), and the block then
+ * appends the record. Listeners find the log through the hitting ball's environment, with HitLog.of.
+ * A ball reaching the floor of the arena is recorded by the floor, as a record of its own flagged
+ * BALL_LOST: the floor is a wall that sends the ball back without notifying its listeners, so
+ * gameLogic.BallRemover, which would flag the hit it removes a ball in, does not fire in the built-in game.
+ * <p>
+ * A segment (big-endian) is a header of ints: magic, version, record size and the number of records
+ * appended, updated after each record; then 32 bytes per record: frame, block id and ball id as ints; the
+ * block's upper-left corner and the ball's center as shorts; the block's color before and after the hit as
+ * ARGB ints; the score delta and the flags as shorts. Read it back with gameLogic.HitLogReader.
+ */
+public class HitLog {
+    static final int MAGIC = 0x41524B48;         // "ARKH"
+    static final int VERSION = 1;                // Version of the segment layout
+    static final int HEADER_BYTES = 16;          // Size of a segment header
+    static final int RECORD_BYTES = 32;          // Size of a record
+    static final int COUNT_OFFSET = 12;          // Offset of the record count in the header
+    static final String SEGMENT_PREFIX = "hits-"; // Segment files are named hits-000000.seg, hits-000001.seg, ...
+    static final String SEGMENT_SUFFIX = ".seg";
+    public static final int BLOCK_REMOVED = 1;   // Flag: the hit removed the block
+    public static final int BALL_LOST = 2;       // Flag: the ball was lost, at the floor or by gameLogic.BallRemover
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 16; // 2 MiB segments
+    public static final int MAX_RECORDS_PER_SEGMENT = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES; // int offsets
+    private Path directory;                      // The directory holding the segments
+    private int recordsPerSegment;               // Records a segment holds
+    private int segmentIndex;                    // Index of the segment being written
+    private MappedByteBuffer segment;            // The segment being written
+    private int count;                           // Records appended to the segment being written
+    private Future<MappedByteBuffer> nextSegment; // The next segment, being created in the background
+    private ExecutorService background;          // Creates the next segments and forces the full ones
+    private long records;                        // Records appended to the whole log
+    private int frame;                           // The simulation step being played
+    private boolean open;                        // Whether a record was opened and not appended yet
+
+    /**
+     * Constructs a gameLogic.HitLog writing into a directory.
+     *
+     * @param directory         the directory, created if missing; it must not hold segments already.
+     * @param recordsPerSegment the number of records each segment holds, from 1 to MAX_RECORDS_PER_SEGMENT.
+     * @throws IOException              if the directory cannot be created, already holds a log, or the first
+     *                                  segment cannot be mapped.
+     * @throws IllegalArgumentException if recordsPerSegment is out of range.
+     */
+    public HitLog(Path directory, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment < 1 || recordsPerSegment > MAX_RECORDS_PER_SEGMENT) {
+            throw new IllegalArgumentException("a hit log segment must hold from 1 to " + MAX_RECORDS_PER_SEGMENT
+                    + " records, got " + recordsPerSegment);
+        }
+        Files.createDirectories(directory);
+        if (Files.exists(segmentPath(directory, 0))) {
+            throw new FileAlreadyExistsException(directory.toString(), null, "already holds a hit log");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.background = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "hit-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.segment = createSegment(0);
+        prepareNextSegment();
+    }
+
+    /**
+     * Returns the hit log of the game a ball plays in.
+     *
+     * @param ball the ball.
+     * @return the log, or null if hits are not logged.
+     */
+    public static HitLog of(Ball ball) {
+        GameEnvironment environment = ball.getGameEnvironment();
+        return environment == null ? null : environment.getHitLog();
+    }
+
+    /**
+     * Sets the simulation step the following hits happen in.
+     *
+     * @param frame the number of steps played so far.
+     */
+    public void setFrame(int frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * Opens the record of a hit, after the block and the ball swapped colors. A record opened before and
+     * not appended is discarded.
+     *
+     * @param block the block that was hit, now of the ball's old color.
+     * @param ball  the ball that hit it, now of the block's old color.
+     */
+    public void begin(Block block, Ball ball) {
+        if (this.count == this.recordsPerSegment) {
+            rotate();
+        }
+        int at = HEADER_BYTES + this.count * RECORD_BYTES;
+        this.segment.putInt(at, this.frame);
+        this.segment.putInt(at + 4, block.getId());
+        this.segment.putInt(at + 8, ball.getId());
+        this.segment.putShort(at + 12, quantize(block.getCollisionRectangle().getUpperLeft().getX()));
+        this.segment.putShort(at + 14, quantize(block.getCollisionRectangle().getUpperLeft().getY()));
+        this.segment.putShort(at + 16, quantize(ball.getCenter().getX()));
+        this.segment.putShort(at + 18, quantize(ball.getCenter().getY()));
+        this.segment.putInt(at + 20, ball.getColor().getRGB());
+        this.segment.putInt(at + 24, block.getColor().getRGB());
+        this.segment.putShort(at + 28, (short) 0);
+        this.segment.putShort(at + 30, (short) 0);
+        this.open = true;
+    }
+
+    /**
+     * Adds to the score delta of the open record, if any.
+     *
+     * @param points the points the hit scored.
+     */
+    public void scored(int points) {
+        if (this.open) {
+            int at = HEADER_BYTES + this.count * RECORD_BYTES + 28;
+            this.segment.putShort(at, (short) (this.segment.getShort(at) + points));
+        }
+    }
+
+    /**
+     * Marks the open record, if any, with a flag.
+     *
+     * @param flag the flag, BLOCK_REMOVED or BALL_LOST.
+     */
+    public void mark(int flag) {
+        if (this.open) {
+            int at = HEADER_BYTES + this.count * RECORD_BYTES + 30;
+            this.segment.putShort(at, (short) (this.segment.getShort(at) | flag));
+        }
+    }
+
+    /**
+     * Appends the open record to the log. Readers see it once the record count in the header is updated.
+     */
+    public void append() {
+        if (!this.open) {
+            return;
+        }
+        this.open = false;
+        this.count++;
+        this.records++;
+        this.segment.putInt(COUNT_OFFSET, this.count);
+    }
+
+    /**
+     * Returns the number of records appended to the log.
+     *
+     * @return the number of records.
+     */
+    public long getRecords() {
+        return this.records;
+    }
+
+    /**
+     * Forces the log to disk and stops the background thread. The segment created in advance and never
+     * written is deleted.
+     *
+     * @throws IOException if the unused segment cannot be deleted.
+     */
+    public void close() throws IOException {
+        this.segment.force();
+        this.background.shutdown();
+        try {
+            this.nextSegment.get();
+        } catch (ExecutionException e) {
+            return; // The next segment was never created
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Files.deleteIfExists(segmentPath(this.directory, this.segmentIndex + 1));
+    }
+
+    /**
+     * Moves on to the segment created in advance, forces the full one to disk in the background, and starts
+     * creating the segment after.
+     */
+    private void rotate() {
+        MappedByteBuffer full = this.segment;
+        try {
+            this.segment = this.nextSegment.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot create hit log segment " + (this.segmentIndex + 1),
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rotating the hit log", e);
+        }
+        this.background.execute(full::force);
+        this.segmentIndex++;
+        this.count = 0;
+        prepareNextSegment();
+    }
+
+    /**
+     * Starts creating the segment after the one being written, on the background thread.
+     */
+    private void prepareNextSegment() {
+        int index = this.segmentIndex + 1;
+        this.nextSegment = this.background.submit(() -> createSegment(index));
+    }
+
+    /**
+     * Creates a segment file of full size, maps it, and writes its header.
+     *
+     * @param index the index of the segment.
+     * @return the mapped segment.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    private MappedByteBuffer createSegment(int index) throws IOException {
+        long size = HEADER_BYTES + (long) this.recordsPerSegment * RECORD_BYTES;
+        try (FileChannel channel = FileChannel.open(segmentPath(this.directory, index), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file; the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_BYTES).putInt(COUNT_OFFSET, 0);
+            return buffer;
+        }
+    }
+
+    /**
+     * Returns the path of a segment file.
+     *
+     * @param directory the directory of the log.
+     * @param index     the index of the segment.
+     * @return the path.
+     */
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Rounds a coordinate to the nearest short, clamping it to the range of a short.
+     *
+     * @param coordinate the coordinate.
+     * @return the rounded coordinate.
+     */
+    private static short quantize(double coordinate) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(coordinate)));
+    }
+}
@@ -0,0 +1,212 @@
+package gameLogic;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The gameLogic.HitLogReader class streams the records of a gameLogic.HitLog back, in the order they were
+ * appended. Each segment is memory-mapped read-only when the reader reaches it, and the reader is a cursor
+ * over the mapped records: next moves to the following record, and the getters read its fields straight
+ * from the mapping, so reading allocates nothing per record. A log still being written can be read; the
+ * reader stops at the last record appended when it reached the segment.
+ */
+public class HitLogReader {
+    private List<Path> segments;      // The segment files, in order
+    private int segmentIndex;         // Index of the segment being read, or -1 before the first
+    private MappedByteBuffer segment; // The segment being read, or null
+    private int count;                // Records in the segment being read
+    private int index;                // Index of the current record in the segment
+    private int at;                   // Offset of the current record in the segment
+
+    /**
+     * Constructs a gameLogic.HitLogReader over the segments of a log, positioned before the first record.
+     *
+     * @param segments the segment files, in the order they were written.
+     */
+    public HitLogReader(List<Path> segments) {
+        this.segments = segments;
+        this.segmentIndex = -1;
+    }
+
+    /**
+     * Constructs a gameLogic.HitLogReader over a log directory, positioned before the first record.
+     *
+     * @param directory the directory of the log.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public HitLogReader(Path directory) throws IOException {
+        this(segments(directory));
+    }
+
+    /**
+     * Lists the segment files of a log, in the order they were written.
+     *
+     * @param directory the directory of the log.
+     * @return the segment files.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                HitLog.SEGMENT_PREFIX + "*" + HitLog.SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files); // The index in the name is zero-padded
+        return files;
+    }
+
+    /**
+     * Moves to the next record, mapping the next segment when the current one is exhausted.
+     *
+     * @return true if there is a next record, false at the end of the log.
+     * @throws IOException if a segment cannot be mapped or is not a hit log segment.
+     */
+    public boolean next() throws IOException {
+        while (this.segment == null || this.index + 1 >= this.count) {
+            if (this.segmentIndex + 1 >= this.segments.size()) {
+                return false;
+            }
+            openSegment(this.segments.get(++this.segmentIndex));
+        }
+        this.index++;
+        this.at = HitLog.HEADER_BYTES + this.index * HitLog.RECORD_BYTES;
+        return true;
+    }
+
+    /**
+     * Maps a segment and checks its header.
+     *
+     * @param file the segment file.
+     * @throws IOException if the file cannot be mapped or is not a hit log segment.
+     */
+    private void openSegment(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (this.segment.capacity() < HitLog.HEADER_BYTES || this.segment.getInt(0) != HitLog.MAGIC
+                || this.segment.getInt(4) != HitLog.VERSION || this.segment.getInt(8) != HitLog.RECORD_BYTES) {
+            throw new IOException(file + " is not a hit log segment of version " + HitLog.VERSION);
+        }
+        int capacity = (this.segment.capacity() - HitLog.HEADER_BYTES) / HitLog.RECORD_BYTES;
+        this.count = Math.min(capacity, this.segment.getInt(HitLog.COUNT_OFFSET));
+        this.index = -1;
+    }
+
+    /**
+     * Returns the simulation step the hit happened in.
+     *
+     * @return the number of steps played before the hit.
+     */
+    public int getFrame() {
+        return this.segment.getInt(this.at);
+    }
+
+    /**
+     * Returns the id of the block that was hit.
+     *
+     * @return the block id.
+     */
+    public int getBlock() {
+        return this.segment.getInt(this.at + 4);
+    }
+
+    /**
+     * Returns the id of the ball that hit the block.
+     *
+     * @return the ball id.
+     */
+    public int getBall() {
+        return this.segment.getInt(this.at + 8);
+    }
+
+    /**
+     * Returns the x coordinate of the block's upper-left corner, rounded.
+     *
+     * @return the x coordinate.
+     */
+    public int getBlockX() {
+        return this.segment.getShort(this.at + 12);
+    }
+
+    /**
+     * Returns the y coordinate of the block's upper-left corner, rounded.
+     *
+     * @return the y coordinate.
+     */
+    public int getBlockY() {
+        return this.segment.getShort(this.at + 14);
+    }
+
+    /**
+     * Returns the x coordinate of the ball's center at the hit, rounded.
+     *
+     * @return the x coordinate.
+     */
+    public int getBallX() {
+        return this.segment.getShort(this.at + 16);
+    }
+
+    /**
+     * Returns the y coordinate of the ball's center at the hit, rounded.
+     *
+     * @return the y coordinate.
+     */
+    public int getBallY() {
+        return this.segment.getShort(this.at + 18);
+    }
+
+    /**
+     * Returns the color of the block before the hit.
+     *
+     * @return the color as an ARGB int.
+     */
+    public int getColorBefore() {
+        return this.segment.getInt(this.at + 20);
+    }
+
+    /**
+     * Returns the color of the block after the hit, the color of the ball before it.
+     *
+     * @return the color as an ARGB int.
+     */
+    public int getColorAfter() {
+        return this.segment.getInt(this.at + 24);
+    }
+
+    /**
+     * Returns the points the hit scored.
+     *
+     * @return the score delta.
+     */
+    public int getScoreDelta() {
+        return this.segment.getShort(this.at + 28);
+    }
+
+    /**
+     * Checks whether the hit removed the block.
+     *
+     * @return true if the block was removed, false otherwise.
+     */
+    public boolean isBlockRemoved() {
+        return (this.segment.getShort(this.at + 30) & HitLog.BLOCK_REMOVED) != 0;
+    }
+
+    /**
+     * Checks whether the hit removed the ball.
+     *
+     * @return true if the ball was lost, false otherwise.
+     */
+    public boolean isBallLost() {
+        return (this.segment.getShort(this.at + 30) & HitLog.BALL_LOST) != 0;
+    }
+}
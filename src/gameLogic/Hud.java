@@ -0,0 +1,145 @@
+package gameLogic;
+
+import biuoop.DrawSurface;
+import geometry.Point;
+import geometry.Rectangle;
+import spritesAndCollisonDetection.Sprite;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The gameLogic.Hud class is a heads-up display bar showing several labelled counters side by side,
+ * e.g. the score, the balls and blocks left and the frame rate.
+ * The bar is composed into an image from cached glyphs, and only when one of its counters changes; every
+ * other frame the image is drawn as it is, so drawing the bar allocates no strings.
+ * Two images are composed in turn, so the image being shown is not drawn over while the window paints it.
+ */
+public class Hud implements Sprite, CounterListener {
+    private static final int FONT_SIZE = 11;  // Size of the text
+    private Rectangle rectangle;              // The area of the bar
+    private Color background;                 // Color the bar is filled with
+    private GlyphCache glyphs;                // Glyphs of the text
+    private List<String> labels;              // The label of each indicator
+    private List<Counter> counters;           // The counter of each indicator
+    private BufferedImage[] images;           // The images composed in turn, created on first use
+    private Graphics2D[] graphics;            // Java2D graphics of each image
+    private int current;                      // Index of the image last composed
+    private boolean dirty;                    // Whether a counter changed since the image was composed
+
+    /**
+     * Constructs a new gameLogic.Hud with no indicators, with black text on a white background.
+     *
+     * @param rectangle the area of the bar.
+     */
+    public Hud(Rectangle rectangle) {
+        this.rectangle = rectangle;
+        this.background = Color.WHITE;
+        this.glyphs = new GlyphCache(new Font(Font.DIALOG, Font.PLAIN, FONT_SIZE), Color.BLACK);
+        this.labels = new ArrayList<>();
+        this.counters = new ArrayList<>();
+        this.dirty = true;
+    }
+
+    /**
+     * Adds an indicator showing a counter after a label. The indicators share the bar equally,
+     * in the order they were added, and each is centered in its share.
+     *
+     * @param label   the label, e.g. "Score: ".
+     * @param counter the counter to show.
+     */
+    public void addIndicator(String label, Counter counter) {
+        this.labels.add(label);
+        this.counters.add(counter);
+        counter.addCounterListener(this);
+        this.dirty = true;
+    }
+
+    /**
+     * Marks the bar to be composed again before it is next drawn.
+     *
+     * @param counter the counter whose value changed.
+     */
+    @Override
+    public void counterChanged(Counter counter) {
+        this.dirty = true;
+    }
+
+    /**
+     * This method is called to update the state of the gameLogic.Hud.
+     * The bar changes only when its counters do, so nothing is done here.
+     */
+    @Override
+    public void timePassed() {
+        // The counters notify the bar when they change
+    }
+
+    /**
+     * Draws the bar, composing it again first if a counter changed.
+     *
+     * @param d the DrawSurface to draw the bar on.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        if (this.dirty) {
+            compose();
+        }
+        Point upperLeft = this.rectangle.getUpperLeft();
+        d.drawImage((int) upperLeft.getX(), (int) upperLeft.getY(), this.images[this.current]);
+    }
+
+    /**
+     * Returns the area the bar draws in.
+     *
+     * @return the rectangle of the bar.
+     */
+    @Override
+    public Rectangle getBounds() {
+        return this.rectangle;
+    }
+
+    /**
+     * Composes the bar into the next image: fills it with the background and draws each indicator centered
+     * in its share of the bar.
+     */
+    private void compose() {
+        int width = (int) this.rectangle.getWidth();
+        int height = (int) this.rectangle.getHeight();
+        if (this.images == null) {
+            this.images = new BufferedImage[2];
+            this.graphics = new Graphics2D[2];
+            for (int i = 0; i < 2; i++) {
+                this.images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                this.graphics[i] = this.images[i].createGraphics();
+            }
+        }
+        this.current = 1 - this.current;
+        Graphics2D g = this.graphics[this.current];
+        g.setColor(this.background);
+        g.fillRect(0, 0, width, height);
+        int baseline = (height + this.glyphs.getAscent() - this.glyphs.getDescent()) / 2;
+        int count = this.labels.size();
+        for (int i = 0; i < count; i++) {
+            String label = this.labels.get(i);
+            int value = this.counters.get(i).getValue();
+            int textWidth = this.glyphs.width(label) + this.glyphs.width(value);
+            int x = (int) ((i + 0.5) * width / count) - textWidth / 2;
+            x = this.glyphs.draw(g, label, x, baseline);
+            this.glyphs.draw(g, value, x, baseline);
+        }
+        this.dirty = false;
+    }
+
+    /**
+     * Adds the gameLogic.Hud to the game's heads-up display.
+     *
+     * @param g the game to add the bar to.
+     */
+    public void addToGame(Game g) {
+        g.addHudSprite(this);
+    }
+}
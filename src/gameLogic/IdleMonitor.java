@@ -0,0 +1,143 @@
+package gameLogic;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The gameLogic.IdleMonitor class lets an idle game loop block until there is something to do, instead of
+ * waking up every frame to poll. It watches the AWT events of the application's windows: it knows whether
+ * the game window has the focus and is not minimized, and wakes the waiting game thread on every key, focus,
+ * window or repaint event. Other threads wake it too, e.g. when they submit a command. It also counts the
+ * presses of the pause key, so that a paused game waiting for events sees the key that resumes it.
+ * Waking never blocks, so it is safe on the AWT event thread and in lock-free code.
+ */
+public class IdleMonitor implements AWTEventListener {
+    private static final long EVENT_MASK = AWTEvent.KEY_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK
+            | AWTEvent.WINDOW_FOCUS_EVENT_MASK | AWTEvent.WINDOW_STATE_EVENT_MASK | AWTEvent.PAINT_EVENT_MASK;
+    private static final int PAUSE_KEY = KeyEvent.VK_P; // The key that pauses and resumes the game
+    private AtomicLong wakeups;       // Number of times the game thread was woken
+    private volatile Thread waiter;   // The thread blocked in await, or null
+    private volatile boolean focused; // Whether a window of the application has the focus
+    private volatile boolean iconified; // Whether the game window is minimized
+    private AtomicLong pausePresses;  // Number of times the pause key went down
+    private boolean pauseKeyDown;     // Whether the pause key is down, so a held key counts once; event thread only
+
+    /**
+     * Constructs a new gameLogic.IdleMonitor. The window counts as focused until it loses the focus.
+     */
+    public IdleMonitor() {
+        this.wakeups = new AtomicLong();
+        this.pausePresses = new AtomicLong();
+        this.focused = true;
+    }
+
+    /**
+     * Starts watching the events of the application's windows.
+     */
+    public void install() {
+        Toolkit.getDefaultToolkit().addAWTEventListener(this, EVENT_MASK);
+    }
+
+    /**
+     * Stops watching window events.
+     */
+    public void uninstall() {
+        Toolkit.getDefaultToolkit().removeAWTEventListener(this);
+    }
+
+    /**
+     * Tracks the focus and the minimized state of the window and the presses of the pause key, and wakes the
+     * game thread so that it can redraw or resume. Called on the AWT event thread.
+     *
+     * @param event the event.
+     */
+    @Override
+    public void eventDispatched(AWTEvent event) {
+        switch (event.getID()) {
+            case WindowEvent.WINDOW_GAINED_FOCUS:
+                this.focused = true;
+                break;
+            case WindowEvent.WINDOW_LOST_FOCUS:
+                this.focused = false;
+                break;
+            case WindowEvent.WINDOW_ICONIFIED:
+                this.iconified = true;
+                break;
+            case WindowEvent.WINDOW_DEICONIFIED:
+                this.iconified = false;
+                break;
+            case KeyEvent.KEY_PRESSED:
+                if (((KeyEvent) event).getKeyCode() == PAUSE_KEY && !this.pauseKeyDown) {
+                    this.pauseKeyDown = true;
+                    this.pausePresses.incrementAndGet();
+                }
+                break;
+            case KeyEvent.KEY_RELEASED:
+                if (((KeyEvent) event).getKeyCode() == PAUSE_KEY) {
+                    this.pauseKeyDown = false;
+                }
+                break;
+            default:
+                break;
+        }
+        wake();
+    }
+
+    /**
+     * Checks whether the player is looking at the game: its window has the focus and is not minimized.
+     *
+     * @return true if the game window is active, false otherwise.
+     */
+    public boolean isActive() {
+        return this.focused && !this.iconified;
+    }
+
+    /**
+     * Returns the number of times the pause key was pressed so far. Holding the key down counts once.
+     *
+     * @return the number of presses.
+     */
+    public long getPausePresses() {
+        return this.pausePresses.get();
+    }
+
+    /**
+     * Returns the number of times the game thread was woken so far. Read it before checking whether there
+     * is anything to do, and pass it to await, so that a wake-up in between is not missed.
+     *
+     * @return the number of wake-ups.
+     */
+    public long getWakeups() {
+        return this.wakeups.get();
+    }
+
+    /**
+     * Wakes the game thread if it is waiting, or makes its next wait return at once. Safe to call from any
+     * thread; never blocks.
+     */
+    public void wake() {
+        this.wakeups.incrementAndGet();
+        Thread thread = this.waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Blocks the calling thread, without using the CPU, until it is woken after a given wake-up count.
+     *
+     * @param seen the number of wake-ups already handled, from getWakeups.
+     */
+    public void await(long seen) {
+        this.waiter = Thread.currentThread();
+        while (this.wakeups.get() == seen && !Thread.currentThread().isInterrupted()) {
+            LockSupport.park(this);
+        }
+        this.waiter = null;
+    }
+}
@@ -0,0 +1,83 @@
+package gameLogic;
+
+import spritesAndCollisonDetection.Ball;
+import spritesAndCollisonDetection.CollisionInfo;
+
+/**
+ * The gameLogic.ImpactEvent class is a predicted collision of a ball, kept by the
+ * gameLogic.CollisionScheduler. Between events the ball moves analytically, so the event also
+ * remembers when the ball's position was last brought up to date.
+ */
+class ImpactEvent implements Comparable<ImpactEvent> {
+    private Ball ball;               // The ball that is going to collide
+    private CollisionInfo collision; // The predicted collision, or null if the ball never hits anything
+    private double time;             // Absolute simulation time of the impact
+    private double syncTime;         // Simulation time the ball's center corresponds to
+    private long sequence;           // Creation order, used to break ties between simultaneous events
+
+    /**
+     * Constructs a new gameLogic.ImpactEvent.
+     *
+     * @param ball      the ball that is going to collide.
+     * @param collision the predicted collision, or null if the ball never hits anything.
+     * @param time      the absolute simulation time of the impact.
+     * @param syncTime  the simulation time the ball's center currently corresponds to.
+     * @param sequence  the creation order of the event.
+     */
+    ImpactEvent(Ball ball, CollisionInfo collision, double time, double syncTime, long sequence) {
+        this.ball = ball;
+        this.collision = collision;
+        this.time = time;
+        this.syncTime = syncTime;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Returns the ball that is going to collide.
+     *
+     * @return the ball.
+     */
+    Ball getBall() {
+        return this.ball;
+    }
+
+    /**
+     * Returns the predicted collision.
+     *
+     * @return the collision, or null if the ball never hits anything.
+     */
+    CollisionInfo getCollision() {
+        return this.collision;
+    }
+
+    /**
+     * Returns the absolute simulation time of the impact.
+     *
+     * @return the time of impact.
+     */
+    double getTime() {
+        return this.time;
+    }
+
+    /**
+     * Moves the ball along its velocity up to the given simulation time.
+     *
+     * @param now the current simulation time.
+     */
+    void syncTo(double now) {
+        this.ball.advance(now - this.syncTime);
+        this.syncTime = now;
+    }
+
+    /**
+     * Orders events by time of impact, and by creation order for simultaneous impacts.
+     *
+     * @param other the event to compare with.
+     * @return a negative number, zero or a positive number as this event happens before, with or after the other.
+     */
+    @Override
+    public int compareTo(ImpactEvent other) {
+        int byTime = Double.compare(this.time, other.time);
+        return byTime != 0 ? byTime : Long.compare(this.sequence, other.sequence);
+    }
+}
@@ -0,0 +1,243 @@
+package gameLogic;
+
+import biuoop.KeyboardSensor;
+
+import java.awt.KeyEventDispatcher;
+import java.awt.KeyboardFocusManager;
+import java.awt.event.KeyEvent;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The gameLogic.KeyInput class is a keyboard sensor that sees every key press and release, with the time it
+ * happened, instead of polling which keys are down.
+ * The AWT event thread records each transition of the arrow, space and enter keys into a lock-free ring buffer
+ * as it is dispatched; the game thread samples the buffer right before each simulation step, up to the end of
+ * the step's time window. For each key it knows how long the key was held during the window, so a tap shorter
+ * than a step still counts, and the paddle can move by the part of the step the key was down.
+ * It also measures input-to-display latency: the time from the first transition sampled to the frame showing
+ * its effect.
+ */
+public class KeyInput implements KeyboardSensor, KeyEventDispatcher {
+    private static final String[] KEYS = {
+            KeyboardSensor.LEFT_KEY, KeyboardSensor.RIGHT_KEY, KeyboardSensor.UP_KEY, KeyboardSensor.DOWN_KEY,
+            KeyboardSensor.SPACE_KEY, KeyboardSensor.ENTER_KEY
+    };  // The keys tracked
+    private static final int[] KEY_CODES = {
+            KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT, KeyEvent.VK_UP, KeyEvent.VK_DOWN, KeyEvent.VK_SPACE, KeyEvent.VK_ENTER
+    };  // The key code of each key
+    private static final int CAPACITY = 256;       // Transitions the buffer holds; a power of two
+    private static final long NONE = Long.MIN_VALUE; // No transition waiting to be shown
+    // The ring buffer, written by the event thread and read by the game thread
+    private int[] transitions;     // Each transition, as the key's index times two, plus one if pressed
+    private long[] times;          // The time of each transition, from System.nanoTime
+    private AtomicLong written;    // Transitions written; publishes them to the game thread
+    private AtomicLong read;       // Transitions read; frees their slots for the event thread
+    private long dropped;          // Transitions dropped because the buffer was full; event thread only
+    private boolean[] reported;    // Whether each key was last recorded as down; event thread only
+    // Sampling state, game thread only
+    private boolean[] down;        // Whether each key is down at the end of the last window sampled
+    private long[] downSince;      // When each key that is down went down, within the window being sampled
+    private double[] held;         // The part of the last window each key was held down, from 0 to 1
+    private long waitingSince;     // Time of the first transition sampled but not yet shown, or NONE
+    private long latencyCount;     // Transitions shown since the last report
+    private long latencyTotal;     // Their total input-to-display latency, in nanoseconds
+    private long latencyMax;       // Their largest input-to-display latency, in nanoseconds
+
+    /**
+     * Constructs a new gameLogic.KeyInput with no key down. It sees no keys until installed.
+     */
+    public KeyInput() {
+        this.transitions = new int[CAPACITY];
+        this.times = new long[CAPACITY];
+        this.written = new AtomicLong();
+        this.read = new AtomicLong();
+        this.reported = new boolean[KEYS.length];
+        this.down = new boolean[KEYS.length];
+        this.downSince = new long[KEYS.length];
+        this.held = new double[KEYS.length];
+        this.waitingSince = NONE;
+    }
+
+    /**
+     * Starts seeing the key events of every window of the application, before the windows process them.
+     */
+    public void install() {
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(this);
+    }
+
+    /**
+     * Stops seeing key events.
+     */
+    public void uninstall() {
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(this);
+    }
+
+    /**
+     * Records a press or release of a tracked key, with the time it is dispatched. Repeated presses of a key
+     * held down are ignored. Called on the AWT event thread; the event is passed on to the window.
+     *
+     * @param e the key event.
+     * @return false, so the event is dispatched as usual.
+     */
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent e) {
+        if (e.getID() != KeyEvent.KEY_PRESSED && e.getID() != KeyEvent.KEY_RELEASED) {
+            return false;
+        }
+        long time = System.nanoTime();
+        boolean pressed = e.getID() == KeyEvent.KEY_PRESSED;
+        for (int key = 0; key < KEY_CODES.length; key++) {
+            if (KEY_CODES[key] == e.getKeyCode() && this.reported[key] != pressed) {
+                this.reported[key] = pressed;
+                offer(key, pressed, time);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a transition into the ring buffer, or drops it if the buffer is full.
+     *
+     * @param key     the index of the key.
+     * @param pressed true if the key went down, false if it went up.
+     * @param time    when it happened, from System.nanoTime.
+     */
+    private void offer(int key, boolean pressed, long time) {
+        long slot = this.written.get();
+        if (slot - this.read.get() == CAPACITY) {
+            this.dropped++;
+            return;
+        }
+        int index = (int) slot & (CAPACITY - 1);
+        this.transitions[index] = key * 2 + (pressed ? 1 : 0);
+        this.times[index] = time;
+        this.written.lazySet(slot + 1); // Publishes the slot after it is written
+    }
+
+    /**
+     * Applies the transitions that happened up to the end of a simulation step's time window, and works out
+     * how long each key was held during the window. Transitions from before the window count as happening
+     * at its start; later ones are left for the next window. Called on the game thread.
+     *
+     * @param from  the start of the window, from System.nanoTime.
+     * @param until the end of the window, from System.nanoTime.
+     */
+    public void sample(long from, long until) {
+        for (int key = 0; key < KEYS.length; key++) {
+            this.held[key] = 0;
+            this.downSince[key] = from;
+        }
+        long slot = this.read.get();
+        long available = this.written.get();
+        while (slot < available) {
+            int index = (int) slot & (CAPACITY - 1);
+            long time = this.times[index];
+            if (time > until) {
+                break;
+            }
+            if (this.waitingSince == NONE) {
+                this.waitingSince = time;
+            }
+            int key = this.transitions[index] / 2;
+            boolean pressed = this.transitions[index] % 2 == 1;
+            long at = Math.max(time, from);
+            if (pressed && !this.down[key]) {
+                this.downSince[key] = at;
+            } else if (!pressed && this.down[key]) {
+                this.held[key] += at - this.downSince[key];
+            }
+            this.down[key] = pressed;
+            slot++;
+        }
+        this.read.lazySet(slot); // Frees the slots after they are read
+        double length = Math.max(1, until - from);
+        for (int key = 0; key < KEYS.length; key++) {
+            if (this.down[key]) {
+                this.held[key] += until - this.downSince[key];
+            }
+            this.held[key] = Math.min(1, this.held[key] / length);
+        }
+    }
+
+    /**
+     * Checks whether a key is down at the end of the last window sampled.
+     *
+     * @param key the key, e.g. KeyboardSensor.LEFT_KEY.
+     * @return true if the key is down, false otherwise or if the key is not tracked.
+     */
+    @Override
+    public boolean isPressed(String key) {
+        int index = indexOf(key);
+        return index >= 0 && this.down[index];
+    }
+
+    /**
+     * Returns the part of the last window sampled during which a key was held down.
+     *
+     * @param key the key, e.g. KeyboardSensor.LEFT_KEY.
+     * @return the part of the window, from 0 to 1.
+     */
+    public double getHeld(String key) {
+        int index = indexOf(key);
+        return index < 0 ? 0 : this.held[index];
+    }
+
+    /**
+     * Notifies the input that a frame was shown. The transitions sampled before it are now visible, so the
+     * time since the first of them is recorded as input-to-display latency. Called on the game thread.
+     *
+     * @param now the time the frame was shown, from System.nanoTime.
+     */
+    public void frameShown(long now) {
+        if (this.waitingSince == NONE) {
+            return;
+        }
+        long latency = now - this.waitingSince;
+        this.latencyCount++;
+        this.latencyTotal += latency;
+        this.latencyMax = Math.max(this.latencyMax, latency);
+        this.waitingSince = NONE;
+    }
+
+    /**
+     * Describes the input-to-display latency since the last report, and starts a new report.
+     *
+     * @return a line such as "avg 12.3 ms, max 20.1 ms over 4 inputs", or null if no input was shown.
+     */
+    public String report() {
+        if (this.latencyCount == 0) {
+            return null;
+        }
+        String line = String.format("avg %.1f ms, max %.1f ms over %d inputs", this.latencyTotal / 1e6
+                / this.latencyCount, this.latencyMax / 1e6, this.latencyCount);
+        this.latencyCount = 0;
+        this.latencyTotal = 0;
+        this.latencyMax = 0;
+        return line;
+    }
+
+    /**
+     * Returns the number of transitions dropped because the game thread did not sample them in time.
+     *
+     * @return the number of dropped transitions.
+     */
+    public long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Returns the index of a tracked key.
+     *
+     * @param key the key, e.g. KeyboardSensor.LEFT_KEY; KeyboardSensor.RETURN_KEY is the enter key.
+     * @return the index, or -1 if the key is not tracked.
+     */
+    private static int indexOf(String key) {
+        String name = KeyboardSensor.RETURN_KEY.equals(key) ? KeyboardSensor.ENTER_KEY : key;
+        for (int index = 0; index < KEYS.length; index++) {
+            if (KEYS[index].equals(name)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
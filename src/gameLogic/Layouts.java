@@ -0,0 +1,104 @@
+package gameLogic;
+
+import geometry.Point;
+import geometry.Rectangle;
+import spritesAndCollisonDetection.BlockStore;
+
+/**
+ * The gameLogic.Layouts class holds the built-in level layouts of the campaign.
+ */
+public final class Layouts {
+    private static final int BLOCK_WIDTH = 55;  // Width of a block
+    private static final int BLOCK_HEIGHT = 30; // Height of a block
+    private static final LevelLayout STAIRS = Layouts::buildStairs;             // The original layout
+    private static final LevelLayout PYRAMID = Layouts::buildPyramid;           // A centered pyramid
+    private static final LevelLayout CHECKERBOARD = Layouts::buildCheckerboard; // A checkerboard with gaps
+
+    /**
+     * Not instantiable; all layouts are static.
+     */
+    private Layouts() {
+    }
+
+    /**
+     * Returns the original layout: six right-aligned rows, each one block shorter than the one above.
+     * The same instance is returned on every call, so it can be used as a gameLogic.LevelCache key.
+     *
+     * @return the layout.
+     */
+    public static LevelLayout stairs() {
+        return STAIRS;
+    }
+
+    /**
+     * Returns a centered pyramid of rows, each one block shorter than the one below.
+     * The same instance is returned on every call.
+     *
+     * @return the layout.
+     */
+    public static LevelLayout pyramid() {
+        return PYRAMID;
+    }
+
+    /**
+     * Returns a checkerboard of blocks with gaps the balls can pass through.
+     * The same instance is returned on every call.
+     *
+     * @return the layout.
+     */
+    public static LevelLayout checkerboard() {
+        return CHECKERBOARD;
+    }
+
+    /**
+     * Builds the stairs layout.
+     *
+     * @param store the store to fill.
+     */
+    private static void buildStairs(BlockStore store) {
+        for (int i = 0; i <= 5; i++) {
+            for (int j = 0; j < 12 - i; j++) {
+                store.add(block(740 - j * BLOCK_WIDTH, 100 + (i + 1) * BLOCK_HEIGHT), Game.ROW_COLORS[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds the pyramid layout.
+     *
+     * @param store the store to fill.
+     */
+    private static void buildPyramid(BlockStore store) {
+        for (int i = 0; i < 7; i++) {
+            int count = 13 - 2 * (6 - i);
+            double left = 400 - count * BLOCK_WIDTH / 2.0;
+            for (int j = 0; j < count; j++) {
+                store.add(block(left + j * BLOCK_WIDTH, 70 + i * BLOCK_HEIGHT), Game.ROW_COLORS[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds the checkerboard layout.
+     *
+     * @param store the store to fill.
+     */
+    private static void buildCheckerboard(BlockStore store) {
+        for (int i = 0; i < 8; i++) {
+            for (int j = i % 2; j < 14; j += 2) {
+                store.add(block(15 + j * BLOCK_WIDTH, 60 + i * BLOCK_HEIGHT), Game.ROW_COLORS[(i + j) % 7]);
+            }
+        }
+    }
+
+    /**
+     * Returns the rectangle of a block.
+     *
+     * @param x the x coordinate of the upper-left corner.
+     * @param y the y coordinate of the upper-left corner.
+     * @return the rectangle.
+     */
+    private static Rectangle block(double x, double y) {
+        return new Rectangle(new Point(x, y), BLOCK_WIDTH, BLOCK_HEIGHT);
+    }
+}
@@ -0,0 +1,158 @@
+package gameLogic;
+
+import spritesAndCollisonDetection.BlockStore;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The gameLogic.LevelCache class keeps built levels for games that play the same levels again and again,
+ * such as bot and tournament runs. A cached level is an immutable template: a block store with its collision
+ * grid and no listeners, which is never handed out. Every game gets a copy-on-write copy, which shares the
+ * template's arrays until the game changes a block. The cache is bounded by the estimated size of its
+ * templates and evicts the least recently used ones first. It may be shared by games on several threads.
+ * A level is built outside the cache's lock, so a miss does not hold up requests for other levels; threads
+ * asking for a level that is being built wait for that build instead of starting another.
+ */
+public class LevelCache {
+    private Map<LevelLayout, BlockStore> templates; // Built levels, least recently used first
+    private Map<LevelLayout, FutureTask<BlockStore>> building; // Levels being built, by the first thread asking
+    private long maxBytes;      // Upper bound on the estimated size of the templates
+    private long bytes;         // Estimated size of the templates
+    private long hits;          // Number of requests served from the cache
+    private long misses;        // Number of requests that built the level
+    private long evictions;     // Number of templates evicted to stay within the bound
+
+    /**
+     * Constructs a new, empty gameLogic.LevelCache.
+     *
+     * @param maxBytes the upper bound on the estimated size of the cached levels, in bytes.
+     */
+    public LevelCache(long maxBytes) {
+        this.templates = new LinkedHashMap<>(16, 0.75f, true);
+        this.building = new HashMap<>();
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a private copy of a level, building and caching the level if it is not cached.
+     * A level larger than the bound is built but not cached.
+     *
+     * @param layout the layout of the level; layouts are compared by identity.
+     * @return a store holding the level's blocks, with no listeners.
+     * @throws IllegalStateException if building the level fails or the thread is interrupted while waiting.
+     */
+    public BlockStore get(LevelLayout layout) {
+        FutureTask<BlockStore> build;
+        boolean builder = false;
+        synchronized (this) {
+            BlockStore template = this.templates.get(layout);
+            if (template != null) {
+                this.hits++;
+                return template.copy();
+            }
+            build = this.building.get(layout);
+            if (build == null) {
+                this.misses++;
+                build = new FutureTask<>(() -> PreparedLevel.build(layout));
+                this.building.put(layout, build);
+                builder = true;
+            } else {
+                this.hits++; // Served by the build already running
+            }
+        }
+        if (builder) {
+            build.run();
+        }
+        BlockStore template = null;
+        try {
+            template = build.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot build level", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a level", e);
+        } finally {
+            if (builder) {
+                finish(layout, template);
+            }
+        }
+        return template.copy(); // Copying only marks the template's arrays shared, which they stay for good
+    }
+
+    /**
+     * Ends the build of a level, and caches the level unless it failed or is larger than the bound.
+     *
+     * @param layout   the layout of the level.
+     * @param template the built level, or null if the build failed.
+     */
+    private synchronized void finish(LevelLayout layout, BlockStore template) {
+        this.building.remove(layout);
+        if (template != null && template.estimateBytes() <= this.maxBytes) {
+            this.templates.put(layout, template);
+            this.bytes += template.estimateBytes();
+            evict();
+        }
+    }
+
+    /**
+     * Evicts the least recently used templates until the cache is within its bound.
+     */
+    private void evict() {
+        Iterator<BlockStore> eldest = this.templates.values().iterator();
+        while (this.bytes > this.maxBytes && eldest.hasNext()) {
+            this.bytes -= eldest.next().estimateBytes();
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     *
+     * @return the number of hits.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of requests that had to build the level.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of levels evicted to stay within the bound.
+     *
+     * @return the number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the estimated size of the cached levels.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the number of cached levels.
+     *
+     * @return the number of levels.
+     */
+    public synchronized int size() {
+        return this.templates.size();
+    }
+}
@@ -0,0 +1,18 @@
+package gameLogic;
+
+import spritesAndCollisonDetection.BlockStore;
+
+/**
+ * The gameLogic.LevelLayout interface describes the blocks of a level in a campaign.
+ * Layouts are built on a background thread while the previous level is played, so a layout must only
+ * touch the store it is given.
+ */
+@FunctionalInterface
+public interface LevelLayout {
+    /**
+     * Adds the blocks of the level to an empty store.
+     *
+     * @param store the store to fill.
+     */
+    void build(BlockStore store);
+}
@@ -0,0 +1,395 @@
+package gameLogic;
+
+import biuoop.DrawSurface;
+import geometry.Point;
+import geometry.Rectangle;
+import spritesAndCollisonDetection.Block;
+import spritesAndCollisonDetection.Collidable;
+import spritesAndCollisonDetection.Sprite;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The gameLogic.MappedLevel class plays a level stored in a binary level file that is memory-mapped
+ * instead of read. The blocks are sorted into square regions, and real spritesAndCollisonDetection.Block
+ * objects are only created for the regions near the balls; every other region stays as raw bytes in the
+ * mapping and is drawn straight from them. When the balls move away, a region's blocks are dropped again,
+ * and the blocks that were removed during play are remembered in a bitset overlay over the file.
+ * <p>
+ * The file layout (big-endian) is a header of ints and floats: magic, version, region size, origin x and y,
+ * columns, rows, largest block width and height, block count and color count; then the palette as ARGB
+ * ints; then the index of the first block of every region plus the block count; then 20 bytes per block:
+ * x, y, width and height as floats and the palette index as an int. A block belongs to the region
+ * holding its upper-left corner.
+ */
+public class MappedLevel implements Sprite {
+    private static final int MAGIC = 0x41524B4C;   // "ARKL"
+    private static final int VERSION = 1;          // Version of the file layout
+    private static final int HEADER_BYTES = 44;    // Size of the fixed part of the header
+    private static final int BLOCK_BYTES = 20;     // Size of a block record
+    private MappedByteBuffer data;          // The mapped level file
+    private double regionSize;              // Side of a region
+    private double originX;                 // Left side of the region grid
+    private double originY;                 // Top side of the region grid
+    private int columns;                    // Number of region columns
+    private int rows;                       // Number of region rows
+    private double maxBlockWidth;           // Width of the widest block, how far blocks reach into other regions
+    private double maxBlockHeight;          // Height of the highest block
+    private int blockCount;                 // Number of blocks in the file
+    private Color[] palette;                // Block colors
+    private int regionTable;                // Offset of the region index
+    private int blockTable;                 // Offset of the first block record
+    private BitSet removed;                 // Blocks removed during play, by index in the file
+    private BitSet materialized;            // Regions whose blocks are currently real objects
+    private BitSet needed;                  // Scratch set of update: regions an area may touch
+    private BitSet kept;                    // Scratch set of update: regions within a region of an area
+    private BitSet dropped;                 // Scratch set of update: materialized regions no longer kept
+    private BitSet visible;                 // Scratch set of drawOn: regions in the viewport to draw
+    private Map<Integer, Block[]> regionBlocks; // The blocks of every materialized region, by index in the region
+    private Game game;                      // The game the level is played in
+    private GameEnvironment environment;    // The environment the blocks collide in
+    private List<HitListener> listeners;    // Listeners added to every materialized block
+
+    /**
+     * Constructs a gameLogic.MappedLevel over a mapped level file.
+     *
+     * @param data the mapped file.
+     */
+    private MappedLevel(MappedByteBuffer data) {
+        this.data = data;
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a level file of version " + VERSION);
+        }
+        this.regionSize = data.getFloat(8);
+        this.originX = data.getFloat(12);
+        this.originY = data.getFloat(16);
+        this.columns = data.getInt(20);
+        this.rows = data.getInt(24);
+        this.maxBlockWidth = data.getFloat(28);
+        this.maxBlockHeight = data.getFloat(32);
+        this.blockCount = data.getInt(36);
+        this.palette = new Color[data.getInt(40)];
+        for (int i = 0; i < this.palette.length; i++) {
+            this.palette[i] = new Color(data.getInt(HEADER_BYTES + i * 4), true);
+        }
+        this.regionTable = HEADER_BYTES + this.palette.length * 4;
+        this.blockTable = this.regionTable + (this.columns * this.rows + 1) * 4;
+        this.removed = new BitSet(this.blockCount);
+        this.materialized = new BitSet(this.columns * this.rows);
+        this.needed = new BitSet(this.columns * this.rows);
+        this.kept = new BitSet(this.columns * this.rows);
+        this.dropped = new BitSet(this.columns * this.rows);
+        this.visible = new BitSet(this.columns * this.rows);
+        this.regionBlocks = new HashMap<>();
+    }
+
+    /**
+     * Maps a level file. The mapping is read-only, so nothing is loaded until a region is used.
+     *
+     * @param file the level file.
+     * @return the level.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static MappedLevel open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedLevel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes blocks to a level file.
+     *
+     * @param file       the level file to create or replace.
+     * @param blocks     the blocks of the level.
+     * @param regionSize the side of a region; blocks should not be larger than a region.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, List<Block> blocks, double regionSize) throws IOException {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double maxWidth = 0;
+        double maxHeight = 0;
+        List<Color> colors = new ArrayList<>();
+        for (Block block : blocks) {
+            Rectangle rect = block.getCollisionRectangle();
+            minX = Math.min(minX, rect.getUpperLeft().getX());
+            minY = Math.min(minY, rect.getUpperLeft().getY());
+            maxX = Math.max(maxX, rect.getUpperLeft().getX());
+            maxY = Math.max(maxY, rect.getUpperLeft().getY());
+            maxWidth = Math.max(maxWidth, rect.getWidth());
+            maxHeight = Math.max(maxHeight, rect.getHeight());
+            if (!colors.contains(block.getColor())) {
+                colors.add(block.getColor());
+            }
+        }
+        if (blocks.isEmpty()) {
+            minX = 0;
+            minY = 0;
+            maxX = 0;
+            maxY = 0;
+        }
+        // Compute the regions with the float values the reader will see
+        minX = (float) minX;
+        minY = (float) minY;
+        regionSize = (float) regionSize;
+        int columns = (int) Math.floor((maxX - minX) / regionSize) + 1;
+        int rows = (int) Math.floor((maxY - minY) / regionSize) + 1;
+
+        // Sort the blocks by region: count, then place
+        int[] regionOf = new int[blocks.size()];
+        int[] regionStart = new int[columns * rows + 1];
+        for (int i = 0; i < blocks.size(); i++) {
+            Point upperLeft = blocks.get(i).getCollisionRectangle().getUpperLeft();
+            int col = (int) Math.floor(((float) upperLeft.getX() - minX) / regionSize);
+            int row = (int) Math.floor(((float) upperLeft.getY() - minY) / regionSize);
+            regionOf[i] = row * columns + col;
+            regionStart[regionOf[i] + 1]++;
+        }
+        for (int r = 0; r < columns * rows; r++) {
+            regionStart[r + 1] += regionStart[r];
+        }
+        int[] order = new int[blocks.size()];
+        int[] next = regionStart.clone();
+        for (int i = 0; i < blocks.size(); i++) {
+            order[next[regionOf[i]]++] = i;
+        }
+
+        int size = HEADER_BYTES + colors.size() * 4 + regionStart.length * 4 + blocks.size() * BLOCK_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putFloat((float) regionSize).putFloat((float) minX)
+                .putFloat((float) minY).putInt(columns).putInt(rows).putFloat((float) maxWidth)
+                .putFloat((float) maxHeight).putInt(blocks.size()).putInt(colors.size());
+        for (Color color : colors) {
+            buffer.putInt(color.getRGB());
+        }
+        for (int start : regionStart) {
+            buffer.putInt(start);
+        }
+        for (int i : order) {
+            Block block = blocks.get(i);
+            Rectangle rect = block.getCollisionRectangle();
+            buffer.putFloat((float) rect.getUpperLeft().getX()).putFloat((float) rect.getUpperLeft().getY())
+                    .putFloat((float) rect.getWidth()).putFloat((float) rect.getHeight())
+                    .putInt(colors.indexOf(block.getColor()));
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of blocks in the level file.
+     *
+     * @return the number of blocks.
+     */
+    public int getBlockCount() {
+        return this.blockCount;
+    }
+
+    /**
+     * Checks whether a block was removed during play. Removals are recorded when the block's region is
+     * dropped, so a block of a materialized region may still report false.
+     *
+     * @param index the block's index in the file.
+     * @return true if the block was removed, false otherwise.
+     */
+    public boolean isRemoved(int index) {
+        return this.removed.get(index);
+    }
+
+    /**
+     * Returns the number of regions whose blocks are currently real objects.
+     *
+     * @return the number of materialized regions.
+     */
+    public int getMaterializedRegions() {
+        return this.materialized.cardinality();
+    }
+
+    /**
+     * Adds the level to the game. Blocks are created later, by update.
+     *
+     * @param g            the game.
+     * @param environment  the environment the blocks collide in.
+     * @param hitListeners the listeners to add to every block.
+     */
+    public void addToGame(Game g, GameEnvironment environment, List<HitListener> hitListeners) {
+        this.game = g;
+        this.environment = environment;
+        this.listeners = new ArrayList<>(hitListeners);
+        g.addSprite(this);
+    }
+
+    /**
+     * Brings the materialized regions up to date. Every region that may hold a block overlapping one of the
+     * areas is materialized; materialized regions more than one region away from all areas are dropped.
+     *
+     * @param areas the areas that need real blocks, such as the reach of every ball in the next frame.
+     */
+    public void update(List<Rectangle> areas) {
+        this.needed.clear();
+        this.kept.clear();
+        for (Rectangle area : areas) {
+            markRegions(this.needed, area, 0);
+            markRegions(this.kept, area, this.regionSize);
+        }
+        this.dropped.clear();
+        this.dropped.or(this.materialized);
+        this.dropped.andNot(this.kept);
+        if (!this.dropped.isEmpty()) {
+            Set<Collidable> present = Collections.newSetFromMap(new IdentityHashMap<>());
+            present.addAll(this.environment.getCollidables());
+            for (int r = this.dropped.nextSetBit(0); r >= 0; r = this.dropped.nextSetBit(r + 1)) {
+                dematerialize(r, present);
+            }
+        }
+        this.needed.andNot(this.materialized);
+        for (int r = this.needed.nextSetBit(0); r >= 0; r = this.needed.nextSetBit(r + 1)) {
+            materialize(r);
+        }
+    }
+
+    /**
+     * Marks the regions that may hold a block overlapping an area.
+     *
+     * @param regions the set of regions to mark.
+     * @param area    the area.
+     * @param margin  how much to grow the area by on every side.
+     */
+    private void markRegions(BitSet regions, Rectangle area, double margin) {
+        double minX = area.getUpperLeft().getX() - margin;
+        double minY = area.getUpperLeft().getY() - margin;
+        double maxX = area.getUpperLeft().getX() + area.getWidth() + margin;
+        double maxY = area.getUpperLeft().getY() + area.getHeight() + margin;
+        // A block reaches right and down from its region, so look further left and up
+        int col0 = Math.max(0, (int) Math.floor((minX - this.maxBlockWidth - this.originX) / this.regionSize));
+        int row0 = Math.max(0, (int) Math.floor((minY - this.maxBlockHeight - this.originY) / this.regionSize));
+        int col1 = Math.min(this.columns - 1, (int) Math.floor((maxX - this.originX) / this.regionSize));
+        int row1 = Math.min(this.rows - 1, (int) Math.floor((maxY - this.originY) / this.regionSize));
+        for (int row = row0; row <= row1; row++) {
+            if (col0 <= col1) {
+                regions.set(row * this.columns + col0, row * this.columns + col1 + 1);
+            }
+        }
+    }
+
+    /**
+     * Creates the blocks of a region that were not removed and adds them to the game.
+     *
+     * @param region the region.
+     */
+    private void materialize(int region) {
+        int start = this.data.getInt(this.regionTable + region * 4);
+        int end = this.data.getInt(this.regionTable + region * 4 + 4);
+        Block[] blocks = new Block[end - start];
+        for (int i = start; i < end; i++) {
+            if (this.removed.get(i)) {
+                continue;
+            }
+            int offset = this.blockTable + i * BLOCK_BYTES;
+            Rectangle rect = new Rectangle(new Point(this.data.getFloat(offset), this.data.getFloat(offset + 4)),
+                    this.data.getFloat(offset + 8), this.data.getFloat(offset + 12));
+            Block block = new Block(this.game.getEntities(), rect, this.palette[this.data.getInt(offset + 16)]);
+            block.addToGame(this.game);
+            for (HitListener hl : this.listeners) {
+                block.addHitListener(hl);
+            }
+            blocks[i - start] = block;
+        }
+        this.regionBlocks.put(region, blocks);
+        this.materialized.set(region);
+    }
+
+    /**
+     * Drops the blocks of a region. Blocks that are no longer in the game were removed during play,
+     * and are recorded in the overlay.
+     *
+     * @param region  the region.
+     * @param present the collidables currently in the game.
+     */
+    private void dematerialize(int region, Set<Collidable> present) {
+        int start = this.data.getInt(this.regionTable + region * 4);
+        Block[] blocks = this.regionBlocks.remove(region);
+        for (int k = 0; k < blocks.length; k++) {
+            if (blocks[k] == null) {
+                continue;
+            }
+            if (present.contains(blocks[k])) {
+                blocks[k].removeFromGame(this.game);
+            } else {
+                this.removed.set(start + k);
+            }
+        }
+        this.materialized.clear(region);
+    }
+
+    /**
+     * Draws the blocks of the regions that are not materialized straight from the mapped file.
+     * Materialized blocks draw themselves.
+     *
+     * @param d The DrawSurface to draw the blocks on.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        drawOn(d, new Rectangle(new Point(0, 0), d.getWidth(), d.getHeight()));
+    }
+
+    /**
+     * Draws the blocks of the regions inside a viewport that are not materialized.
+     *
+     * @param d        The DrawSurface to draw the blocks on.
+     * @param viewport The visible part of the world.
+     */
+    @Override
+    public void drawOn(DrawSurface d, Rectangle viewport) {
+        this.visible.clear();
+        markRegions(this.visible, viewport, 0);
+        this.visible.andNot(this.materialized);
+        for (int r = this.visible.nextSetBit(0); r >= 0; r = this.visible.nextSetBit(r + 1)) {
+            int end = this.data.getInt(this.regionTable + r * 4 + 4);
+            for (int i = this.data.getInt(this.regionTable + r * 4); i < end; i++) {
+                if (this.removed.get(i)) {
+                    continue;
+                }
+                int offset = this.blockTable + i * BLOCK_BYTES;
+                int x = (int) this.data.getFloat(offset);
+                int y = (int) this.data.getFloat(offset + 4);
+                int width = (int) this.data.getFloat(offset + 8);
+                int height = (int) this.data.getFloat(offset + 12);
+                d.setColor(this.palette[this.data.getInt(offset + 16)]);
+                d.fillRectangle(x, y, width, height);
+                d.setColor(Color.BLACK);
+                d.drawRectangle(x, y, width, height);
+            }
+        }
+    }
+
+    /**
+     * Notifies the level that time has passed. Regions are updated by the game loop instead.
+     */
+    @Override
+    public void timePassed() {
+        // Regions are updated by the game loop, before the balls move
+    }
+}
@@ -0,0 +1,60 @@
+package gameLogic;
+
+import spritesAndCollisonDetection.BlockStore;
+
+/**
+ * The gameLogic.PreparedLevel class is a campaign level that is ready to be played: its blocks are in a
+ * store with their listeners attached and their collision grid built. It is created on the preloading
+ * thread and handed to the game loop through a Future, which publishes it safely.
+ */
+class PreparedLevel {
+    private BlockStore store; // The blocks of the level
+    private int blockCount;   // The number of blocks to clear
+
+    /**
+     * Prepares a level from a store of blocks without listeners.
+     *
+     * @param store     the blocks of the level, which are not shared with any other level.
+     * @param listeners the listeners to add to every block.
+     */
+    PreparedLevel(BlockStore store, HitListener... listeners) {
+        this.store = store;
+        for (HitListener hl : listeners) {
+            this.store.addHitListenerToAll(hl);
+        }
+        this.store.getBounds(); // Builds the collision grid now, off the game loop
+        this.blockCount = this.store.liveCount();
+    }
+
+    /**
+     * Builds the blocks of a layout into a store with its collision grid.
+     *
+     * @param layout the layout of the level.
+     * @return the store, with no listeners.
+     */
+    static BlockStore build(LevelLayout layout) {
+        BlockStore store = new BlockStore(110);
+        layout.build(store);
+        store.trimToSize();
+        store.getBounds(); // Builds the collision grid
+        return store;
+    }
+
+    /**
+     * Returns the blocks of the level.
+     *
+     * @return the block store.
+     */
+    BlockStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Returns the number of blocks to clear.
+     *
+     * @return the number of blocks.
+     */
+    int getBlockCount() {
+        return this.blockCount;
+    }
+}
@@ -0,0 +1,73 @@
+package gameLogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Timespan;
+
+/**
+ * The gameLogic.QualityChangeEvent class is a JDK Flight Recorder event for a decision of the
+ * gameLogic.FrameGovernor: the quality level it left, the level it chose, and the load that made it decide.
+ */
+@Name("arkanoid.QualityChange")
+@Label("Quality Change")
+@Category({"Arkanoid", "Game Loop"})
+@Description("The frame governor lowered or restored the quality of the game loop")
+public class QualityChangeEvent extends Event {
+    @Label("From Level")
+    @Description("Quality level before the decision; 0 is full quality")
+    private int fromLevel;
+
+    @Label("To Level")
+    @Description("Quality level after the decision")
+    private int toLevel;
+
+    @Label("Load")
+    @Description("Part of the last window the game thread spent working rather than sleeping")
+    @Percentage
+    private double load;
+
+    @Label("Frame Time")
+    @Description("Average time a frame took during the last window, not counting the sleep")
+    @Timespan(Timespan.NANOSECONDS)
+    private long frameTime;
+
+    /**
+     * Sets the quality level before the decision.
+     *
+     * @param fromLevel the level.
+     */
+    public void setFromLevel(int fromLevel) {
+        this.fromLevel = fromLevel;
+    }
+
+    /**
+     * Sets the quality level after the decision.
+     *
+     * @param toLevel the level.
+     */
+    public void setToLevel(int toLevel) {
+        this.toLevel = toLevel;
+    }
+
+    /**
+     * Sets the part of the last window the game thread spent working.
+     *
+     * @param load the load, from 0 to 1.
+     */
+    public void setLoad(double load) {
+        this.load = load;
+    }
+
+    /**
+     * Sets the average time a frame took during the last window.
+     *
+     * @param frameTime the time, in nanoseconds.
+     */
+    public void setFrameTime(long frameTime) {
+        this.frameTime = frameTime;
+    }
+}
@@ -1,21 +1,18 @@
 package gameLogic;
 
 import biuoop.DrawSurface;
-import geometry.Point;
 import geometry.Rectangle;
 import spritesAndCollisonDetection.Sprite;
 
-import java.awt.Color;
-
 /**
  * The gameLogic.ScoreIndicator class implements the spritesAndCollisonDetection.Sprite interface and is responsible
  * for displaying the current score on the screen.
  * It uses a rectangle to define the area where the score will be displayed and
  * updates the score information accordingly.
+ * It is a gameLogic.Hud with a single indicator, so the score is only composed again when it changes.
  */
 public class ScoreIndicator implements Sprite {
-    private Rectangle rectangle; // geometry.Rectangle defining the area for displaying the score
-    private Counter countScore;   // gameLogic.Counter object to keep track of the current score
+    private Hud hud; // The bar showing the score
 
     /**
      * Constructs a gameLogic.ScoreIndicator with the specified rectangle and score counter.
@@ -24,8 +21,8 @@ public class ScoreIndicator implements Sprite {
      * @param counter   The gameLogic.Counter object used to keep track of the score.
      */
     public ScoreIndicator(Rectangle rectangle, Counter counter) {
-        this.rectangle = rectangle; // Initialize the rectangle
-        this.countScore = counter;   // Initialize the score counter
+        this.hud = new Hud(rectangle);
+        this.hud.addIndicator("Score: ", counter);
     }
 
     /**
@@ -39,32 +36,30 @@ public class ScoreIndicator implements Sprite {
     }
 
     /**
-     * Draws the score indicator on the provided DrawSurface.
-     * It draws the rectangle that represents the score area and the current score
-     * as text within that rectangle.
+     * Draws the score indicator on the provided DrawSurface: the current score, centered in the rectangle.
      * @param d The DrawSurface object where the score will be drawn.
      */
     @Override
     public void drawOn(DrawSurface d) {
-        Point upperLeft = rectangle.getUpperLeft(); // Get the upper-left corner of the rectangle
-
-        // Draw the rectangle for the score indicator
-        d.setColor(Color.WHITE); // Set the color for the rectangle outline
-        d.drawRectangle((int) upperLeft.getX(), (int) upperLeft.getY(),
-                (int) rectangle.getWidth(), (int) rectangle.getHeight());
+        this.hud.drawOn(d);
+    }
 
-        // Draw the score text within the rectangle
-        String countString = "Score: " + this.countScore.getValue(); // Format the score text
-        d.setColor(Color.BLACK); // Set the color for the score text
-        d.drawText(400, 10, countString, 11); // Draw the text at a specified position
+    /**
+     * Returns the area the score indicator draws in.
+     *
+     * @return The rectangle of the score indicator.
+     */
+    @Override
+    public Rectangle getBounds() {
+        return this.hud.getBounds();
     }
 
     /**
-     * Adds the gameLogic.ScoreIndicator to the game as a sprite.
-     * This method allows the gameLogic.ScoreIndicator to be rendered as part of the game's display.
+     * Adds the gameLogic.ScoreIndicator to the game's heads-up display.
+     * The display is drawn in window coordinates on top of the world, so the score does not move with the camera.
      * @param g The game object to which the gameLogic.ScoreIndicator is added.
      */
     public void addToGame(Game g) {
-        g.addSprite(this); // Add this gameLogic.ScoreIndicator instance to the game's list of sprites
+        g.addHudSprite(this); // Add this gameLogic.ScoreIndicator instance to the game's heads-up display
     }
 }
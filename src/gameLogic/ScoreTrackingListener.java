@@ -25,7 +25,7 @@ public class ScoreTrackingListener implements HitListener {
     /**
      * Handles the event when a block is hit by a ball.
      * If the ball's color does not match the block's color, the score is increased
-     * by 5 points.
+     * by 5 points, which are added to the hit's record in the game's gameLogic.HitLog, if hits are logged.
      *
      * @param beingHit The block that is hit by the ball.
      * @param hitter   The ball that hits the block.
@@ -36,6 +36,10 @@ public class ScoreTrackingListener implements HitListener {
         if (!beingHit.ballColorMatch(hitter)) {
             // Increase the score by 5 points if the colors do not match
             this.currentScore.increase(5);
+            HitLog log = HitLog.of(hitter);
+            if (log != null) {
+                log.scored(5);
+            }
         }
     }
 }
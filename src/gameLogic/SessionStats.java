@@ -0,0 +1,264 @@
+package gameLogic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The gameLogic.SessionStats class aggregates the hit logs of recorded game sessions, for gameplay analytics:
+ * the distribution of the points each session scored by hitting blocks, the blocks cleared in each minute of
+ * play, the lengths of the color-swap chains of the blocks, and where along the floor the balls were lost.
+ * The log only records hits, so the points leave out the bonus of clearing a level and are not the final
+ * score.
+ * <p>
+ * A color-swap chain is the run of hits a block takes, each swapping its color with the hitting ball's,
+ * until it is removed or the session ends. Sessions are read with gameLogic.HitLogReader, so the logs stay
+ * memory-mapped and are never loaded onto the heap; they are analyzed in parallel on the common fork/join
+ * pool, one session per task, and the statistics of the sessions are merged.
+ */
+public class SessionStats {
+    private static final int FRAMES_PER_MINUTE = 60 * 60; // At 60 simulation steps per second
+    private static final int SCORE_BUCKET = 50;           // Width of a bucket of the points distribution
+    private static final int LOSS_BUCKET = 40;            // Width of a bucket of the ball-loss positions
+    private static final int MAX_CHAIN = 16;              // Longer chains are counted with chains this long
+    private long sessions;           // Number of sessions
+    private long hits;               // Number of hits of blocks, not counting balls lost
+    private long frames;             // Simulation steps played, up to the last hit of each session
+    private long[] scores;           // Sessions by points scored by hits, in buckets of SCORE_BUCKET
+    private long[] clearedByMinute;  // Blocks cleared during each minute of play
+    private long[] chains;           // Color-swap chains by length; index 0 is unused
+    private long[] losses;           // Balls lost by x coordinate, in buckets of LOSS_BUCKET pixels
+
+    /**
+     * Constructs empty gameLogic.SessionStats.
+     */
+    public SessionStats() {
+        this.scores = new long[1];
+        this.clearedByMinute = new long[1];
+        this.chains = new long[MAX_CHAIN + 1];
+        this.losses = new long[1];
+    }
+
+    /**
+     * Analyzes every session under a directory in parallel: the directory itself if it holds a hit log,
+     * and each of its subdirectories that holds one.
+     *
+     * @param directory the directory of recorded sessions.
+     * @return the statistics of all the sessions.
+     * @throws IOException if the directory cannot be listed or a log cannot be read.
+     */
+    public static SessionStats analyze(Path directory) throws IOException {
+        List<Path> sessions = new ArrayList<>();
+        if (!HitLogReader.segments(directory).isEmpty()) {
+            sessions.add(directory);
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path session : stream) {
+                if (!HitLogReader.segments(session).isEmpty()) {
+                    sessions.add(session);
+                }
+            }
+        }
+        Collections.sort(sessions);
+        try {
+            return ForkJoinPool.commonPool().invoke(new SessionTask(sessions, 0, sessions.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads one session's hit log from start to end and adds it to the statistics.
+     *
+     * @param session the directory of the session's log.
+     * @throws IOException if the log cannot be read.
+     */
+    public void addSession(Path session) throws IOException {
+        HitLogReader reader = new HitLogReader(session);
+        Map<Long, int[]> openChains = new HashMap<>(); // The chain length of every block hit and not removed
+        long score = 0;
+        int lastFrame = -1;
+        while (reader.next()) {
+            score += reader.getScoreDelta();
+            lastFrame = reader.getFrame();
+            if (reader.isBallLost()) {
+                // The floor's records and gameLogic.BallRemover's are not hits of a block in play
+                int bucket = Math.max(0, reader.getBallX()) / LOSS_BUCKET;
+                this.losses = grow(this.losses, bucket);
+                this.losses[bucket]++;
+                continue;
+            }
+            this.hits++;
+            // Block ids are only unique while a block is in the game, so the position tells blocks apart too
+            long block = (long) reader.getBlock() << 32 | (reader.getBlockX() & 0xFFFFL) << 16
+                    | reader.getBlockY() & 0xFFFFL;
+            if (reader.getColorBefore() != reader.getColorAfter()) {
+                openChains.computeIfAbsent(block, key -> new int[1])[0]++;
+            }
+            if (reader.isBlockRemoved()) {
+                int[] chain = openChains.remove(block);
+                if (chain != null) {
+                    this.chains[Math.min(MAX_CHAIN, chain[0])]++;
+                }
+                int minute = lastFrame / FRAMES_PER_MINUTE;
+                this.clearedByMinute = grow(this.clearedByMinute, minute);
+                this.clearedByMinute[minute]++;
+            }
+        }
+        for (int[] chain : openChains.values()) {
+            this.chains[Math.min(MAX_CHAIN, chain[0])]++; // Blocks still in the game when the session ended
+        }
+        int bucket = (int) Math.max(0, score / SCORE_BUCKET);
+        this.scores = grow(this.scores, bucket);
+        this.scores[bucket]++;
+        this.frames += lastFrame + 1;
+        this.sessions++;
+    }
+
+    /**
+     * Adds the statistics of other sessions to these.
+     *
+     * @param other the statistics to add.
+     */
+    public void merge(SessionStats other) {
+        this.sessions += other.sessions;
+        this.hits += other.hits;
+        this.frames += other.frames;
+        this.scores = add(this.scores, other.scores);
+        this.clearedByMinute = add(this.clearedByMinute, other.clearedByMinute);
+        this.chains = add(this.chains, other.chains);
+        this.losses = add(this.losses, other.losses);
+    }
+
+    /**
+     * Returns the number of sessions.
+     *
+     * @return the number of sessions.
+     */
+    public long getSessions() {
+        return this.sessions;
+    }
+
+    /**
+     * Returns the number of hits of blocks in all sessions; balls reaching the floor are not counted.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of sessions whose points scored by hits fall in a bucket.
+     *
+     * @param bucket the bucket; bucket b holds the points from b * 50 to b * 50 + 49.
+     * @return the number of sessions.
+     */
+    public long getScoreCount(int bucket) {
+        return bucket < this.scores.length ? this.scores[bucket] : 0;
+    }
+
+    /**
+     * Returns the number of blocks cleared during a minute of play, over all sessions.
+     *
+     * @param minute the minute, counted from the start of each session.
+     * @return the number of blocks.
+     */
+    public long getCleared(int minute) {
+        return minute < this.clearedByMinute.length ? this.clearedByMinute[minute] : 0;
+    }
+
+    /**
+     * Returns the number of color-swap chains of a length.
+     *
+     * @param length the number of swaps, from 1; chains of 16 swaps or more are counted at 16.
+     * @return the number of chains.
+     */
+    public long getChains(int length) {
+        return length < this.chains.length ? this.chains[length] : 0;
+    }
+
+    /**
+     * Returns the number of balls lost at a part of the bottom border.
+     *
+     * @param bucket the part; part b holds the x coordinates from b * 40 to b * 40 + 39.
+     * @return the number of balls.
+     */
+    public long getLosses(int bucket) {
+        return bucket < this.losses.length ? this.losses[bucket] : 0;
+    }
+
+    /**
+     * Describes the statistics, one line per figure.
+     *
+     * @return the report.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        double minutes = (double) this.frames / FRAMES_PER_MINUTE;
+        long cleared = 0;
+        for (long blocks : this.clearedByMinute) {
+            cleared += blocks;
+        }
+        report.append(String.format("%d sessions, %d hits, %.1f minutes played, %.1f blocks cleared per minute%n",
+                this.sessions, this.hits, minutes, minutes == 0 ? 0 : cleared / minutes));
+        appendHistogram(report, "Points scored by hits", this.scores, 0, SCORE_BUCKET);
+        appendHistogram(report, "Blocks cleared by minute", this.clearedByMinute, 0, 1);
+        appendHistogram(report, "Color-swap chains by length", this.chains, 1, 1);
+        appendHistogram(report, "Balls lost by x", this.losses, 0, LOSS_BUCKET);
+        return report.toString();
+    }
+
+    /**
+     * Appends a histogram to a report, one line per non-empty bucket.
+     *
+     * @param report  the report.
+     * @param title   the title of the histogram.
+     * @param buckets the count in each bucket.
+     * @param from    the first bucket to describe.
+     * @param width   the width of a bucket, to label it with the smallest value it holds.
+     */
+    private static void appendHistogram(StringBuilder report, String title, long[] buckets, int from, int width) {
+        report.append(title).append(':').append(System.lineSeparator());
+        for (int bucket = from; bucket < buckets.length; bucket++) {
+            if (buckets[bucket] != 0) {
+                report.append(String.format("  %6d  %d%n", bucket * width, buckets[bucket]));
+            }
+        }
+    }
+
+    /**
+     * Grows an array of counts so that it has a given index.
+     *
+     * @param counts the counts.
+     * @param index  the index needed.
+     * @return the counts, or a longer copy of them.
+     */
+    private static long[] grow(long[] counts, int index) {
+        return index < counts.length ? counts : Arrays.copyOf(counts, Math.max(index + 1, 2 * counts.length));
+    }
+
+    /**
+     * Adds two arrays of counts element by element.
+     *
+     * @param counts the counts to add to.
+     * @param other  the counts to add.
+     * @return the sums, in counts or in a longer copy of it.
+     */
+    private static long[] add(long[] counts, long[] other) {
+        long[] sums = grow(counts, other.length - 1);
+        for (int i = 0; i < other.length; i++) {
+            sums[i] += other[i];
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,58 @@
+package gameLogic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The gameLogic.SessionTask class analyzes a range of recorded sessions, splitting the range in halves until
+ * each task reads a single session, and merges the statistics of the halves.
+ */
+class SessionTask extends RecursiveTask<SessionStats> {
+    private static final long serialVersionUID = 1L; // Version of the serialized form
+    private List<Path> sessions; // The directories of the sessions' hit logs
+    private int fromSession;     // The first session of the range
+    private int toSession;       // The session after the last session of the range
+
+    /**
+     * Constructs a new gameLogic.SessionTask.
+     *
+     * @param sessions    the directories of the sessions' hit logs.
+     * @param fromSession the first session of the range.
+     * @param toSession   the session after the last session of the range.
+     */
+    SessionTask(List<Path> sessions, int fromSession, int toSession) {
+        this.sessions = sessions;
+        this.fromSession = fromSession;
+        this.toSession = toSession;
+    }
+
+    /**
+     * Analyzes the sessions of the range, forking one half of the range while analyzing the other.
+     *
+     * @return the statistics of the sessions of the range.
+     * @throws UncheckedIOException if a log cannot be read.
+     */
+    @Override
+    protected SessionStats compute() {
+        if (this.toSession - this.fromSession <= 1) {
+            SessionStats stats = new SessionStats();
+            if (this.toSession > this.fromSession) {
+                try {
+                    stats.addSession(this.sessions.get(this.fromSession));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return stats;
+        }
+        int middle = (this.fromSession + this.toSession) >>> 1;
+        SessionTask second = new SessionTask(this.sessions, middle, this.toSession);
+        second.fork();
+        SessionStats stats = new SessionTask(this.sessions, this.fromSession, middle).compute();
+        stats.merge(second.join());
+        return stats;
+    }
+}
@@ -0,0 +1,411 @@
+package gameLogic;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+import biuoop.Sleeper;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The gameLogic.SpectatorClient class watches a game streamed by a gameLogic.SpectatorServer: it rebuilds
+ * the boxes, balls, paddle and score from the keyframes and deltas of the gameLogic.SpectatorFeed, and
+ * draws them the way the game does, with the same heads-up display. The socket is non-blocking and read
+ * on the drawing thread, once per frame, so the client needs no locks; deltas received before the first
+ * keyframe are ignored. The arena is drawn in world coordinates, without following the balls.
+ */
+public class SpectatorClient {
+    private static final int SCREEN_WIDTH = 800;  // Width of the spectator window
+    private static final int SCREEN_HEIGHT = 600; // Height of the spectator window
+    private static final int HUD_HEIGHT = 20;     // Height of the heads-up display, as in gameLogic.Game
+    private static final int FRAMES_PER_SECOND = 60;
+    private SocketChannel channel;                // Connection to the server, in non-blocking mode
+    private ByteBuffer input;                     // Bytes received and not applied yet, ready to be filled
+    private Map<Integer, int[]> boxes;            // x, y, width, height, color and outline of each box, by corner
+    private Map<Integer, int[]> balls;            // x, y, radius and color of each ball, by id
+    private int[] paddle;                         // x, y, width, height and color of the paddle
+    private Map<Integer, Color> colors;           // Colors by ARGB value, so that drawing allocates none
+    private Counter score;                        // The player's score
+    private Counter ballCount;                    // The balls in the game
+    private Hud hud;                              // Shows the score and the balls
+    private int step;                             // Step of the last message applied
+    private boolean synced;                       // Whether a keyframe was applied
+    private boolean closed;                       // Whether the server closed the connection
+    private long bytesReceived;                   // Bytes received so far
+    private long messages;                        // Messages applied so far
+    private long keyframes;                       // Keyframes applied so far
+
+    /**
+     * Constructs a gameLogic.SpectatorClient over a connected channel.
+     *
+     * @param channel the channel, connected to a gameLogic.SpectatorServer.
+     * @throws IOException if the channel cannot be made non-blocking.
+     */
+    public SpectatorClient(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.channel.configureBlocking(false);
+        this.input = ByteBuffer.allocate(16 * 1024);
+        this.boxes = new LinkedHashMap<>();
+        this.balls = new LinkedHashMap<>();
+        this.paddle = new int[5];
+        this.colors = new HashMap<>();
+        this.score = new Counter(0);
+        this.ballCount = new Counter(0);
+        this.hud = new Hud(new Rectangle(new Point(0, 0), SCREEN_WIDTH, HUD_HEIGHT));
+        this.hud.addIndicator("Score: ", this.score);
+        this.hud.addIndicator("Balls: ", this.ballCount);
+    }
+
+    /**
+     * Connects to a spectator server.
+     *
+     * @param host the server's host name.
+     * @param port the server's port.
+     * @return the client.
+     * @throws IOException if the connection fails.
+     */
+    public static SpectatorClient connect(String host, int port) throws IOException {
+        return new SpectatorClient(SocketChannel.open(new InetSocketAddress(host, port)));
+    }
+
+    /**
+     * Shows the game in a window until the server closes the connection.
+     *
+     * @param gui the window to draw in.
+     * @throws IOException if the connection fails.
+     */
+    public void run(GUI gui) throws IOException {
+        Sleeper sleeper = new Sleeper();
+        long nanosecondsPerFrame = 1_000_000_000L / FRAMES_PER_SECOND;
+        while (!this.closed) {
+            long frameStart = System.nanoTime();
+            poll();
+            DrawSurface d = gui.getDrawSurface();
+            drawOn(d);
+            gui.show(d);
+            long milliSecondLeftToSleep = (nanosecondsPerFrame - (System.nanoTime() - frameStart)) / 1_000_000;
+            if (milliSecondLeftToSleep > 0) {
+                sleeper.sleepFor(milliSecondLeftToSleep);
+            }
+        }
+        this.channel.close();
+    }
+
+    /**
+     * Reads what the server sent without blocking, and applies every complete message.
+     *
+     * @return the number of messages applied.
+     * @throws IOException if the connection fails or a message is malformed.
+     */
+    public int poll() throws IOException {
+        int applied = 0;
+        while (true) {
+            int n = this.channel.read(this.input);
+            if (n < 0) {
+                this.closed = true;
+            }
+            if (n > 0) {
+                this.bytesReceived += n;
+            }
+            this.input.flip();
+            while (this.input.remaining() >= 4 && this.input.remaining() - 4 >= this.input.getInt(
+                    this.input.position())) {
+                int length = this.input.getInt();
+                int end = this.input.position() + length;
+                apply();
+                this.input.position(end);
+                applied++;
+            }
+            if (this.input.remaining() >= 4 && this.input.getInt(this.input.position()) + 4 > this.input.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(this.input.getInt(this.input.position()) + 4);
+                this.input = larger.put(this.input).flip(); // Room for the whole message
+            }
+            this.input.compact();
+            if (n <= 0) {
+                this.messages += applied;
+                return applied;
+            }
+        }
+    }
+
+    /**
+     * Applies the message at the position of the input buffer.
+     *
+     * @throws IOException if the message type is unknown.
+     */
+    private void apply() throws IOException {
+        byte type = this.input.get();
+        int messageStep = this.input.getInt();
+        if (type == SpectatorFeed.KEYFRAME) {
+            applyKeyframe();
+            this.synced = true;
+            this.keyframes++;
+        } else if (type != SpectatorFeed.DELTA) {
+            throw new IOException("Unknown spectator message type " + type);
+        } else if (this.synced) {
+            applyDelta();
+        }
+        this.step = messageStep;
+    }
+
+    /**
+     * Replaces the whole state with a keyframe.
+     */
+    private void applyKeyframe() {
+        setScore(this.input.getInt());
+        for (int i = 0; i < 4; i++) {
+            this.paddle[i] = this.input.getShort();
+        }
+        this.paddle[4] = this.input.getInt();
+        this.boxes.clear();
+        int boxCount = this.input.getInt();
+        for (int k = 0; k < boxCount; k++) {
+            int x = this.input.getShort();
+            int y = this.input.getShort();
+            int[] box = new int[] {x, y, this.input.getShort(), this.input.getShort(), this.input.getInt(),
+                    this.input.get()};
+            this.boxes.put(corner(x, y), box);
+        }
+        this.balls.clear();
+        int ballTotal = this.input.getInt();
+        for (int k = 0; k < ballTotal; k++) {
+            int id = this.input.getInt();
+            this.balls.put(id, new int[] {this.input.getShort(), this.input.getShort(), this.input.getShort(),
+                    this.input.getInt()});
+        }
+        this.ballCount.increase(this.balls.size() - this.ballCount.getValue());
+    }
+
+    /**
+     * Applies the events of a delta.
+     *
+     * @throws IOException if an event type is unknown.
+     */
+    private void applyDelta() throws IOException {
+        int events = this.input.getInt();
+        for (int k = 0; k < events; k++) {
+            byte event = this.input.get();
+            switch (event) {
+                case SpectatorFeed.BALL_ADDED:
+                    int id = this.input.getInt();
+                    this.balls.put(id, new int[] {this.input.getShort(), this.input.getShort(),
+                            this.input.getShort(), this.input.getInt()});
+                    break;
+                case SpectatorFeed.BALL_MOVED:
+                    int[] moved = ball(this.input.getInt());
+                    moved[0] = this.input.getShort();
+                    moved[1] = this.input.getShort();
+                    break;
+                case SpectatorFeed.BALL_COLOR:
+                    ball(this.input.getInt())[3] = this.input.getInt();
+                    break;
+                case SpectatorFeed.BALL_REMOVED:
+                    this.balls.remove(this.input.getInt());
+                    break;
+                case SpectatorFeed.BLOCK_COLOR:
+                    int[] box = this.boxes.get(corner(this.input.getShort(), this.input.getShort()));
+                    int color = this.input.getInt();
+                    if (box != null) {
+                        box[4] = color;
+                    }
+                    break;
+                case SpectatorFeed.BLOCK_REMOVED:
+                    this.boxes.remove(corner(this.input.getShort(), this.input.getShort()));
+                    break;
+                case SpectatorFeed.PADDLE_MOVED:
+                    this.paddle[0] = this.input.getShort();
+                    break;
+                case SpectatorFeed.SCORE:
+                    setScore(this.input.getInt());
+                    break;
+                default:
+                    throw new IOException("Unknown spectator event type " + event);
+            }
+        }
+        this.ballCount.increase(this.balls.size() - this.ballCount.getValue());
+    }
+
+    /**
+     * Returns the state of a ball, creating it if a delta moves a ball the client does not know.
+     *
+     * @param id the id of the ball.
+     * @return x, y, radius and color of the ball.
+     */
+    private int[] ball(int id) {
+        return this.balls.computeIfAbsent(id, key -> new int[] {0, 0, 5, Color.WHITE.getRGB()});
+    }
+
+    /**
+     * Sets the score shown.
+     *
+     * @param value the score.
+     */
+    private void setScore(int value) {
+        this.score.increase(value - this.score.getValue());
+    }
+
+    /**
+     * Draws the game as it was in the last message: the boxes, the paddle, the balls and the heads-up display.
+     *
+     * @param d the DrawSurface to draw on.
+     */
+    public void drawOn(DrawSurface d) {
+        for (int[] box : this.boxes.values()) {
+            d.setColor(color(box[4]));
+            d.fillRectangle(box[0], box[1], box[2], box[3]);
+            if (box[5] != 0) {
+                d.setColor(Color.BLACK);
+                d.drawRectangle(box[0], box[1], box[2], box[3]);
+            }
+        }
+        d.setColor(color(this.paddle[4]));
+        d.fillRectangle(this.paddle[0], this.paddle[1], this.paddle[2], this.paddle[3]);
+        for (int[] b : this.balls.values()) {
+            d.setColor(color(b[3]));
+            d.fillCircle(b[0], b[1], b[2]);
+        }
+        this.hud.drawOn(d);
+    }
+
+    /**
+     * Returns the color of an ARGB value, created on first use.
+     *
+     * @param argb the ARGB value.
+     * @return the color.
+     */
+    private Color color(int argb) {
+        return this.colors.computeIfAbsent(argb, key -> new Color(key, true));
+    }
+
+    /**
+     * Packs the upper-left corner of a box into the key it is stored under.
+     *
+     * @param x the x coordinate.
+     * @param y the y coordinate.
+     * @return the key.
+     */
+    private static int corner(int x, int y) {
+        return x << 16 | y & 0xFFFF;
+    }
+
+    /**
+     * Checks whether a keyframe was received, so that the state shown is the game's.
+     *
+     * @return true if the client is in sync, false otherwise.
+     */
+    public boolean isSynced() {
+        return this.synced;
+    }
+
+    /**
+     * Checks whether the server closed the connection.
+     *
+     * @return true if the connection is closed, false otherwise.
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Returns the step of the last message applied.
+     *
+     * @return the number of steps the game had played.
+     */
+    public int getStep() {
+        return this.step;
+    }
+
+    /**
+     * Returns the score shown.
+     *
+     * @return the score.
+     */
+    public int getScore() {
+        return this.score.getValue();
+    }
+
+    /**
+     * Returns the x coordinate of the paddle shown.
+     *
+     * @return the rounded x coordinate.
+     */
+    public int getPaddleX() {
+        return this.paddle[0];
+    }
+
+    /**
+     * Returns the number of boxes shown, not counting the paddle.
+     *
+     * @return the number of boxes.
+     */
+    public int getBoxCount() {
+        return this.boxes.size();
+    }
+
+    /**
+     * Returns the color of the box at a corner.
+     *
+     * @param x the rounded x coordinate of the box's upper-left corner.
+     * @param y the rounded y coordinate of the box's upper-left corner.
+     * @return the color as an ARGB int, or 0 if there is no box there.
+     */
+    public int getBoxColor(int x, int y) {
+        int[] box = this.boxes.get(corner(x, y));
+        return box == null ? 0 : box[4];
+    }
+
+    /**
+     * Returns the state of a ball shown.
+     *
+     * @param id the id of the ball.
+     * @return a copy of x, y, radius and color, or null if there is no such ball.
+     */
+    public int[] getBall(int id) {
+        int[] b = this.balls.get(id);
+        return b == null ? null : b.clone();
+    }
+
+    /**
+     * Returns the number of balls shown.
+     *
+     * @return the number of balls.
+     */
+    public int getBallCount() {
+        return this.balls.size();
+    }
+
+    /**
+     * Returns the number of bytes received so far.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    /**
+     * Returns the number of messages applied so far.
+     *
+     * @return the number of messages.
+     */
+    public long getMessages() {
+        return this.messages;
+    }
+
+    /**
+     * Returns the number of keyframes applied so far.
+     *
+     * @return the number of keyframes.
+     */
+    public long getKeyframes() {
+        return this.keyframes;
+    }
+}
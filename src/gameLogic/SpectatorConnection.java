@@ -0,0 +1,107 @@
+package gameLogic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * The gameLogic.SpectatorConnection class holds the state of one spectator connected to a
+ * gameLogic.SpectatorServer: its channel and the messages queued for it and not fully written yet.
+ * Used only on the server's selector thread.
+ */
+class SpectatorConnection {
+    private SocketChannel channel;       // The spectator's channel, in non-blocking mode
+    private ArrayDeque<ByteBuffer> queue; // Messages not fully written yet, the first one partly written
+    private int queuedBytes;             // Bytes left to write in the queued messages
+    private boolean waitingForKeyframe;  // Whether deltas are skipped until the next keyframe
+
+    /**
+     * Constructs a gameLogic.SpectatorConnection that waits for a keyframe before receiving deltas.
+     *
+     * @param channel the spectator's channel, in non-blocking mode.
+     */
+    SpectatorConnection(SocketChannel channel) {
+        this.channel = channel;
+        this.queue = new ArrayDeque<>();
+        this.waitingForKeyframe = true;
+    }
+
+    /**
+     * Returns the spectator's channel.
+     *
+     * @return the channel.
+     */
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Checks whether deltas are skipped until the next keyframe.
+     *
+     * @return true if the spectator needs a keyframe, false otherwise.
+     */
+    boolean isWaitingForKeyframe() {
+        return this.waitingForKeyframe;
+    }
+
+    /**
+     * Queues a message for the spectator. The message is shared with the other spectators, so it is queued
+     * as a view of its own.
+     *
+     * @param message  the message, positioned at its start.
+     * @param keyframe true if the message is a keyframe, which the spectator no longer waits for.
+     */
+    void enqueue(ByteBuffer message, boolean keyframe) {
+        this.queue.add(message.duplicate());
+        this.queuedBytes += message.remaining();
+        if (keyframe) {
+            this.waitingForKeyframe = false;
+        }
+    }
+
+    /**
+     * Drops the queued messages of a spectator that cannot keep up, except a partly written one, and makes it
+     * wait for a keyframe. The stream stays well-formed: the spectator resumes from the keyframe.
+     */
+    void dropQueued() {
+        ByteBuffer partial = this.queue.peek();
+        this.queue.clear();
+        this.queuedBytes = 0;
+        if (partial != null && partial.position() > 0) {
+            this.queue.add(partial);
+            this.queuedBytes = partial.remaining();
+        }
+        this.waitingForKeyframe = true;
+    }
+
+    /**
+     * Returns the number of bytes queued and not written yet.
+     *
+     * @return the number of bytes.
+     */
+    int getQueuedBytes() {
+        return this.queuedBytes;
+    }
+
+    /**
+     * Writes as much of the queued messages as the channel takes without blocking.
+     *
+     * @return the number of bytes written.
+     * @throws IOException if the channel fails, e.g. the spectator disconnected.
+     */
+    int flush() throws IOException {
+        int written = 0;
+        while (!this.queue.isEmpty()) {
+            ByteBuffer message = this.queue.peek();
+            int n = this.channel.write(message);
+            written += n;
+            this.queuedBytes -= n;
+            if (message.hasRemaining()) {
+                break; // The socket buffer is full
+            }
+            this.queue.poll();
+        }
+        return written;
+    }
+}
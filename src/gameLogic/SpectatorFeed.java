@@ -0,0 +1,389 @@
+package gameLogic;
+
+import geometry.Rectangle;
+import spritesAndCollisonDetection.Ball;
+import spritesAndCollisonDetection.Block;
+import spritesAndCollisonDetection.BlockStore;
+import spritesAndCollisonDetection.EntityStore;
+import spritesAndCollisonDetection.Paddle;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The gameLogic.SpectatorFeed class streams the state of a running game to spectators, through a
+ * gameLogic.SpectatorServer, so that a gameLogic.SpectatorClient can draw the game as it is played.
+ * After each simulation step it sends a delta with only what changed during the step: the balls that
+ * moved or changed color, the blocks whose color changed or that were removed, the paddle's position and
+ * the score. Coordinates are rounded to shorts. The blocks are never scanned: spritesAndCollisonDetection.Block
+ * reports the color swap of each hit and gameLogic.BlockRemover each removal, finding the feed through the
+ * hitting ball's environment with SpectatorFeed.of, as for gameLogic.HitLog. Every KEYFRAME_INTERVAL steps,
+ * and whenever the server has no keyframe to start a new spectator from, a keyframe with the whole visible
+ * state is sent instead; the server starts and resynchronizes spectators from the last one. Nothing is built
+ * while nobody watches.
+ * <p>
+ * Every message (big-endian) is the length of the rest of the message as an int, a type byte, and the step
+ * as an int. A keyframe then holds the score as an int; the paddle as shorts x, y, width and height and an
+ * ARGB int; the number of boxes as an int, then each box as shorts x, y, width and height, an ARGB int and
+ * an outline byte; the number of balls as an int, then each ball as an int id, shorts x, y and radius, and
+ * an ARGB int. A delta holds the number of events as an int, then the events, each a type byte followed by
+ * its fields. Blocks are identified by their upper-left corner, which is unique in a level and the same for
+ * blocks in an spritesAndCollisonDetection.EntityStore and in a spritesAndCollisonDetection.BlockStore.
+ */
+public class SpectatorFeed {
+    static final byte KEYFRAME = 1;           // Message: the whole visible state
+    static final byte DELTA = 2;              // Message: the events of one step
+    static final byte BALL_ADDED = 1;         // Event: int id, short x, y, radius, int color
+    static final byte BALL_MOVED = 2;         // Event: int id, short x, y
+    static final byte BALL_COLOR = 3;         // Event: int id, int color
+    static final byte BALL_REMOVED = 4;       // Event: int id
+    static final byte BLOCK_COLOR = 5;        // Event: short x, y, int color
+    static final byte BLOCK_REMOVED = 6;      // Event: short x, y
+    static final byte PADDLE_MOVED = 7;       // Event: short x
+    static final byte SCORE = 8;              // Event: int score
+    public static final int KEYFRAME_INTERVAL = 120; // Steps between keyframes, two seconds at 60 steps
+    private SpectatorServer server;           // Sends the messages to the spectators
+    private EntityStore entities;             // The game's entities: walls, blocks, paddle and balls
+    private GameEnvironment environment;      // Holds the game's block stores
+    private List<Ball> balls;                 // The balls in the game
+    private Counter score;                    // The player's score
+    private Paddle paddle;                    // The player's paddle, or null before the game is initialized
+    private ByteBuffer message;               // The message being built; reused between steps
+    private ByteBuffer blockEvents;           // Block events reported during the current step
+    private int blockEventCount;              // Number of events in blockEvents
+    private Map<Integer, int[]> sentBalls;    // Last sent x, y and color of each ball, and the step it was seen
+    private int sentPaddleX;                  // Last sent x coordinate of the paddle
+    private int sentScore;                    // Last sent score
+    private int sinceKeyframe;                // Steps since the last keyframe
+    private boolean keyframeDue;              // Whether the next message must be a keyframe
+    private long keyframes;                   // Keyframes sent
+    private long deltas;                      // Deltas sent
+
+    /**
+     * Constructs a gameLogic.SpectatorFeed of a game's state.
+     *
+     * @param server      the server sending the messages.
+     * @param entities    the game's entities.
+     * @param environment the game's environment, holding its block stores.
+     * @param balls       the game's balls, kept up to date by the game.
+     * @param score       the player's score.
+     */
+    public SpectatorFeed(SpectatorServer server, EntityStore entities, GameEnvironment environment,
+                         List<Ball> balls, Counter score) {
+        this.server = server;
+        this.entities = entities;
+        this.environment = environment;
+        this.balls = balls;
+        this.score = score;
+        this.message = ByteBuffer.allocate(4096);
+        this.blockEvents = ByteBuffer.allocate(256);
+        this.sentBalls = new HashMap<>();
+        this.keyframeDue = true;
+    }
+
+    /**
+     * Returns the spectator feed of the game a ball plays in.
+     *
+     * @param ball the ball.
+     * @return the feed, or null if the game is not streamed.
+     */
+    public static SpectatorFeed of(Ball ball) {
+        GameEnvironment environment = ball.getGameEnvironment();
+        return environment == null ? null : environment.getSpectatorFeed();
+    }
+
+    /**
+     * Sets the player's paddle, sent apart from the other boxes.
+     *
+     * @param paddle the paddle.
+     */
+    public void setPaddle(Paddle paddle) {
+        this.paddle = paddle;
+        this.keyframeDue = true;
+    }
+
+    /**
+     * Returns the server sending the messages.
+     *
+     * @return the server.
+     */
+    public SpectatorServer getServer() {
+        return this.server;
+    }
+
+    /**
+     * Makes the next message a keyframe, e.g. after blocks were added in a way not reported as events.
+     */
+    public void requestKeyframe() {
+        this.keyframeDue = true;
+    }
+
+    /**
+     * Reports that a block changed color, after a hit swapped it with the ball's.
+     *
+     * @param block the block.
+     */
+    public void blockHit(Block block) {
+        if (this.server.getSpectators() == 0) {
+            return;
+        }
+        this.blockEvents = ensure(this.blockEvents, 9);
+        putCorner(this.blockEvents.put(BLOCK_COLOR), block.getCollisionRectangle());
+        this.blockEvents.putInt(block.getColor().getRGB());
+        this.blockEventCount++;
+    }
+
+    /**
+     * Reports that a block was removed from the game.
+     *
+     * @param block the block.
+     */
+    public void blockRemoved(Block block) {
+        if (this.server.getSpectators() == 0) {
+            return;
+        }
+        this.blockEvents = ensure(this.blockEvents, 5);
+        putCorner(this.blockEvents.put(BLOCK_REMOVED), block.getCollisionRectangle());
+        this.blockEventCount++;
+    }
+
+    /**
+     * Sends what changed during a simulation step, or a keyframe when one is due. Called by the game thread
+     * after each step; does nothing while nobody watches.
+     *
+     * @param step the number of steps played.
+     */
+    public void stepDone(int step) {
+        if (this.server.takeKeyframeRequest()) {
+            this.keyframeDue = true;
+        }
+        if (this.server.getSpectators() == 0 || this.paddle == null) {
+            this.blockEvents.clear();
+            this.blockEventCount = 0;
+            return;
+        }
+        if (this.keyframeDue || ++this.sinceKeyframe >= KEYFRAME_INTERVAL) {
+            sendKeyframe(step);
+        } else {
+            sendDelta(step);
+        }
+        this.blockEvents.clear();
+        this.blockEventCount = 0;
+    }
+
+    /**
+     * Returns the number of keyframes sent.
+     *
+     * @return the number of keyframes.
+     */
+    public long getKeyframes() {
+        return this.keyframes;
+    }
+
+    /**
+     * Returns the number of deltas sent.
+     *
+     * @return the number of deltas.
+     */
+    public long getDeltas() {
+        return this.deltas;
+    }
+
+    /**
+     * Stops streaming and disconnects the spectators.
+     */
+    public void close() {
+        this.server.close();
+    }
+
+    /**
+     * Sends the whole visible state: the score, the paddle, the boxes of the block stores and of the entity
+     * store, and the balls. The block events of the step are part of it already.
+     *
+     * @param step the number of steps played.
+     */
+    private void sendKeyframe(int step) {
+        begin(KEYFRAME, step);
+        this.message.putInt(this.score.getValue());
+        Rectangle rect = this.paddle.getCollisionRectangle();
+        putCorner(this.message, rect);
+        this.message.putShort(quantize(rect.getWidth())).putShort(quantize(rect.getHeight()));
+        this.message.putInt(this.paddle.getColor().getRGB());
+        int countAt = this.message.position();
+        int boxes = 0;
+        this.message.putInt(0);
+        // Block stores are drawn before the entities
+        for (BlockStore store : this.environment.getBlockStores()) {
+            for (int id = 0; id < store.size(); id++) {
+                if (!store.isRemoved(id)) {
+                    this.message = ensure(this.message, 13);
+                    this.message.putShort(quantize(store.getX(id))).putShort(quantize(store.getY(id)))
+                            .putShort(quantize(store.getWidth(id))).putShort(quantize(store.getHeight(id)))
+                            .putInt(store.getColor(id).getRGB()).put((byte) 1);
+                    boxes++;
+                }
+            }
+        }
+        for (int k = 0; k < this.entities.drawnCount(); k++) {
+            int e = this.entities.drawnAt(k);
+            Rectangle box = this.entities.getRectangle(e);
+            if (this.entities.getShape(e) != EntityStore.BOX || box == rect) { // The paddle is sent apart
+                continue;
+            }
+            this.message = ensure(this.message, 13);
+            putCorner(this.message, box);
+            this.message.putShort(quantize(box.getWidth())).putShort(quantize(box.getHeight()))
+                    .putInt(this.entities.getColor(e).getRGB()).put((byte) (this.entities.isOutlined(e) ? 1 : 0));
+            boxes++;
+        }
+        this.message.putInt(countAt, boxes);
+        this.message = ensure(this.message, 4 + 14 * this.balls.size());
+        this.message.putInt(this.balls.size());
+        this.sentBalls.clear();
+        for (Ball ball : this.balls) {
+            int[] sent = new int[] {quantize(ball.getCenter().getX()), quantize(ball.getCenter().getY()),
+                    ball.getColor().getRGB(), step};
+            this.message.putInt(ball.getId()).putShort((short) sent[0]).putShort((short) sent[1])
+                    .putShort((short) ball.getSize()).putInt(sent[2]);
+            this.sentBalls.put(ball.getId(), sent);
+        }
+        this.sentPaddleX = quantize(rect.getUpperLeft().getX());
+        this.sentScore = this.score.getValue();
+        this.keyframeDue = false;
+        this.sinceKeyframe = 0;
+        this.keyframes++;
+        send();
+    }
+
+    /**
+     * Sends the events of a step: the block events reported during it, then the changes of the balls,
+     * the paddle and the score since the last message. Nothing is sent if nothing changed.
+     *
+     * @param step the number of steps played.
+     */
+    private void sendDelta(int step) {
+        begin(DELTA, step);
+        int countAt = this.message.position();
+        this.message.putInt(0);
+        int events = this.blockEventCount;
+        this.blockEvents.flip();
+        this.message = ensure(this.message, this.blockEvents.remaining());
+        this.message.put(this.blockEvents);
+        for (Ball ball : this.balls) {
+            int x = quantize(ball.getCenter().getX());
+            int y = quantize(ball.getCenter().getY());
+            int color = ball.getColor().getRGB();
+            int[] sent = this.sentBalls.get(ball.getId());
+            this.message = ensure(this.message, 28);
+            if (sent == null) {
+                this.message.put(BALL_ADDED).putInt(ball.getId()).putShort((short) x).putShort((short) y)
+                        .putShort((short) ball.getSize()).putInt(color);
+                this.sentBalls.put(ball.getId(), new int[] {x, y, color, step});
+                events++;
+                continue;
+            }
+            if (x != sent[0] || y != sent[1]) {
+                this.message.put(BALL_MOVED).putInt(ball.getId()).putShort((short) x).putShort((short) y);
+                events++;
+            }
+            if (color != sent[2]) {
+                this.message.put(BALL_COLOR).putInt(ball.getId()).putInt(color);
+                events++;
+            }
+            sent[0] = x;
+            sent[1] = y;
+            sent[2] = color;
+            sent[3] = step;
+        }
+        Iterator<Map.Entry<Integer, int[]>> sent = this.sentBalls.entrySet().iterator();
+        while (sent.hasNext()) {
+            Map.Entry<Integer, int[]> entry = sent.next();
+            if (entry.getValue()[3] != step) { // Not in the game any more
+                this.message = ensure(this.message, 5);
+                this.message.put(BALL_REMOVED).putInt(entry.getKey());
+                sent.remove();
+                events++;
+            }
+        }
+        this.message = ensure(this.message, 8);
+        int paddleX = quantize(this.paddle.getCollisionRectangle().getUpperLeft().getX());
+        if (paddleX != this.sentPaddleX) {
+            this.message.put(PADDLE_MOVED).putShort((short) paddleX);
+            this.sentPaddleX = paddleX;
+            events++;
+        }
+        if (this.score.getValue() != this.sentScore) {
+            this.sentScore = this.score.getValue();
+            this.message.put(SCORE).putInt(this.sentScore);
+            events++;
+        }
+        if (events == 0) {
+            return;
+        }
+        this.message.putInt(countAt, events);
+        this.deltas++;
+        send();
+    }
+
+    /**
+     * Starts building a message, leaving room for its length.
+     *
+     * @param type the type of the message, KEYFRAME or DELTA.
+     * @param step the number of steps played.
+     */
+    private void begin(byte type, int step) {
+        this.message.clear();
+        this.message.putInt(0).put(type).putInt(step);
+        this.message = ensure(this.message, 32);
+    }
+
+    /**
+     * Completes the message being built with its length and hands a copy of it to the server.
+     */
+    private void send() {
+        this.message.putInt(0, this.message.position() - 4);
+        this.message.flip();
+        ByteBuffer copy = ByteBuffer.allocate(this.message.remaining());
+        copy.put(this.message).flip();
+        this.server.publish(copy);
+    }
+
+    /**
+     * Writes the upper-left corner of a rectangle as two shorts.
+     *
+     * @param buffer the buffer to write to.
+     * @param rect   the rectangle.
+     */
+    private static void putCorner(ByteBuffer buffer, Rectangle rect) {
+        buffer.putShort(quantize(rect.getUpperLeft().getX())).putShort(quantize(rect.getUpperLeft().getY()));
+    }
+
+    /**
+     * Makes room in a buffer being written, growing it if needed.
+     *
+     * @param buffer the buffer.
+     * @param bytes  the number of bytes about to be written.
+     * @return the buffer, or a larger copy of it with the same content and position.
+     */
+    private static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    /**
+     * Rounds a coordinate to the nearest short, clamping it to the range of a short.
+     *
+     * @param coordinate the coordinate.
+     * @return the rounded coordinate.
+     */
+    private static short quantize(double coordinate) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(coordinate)));
+    }
+}
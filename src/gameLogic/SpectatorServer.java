@@ -0,0 +1,361 @@
+package gameLogic;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The gameLogic.SpectatorServer class sends the messages of a gameLogic.SpectatorFeed to any number of
+ * spectators over TCP. All the networking runs on one background thread with a non-blocking selector:
+ * it accepts spectators, and writes to each one as much as its socket takes. The game thread only hands
+ * messages over through a lock-free queue and wakes the selector, so it never waits for the network.
+ * <p>
+ * The server keeps the last keyframe and the deltas sent after it, up to half of MAX_QUEUED_BYTES. A new
+ * spectator starts from those, and a spectator that falls more than MAX_QUEUED_BYTES behind has its queued
+ * deltas dropped and is resynchronized from them too, so a slow spectator neither grows the server's memory
+ * nor holds back the others, and only its own connection carries the resync. The feed is asked for a
+ * keyframe only when the server has none to start from, e.g. for the first spectator; otherwise a spectator
+ * left without one waits for the next periodic keyframe.
+ */
+public class SpectatorServer {
+    public static final int MAX_QUEUED_BYTES = 64 * 1024; // Bytes a spectator may fall behind before resyncing
+    private static final int SEND_BUFFER_BYTES = 16 * 1024; // Socket send buffer of each spectator
+    private ServerSocketChannel server;           // Accepts spectators, in non-blocking mode
+    private Selector selector;                    // Watches the server and the spectators
+    private Thread thread;                        // The selector thread
+    private ConcurrentLinkedQueue<ByteBuffer> outbox; // Messages from the game thread, not sent yet
+    private AtomicBoolean keyframeWanted;         // Whether a spectator waits for a keyframe
+    private ByteBuffer lastKeyframe;              // The last keyframe sent, or null if the stream since is not kept
+    private List<ByteBuffer> sinceKeyframe;       // The deltas sent after lastKeyframe
+    private int sinceKeyframeBytes;               // Bytes of lastKeyframe and sinceKeyframe
+    private List<SpectatorConnection> connections; // The connected spectators; used on the selector thread only
+    private ByteBuffer discard;                   // What spectators send is read into it and ignored
+    private volatile boolean open;                // Whether the server runs
+    private volatile int spectators;              // Number of connected spectators
+    private volatile long bytesSent;              // Bytes written to all spectators
+    private volatile long resyncs;                // Times a spectator fell behind and was resynchronized
+
+    /**
+     * Constructs a gameLogic.SpectatorServer listening on a port, and starts its selector thread.
+     *
+     * @param address the address to listen on, e.g. new InetSocketAddress(port); port 0 picks a free port.
+     * @throws IOException if the server cannot listen on the address.
+     */
+    public SpectatorServer(InetSocketAddress address) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.configureBlocking(false);
+        this.server.bind(address);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.outbox = new ConcurrentLinkedQueue<>();
+        this.keyframeWanted = new AtomicBoolean();
+        this.connections = new ArrayList<>();
+        this.sinceKeyframe = new ArrayList<>();
+        this.discard = ByteBuffer.allocate(512);
+        this.open = true;
+        this.thread = new Thread(this::serve, "spectator-server");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of connected spectators.
+     *
+     * @return the number of spectators.
+     */
+    public int getSpectators() {
+        return this.spectators;
+    }
+
+    /**
+     * Returns the number of bytes written to all spectators so far.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    /**
+     * Returns the number of times a spectator fell behind and had its queued deltas dropped, each time
+     * resynchronized on its own connection.
+     *
+     * @return the number of resynchronizations.
+     */
+    public long getResyncs() {
+        return this.resyncs;
+    }
+
+    /**
+     * Checks whether a spectator waits for a keyframe, and clears the request. Called by the game thread.
+     *
+     * @return true if the next message should be a keyframe, false otherwise.
+     */
+    public boolean takeKeyframeRequest() {
+        return this.keyframeWanted.getAndSet(false);
+    }
+
+    /**
+     * Sends a message to every spectator. Safe to call from any thread; never blocks. The message must not
+     * be changed afterwards.
+     *
+     * @param message the message, framed as described in gameLogic.SpectatorFeed, positioned at its start.
+     */
+    public void publish(ByteBuffer message) {
+        this.outbox.offer(message);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Stops the server and disconnects the spectators. Messages not sent yet are dropped.
+     */
+    public void close() {
+        this.open = false;
+        this.selector.wakeup();
+        try {
+            this.thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The selector loop: accepts spectators, writes the queued messages, and notices disconnections,
+     * until the server is closed.
+     */
+    private void serve() {
+        try {
+            while (this.open) {
+                this.selector.select();
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    SpectatorConnection connection = (SpectatorConnection) key.attachment();
+                    if (key.isReadable()) {
+                        read(key, connection);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(key, connection);
+                    }
+                }
+                distribute();
+            }
+        } catch (IOException e) {
+            System.err.println("Spectator server stopped: " + e.getMessage());
+        } finally {
+            for (SpectatorConnection connection : new ArrayList<>(this.connections)) {
+                disconnect(connection.getChannel().keyFor(this.selector), connection);
+            }
+            closeQuietly(this.server);
+            closeQuietly(this.selector);
+        }
+    }
+
+    /**
+     * Accepts the pending spectators, and starts them from the last keyframe, or asks the feed for one if
+     * there is none.
+     *
+     * @throws IOException if the server fails.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true); // Deltas are small and sent every step
+            // A small socket buffer makes a slow spectator fall behind in its queue, where it can be resynchronized,
+            // rather than in the socket, where stale deltas would pile up
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_BYTES);
+            SpectatorConnection connection = new SpectatorConnection(channel);
+            channel.register(this.selector, SelectionKey.OP_READ, connection);
+            this.connections.add(connection);
+            this.spectators = this.connections.size();
+            if (!catchUp(connection)) {
+                this.keyframeWanted.set(true);
+            }
+        }
+    }
+
+    /**
+     * Reads and ignores what a spectator sends, and disconnects it when it closes its end.
+     *
+     * @param key        the spectator's selection key.
+     * @param connection the spectator.
+     */
+    private void read(SelectionKey key, SpectatorConnection connection) {
+        try {
+            int n;
+            do {
+                this.discard.clear();
+                n = connection.getChannel().read(this.discard);
+            } while (n > 0);
+            if (n < 0) {
+                disconnect(key, connection);
+            }
+        } catch (IOException e) {
+            disconnect(key, connection);
+        }
+    }
+
+    /**
+     * Hands the messages from the game thread to the spectators, and writes as much as their sockets take.
+     * Spectators waiting for a keyframe skip the deltas; spectators too far behind are resynchronized from
+     * the last keyframe, each on its own, or wait for the next keyframe if the server has none.
+     */
+    private void distribute() {
+        ByteBuffer message;
+        while ((message = this.outbox.poll()) != null) {
+            boolean keyframe = message.get(message.position() + 4) == SpectatorFeed.KEYFRAME;
+            keep(message, keyframe);
+            for (SpectatorConnection connection : this.connections) {
+                if (!keyframe && connection.isWaitingForKeyframe()) {
+                    continue;
+                }
+                if (connection.getQueuedBytes() + message.remaining() > MAX_QUEUED_BYTES) {
+                    connection.dropQueued();
+                    this.resyncs++;
+                    if (!keyframe) {
+                        catchUp(connection);
+                        continue;
+                    }
+                    // A keyframe replaces whatever was queued, so the queue of a stuck spectator stays bounded
+                }
+                connection.enqueue(message, keyframe);
+            }
+        }
+        for (SpectatorConnection connection : new ArrayList<>(this.connections)) {
+            SelectionKey key = connection.getChannel().keyFor(this.selector);
+            if (connection.getQueuedBytes() > 0 && key != null && key.isValid()) {
+                flush(key, connection);
+            }
+        }
+    }
+
+    /**
+     * Keeps a message for spectators that start or resynchronize later: a keyframe replaces what was kept,
+     * and a delta is added to it. If they grow past half of MAX_QUEUED_BYTES nothing is kept until the next
+     * keyframe, so that a spectator caught up has room to fall behind again before it is resynchronized.
+     *
+     * @param message  the message, positioned at its start.
+     * @param keyframe true if the message is a keyframe.
+     */
+    private void keep(ByteBuffer message, boolean keyframe) {
+        if (keyframe) {
+            this.lastKeyframe = message;
+            this.sinceKeyframe.clear();
+            this.sinceKeyframeBytes = message.remaining();
+        } else if (this.lastKeyframe != null) {
+            this.sinceKeyframeBytes += message.remaining();
+            if (this.sinceKeyframeBytes > MAX_QUEUED_BYTES / 2) {
+                forget();
+            } else {
+                this.sinceKeyframe.add(message);
+            }
+        }
+    }
+
+    /**
+     * Drops the kept keyframe and deltas.
+     */
+    private void forget() {
+        this.lastKeyframe = null;
+        this.sinceKeyframe.clear();
+        this.sinceKeyframeBytes = 0;
+    }
+
+    /**
+     * Queues the kept keyframe and the deltas after it for a spectator waiting for a keyframe, which brings
+     * it to the latest message without a keyframe being sent to the others.
+     *
+     * @param connection the spectator.
+     * @return true if the spectator was caught up, false if no keyframe is kept and it still waits for one.
+     */
+    private boolean catchUp(SpectatorConnection connection) {
+        if (this.lastKeyframe == null) {
+            return false;
+        }
+        connection.enqueue(this.lastKeyframe, true);
+        for (ByteBuffer delta : this.sinceKeyframe) {
+            connection.enqueue(delta, false);
+        }
+        return true;
+    }
+
+    /**
+     * Writes as much of a spectator's queued messages as its socket takes, and watches for the socket to
+     * take more if some are left.
+     *
+     * @param key        the spectator's selection key.
+     * @param connection the spectator.
+     */
+    private void flush(SelectionKey key, SpectatorConnection connection) {
+        try {
+            this.bytesSent += connection.flush();
+        } catch (IOException e) {
+            disconnect(key, connection);
+            return;
+        }
+        int interest = SelectionKey.OP_READ;
+        if (connection.getQueuedBytes() > 0) {
+            interest |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(interest);
+    }
+
+    /**
+     * Disconnects a spectator.
+     *
+     * @param key        the spectator's selection key, or null.
+     * @param connection the spectator.
+     */
+    private void disconnect(SelectionKey key, SpectatorConnection connection) {
+        if (key != null) {
+            key.cancel();
+        }
+        closeQuietly(connection.getChannel());
+        this.connections.remove(connection);
+        this.spectators = this.connections.size();
+        if (this.connections.isEmpty()) {
+            forget(); // The feed sends nothing while nobody watches, so what was kept gets stale
+        }
+    }
+
+    /**
+     * Closes a channel or a selector, ignoring failures.
+     *
+     * @param closeable the object to close.
+     */
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            return; // Nothing left to release
+        }
+    }
+}
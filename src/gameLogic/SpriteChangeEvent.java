@@ -0,0 +1,63 @@
+package gameLogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The gameLogic.SpriteChangeEvent class is a JDK Flight Recorder event for a sprite added to or removed from
+ * a sprite collection, or an entity added to or removed from the game's entity store.
+ */
+@Name("arkanoid.SpriteChange")
+@Label("Sprite Change")
+@Category({"Arkanoid", "World"})
+@Description("A sprite or entity added to the world or removed from it")
+public class SpriteChangeEvent extends Event {
+    @Label("Added")
+    @Description("Whether the sprite was added, rather than removed")
+    private boolean added;
+
+    @Label("Sprite Class")
+    @Description("The class of the sprite, or of the object an entity notifies every step")
+    private Class<?> spriteClass;
+
+    @Label("Entity")
+    @Description("The id of the entity, or -1 for a sprite")
+    private int entity;
+
+    /**
+     * Constructs a new gameLogic.SpriteChangeEvent about a sprite.
+     */
+    public SpriteChangeEvent() {
+        this.entity = -1;
+    }
+
+    /**
+     * Sets whether the sprite was added, rather than removed.
+     *
+     * @param added true if it was added, false if it was removed.
+     */
+    public void setAdded(boolean added) {
+        this.added = added;
+    }
+
+    /**
+     * Sets the class of the sprite.
+     *
+     * @param spriteClass the class, or null if unknown.
+     */
+    public void setSpriteClass(Class<?> spriteClass) {
+        this.spriteClass = spriteClass;
+    }
+
+    /**
+     * Sets the id of the entity the event is about.
+     *
+     * @param entity the id of the entity.
+     */
+    public void setEntity(int entity) {
+        this.entity = entity;
+    }
+}
@@ -0,0 +1,94 @@
+package geometry;
+
+/**
+ * The geometry.FixedPoint class holds the arithmetic of the fixed-point physics mode.
+ * Values are stored in a long as Q47.16 numbers (16 fractional bits), so every operation is integer math
+ * and gives the same bits on every run and every JVM. Conversions to and from double are exact for
+ * any value produced here, which lets fixed-point results flow through the double-based APIs unchanged.
+ */
+public final class FixedPoint {
+    public static final int SHIFT = 16;            // Number of fractional bits
+    public static final long ONE = 1L << SHIFT;    // The fixed-point representation of 1
+
+    /**
+     * Not instantiable; all operations are static.
+     */
+    private FixedPoint() {
+    }
+
+    /**
+     * Converts a double to fixed point, rounding to the nearest representable value.
+     *
+     * @param value the value to convert.
+     * @return the fixed-point value.
+     */
+    public static long fromDouble(double value) {
+        return Math.round(value * ONE);
+    }
+
+    /**
+     * Converts a fixed-point value to a double. The conversion is exact.
+     *
+     * @param value the fixed-point value.
+     * @return the value as a double.
+     */
+    public static double toDouble(long value) {
+        return (double) value / ONE;
+    }
+
+    /**
+     * Multiplies two fixed-point values.
+     *
+     * @param a the first factor.
+     * @param b the second factor.
+     * @return the fixed-point product, rounded towards negative infinity.
+     */
+    public static long mul(long a, long b) {
+        return (a * b) >> SHIFT;
+    }
+
+    /**
+     * Divides two fixed-point values.
+     *
+     * @param a the dividend.
+     * @param b the divisor, which must not be zero.
+     * @return the fixed-point quotient, rounded towards zero.
+     */
+    public static long div(long a, long b) {
+        return (a << SHIFT) / b;
+    }
+
+    /**
+     * Returns the square root of a non-negative fixed-point value.
+     *
+     * @param value the fixed-point value.
+     * @return the fixed-point square root, rounded down.
+     */
+    public static long sqrt(long value) {
+        return isqrt(value << SHIFT);
+    }
+
+    /**
+     * Returns the integer square root of a non-negative long, computed bit by bit.
+     *
+     * @param n the number.
+     * @return the largest integer whose square does not exceed n.
+     */
+    public static long isqrt(long n) {
+        long root = 0;
+        long bit = 1L << 62;
+        while (bit > n) {
+            bit >>= 2;
+        }
+        while (bit != 0) {
+            if (n >= root + bit) {
+                n -= root + bit;
+                root = (root >> 1) + bit;
+            } else {
+                root >>= 1;
+            }
+            bit >>= 2;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,179 @@
+package geometry;
+
+/**
+ * The geometry.Intersections class holds the low-level intersection kernels used by the geometry and
+ * collision code. The kernels work on raw coordinates, keep no state, and avoid square roots and slope
+ * divisions: segments are intersected parametrically with cross products, and segments or rays are
+ * clipped against axis-aligned boxes with the slab method. Misses are reported as NaN.
+ */
+public final class Intersections {
+
+    /**
+     * Not instantiable; all kernels are static.
+     */
+    private Intersections() {
+    }
+
+    /**
+     * Returns the z component of the cross product of two 2D vectors.
+     *
+     * @param ax the x component of the first vector.
+     * @param ay the y component of the first vector.
+     * @param bx the x component of the second vector.
+     * @param by the y component of the second vector.
+     * @return ax * by - ay * bx.
+     */
+    public static double cross(double ax, double ay, double bx, double by) {
+        return ax * by - ay * bx;
+    }
+
+    /**
+     * Intersects segment AB with segment CD.
+     * Parallel and collinear segments have no single intersection point and are reported as a miss.
+     *
+     * @param ax the x coordinate of A.
+     * @param ay the y coordinate of A.
+     * @param bx the x coordinate of B.
+     * @param by the y coordinate of B.
+     * @param cx the x coordinate of C.
+     * @param cy the y coordinate of C.
+     * @param dx the x coordinate of D.
+     * @param dy the y coordinate of D.
+     * @return the parameter t in [0, 1] of the intersection point A + t(B - A), or NaN if there is none.
+     */
+    public static double segmentIntersection(double ax, double ay, double bx, double by,
+                                             double cx, double cy, double dx, double dy) {
+        double rx = bx - ax;
+        double ry = by - ay;
+        double sx = dx - cx;
+        double sy = dy - cy;
+        double qx = cx - ax;
+        double qy = cy - ay;
+        double denominator = cross(rx, ry, sx, sy);
+        double tNumerator = cross(qx, qy, sx, sy);
+        double uNumerator = cross(qx, qy, rx, ry);
+        if (denominator < 0) {
+            denominator = -denominator;
+            tNumerator = -tNumerator;
+            uNumerator = -uNumerator;
+        }
+        // Both parameters must lie in [0, 1]; compare numerators to avoid dividing for a miss
+        if (denominator == 0 || tNumerator < 0 || tNumerator > denominator
+                || uNumerator < 0 || uNumerator > denominator) {
+            return Double.NaN;
+        }
+        return tNumerator / denominator;
+    }
+
+    /**
+     * Checks whether segments AB and CD are collinear and share at least one point.
+     *
+     * @param ax the x coordinate of A.
+     * @param ay the y coordinate of A.
+     * @param bx the x coordinate of B.
+     * @param by the y coordinate of B.
+     * @param cx the x coordinate of C.
+     * @param cy the y coordinate of C.
+     * @param dx the x coordinate of D.
+     * @param dy the y coordinate of D.
+     * @return true if the segments lie on the same line and overlap, false otherwise.
+     */
+    public static boolean collinearOverlap(double ax, double ay, double bx, double by,
+                                           double cx, double cy, double dx, double dy) {
+        double rx = bx - ax;
+        double ry = by - ay;
+        if (cross(rx, ry, cx - ax, cy - ay) != 0 || cross(rx, ry, dx - ax, dy - ay) != 0) {
+            return false;
+        }
+        // Project both segments on AB (scaled by |AB|^2) and compare the intervals
+        double length = rx * rx + ry * ry;
+        double c = (cx - ax) * rx + (cy - ay) * ry;
+        double d = (dx - ax) * rx + (dy - ay) * ry;
+        return Math.max(0, Math.min(c, d)) <= Math.min(length, Math.max(c, d));
+    }
+
+    /**
+     * Returns the time at which a point moving along one axis enters the slab [min, max].
+     *
+     * @param p   the starting coordinate.
+     * @param d   the movement per unit of time along the axis.
+     * @param min the lower bound of the slab.
+     * @param max the upper bound of the slab.
+     * @return the entry time; negative infinity if the point never leaves the slab, NaN if it never enters.
+     */
+    public static double slabEntry(double p, double d, double min, double max) {
+        if (d == 0) {
+            return p < min || p > max ? Double.NaN : Double.NEGATIVE_INFINITY;
+        }
+        return Math.min((min - p) / d, (max - p) / d);
+    }
+
+    /**
+     * Returns the time at which a point moving along one axis leaves the slab [min, max].
+     *
+     * @param p   the starting coordinate.
+     * @param d   the movement per unit of time along the axis.
+     * @param min the lower bound of the slab.
+     * @param max the upper bound of the slab.
+     * @return the exit time; positive infinity if the point never leaves the slab, NaN if it never enters.
+     */
+    public static double slabExit(double p, double d, double min, double max) {
+        if (d == 0) {
+            return p < min || p > max ? Double.NaN : Double.POSITIVE_INFINITY;
+        }
+        return Math.max((min - p) / d, (max - p) / d);
+    }
+
+    /**
+     * Finds where segment P0P1 first crosses the boundary of an axis-aligned box.
+     * A segment starting outside the box crosses where it enters; one starting inside crosses where it leaves.
+     *
+     * @param x0   the x coordinate of P0.
+     * @param y0   the y coordinate of P0.
+     * @param x1   the x coordinate of P1.
+     * @param y1   the y coordinate of P1.
+     * @param minX the left side of the box.
+     * @param minY the top side of the box.
+     * @param maxX the right side of the box.
+     * @param maxY the bottom side of the box.
+     * @return the parameter t in [0, 1] of the crossing point P0 + t(P1 - P0), or NaN if there is none.
+     */
+    public static double segmentBoxIntersection(double x0, double y0, double x1, double y1,
+                                                double minX, double minY, double maxX, double maxY) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double tEnter = Math.max(slabEntry(x0, dx, minX, maxX), slabEntry(y0, dy, minY, maxY));
+        double tExit = Math.min(slabExit(x0, dx, minX, maxX), slabExit(y0, dy, minY, maxY));
+        if (!(tEnter <= tExit) || tExit < 0) {
+            return Double.NaN; // Also rejects the NaN of a slab that is never entered
+        }
+        double t = tEnter >= 0 ? tEnter : tExit;
+        return t <= 1 ? t : Double.NaN;
+    }
+
+    /**
+     * Finds when a point moving from P with velocity D first comes within radius r of a center C.
+     * The point is assumed to start outside the circle.
+     *
+     * @param px the x coordinate of P.
+     * @param py the y coordinate of P.
+     * @param dx the x component of D.
+     * @param dy the y component of D.
+     * @param cx the x coordinate of C.
+     * @param cy the y coordinate of C.
+     * @param r  the radius of the circle.
+     * @return the non-negative time of the first contact, or NaN if the point never reaches the circle.
+     */
+    public static double rayCircleEntry(double px, double py, double dx, double dy,
+                                        double cx, double cy, double r) {
+        double ox = px - cx;
+        double oy = py - cy;
+        double a = dx * dx + dy * dy;
+        double halfB = ox * dx + oy * dy;
+        double discriminant = halfB * halfB - a * (ox * ox + oy * oy - r * r);
+        if (a == 0 || discriminant < 0 || halfB > 0) {
+            return Double.NaN; // Not moving, missing the circle, or moving away from it
+        }
+        return (-halfB - Math.sqrt(discriminant)) / a;
+    }
+}
@@ -1,7 +1,5 @@
 package geometry;
 
-import java.util.List;
-
 /**
  * Represents a line segment in a 2D space, defined by two points (start and end).
  * This class provides methods to compute properties of the line and check for intersections with other lines.
@@ -11,7 +9,6 @@ import java.util.List;
 public class Line {
     private Point start; // The start point of the line
     private Point end; // The end point of the line
-    private boolean findInfinite = false; // Flag to indicate if the line is infinite
     private static final double THRESHOLD = 1e-10; // A small threshold for comparing doubles
 
     /**
@@ -94,16 +91,13 @@ public class Line {
 
     /**
      * Checks if this line intersects with another line.
+     * Collinear lines that overlap are considered intersecting.
      *
      * @param other the other line to check intersection with.
      * @return true if the lines intersect, false otherwise.
      */
     public boolean isIntersecting(Line other) {
-        boolean isInter = this.intersectionWith(other) != null;
-        if (findInfinite) {
-            return true; // Infinite lines are considered intersecting
-        }
-        return isInter;
+        return this.intersectionWith(other) != null || this.overlaps(other);
     }
 
     /**
@@ -114,24 +108,18 @@ public class Line {
      * @return true if all three lines intersect, false otherwise.
      */
     public boolean isIntersecting(Line other1, Line other2) {
-        boolean isInter = (this.intersectionWith(other1) != null && this.intersectionWith(other2) != null);
-        if (findInfinite) {
-            return true; // Infinite lines are considered intersecting
-        }
-        return isInter;
+        return this.isIntersecting(other1) && this.isIntersecting(other2);
     }
 
     /**
-     * Checks if a number is within a specified range, considering a small threshold.
+     * Checks if this line and another line are collinear and share at least one point.
      *
-     * @param numIn the number to check.
-     * @param num1  the lower bound of the range.
-     * @param num2  the upper bound of the range.
-     * @return true if numIn is within the range, false otherwise.
+     * @param other the other line.
+     * @return true if the lines overlap, false otherwise.
      */
-    public boolean checkInLimit(double numIn, double num1, double num2) {
-        return (almostEqual(numIn, num1) || almostEqual(numIn, num2)
-                || (numIn < num2 && numIn > num1) || (numIn > num2 && numIn < num1));
+    private boolean overlaps(Line other) {
+        return Intersections.collinearOverlap(this.start.getX(), this.start.getY(), this.end.getX(), this.end.getY(),
+                other.start.getX(), other.start.getY(), other.end.getX(), other.end.getY());
     }
 
     /**
@@ -141,99 +129,36 @@ public class Line {
      * @param num2 the second number.
      * @return true if the numbers are approximately equal, false otherwise.
      */
-    public boolean almostEqual(double num1, double num2) {
+    private boolean almostEqual(double num1, double num2) {
         return Math.abs(num1 - num2) < THRESHOLD;
     }
 
     /**
      * Returns the intersection point if the lines intersect, and null otherwise.
+     * Parallel and collinear lines have no single intersection point, so null is returned for them.
      *
      * @param other the other line to check intersection with.
      * @return the intersection point if the lines intersect, and null otherwise.
      */
     public Point intersectionWith(Line other) {
-        boolean found = false;
-        boolean foundOtherX = false;
-        boolean foundThisX = false;
-        double xIntersect = Double.MAX_VALUE;
-        double yIntersect = Double.MAX_VALUE;
-        double inclineL1;
-        double inclineL2;
-
-        // Check for vertical lines
-        if (almostEqual(other.start.getX(), other.end.getX())) {
-            foundOtherX = true;
-            found = true;
-            xIntersect = other.start.getX();
-        }
-        if (almostEqual(this.start.getX(), this.end.getX())) {
-            foundThisX = true;
-            found = true;
-            xIntersect = this.start.getX();
-        }
-
-        // Check for horizontal lines
-        if (almostEqual(this.start.getY(), this.end.getY())) {
-            yIntersect = this.start.getY();
-        }
-        if (almostEqual(other.start.getY(), other.end.getY())) {
-            yIntersect = other.start.getY();
-        }
-
-        if (!found) {
-            // Calculate slopes and y-intercepts for non-vertical lines
-            inclineL1 = (this.start.getY() - this.end.getY()) / (this.start.getX() - this.end.getX());
-            inclineL2 = (other.start.getY() - other.end.getY()) / (other.start.getX() - other.end.getX());
-
-            double b1 = this.start.getY() - (inclineL1 * this.start.getX());
-            double b2 = other.start.getY() - (inclineL2 * other.start.getX());
-
-            // Check for parallel lines
-            if (almostEqual(inclineL1, inclineL2)) {
-                if (almostEqual(b1, b2)) {
-                    this.findInfinite = true;
-                }
-                return null;
-            }
-
-            // Calculate intersection point
-            xIntersect = (b2 - b1) / (inclineL1 - inclineL2);
-            yIntersect = xIntersect * inclineL1 + b1;
-        } else if (foundOtherX && foundThisX) {
-            if (almostEqual(other.start.getX(), this.end.getX())) {
-                // Check if the y-coordinate intersections are within bounds
-                if (checkInLimit(other.start.getY(), this.start.getY(), this.end.getY())) {
-                    this.findInfinite = true;
-                    return null;
-                }
-                if (checkInLimit(other.end.getY(), this.start.getY(), this.end.getY())) {
-                    this.findInfinite = true;
-                    return null;
-                }
-            } else {
-                return null;
-            }
-        } else if (foundOtherX) {
-            // If only other line is vertical, calculate y-intersection
-            inclineL1 = (this.start.getY() - this.end.getY()) / (this.start.getX() - this.end.getX());
-            double b1 = this.start.getY() - (inclineL1 * this.start.getX());
-            yIntersect = xIntersect * inclineL1 + b1;
-        } else {
-            // If only this line is vertical, calculate y-intersection
-            inclineL2 = (other.start.getY() - other.end.getY()) / (other.start.getX() - other.end.getX());
-            double b2 = other.start.getY() - (inclineL2 * other.start.getX());
-            yIntersect = xIntersect * inclineL2 + b2;
+        double t = Intersections.segmentIntersection(this.start.getX(), this.start.getY(),
+                this.end.getX(), this.end.getY(),
+                other.start.getX(), other.start.getY(), other.end.getX(), other.end.getY());
+        if (Double.isNaN(t)) {
+            return null;
         }
+        return pointAt(t);
+    }
 
-        // Check if the intersection point is within the bounds of both lines
-        if ((checkInLimit(yIntersect, this.end.getY(), this.start.getY())
-                && checkInLimit(yIntersect, other.end.getY(), other.start.getY()))) {
-            if (checkInLimit(xIntersect, other.end.getX(), other.start.getX())
-                    && checkInLimit(xIntersect, this.end.getX(), this.start.getX())) {
-                return new Point(xIntersect, yIntersect);
-            }
-        }
-        return null;
+    /**
+     * Returns the point at the given parameter along the line.
+     *
+     * @param t the parameter, 0 at the start of the line and 1 at its end.
+     * @return the point start + t * (end - start).
+     */
+    private Point pointAt(double t) {
+        return new Point(this.start.getX() + t * (this.end.getX() - this.start.getX()),
+                this.start.getY() + t * (this.end.getY() - this.start.getY()));
     }
 
     /**
@@ -252,17 +177,14 @@ public class Line {
      * @return the closest intersection point to the start of the line, or null if no intersection occurs.
      */
     public Point closestIntersectionToStartOfLine(Rectangle rect) {
-        List<Point> points = rect.intersectionPoints(this);
-        if (points.isEmpty()) {
+        Point upperLeft = rect.getUpperLeft();
+        double t = Intersections.segmentBoxIntersection(this.start.getX(), this.start.getY(),
+                this.end.getX(), this.end.getY(), upperLeft.getX(), upperLeft.getY(),
+                upperLeft.getX() + rect.getWidth(), upperLeft.getY() + rect.getHeight());
+        if (Double.isNaN(t)) {
             return null;
         }
-        Point closest = points.get(0);
-        for (Point point : points) {
-            if (this.start.distance(point) < this.start.distance(closest)) {
-                closest = point;
-            }
-        }
-        return closest;
+        return pointAt(t);
     }
 
     /**
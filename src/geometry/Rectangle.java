@@ -1,12 +1,9 @@
 package geometry;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Represents a rectangle defined by an upper-left corner point, width, and height.
- * Provides methods to compute intersection points with lines, get rectangle edges,
- * check if a point is within the rectangle, and compare rectangles for equality.
+ * Provides methods to get rectangle edges, check if a point is within the rectangle,
+ * and compare rectangles for equality.
  * Author: Afek Nuttman
  * Version: 14.7.2024
  */
@@ -29,26 +26,6 @@ public class Rectangle {
         this.height = height;
     }
 
-    /**
-     * Computes the intersection points of this rectangle with a given line.
-     *
-     * @param line the line to intersect with this rectangle.
-     * @return a list of intersection points (may be empty if no intersections).
-     */
-    public List<Point> intersectionPoints(Line line) {
-        List<Point> intersectionPoints = new ArrayList<>();
-        Line[] edges = getEdges(); // Get the edges of the rectangle
-
-        // Check intersection with each edge of the rectangle
-        for (Line edge : edges) {
-            Point intersection = edge.intersectionWith(line);
-            if (intersection != null) {
-                intersectionPoints.add(intersection);
-            }
-        }
-        return intersectionPoints;
-    }
-
     /**
      * Computes the edges of this rectangle.
      *
@@ -8,6 +8,12 @@ package geometry;
  * Version: 14.7.2024
  */
 public class Velocity {
+    private static final double TABLE_STEP = 15; // Angles that are a multiple of this use the sine table
+    private static final int QUARTER_STEPS = 6;   // Table steps in 90 degrees
+    // Correctly rounded sines of 0, 15, 30, ..., 90 degrees
+    private static final double[] SINES = {
+            0.0, 0.25881904510252074, 0.5, 0.7071067811865476, 0.8660254037844386, 0.9659258262890683, 1.0
+    };
     private double dx; // Change in position on the x-axis
     private double dy; // Change in position on the y-axis
 
@@ -26,19 +32,44 @@ public class Velocity {
      * Creates a geometry.Velocity object from an angle and speed.
      * The angle is assumed to be in degrees and is converted to radians
      * for trigonometric calculations. The speed determines the magnitude
-     * of the velocity vector.
+     * of the velocity vector. Angles that are a multiple of 15 degrees, such as the
+     * paddle region angles, are looked up in a table, so they give the same bits on every JVM.
      *
      * @param angle The angle in degrees.
      * @param speed The speed.
      * @return A geometry.Velocity object corresponding to the angle and speed.
      */
     public static Velocity fromAngleAndSpeed(double angle, double speed) {
+        if (angle % TABLE_STEP == 0) {
+            int step = Math.floorMod((int) (angle / TABLE_STEP), 4 * QUARTER_STEPS);
+            return new Velocity(speed * tableSin(step + QUARTER_STEPS), speed * tableSin(step));
+        }
         double radians = Math.toRadians(angle); // Convert angle to radians
         double dx = speed * Math.cos(radians); // Calculate change in x based on speed and angle
         double dy = speed * Math.sin(radians); // Calculate change in y based on speed and angle
         return new Velocity(dx, dy);
     }
 
+    /**
+     * Returns the sine of a multiple of 15 degrees from the table.
+     *
+     * @param step The angle in steps of 15 degrees (any non-negative number).
+     * @return The sine of step * 15 degrees.
+     */
+    private static double tableSin(int step) {
+        int inQuadrant = step % QUARTER_STEPS;
+        switch ((step / QUARTER_STEPS) % 4) {
+            case 0:
+                return SINES[inQuadrant];
+            case 1:
+                return SINES[QUARTER_STEPS - inQuadrant];
+            case 2:
+                return -SINES[inQuadrant];
+            default:
+                return -SINES[QUARTER_STEPS - inQuadrant];
+        }
+    }
+
     /**
      * Gets the speed of the velocity vector.
      * The speed is the magnitude of the velocity vector, calculated using
@@ -64,6 +95,19 @@ public class Velocity {
         return new Point(newX, newY);
     }
 
+    /**
+     * Reflects the velocity about a surface with the given unit normal.
+     * For an axis-aligned normal this simply reverses the matching component.
+     *
+     * @param nx The x component of the unit normal.
+     * @param ny The y component of the unit normal.
+     * @return A new geometry.Velocity mirrored about the surface.
+     */
+    public Velocity reflect(double nx, double ny) {
+        double dot = this.dx * nx + this.dy * ny;
+        return new Velocity(this.dx - 2 * dot * nx, this.dy - 2 * dot * ny);
+    }
+
     /**
      * Gets the change in position on the x-axis.
      *
@@ -1,10 +1,12 @@
 package spritesAndCollisonDetection;
 
 import biuoop.DrawSurface;
+import gameLogic.AllocationMeter;
 import gameLogic.Game;
 import gameLogic.GameEnvironment;
-import geometry.Line;
+import geometry.FixedPoint;
 import geometry.Point;
+import geometry.Rectangle;
 import geometry.Velocity;
 
 import java.awt.Color;
@@ -12,27 +14,42 @@ import java.awt.Color;
 /**
  * The spritesAndCollisonDetection.Ball class represents a ball in the game
  * implementing the spritesAndCollisonDetection.Sprite interface.
+ * The ball is a facade over an entity of a spritesAndCollisonDetection.EntityStore, which holds its center,
+ * velocity, radius and color, and notifies the ball every step as the entity's behaviour.
+ * A ball's entity is created in the store of the game the ball is for, and is drawn and moved from then on.
  * Author: Afek Nuttman
  * Version: 14.7.2024
  */
 public class Ball implements Sprite {
-    private Point center;
-    private int radius;
-    private Color color;
-    private Velocity velocity;
+    private static final int MAX_BOUNCES_PER_STEP = 4; // Upper bound on collisions resolved in one frame
+    private EntityStore entities;   // The store holding this ball's entity
+    private int entity;             // The id of this ball's entity
     private GameEnvironment gameEnvironment;
+    // Fixed-point state used when the environment runs deterministic physics; center and velocity mirror it
+    private long fixedX;
+    private long fixedY;
+    private long fixedDx;
+    private long fixedDy;
+    private Point fixedCenter;      // The center last published from the fixed-point state
+    private Velocity fixedVelocity; // The velocity last published from the fixed-point state
 
     /**
-     * Constructs a new spritesAndCollisonDetection.Ball with a given center point, radius, and color.
+     * Constructs a new spritesAndCollisonDetection.Ball with a given center point, radius, and color, whose
+     * entity is created directly in a store, the store of the game it is about to be added to.
      *
-     * @param center The center point of the ball.
-     * @param radius The radius of the ball.
-     * @param color  The color of the ball.
+     * @param entities The store to create the ball's entity in, from gameLogic.Game.getEntities().
+     * @param center   The center point of the ball.
+     * @param radius   The radius of the ball.
+     * @param color    The color of the ball.
      */
-    public Ball(Point center, int radius, Color color) {
-        this.center = center;
-        this.radius = radius;
-        this.color = color;
+    public Ball(EntityStore entities, Point center, int radius, Color color) {
+        this.entities = entities;
+        this.entity = entities.create();
+        entities.setPosition(this.entity, center);
+        entities.setPrevious(this.entity, center);
+        entities.setCircle(this.entity, radius);
+        entities.setColor(this.entity, color);
+        entities.setBehaviour(this.entity, this);
     }
 
     /**
@@ -41,7 +58,7 @@ public class Ball implements Sprite {
      * @return The color.
      */
     public Color getColor() {
-        return color;
+        return entities.getColor(entity);
     }
 
     /**
@@ -50,7 +67,7 @@ public class Ball implements Sprite {
      * @return The radius.
      */
     public int getSize() {
-        return this.radius;
+        return entities.getRadius(entity);
     }
 
     /**
@@ -59,7 +76,7 @@ public class Ball implements Sprite {
      * @param color The new color.
      */
     public void setColor(Color color) {
-        this.color = color;
+        entities.setColor(entity, color);
     }
 
     /**
@@ -68,7 +85,10 @@ public class Ball implements Sprite {
      * @param velocity The new velocity.
      */
     public void setVelocity(Velocity velocity) {
-        this.velocity = velocity;
+        entities.setVelocity(entity, velocity);
+        if (isScheduled()) {
+            gameEnvironment.getScheduler().velocityChanged(this);
+        }
     }
 
     /**
@@ -80,46 +100,216 @@ public class Ball implements Sprite {
         this.gameEnvironment = gameEnvironment;
     }
 
+    /**
+     * Returns the game environment the ball interacts in.
+     *
+     * @return The game environment, or null if none was set.
+     */
+    public GameEnvironment getGameEnvironment() {
+        return this.gameEnvironment;
+    }
+
+    /**
+     * Returns the id of the ball's entity, which tells it apart from the other balls of its game.
+     *
+     * @return The id.
+     */
+    public int getId() {
+        return this.entity;
+    }
+
+    /**
+     * Gets the velocity of the ball.
+     *
+     * @return The velocity.
+     */
+    public Velocity getVelocity() {
+        return entities.getVelocity(entity);
+    }
+
     /**
      * Gets the center point of the ball.
      *
      * @return The center point.
      */
     public Point getCenter() {
-        return this.center;
+        return entities.getPosition(entity);
+    }
+
+    /**
+     * Moves the ball to a point without checking for collisions, e.g. when the paddle pushes it.
+     *
+     * @param center The new center point.
+     */
+    public void setCenter(Point center) {
+        entities.setPosition(entity, center);
+        if (isScheduled()) {
+            gameEnvironment.getScheduler().velocityChanged(this); // Its next impact was predicted from the old center
+        }
     }
 
     /**
      * Moves the ball one step based on its velocity and handles collisions with other objects.
+     * The ball is swept as a circle, and may bounce several times within the step; the number of
+     * bounces per step is bounded, so the cost of a step is bounded too. A step covers as many frames
+     * as the environment's step length, and allows as many bounces as that many steps of one frame.
      */
     public void moveOneStep() {
-        // Create a trajectory line from the current position to the next position
-        Line trajectory = new Line(center, velocity.applyToPoint(center));
-        CollisionInfo collisionInfo = gameEnvironment.getClosestCollision(trajectory);
+        if (gameEnvironment.isFixedPoint()) {
+            moveOneStepFixed();
+            return;
+        }
+        sweep(gameEnvironment.getStepLength());
+    }
 
-        if (collisionInfo != null) {
-            Point collisionPoint = collisionInfo.collisionPoint();
-            Collidable collisionObject = collisionInfo.collisionObject();
-
-            // Move the ball to just before the collision point
-            double adjustX = collisionPoint.getX() - 0.1 * this.velocity.getDx();
-            double adjustY = collisionPoint.getY() - 0.1 * this.velocity.getDy();
-            this.center = new Point(adjustX, adjustY);
-
-            // Update velocity based on the collision
-            this.velocity = collisionObject.hit(this, collisionPoint, this.velocity);
-        } else {
-            // Check if the ball is inside any blocks and adjust position accordingly
-            Collidable c = gameEnvironment.isInsideBlocks(this.center);
-            if (c != null) {
-                this.center = new Point(center.getX(),
-                        c.getCollisionRectangle().getUpperLeft().getY() - this.radius - 1);
+    /**
+     * Moves the ball along its velocity for the given time, bouncing off the objects of its environment on
+     * the way as it does in a step, e.g. for the rest of a merged step after a ball-ball collision found
+     * within it. A ball without an environment moves straight.
+     *
+     * @param frames The time to move, in frames (may be fractional).
+     */
+    public void moveFor(double frames) {
+        if (gameEnvironment == null) {
+            advance(frames);
+            return;
+        }
+        sweep(frames);
+        if (isScheduled()) {
+            gameEnvironment.getScheduler().velocityChanged(this); // Its next impact was predicted before the move
+        }
+    }
+
+    /**
+     * Sweeps the ball as a circle along its velocity for the given time, bouncing off the objects of its
+     * environment, with as many bounces as that many steps of one frame allow.
+     *
+     * @param frames The time to move, in frames.
+     */
+    private void sweep(double frames) {
+        double remaining = frames; // The part of the time still left to move
+        int maxBounces = MAX_BOUNCES_PER_STEP * (int) Math.ceil(frames);
+        int radius = getSize();
+        CollisionInfo collisionInfo = gameEnvironment.getClosestCollision(getCenter(), radius, getVelocity(),
+                remaining);
+        for (int bounces = 0; collisionInfo != null; bounces++) {
+            if (bounces == maxBounces) {
+                return; // Give up on the rest of this step rather than spin
             }
-            while (gameEnvironment.isInsideBlock(this.center)) {
-                this.center = this.velocity.applyToPoint(this.center);
+            advance(collisionInfo.time());
+            remaining -= collisionInfo.time();
+            collide(collisionInfo);
+            collisionInfo = gameEnvironment.getClosestCollision(getCenter(), radius, getVelocity(), remaining);
+        }
+        advance(remaining);
+    }
+
+    /**
+     * Moves the ball one step like moveOneStep, but with fixed-point arithmetic only, so the
+     * trajectory is bit-identical across runs and JVMs. Velocities returned by the collided objects
+     * are rounded back to fixed point.
+     */
+    private void moveOneStepFixed() {
+        if (getCenter() != this.fixedCenter || getVelocity() != this.fixedVelocity) {
+            // The center or velocity was set from outside: restart from the new values
+            this.fixedX = FixedPoint.fromDouble(getCenter().getX());
+            this.fixedY = FixedPoint.fromDouble(getCenter().getY());
+            this.fixedDx = FixedPoint.fromDouble(getVelocity().getDx());
+            this.fixedDy = FixedPoint.fromDouble(getVelocity().getDy());
+        }
+        long fixedRadius = (long) getSize() << FixedPoint.SHIFT;
+        long remaining = FixedPoint.ONE; // The part of the frame still left to move
+        CollisionInfo collisionInfo = gameEnvironment.getClosestCollisionFixed(fixedX, fixedY, fixedRadius,
+                fixedDx, fixedDy, remaining);
+        for (int bounces = 0; collisionInfo != null && bounces < MAX_BOUNCES_PER_STEP; bounces++) {
+            remaining -= FixedPoint.fromDouble(collisionInfo.time());
+            long nx = FixedPoint.fromDouble(collisionInfo.normalX());
+            long ny = FixedPoint.fromDouble(collisionInfo.normalY());
+            Point collisionPoint = collisionInfo.collisionPoint();
+            this.fixedX = FixedPoint.fromDouble(collisionPoint.getX()) + FixedPoint.mul(nx, fixedRadius);
+            this.fixedY = FixedPoint.fromDouble(collisionPoint.getY()) + FixedPoint.mul(ny, fixedRadius);
+            entities.setPosition(entity, new Point(FixedPoint.toDouble(fixedX), FixedPoint.toDouble(fixedY)));
+
+            Velocity current = new Velocity(FixedPoint.toDouble(fixedDx), FixedPoint.toDouble(fixedDy));
+            Velocity newVelocity = dispatchHit(collisionInfo.collisionObject(), collisionInfo, current);
+            if (newVelocity.getDx() * collisionInfo.normalX() + newVelocity.getDy() * collisionInfo.normalY() < 0) {
+                newVelocity = newVelocity.reflect(collisionInfo.normalX(), collisionInfo.normalY());
             }
-            // Move the ball according to its velocity
-            this.center = this.velocity.applyToPoint(this.center);
+            this.fixedDx = FixedPoint.fromDouble(newVelocity.getDx());
+            this.fixedDy = FixedPoint.fromDouble(newVelocity.getDy());
+            collisionInfo = gameEnvironment.getClosestCollisionFixed(fixedX, fixedY, fixedRadius,
+                    fixedDx, fixedDy, remaining);
+        }
+        if (collisionInfo == null) {
+            this.fixedX += FixedPoint.mul(fixedDx, remaining);
+            this.fixedY += FixedPoint.mul(fixedDy, remaining);
+        }
+        this.fixedCenter = new Point(FixedPoint.toDouble(fixedX), FixedPoint.toDouble(fixedY));
+        this.fixedVelocity = new Velocity(FixedPoint.toDouble(fixedDx), FixedPoint.toDouble(fixedDy));
+        entities.setPosition(entity, this.fixedCenter);
+        entities.setVelocity(entity, this.fixedVelocity);
+    }
+
+    /**
+     * Resolves a collision of a ball that has just reached the collision: places the ball against the
+     * hit surface and lets the collided object determine the new velocity. If that velocity still points
+     * into the surface (e.g. at a rounded corner), it is reflected about the surface normal.
+     *
+     * @param collisionInfo The collision to resolve.
+     */
+    public void collide(CollisionInfo collisionInfo) {
+        Point collisionPoint = collisionInfo.collisionPoint();
+        Collidable collisionObject = collisionInfo.collisionObject();
+        double nx = collisionInfo.normalX();
+        double ny = collisionInfo.normalY();
+
+        // Place the ball touching the surface, which also pushes it out if it was overlapping
+        int radius = getSize();
+        entities.setPosition(entity, new Point(collisionPoint.getX() + nx * radius,
+                collisionPoint.getY() + ny * radius));
+
+        // Update velocity based on the collision
+        Velocity newVelocity = dispatchHit(collisionObject, collisionInfo, getVelocity());
+        if (newVelocity.getDx() * nx + newVelocity.getDy() * ny < 0) {
+            newVelocity = newVelocity.reflect(nx, ny);
+        }
+        entities.setVelocity(entity, newVelocity);
+    }
+
+    /**
+     * Lets a collided object react to being hit by the ball. When the environment measures allocations,
+     * the bytes allocated meanwhile, e.g. by the hit listeners, are charged to hit dispatch.
+     *
+     * @param collisionObject The object the ball hit.
+     * @param collisionInfo   The collision.
+     * @param current         The velocity of the ball before the hit.
+     * @return The velocity of the ball after the hit.
+     */
+    private Velocity dispatchHit(Collidable collisionObject, CollisionInfo collisionInfo, Velocity current) {
+        AllocationMeter meter = gameEnvironment == null ? null : gameEnvironment.getAllocationMeter();
+        if (meter == null) {
+            return collisionObject.hit(this, collisionInfo, current);
+        }
+        meter.enter(AllocationMeter.HITS);
+        try {
+            return collisionObject.hit(this, collisionInfo, current);
+        } finally {
+            meter.exit();
+        }
+    }
+
+    /**
+     * Moves the ball along its velocity for the given time, without checking for collisions.
+     * Used by the event-driven scheduler, which already knows the ball hits nothing on the way.
+     *
+     * @param frames The time to move, in frames (may be fractional).
+     */
+    public void advance(double frames) {
+        if (frames != 0) {
+            Point center = getCenter();
+            Velocity velocity = getVelocity();
+            entities.setPosition(entity, new Point(center.getX() + frames * velocity.getDx(),
+                    center.getY() + frames * velocity.getDy()));
         }
     }
 
@@ -130,33 +320,85 @@ public class Ball implements Sprite {
      */
     @Override
     public void drawOn(DrawSurface d) {
-        d.setColor(this.color);
-        d.fillCircle((int) center.getX(), (int) center.getY(), radius);
+        entities.drawEntity(d, entity, 1);
+    }
+
+    /**
+     * Draws the ball between its position before the last simulation step and its current one.
+     *
+     * @param d        The DrawSurface to draw the ball on.
+     * @param viewport The visible part of the world.
+     * @param alpha    How far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    @Override
+    public void drawOn(DrawSurface d, Rectangle viewport, double alpha) {
+        entities.drawEntity(d, entity, alpha);
+    }
+
+    /**
+     * Returns the center of the ball between its position before the last simulation step and its current one.
+     * A bounce within the step is not retraced: the ball is drawn on the straight line between the two positions.
+     *
+     * @param alpha How far from the previous step to the current one, from 0 to 1.
+     * @return The interpolated center.
+     */
+    public Point interpolatedCenter(double alpha) {
+        return entities.interpolated(entity, alpha);
+    }
+
+    /**
+     * Returns the area the ball draws in, which covers both its previous and its current position.
+     *
+     * @return The bounding rectangle of the ball.
+     */
+    @Override
+    public Rectangle getBounds() {
+        return entities.boundsOf(entity);
     }
 
     /**
-     * Removes the ball from the game.
+     * Removes the ball from the game: its entity is retired from the game's entity store, which destroys it
+     * when the next step begins, so the ball can finish the step it is in. The ball cannot be added again.
      *
      * @param g The game to remove the ball from.
      */
     public void removeFromGame(Game g) {
-        g.removeSprite(this);
+        entities.retire(entity);
+        g.removeBall(this);
+    }
+
+    /**
+     * Checks whether the ball is moved by an event-driven collision scheduler rather than frame by frame.
+     *
+     * @return true if the ball's environment has a collision scheduler, false otherwise.
+     */
+    private boolean isScheduled() {
+        return gameEnvironment != null && gameEnvironment.getScheduler() != null;
     }
 
     /**
      * Notifies the ball that time has passed and it should move.
+     * Under an event-driven scheduler the scheduler moves the ball, so nothing is done here.
+     * Either way, the entity store has already recorded the position before the step for drawing between steps.
      */
     @Override
     public void timePassed() {
-        moveOneStep();
+        if (!isScheduled()) {
+            moveOneStep();
+        }
     }
 
     /**
-     * Adds the ball to the game as a sprite.
+     * Adds the ball to the game's ball-level physics. Its entity is already in the game's entity store, which
+     * draws and moves it.
      *
      * @param g The game to add the ball to.
+     * @throws IllegalArgumentException if the ball's entity was created in another store.
      */
     public void addToGame(Game g) {
-        g.addSprite(this);
+        if (entities != g.getEntities()) {
+            throw new IllegalArgumentException("the ball was created in another game's entity store");
+        }
+        g.addBall(this);
     }
 }
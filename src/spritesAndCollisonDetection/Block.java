@@ -3,10 +3,11 @@ package spritesAndCollisonDetection;
 
 import biuoop.DrawSurface;
 import gameLogic.Game;
+import gameLogic.HitDispatchEvent;
 import gameLogic.HitListener;
+import gameLogic.HitLog;
 import gameLogic.HitNotifier;
-import geometry.Line;
-import geometry.Point;
+import gameLogic.SpectatorFeed;
 import geometry.Rectangle;
 import geometry.Velocity;
 
@@ -17,25 +18,49 @@ import java.util.List;
 /**
  * The spritesAndCollisonDetection.Block class represents a block in the game
  * implementing both spritesAndCollisonDetection.Collidable and spritesAndCollisonDetection.Sprite interfaces.
+ * A block is either a facade over an entity of a spritesAndCollisonDetection.EntityStore, which holds its
+ * rectangle, color and listeners, or a lightweight view of a block kept in a
+ * spritesAndCollisonDetection.BlockStore, whose color and listeners it reads and writes through.
+ * A block's entity is created in the store of the game the block is for, and is drawn from then on.
  * Author: Afek Nuttman
  * Version: 14.7.2024
  */
 public class Block implements Collidable, Sprite, HitNotifier {
-    private List<HitListener> hitListeners;
-    private static final double THRESHOLD = 1e-10; // A small threshold for comparing doubles
-    private Rectangle rectangle;
-    private Color color;
+    private EntityStore entities; // The store holding this block's entity, or null for a view
+    private int entity;           // The id of this block's entity
+    private Rectangle rectangle;  // The rectangle of a view
+    private BlockStore store;    // The store holding this block's state, or null for an entity
+    private int id;              // The id of this block in the store
+    private boolean border;      // Whether the block is a wall of the arena, which never changes color
+    private boolean floor;       // Whether the block is the floor of the arena, where balls count as lost
 
     /**
-     * Constructs a new spritesAndCollisonDetection.Block with a given rectangle shape and color.
+     * Constructs a new spritesAndCollisonDetection.Block with a given rectangle shape and color, whose entity
+     * is created directly in a store, the store of the game it is about to be added to.
      *
+     * @param entities  The store to create the block's entity in, from gameLogic.Game.getEntities().
      * @param rectangle The rectangle shape of the block.
      * @param color     The color of the block.
      */
-    public Block(Rectangle rectangle, Color color) {
-        this.rectangle = rectangle;
-        this.color = color;
-        this.hitListeners = new ArrayList<>();
+    public Block(EntityStore entities, Rectangle rectangle, Color color) {
+        this.entities = entities;
+        this.entity = entities.create();
+        entities.setRectangle(this.entity, rectangle);
+        entities.setColor(this.entity, color);
+        entities.setBox(this.entity, true);
+        entities.setHitListeners(this.entity, new ArrayList<>());
+    }
+
+    /**
+     * Constructs a view of a block kept in a spritesAndCollisonDetection.BlockStore.
+     *
+     * @param store The store holding the block.
+     * @param id    The id of the block in the store.
+     */
+    Block(BlockStore store, int id) {
+        this.store = store;
+        this.id = id;
+        this.rectangle = store.rectangleOf(id);
     }
 
     /**
@@ -45,7 +70,20 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public Rectangle getCollisionRectangle() {
-        return this.rectangle;
+        if (this.store != null) {
+            return this.rectangle;
+        }
+        return this.entities.getRectangle(this.entity);
+    }
+
+    /**
+     * Returns the id of the block: its id in its block store, or the id of its entity. It tells the block
+     * apart from the other blocks of its game while the block is in the game.
+     *
+     * @return The id.
+     */
+    public int getId() {
+        return this.store != null ? this.id : this.entity;
     }
 
     /**
@@ -54,7 +92,10 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @return The color of the block.
      */
     public Color getColor() {
-        return color;
+        if (this.store != null) {
+            return this.store.getColor(this.id);
+        }
+        return this.entities.getColor(this.entity);
     }
 
     /**
@@ -63,7 +104,11 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param color The new color of the block.
      */
     public void setColor(Color color) {
-        this.color = color;
+        if (this.store != null) {
+            this.store.setColor(this.id, color);
+            return;
+        }
+        this.entities.setColor(this.entity, color);
     }
 
     /**
@@ -73,17 +118,23 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @return True if the ball's color matches the block's color, false otherwise.
      */
     public boolean ballColorMatch(Ball ball) {
-        return ball.getColor().equals(this.color);
+        return ball.getColor().equals(getColor());
     }
 
     /**
-     * Removes the block from the game.
+     * Removes the block from the game. A view also removes the block from its store; otherwise the block's
+     * entity is retired from the game's store, which destroys it when the next step begins. The block
+     * cannot be added again.
      *
      * @param game The game from which to remove the block.
      */
     public void removeFromGame(Game game) {
+        if (this.store != null) {
+            this.store.remove(this.id);
+        } else {
+            this.entities.retire(this.entity);
+        }
         game.removeCollidable(this);
-        game.removeSprite(this);
     }
 
     /**
@@ -92,89 +143,121 @@ public class Block implements Collidable, Sprite, HitNotifier {
      * @param newColor The new color of the block.
      */
     public void changeColor(Color newColor) {
-        this.color = newColor;
+        setColor(newColor);
     }
 
     /**
-     * Notifies all registered listeners that a hit event has occurred.
+     * Notifies all registered listeners that a hit event has occurred. The hit is also recorded in the
+     * game's gameLogic.HitLog and streamed to spectators by its gameLogic.SpectatorFeed, if enabled.
      *
      * @param hitter The ball that hit the block.
      */
     private void notifyHit(Ball hitter) {
+        HitDispatchEvent event = new HitDispatchEvent();
+        event.begin();
+        HitLog log = HitLog.of(hitter);
+        if (log != null) {
+            log.begin(this, hitter); // The listeners add to the record what they do
+        }
+        SpectatorFeed spectators = SpectatorFeed.of(hitter);
+        if (spectators != null) {
+            spectators.blockHit(this); // Before a listener removes the block
+        }
         // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<>(this.hitListeners);
+        List<HitListener> listeners = new ArrayList<>(this.store != null
+                ? this.store.getHitListeners(this.id) : this.entities.getHitListeners(this.entity));
         // Notify all listeners about a hit event:
         for (HitListener hl : listeners) {
             hl.hitEvent(this, hitter);
         }
+        if (log != null) {
+            log.append();
+        }
+        if (event.shouldCommit()) {
+            event.setListeners(listeners.size());
+            event.commit();
+        }
     }
 
     /**
-     * Checks if two numbers are approximately equal within a small threshold.
+     * Marks the block as a wall of the arena. Hits on walls do not swap colors and are not reported.
      *
-     * @param num1 The first number.
-     * @param num2 The second number.
-     * @return True if the numbers are approximately equal, false otherwise.
+     * @param border True if the block is a wall, false otherwise.
      */
-    private boolean almostEqual(double num1, double num2) {
-        return Math.abs(num1 - num2) < THRESHOLD;
+    public void setBorder(boolean border) {
+        this.border = border;
     }
 
     /**
-     * Checks if the collision point is not on the edges of the screen.
+     * Marks the block as the floor of the arena, where a ball counts as lost. The floor is a wall: as it
+     * always has, it sends the ball back without notifying its listeners. Each hit is recorded in the game's
+     * gameLogic.HitLog, if enabled, as a record of its own flagged gameLogic.HitLog.BALL_LOST.
      *
-     * @param collisionPoint The collision point to check.
-     * @return True if the collision point is on the edges, false otherwise.
+     * @param floor True if the block is the floor, false otherwise.
      */
-    public boolean checkNotOnEdges(Point collisionPoint) {
-        if (almostEqual(collisionPoint.getY(), 25) || almostEqual(collisionPoint.getY(), 595)
-                || almostEqual(collisionPoint.getX(), 5) || almostEqual(collisionPoint.getX(), 795)) {
-            return true;
+    public void setFloor(boolean floor) {
+        this.floor = floor;
+    }
+
+    /**
+     * Records a ball reaching the floor in the game's gameLogic.HitLog, if enabled.
+     *
+     * @param hitter The ball that hit the floor.
+     */
+    private void recordLoss(Ball hitter) {
+        HitLog log = HitLog.of(hitter);
+        if (log != null) {
+            log.begin(this, hitter);
+            log.mark(HitLog.BALL_LOST);
+            log.append();
         }
-        return false;
     }
 
     /**
-     * Notifies the block that a collision occurred at a specific point with a given velocity.
-     * Adjusts the velocity after the hit.
+     * Checks whether the block is a wall of the arena.
+     *
+     * @return True if the block is a wall, false otherwise.
+     */
+    public boolean isBorder() {
+        return this.border;
+    }
+
+    /**
+     * Sets whether the block is drawn with a black outline. Blocks kept in a
+     * spritesAndCollisonDetection.BlockStore are always outlined.
+     *
+     * @param outlined True to draw the outline, false to draw the block filled only.
+     */
+    public void setOutlined(boolean outlined) {
+        if (this.store == null) {
+            this.entities.setBox(this.entity, outlined);
+        }
+    }
+
+    /**
+     * Notifies the block that a collision occurred with a given velocity.
+     * Adjusts the velocity after the hit by reflecting it about the normal of the hit surface,
+     * which reverses the vertical direction on the top and bottom edges and the horizontal
+     * direction on the left and right edges.
      *
      * @param hitter           The ball that hit the block.
-     * @param collisionPoint   The point at which the collision occurred.
+     * @param collision        The collision, including the collision point and surface normal.
      * @param currentVelocity  The current velocity of the ball.
      * @return The new velocity after the hit.
      */
     @Override
-    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        // Check if the collision point is not on the edges and if the ball's color doesn't match the block's color
-        if (!checkNotOnEdges(collisionPoint) && !ballColorMatch(hitter)) {
+    public Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity) {
+        // Check if the block is not a wall and if the ball's color doesn't match the block's color
+        if (!this.border && !ballColorMatch(hitter)) {
             // Swap colors between the ball and the block
-            Color originalColor = this.color;
-            this.color = hitter.getColor();
+            Color originalColor = getColor();
+            setColor(hitter.getColor());
             hitter.setColor(originalColor);
             this.notifyHit(hitter);
+        } else if (this.floor) {
+            recordLoss(hitter);
         }
-//        if (almostEqual(collisionPoint.getY(), 595)) {
-//            this.notifyHit(hitter);
-//        }
-        double dx = currentVelocity.getDx();
-        double dy = currentVelocity.getDy();
-
-        // Get the edges of the block
-        Line[] edges = rectangle.getEdges();
-
-        // Check which edge was hit and adjust velocity accordingly
-        for (Line edge : edges) {
-            if (edge.isOnLine(collisionPoint)) {
-                if (edge.isVertical()) {
-                    dy = -dy;  // Reverse vertical direction
-                } else if (edge.isHorizontal()) {
-                    dx = -dx;  // Reverse horizontal direction
-                }
-                break;
-            }
-        }
-
-        return new Velocity(dx, dy);
+        return currentVelocity.reflect(collision.normalX(), collision.normalY());
     }
 
     /**
@@ -184,20 +267,27 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public void drawOn(DrawSurface d) {
-        d.setColor(this.color);
-        Point upperLeft = rectangle.getUpperLeft();
-        d.fillRectangle((int) upperLeft.getX(), (int) upperLeft.getY(),
-                (int) rectangle.getWidth(), (int) rectangle.getHeight());
-        if (upperLeft.getY() != 595) {
-            d.setColor(Color.BLACK);
-            d.drawRectangle((int) upperLeft.getX(), (int) upperLeft.getY(),
-                    (int) rectangle.getWidth(), (int) rectangle.getHeight());
+        if (this.store != null) {
+            this.store.drawBlock(d, this.id);
+            return;
         }
+        this.entities.drawEntity(d, this.entity, 1);
+    }
+
+    /**
+     * Returns the area the block draws in.
+     *
+     * @return The rectangle of the block.
+     */
+    @Override
+    public Rectangle getBounds() {
+        return getCollisionRectangle();
     }
 
     /**
      * Notifies the block that time has passed.
-     * Currently, blocks do not perform any action when time passes.
+     * Currently, blocks do not perform any action when time passes, so they have no behaviour in the
+     * entity store and are never notified by the game.
      */
     @Override
     public void timePassed() {
@@ -205,12 +295,16 @@ public class Block implements Collidable, Sprite, HitNotifier {
     }
 
     /**
-     * Adds the block to the game, registering it as both a sprite and a collidable.
+     * Adds the block to the game: the block is registered as a collidable. Its entity is already in the
+     * game's entity store, which draws it.
      *
      * @param g The game to add the block to.
+     * @throws IllegalArgumentException if the block's entity was created in another store.
      */
     public void addToGame(Game g) {
-        g.addSprite(this);
+        if (this.store == null && this.entities != g.getEntities()) {
+            throw new IllegalArgumentException("the block was created in another game's entity store");
+        }
         g.addCollidable(this);
     }
 
@@ -221,7 +315,11 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public void addHitListener(HitListener hl) {
-        this.hitListeners.add(hl);
+        if (this.store != null) {
+            this.store.addHitListener(this.id, hl);
+            return;
+        }
+        this.entities.getHitListeners(this.entity).add(hl);
     }
 
     /**
@@ -231,6 +329,10 @@ public class Block implements Collidable, Sprite, HitNotifier {
      */
     @Override
     public void removeHitListener(HitListener hl) {
-        this.hitListeners.remove(hl);
+        if (this.store != null) {
+            this.store.removeHitListener(this.id, hl);
+            return;
+        }
+        this.entities.getHitListeners(this.entity).remove(hl);
     }
 }
@@ -0,0 +1,548 @@
+package spritesAndCollisonDetection;
+
+import biuoop.DrawSurface;
+import gameLogic.Game;
+import gameLogic.HitListener;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The spritesAndCollisonDetection.BlockStore class keeps a large number of static blocks in packed arrays
+ * instead of one spritesAndCollisonDetection.Block object each. A block is an int id into the arrays:
+ * its bounds are four floats, its color is a byte index into a shared palette, and its hit listeners are
+ * a short index into a table of shared, immutable listener groups. Blocks that change their listeners
+ * move to another group (copy-on-write), so blocks with the same listeners share one list.
+ * A uniform grid indexes the blocks for region queries, and spritesAndCollisonDetection.Block objects are
+ * only materialized as lightweight views when a collision or a listener needs one.
+ * At capacity a block costs about 23 bytes: 16 for the bounds, 1 for the color, 2 for the group,
+ * 4 for its entry in the grid (one per grid cell the block covers) and one bit in the removed set.
+ * A copy of a store shares its arrays until either side writes to them (copy-on-write), so copies of
+ * a fully built level are cheap.
+ */
+public class BlockStore implements Sprite {
+    private static final int INITIAL_CAPACITY = 64;  // Number of blocks the arrays initially hold
+    private static final int MAX_COLORS = 256;       // Colors addressable by a byte index
+    private static final int MAX_GROUPS = 65536;     // Listener groups addressable by a short index
+    private float[] bounds;                  // x, y, width and height of every block, interleaved
+    private byte[] colors;                   // Palette index of every block's color
+    private short[] groups;                  // Listener group index of every block
+    private BitSet removed;                  // Ids of the blocks that were removed
+    private int size;                        // Number of ids handed out
+    private int liveCount;                   // Number of blocks that were not removed
+    private List<Color> palette;             // Distinct block colors
+    private List<List<HitListener>> listenerGroups; // Distinct, immutable listener lists
+    private Map<Integer, Block> views;       // Materialized views of live blocks, by id
+    private UniformGrid grid;                // Indexes the blocks for region queries
+    private boolean indexDirty;              // Whether blocks were added since the grid was built
+    private boolean boundsShared;            // Whether the bounds array is shared with a copy
+    private boolean colorsShared;            // Whether the colors array is shared with a copy
+    private boolean groupsShared;            // Whether the groups array is shared with a copy
+    private long version;                    // Number of times a block was added, removed or recolored
+
+    /**
+     * Constructs a new, empty spritesAndCollisonDetection.BlockStore.
+     *
+     * @param cellSize the side of a grid cell; a few block sizes works well.
+     */
+    public BlockStore(double cellSize) {
+        this.bounds = new float[INITIAL_CAPACITY * 4];
+        this.colors = new byte[INITIAL_CAPACITY];
+        this.groups = new short[INITIAL_CAPACITY];
+        this.removed = new BitSet();
+        this.palette = new ArrayList<>();
+        this.listenerGroups = new ArrayList<>();
+        this.listenerGroups.add(Collections.emptyList()); // Group 0: no listeners
+        this.views = new HashMap<>();
+        this.grid = new UniformGrid(cellSize);
+        this.indexDirty = true;
+    }
+
+    /**
+     * Constructs a copy of a store. The block arrays and the grid are shared until one of the stores
+     * writes to them; the palette, the listener groups and the removed set are copied.
+     *
+     * @param source the store to copy.
+     */
+    private BlockStore(BlockStore source) {
+        this.bounds = source.bounds;
+        this.colors = source.colors;
+        this.groups = source.groups;
+        source.boundsShared = true;
+        source.colorsShared = true;
+        source.groupsShared = true;
+        this.boundsShared = true;
+        this.colorsShared = true;
+        this.groupsShared = true;
+        this.removed = (BitSet) source.removed.clone();
+        this.size = source.size;
+        this.liveCount = source.liveCount;
+        this.palette = new ArrayList<>(source.palette);
+        this.listenerGroups = new ArrayList<>(source.listenerGroups);
+        this.views = new HashMap<>();
+        this.indexDirty = source.indexDirty;
+        this.grid = new UniformGrid(source.grid); // The grid is never modified, only rebuilt into new arrays
+    }
+
+    /**
+     * Returns a copy-on-write copy of the store.
+     *
+     * @return the copy.
+     */
+    public BlockStore copy() {
+        return new BlockStore(this);
+    }
+
+    /**
+     * Estimates the memory used by the blocks and the grid, counting shared arrays in full.
+     *
+     * @return the estimated size in bytes.
+     */
+    public long estimateBytes() {
+        long bytes = this.bounds.length * 4L + this.colors.length + this.groups.length * 2L + this.size / 8;
+        return bytes + this.grid.estimateBytes();
+    }
+
+    /**
+     * Makes sure the bounds array is not shared before writing to it.
+     */
+    private void ownBounds() {
+        if (this.boundsShared) {
+            this.bounds = this.bounds.clone();
+            this.boundsShared = false;
+        }
+    }
+
+    /**
+     * Makes sure the colors array is not shared before writing to it.
+     */
+    private void ownColors() {
+        if (this.colorsShared) {
+            this.colors = this.colors.clone();
+            this.colorsShared = false;
+        }
+    }
+
+    /**
+     * Makes sure the groups array is not shared before writing to it.
+     */
+    private void ownGroups() {
+        if (this.groupsShared) {
+            this.groups = this.groups.clone();
+            this.groupsShared = false;
+        }
+    }
+
+    /**
+     * Adds a block with no hit listeners to the store.
+     *
+     * @param rect  the rectangle shape of the block.
+     * @param color the color of the block.
+     * @return the id of the new block.
+     */
+    public int add(Rectangle rect, Color color) {
+        if (this.size == this.colors.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, this.size + (this.size >> 1) + 1); // Trimmed stores may be tiny
+            this.bounds = Arrays.copyOf(this.bounds, capacity * 4);
+            this.colors = Arrays.copyOf(this.colors, capacity);
+            this.groups = Arrays.copyOf(this.groups, capacity);
+            this.boundsShared = false;
+            this.colorsShared = false;
+            this.groupsShared = false;
+        }
+        ownBounds();
+        ownColors();
+        ownGroups();
+        int id = this.size++;
+        this.bounds[id * 4] = (float) rect.getUpperLeft().getX();
+        this.bounds[id * 4 + 1] = (float) rect.getUpperLeft().getY();
+        this.bounds[id * 4 + 2] = (float) rect.getWidth();
+        this.bounds[id * 4 + 3] = (float) rect.getHeight();
+        this.colors[id] = (byte) colorIndex(color);
+        this.liveCount++;
+        this.indexDirty = true;
+        this.version++;
+        return id;
+    }
+
+    /**
+     * Shrinks the arrays to the number of blocks, once a level is fully loaded.
+     */
+    public void trimToSize() {
+        this.bounds = Arrays.copyOf(this.bounds, this.size * 4);
+        this.colors = Arrays.copyOf(this.colors, this.size);
+        this.groups = Arrays.copyOf(this.groups, this.size);
+        this.boundsShared = false;
+        this.colorsShared = false;
+        this.groupsShared = false;
+    }
+
+    /**
+     * Returns the number of ids handed out, including removed blocks.
+     *
+     * @return the number of ids.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of blocks that were not removed.
+     *
+     * @return the number of live blocks.
+     */
+    public int liveCount() {
+        return this.liveCount;
+    }
+
+    /**
+     * Returns a number that grows whenever a block is added, removed or recolored, so that a drawing of the
+     * store can be kept until it does.
+     *
+     * @return the version of the store's blocks.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Checks whether a block was removed.
+     *
+     * @param id the block's id.
+     * @return true if the block was removed, false otherwise.
+     */
+    public boolean isRemoved(int id) {
+        return this.removed.get(id);
+    }
+
+    /**
+     * Removes a block. Its id is not reused.
+     *
+     * @param id the block's id.
+     */
+    public void remove(int id) {
+        if (!this.removed.get(id)) {
+            this.removed.set(id);
+            this.liveCount--;
+            this.version++;
+            this.views.remove(id);
+        }
+    }
+
+    /**
+     * Returns the left side of a block.
+     *
+     * @param id the block's id.
+     * @return the x coordinate of the block's upper-left corner.
+     */
+    public double getX(int id) {
+        return this.bounds[id * 4];
+    }
+
+    /**
+     * Returns the top side of a block.
+     *
+     * @param id the block's id.
+     * @return the y coordinate of the block's upper-left corner.
+     */
+    public double getY(int id) {
+        return this.bounds[id * 4 + 1];
+    }
+
+    /**
+     * Returns the width of a block.
+     *
+     * @param id the block's id.
+     * @return the width.
+     */
+    public double getWidth(int id) {
+        return this.bounds[id * 4 + 2];
+    }
+
+    /**
+     * Returns the height of a block.
+     *
+     * @param id the block's id.
+     * @return the height.
+     */
+    public double getHeight(int id) {
+        return this.bounds[id * 4 + 3];
+    }
+
+    /**
+     * Returns the color of a block.
+     *
+     * @param id the block's id.
+     * @return the color.
+     */
+    public Color getColor(int id) {
+        return this.palette.get(this.colors[id] & 0xFF);
+    }
+
+    /**
+     * Sets the color of a block.
+     *
+     * @param id    the block's id.
+     * @param color the new color.
+     */
+    public void setColor(int id, Color color) {
+        int index = colorIndex(color);
+        if ((this.colors[id] & 0xFF) == index) {
+            return;
+        }
+        ownColors();
+        this.colors[id] = (byte) index;
+        this.version++;
+    }
+
+    /**
+     * Returns the palette index of a color, adding the color to the palette if needed.
+     *
+     * @param color the color.
+     * @return the palette index.
+     */
+    private int colorIndex(Color color) {
+        int index = this.palette.indexOf(color);
+        if (index < 0) {
+            if (this.palette.size() == MAX_COLORS) {
+                throw new IllegalStateException("A block store holds at most " + MAX_COLORS + " colors");
+            }
+            index = this.palette.size();
+            this.palette.add(color);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the hit listeners of a block. The list is shared by the block's group and is immutable.
+     *
+     * @param id the block's id.
+     * @return the listeners.
+     */
+    public List<HitListener> getHitListeners(int id) {
+        return this.listenerGroups.get(this.groups[id] & 0xFFFF);
+    }
+
+    /**
+     * Adds a listener to a single block, moving the block to the group with the extended listener list.
+     *
+     * @param id the block's id.
+     * @param hl the listener to add.
+     */
+    public void addHitListener(int id, HitListener hl) {
+        List<HitListener> listeners = new ArrayList<>(getHitListeners(id));
+        listeners.add(hl);
+        ownGroups();
+        this.groups[id] = (short) groupIndex(listeners);
+    }
+
+    /**
+     * Removes a listener from a single block, moving the block to the group with the reduced listener list.
+     *
+     * @param id the block's id.
+     * @param hl the listener to remove.
+     */
+    public void removeHitListener(int id, HitListener hl) {
+        List<HitListener> listeners = new ArrayList<>(getHitListeners(id));
+        if (listeners.remove(hl)) {
+            ownGroups();
+            this.groups[id] = (short) groupIndex(listeners);
+        }
+    }
+
+    /**
+     * Adds a listener to every block in the store. Each group is extended once, so the cost
+     * does not depend on the number of groups a block could move through.
+     *
+     * @param hl the listener to add.
+     */
+    public void addHitListenerToAll(HitListener hl) {
+        int groupCount = this.listenerGroups.size();
+        short[] extended = new short[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            List<HitListener> listeners = new ArrayList<>(this.listenerGroups.get(g));
+            listeners.add(hl);
+            extended[g] = (short) groupIndex(listeners);
+        }
+        // Every entry is rewritten, so a shared array is replaced rather than copied first
+        short[] target = this.groupsShared ? new short[this.groups.length] : this.groups;
+        for (int id = 0; id < this.size; id++) {
+            target[id] = extended[this.groups[id] & 0xFFFF];
+        }
+        this.groups = target;
+        this.groupsShared = false;
+    }
+
+    /**
+     * Returns the index of the group with the given listeners, creating the group if needed.
+     *
+     * @param listeners the listeners of the group.
+     * @return the group index.
+     */
+    private int groupIndex(List<HitListener> listeners) {
+        int index = this.listenerGroups.indexOf(listeners);
+        if (index < 0) {
+            if (this.listenerGroups.size() == MAX_GROUPS) {
+                throw new IllegalStateException("A block store holds at most " + MAX_GROUPS + " listener groups");
+            }
+            index = this.listenerGroups.size();
+            this.listenerGroups.add(Collections.unmodifiableList(listeners));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the view of a live block. A block always has the same view while it is live,
+     * so views can be compared by identity.
+     *
+     * @param id the block's id.
+     * @return the view.
+     */
+    public Block view(int id) {
+        Block view = this.views.get(id);
+        if (view == null) {
+            view = new Block(this, id);
+            this.views.put(id, view);
+        }
+        return view;
+    }
+
+    /**
+     * Returns the side of a grid cell.
+     *
+     * @return the cell size.
+     */
+    public double getCellSize() {
+        return this.grid.getCellSize();
+    }
+
+    /**
+     * Returns the bounding box of all blocks, including removed ones.
+     *
+     * @return the bounding box, or null if the store is empty.
+     */
+    public Rectangle getBounds() {
+        ensureIndex();
+        if (this.size == 0) {
+            return null;
+        }
+        return new Rectangle(new Point(this.grid.getMinX(), this.grid.getMinY()),
+                this.grid.getMaxX() - this.grid.getMinX(), this.grid.getMaxY() - this.grid.getMinY());
+    }
+
+    /**
+     * Finds the live blocks whose rectangles overlap a region. The ids can be read with found(k)
+     * until the next query.
+     *
+     * @param minX the left side of the region.
+     * @param minY the top side of the region.
+     * @param maxX the right side of the region.
+     * @param maxY the bottom side of the region.
+     * @return the number of blocks found.
+     */
+    public int query(double minX, double minY, double maxX, double maxY) {
+        ensureIndex();
+        return this.grid.query(this.bounds, this.removed, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Returns a block found by the last query.
+     *
+     * @param k the index of the result, below the count returned by query.
+     * @return the block's id.
+     */
+    public int found(int k) {
+        return this.grid.found(k);
+    }
+
+    /**
+     * Rebuilds the grid if blocks were added since it was last built. The grid covers the bounding box of
+     * all blocks, including removed ones, which queries leave out.
+     */
+    private void ensureIndex() {
+        if (this.indexDirty) {
+            this.indexDirty = false;
+            this.grid.build(this.bounds, this.size);
+        }
+    }
+
+    /**
+     * Adds the store to the game, registering all of its blocks for drawing and collisions.
+     *
+     * @param g The game to add the store to.
+     */
+    public void addToGame(Game g) {
+        g.addBlockStore(this);
+    }
+
+    /**
+     * Draws every live block, like spritesAndCollisonDetection.Block.drawOn.
+     *
+     * @param d The DrawSurface to draw the blocks on.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        for (int id = this.removed.nextClearBit(0); id < this.size; id = this.removed.nextClearBit(id + 1)) {
+            drawBlock(d, id);
+        }
+    }
+
+    /**
+     * Draws the live blocks inside a viewport, found through the grid.
+     *
+     * @param d        The DrawSurface to draw the blocks on.
+     * @param viewport The visible part of the world.
+     */
+    @Override
+    public void drawOn(DrawSurface d, Rectangle viewport) {
+        double minX = viewport.getUpperLeft().getX();
+        double minY = viewport.getUpperLeft().getY();
+        int count = query(minX, minY, minX + viewport.getWidth(), minY + viewport.getHeight());
+        for (int k = 0; k < count; k++) {
+            drawBlock(d, found(k));
+        }
+    }
+
+    /**
+     * Draws a single block, like spritesAndCollisonDetection.Block.drawOn.
+     *
+     * @param d  The DrawSurface to draw the block on.
+     * @param id The block's id.
+     */
+    void drawBlock(DrawSurface d, int id) {
+        int x = (int) getX(id);
+        int y = (int) getY(id);
+        int width = (int) getWidth(id);
+        int height = (int) getHeight(id);
+        d.setColor(getColor(id));
+        d.fillRectangle(x, y, width, height);
+        d.setColor(Color.BLACK);
+        d.drawRectangle(x, y, width, height);
+    }
+
+    /**
+     * Notifies the store that time has passed. Blocks do not perform any action when time passes.
+     */
+    @Override
+    public void timePassed() {
+        // No actions needed for blocks on time passed
+    }
+
+    /**
+     * Returns the rectangle of a block as a new geometry.Rectangle.
+     *
+     * @param id the block's id.
+     * @return the rectangle.
+     */
+    Rectangle rectangleOf(int id) {
+        return new Rectangle(new Point(getX(id), getY(id)), getWidth(id), getHeight(id));
+    }
+}
@@ -0,0 +1,113 @@
+package spritesAndCollisonDetection;
+
+import biuoop.DrawSurface;
+import geometry.Point;
+import geometry.Rectangle;
+
+/**
+ * The spritesAndCollisonDetection.Camera class maps a window-sized viewport onto a world that may be larger
+ * than the window. The camera follows a point of interest but never shows anything outside the world, so a
+ * world the size of the window is always shown whole.
+ */
+public class Camera {
+    private double x;           // Left side of the viewport, in world coordinates
+    private double y;           // Top side of the viewport, in world coordinates
+    private int width;          // Width of the viewport
+    private int height;         // Height of the viewport
+    private double worldWidth;  // Width of the world
+    private double worldHeight; // Height of the world
+    private Rectangle viewport; // The viewport last returned, reused until the camera moves by a pixel
+    private CameraSurface wrapped; // The surface last returned by wrap, reused likewise for the same window
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.Camera showing the upper-left corner of the world.
+     *
+     * @param width       the width of the viewport.
+     * @param height      the height of the viewport.
+     * @param worldWidth  the width of the world.
+     * @param worldHeight the height of the world.
+     */
+    public Camera(int width, int height, double worldWidth, double worldHeight) {
+        this.width = width;
+        this.height = height;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+    }
+
+    /**
+     * Centers the viewport on a point, as far as the edges of the world allow.
+     *
+     * @param target the point to center on, in world coordinates.
+     */
+    public void follow(Point target) {
+        follow(target.getX(), target.getY());
+    }
+
+    /**
+     * Centers the viewport on a point given by its coordinates, as far as the edges of the world allow.
+     *
+     * @param targetX the x coordinate of the point to center on, in world coordinates.
+     * @param targetY the y coordinate of the point to center on, in world coordinates.
+     */
+    public void follow(double targetX, double targetY) {
+        this.x = clamp(targetX - this.width / 2.0, this.worldWidth - this.width);
+        this.y = clamp(targetY - this.height / 2.0, this.worldHeight - this.height);
+    }
+
+    /**
+     * Clamps a viewport coordinate to the world.
+     *
+     * @param value the coordinate.
+     * @param max   the largest coordinate that keeps the viewport inside the world.
+     * @return the clamped coordinate, or 0 if the world is smaller than the viewport.
+     */
+    private static double clamp(double value, double max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    /**
+     * Returns the part of the world the viewport shows. The same rectangle is returned until the viewport
+     * moves to another pixel, so that a camera at rest allocates nothing.
+     *
+     * @return the viewport, in world coordinates.
+     */
+    public Rectangle getViewport() {
+        if (this.viewport == null || this.viewport.getUpperLeft().getX() != offsetX()
+                || this.viewport.getUpperLeft().getY() != offsetY()) {
+            this.viewport = new Rectangle(new Point(offsetX(), offsetY()), this.width, this.height);
+        }
+        return this.viewport;
+    }
+
+    /**
+     * Wraps a window surface so that sprites can draw on it in world coordinates. Like the viewport, the
+     * same wrapper is returned while the window surface and the camera's pixel stay the same.
+     *
+     * @param d the window surface.
+     * @return a surface that shifts everything drawn on it by the camera's position.
+     */
+    public DrawSurface wrap(DrawSurface d) {
+        if (this.wrapped == null || !this.wrapped.wraps(d, offsetX(), offsetY())) {
+            this.wrapped = new CameraSurface(d, offsetX(), offsetY());
+        }
+        return this.wrapped;
+    }
+
+    /**
+     * Returns the left side of the viewport, rounded to a whole pixel.
+     *
+     * @return the x offset.
+     */
+    private int offsetX() {
+        return (int) Math.floor(this.x);
+    }
+
+    /**
+     * Returns the top side of the viewport, rounded to a whole pixel.
+     *
+     * @return the y offset.
+     */
+    private int offsetY() {
+        return (int) Math.floor(this.y);
+    }
+}
@@ -0,0 +1,218 @@
+package spritesAndCollisonDetection;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+
+/**
+ * The spritesAndCollisonDetection.CameraSurface class is a DrawSurface in world coordinates over a window
+ * surface: every drawing call is shifted by the camera's position and passed on.
+ */
+class CameraSurface implements DrawSurface {
+    private DrawSurface surface; // The window surface
+    private int offsetX;         // World x coordinate of the window's left side
+    private int offsetY;         // World y coordinate of the window's top side
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.CameraSurface.
+     *
+     * @param surface the window surface.
+     * @param offsetX the world x coordinate of the window's left side.
+     * @param offsetY the world y coordinate of the window's top side.
+     */
+    CameraSurface(DrawSurface surface, int offsetX, int offsetY) {
+        this.surface = surface;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * Tells whether this surface shifts a given window surface by given offsets.
+     *
+     * @param d the window surface.
+     * @param x the world x coordinate of the window's left side.
+     * @param y the world y coordinate of the window's top side.
+     * @return true if wrapping d at these offsets would give an equal surface.
+     */
+    boolean wraps(DrawSurface d, int x, int y) {
+        return this.surface == d && this.offsetX == x && this.offsetY == y;
+    }
+
+    /**
+     * Returns the width of the window surface.
+     *
+     * @return the width.
+     */
+    @Override
+    public int getWidth() {
+        return this.surface.getWidth();
+    }
+
+    /**
+     * Returns the height of the window surface.
+     *
+     * @return the height.
+     */
+    @Override
+    public int getHeight() {
+        return this.surface.getHeight();
+    }
+
+    /**
+     * Sets the drawing color of the window surface.
+     *
+     * @param color the color.
+     */
+    @Override
+    public void setColor(Color color) {
+        this.surface.setColor(color);
+    }
+
+    /**
+     * Draws a line given in world coordinates.
+     *
+     * @param x1 the x coordinate of the first end.
+     * @param y1 the y coordinate of the first end.
+     * @param x2 the x coordinate of the second end.
+     * @param y2 the y coordinate of the second end.
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        this.surface.drawLine(x1 - this.offsetX, y1 - this.offsetY, x2 - this.offsetX, y2 - this.offsetY);
+    }
+
+    /**
+     * Draws an oval given in world coordinates.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        this.surface.drawOval(x - this.offsetX, y - this.offsetY, width, height);
+    }
+
+    /**
+     * Fills an oval given in world coordinates.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        this.surface.fillOval(x - this.offsetX, y - this.offsetY, width, height);
+    }
+
+    /**
+     * Draws a rectangle given in world coordinates.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        this.surface.drawRectangle(x - this.offsetX, y - this.offsetY, width, height);
+    }
+
+    /**
+     * Fills a rectangle given in world coordinates.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        this.surface.fillRectangle(x - this.offsetX, y - this.offsetY, width, height);
+    }
+
+    /**
+     * Draws an image at a position given in world coordinates.
+     *
+     * @param x     the left side.
+     * @param y     the top side.
+     * @param image the image.
+     */
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        this.surface.drawImage(x - this.offsetX, y - this.offsetY, image);
+    }
+
+    /**
+     * Draws a circle given in world coordinates.
+     *
+     * @param x the x coordinate of the center.
+     * @param y the y coordinate of the center.
+     * @param r the radius.
+     */
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        this.surface.drawCircle(x - this.offsetX, y - this.offsetY, r);
+    }
+
+    /**
+     * Fills a circle given in world coordinates.
+     *
+     * @param x the x coordinate of the center.
+     * @param y the y coordinate of the center.
+     * @param r the radius.
+     */
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        this.surface.fillCircle(x - this.offsetX, y - this.offsetY, r);
+    }
+
+    /**
+     * Draws text at a position given in world coordinates.
+     *
+     * @param x        the x coordinate of the text.
+     * @param y        the y coordinate of the text.
+     * @param s        the text.
+     * @param fontSize the font size.
+     */
+    @Override
+    public void drawText(int x, int y, String s, int fontSize) {
+        this.surface.drawText(x - this.offsetX, y - this.offsetY, s, fontSize);
+    }
+
+    /**
+     * Draws a polygon given in world coordinates.
+     *
+     * @param p the polygon.
+     */
+    @Override
+    public void drawPolygon(Polygon p) {
+        this.surface.drawPolygon(shifted(p));
+    }
+
+    /**
+     * Fills a polygon given in world coordinates.
+     *
+     * @param p the polygon.
+     */
+    @Override
+    public void fillPolygon(Polygon p) {
+        this.surface.fillPolygon(shifted(p));
+    }
+
+    /**
+     * Returns a copy of a polygon shifted by the camera's position.
+     *
+     * @param p the polygon, in world coordinates.
+     * @return the polygon, in window coordinates.
+     */
+    private Polygon shifted(Polygon p) {
+        Polygon copy = new Polygon(p.xpoints, p.ypoints, p.npoints);
+        copy.translate(-this.offsetX, -this.offsetY);
+        return copy;
+    }
+}
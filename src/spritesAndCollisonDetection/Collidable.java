@@ -1,6 +1,5 @@
 package spritesAndCollisonDetection;
 
-import geometry.Point;
 import geometry.Rectangle;
 import geometry.Velocity;
 
@@ -20,13 +19,14 @@ public interface Collidable {
     Rectangle getCollisionRectangle();
 
     /**
-     * Notifies the object that a collision occurred at a specific point with a given velocity.
-     * Adjusts the velocity of the object after the hit based on the collision point.
+     * Notifies the object that a collision occurred with a given velocity.
+     * Adjusts the velocity of the object after the hit based on the hit edge and surface normal
+     * reported in the collision information.
      *
      * @param hitter          The ball that hit the collidable object.
-     * @param collisionPoint  The point at which the collision occurred.
+     * @param collision       The collision, including the collision point, hit edge and normal.
      * @param currentVelocity The current velocity of the colliding object.
      * @return The new velocity after the hit.
      */
-    Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity);
+    Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity);
 }
@@ -4,13 +4,27 @@ import geometry.Point;
 
 /**
  * The spritesAndCollisonDetection.CollisionInfo class holds information about a collision event in the game.
- * It stores the point of collision and the collidable object involved in the collision.
+ * It stores the point of collision, the collidable object involved in the collision,
+ * the time of impact, measured in frames from the start of the queried movement,
+ * the edge of the collision rectangle that was hit, and the unit normal of the hit surface,
+ * pointing from the collidable towards the ball.
  * Author: Afek Nuttman
  * Version: 14.7.2024
  */
 public class CollisionInfo {
+    // Edge indices, in the order of geometry.Rectangle.getEdges()
+    public static final int TOP_EDGE = 0;
+    public static final int RIGHT_EDGE = 1;
+    public static final int BOTTOM_EDGE = 2;
+    public static final int LEFT_EDGE = 3;
+    public static final int CORNER = 4; // A rounded corner was hit; see the normal for the direction
+
     private Point collisionPoint; // The point where the collision occurred
     private Collidable collisionObject; // The object involved in the collision
+    private double time; // Frames from the start of the movement until the collision
+    private int edge; // The edge of the collision rectangle that was hit
+    private double normalX; // x component of the surface normal at the collision point
+    private double normalY; // y component of the surface normal at the collision point
 
     /**
      * Constructs a spritesAndCollisonDetection.CollisionInfo
@@ -18,10 +32,19 @@ public class CollisionInfo {
      *
      * @param collisionPoint  The point at which the collision occurred.
      * @param collisionObject The collidable object involved in the collision.
+     * @param time            The time of impact, in frames from the start of the movement.
+     * @param edge            The edge of the collision rectangle that was hit, or CORNER.
+     * @param normalX         The x component of the unit surface normal at the collision point.
+     * @param normalY         The y component of the unit surface normal at the collision point.
      */
-    public CollisionInfo(Point collisionPoint, Collidable collisionObject) {
+    public CollisionInfo(Point collisionPoint, Collidable collisionObject, double time, int edge,
+                         double normalX, double normalY) {
         this.collisionPoint = collisionPoint;
         this.collisionObject = collisionObject;
+        this.time = time;
+        this.edge = edge;
+        this.normalX = normalX;
+        this.normalY = normalY;
     }
 
     /**
@@ -41,4 +64,40 @@ public class CollisionInfo {
     public Collidable collisionObject() {
         return collisionObject;
     }
+
+    /**
+     * Returns the time of impact, measured in frames from the start of the movement.
+     *
+     * @return The time of impact.
+     */
+    public double time() {
+        return time;
+    }
+
+    /**
+     * Returns the edge of the collision rectangle that was hit.
+     *
+     * @return One of TOP_EDGE, RIGHT_EDGE, BOTTOM_EDGE, LEFT_EDGE or CORNER.
+     */
+    public int edge() {
+        return edge;
+    }
+
+    /**
+     * Returns the x component of the unit surface normal, pointing from the collidable towards the ball.
+     *
+     * @return The x component of the normal.
+     */
+    public double normalX() {
+        return normalX;
+    }
+
+    /**
+     * Returns the y component of the unit surface normal, pointing from the collidable towards the ball.
+     *
+     * @return The y component of the normal.
+     */
+    public double normalY() {
+        return normalY;
+    }
 }
@@ -0,0 +1,101 @@
+package spritesAndCollisonDetection;
+
+import java.util.Arrays;
+
+/**
+ * The spritesAndCollisonDetection.EntitySet class is the set of entities that have a component, kept as a
+ * dense array, so that a system visits exactly the entities it works on. Entities are kept in the order they
+ * were added until one is removed: removing an entity moves the last one into its place, in constant time.
+ */
+class EntitySet {
+    private int[] members;  // The entities in the set
+    private int size;       // Number of entities in the set
+    private int[] indexOf;  // The index of each entity in members, or -1 if it is not in the set
+
+    /**
+     * Constructs a new empty spritesAndCollisonDetection.EntitySet.
+     *
+     * @param capacity the number of entity ids to make room for.
+     */
+    EntitySet(int capacity) {
+        this.members = new int[Math.max(1, capacity)];
+        this.indexOf = new int[Math.max(1, capacity)];
+        Arrays.fill(this.indexOf, -1);
+    }
+
+    /**
+     * Returns the number of entities in the set.
+     *
+     * @return the size.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the entity at a position in the set.
+     *
+     * @param k the position, from 0 to size() - 1.
+     * @return the entity.
+     */
+    int get(int k) {
+        return this.members[k];
+    }
+
+    /**
+     * Checks whether an entity is in the set.
+     *
+     * @param e the entity.
+     * @return true if it is in the set, false otherwise.
+     */
+    boolean contains(int e) {
+        return e < this.indexOf.length && this.indexOf[e] >= 0;
+    }
+
+    /**
+     * Adds an entity at the end of the set, unless it is already in it.
+     *
+     * @param e the entity.
+     */
+    void add(int e) {
+        if (e >= this.indexOf.length) {
+            int oldLength = this.indexOf.length;
+            this.indexOf = Arrays.copyOf(this.indexOf, Math.max(e + 1, 2 * oldLength));
+            Arrays.fill(this.indexOf, oldLength, this.indexOf.length, -1);
+        }
+        if (this.indexOf[e] >= 0) {
+            return;
+        }
+        if (this.size == this.members.length) {
+            this.members = Arrays.copyOf(this.members, 2 * this.size);
+        }
+        this.indexOf[e] = this.size;
+        this.members[this.size++] = e;
+    }
+
+    /**
+     * Removes every entity from the set.
+     */
+    void clear() {
+        for (int k = 0; k < this.size; k++) {
+            this.indexOf[this.members[k]] = -1;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Removes an entity from the set, if it is in it. The last entity of the set takes its place.
+     *
+     * @param e the entity.
+     */
+    void remove(int e) {
+        if (!contains(e)) {
+            return;
+        }
+        int index = this.indexOf[e];
+        int last = this.members[--this.size];
+        this.members[index] = last;
+        this.indexOf[last] = index;
+        this.indexOf[e] = -1;
+    }
+}
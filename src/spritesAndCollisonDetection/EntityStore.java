@@ -0,0 +1,934 @@
+package spritesAndCollisonDetection;
+
+import biuoop.DrawSurface;
+import gameLogic.HitListener;
+import gameLogic.SpriteChangeEvent;
+import geometry.Point;
+import geometry.Rectangle;
+import geometry.Velocity;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The spritesAndCollisonDetection.EntityStore class keeps the game's objects as entities: plain int ids whose
+ * components (position, velocity, rectangle, color, shape, hit listeners, behaviour) are stored in arrays
+ * indexed by the id. An entity has only the components it was given, recorded in its component mask.
+ * Systems work on the entities that have the components they need: the render system draws the entities
+ * with a shape, straight from the arrays; at every step the interpolation system records where the entities
+ * with a previous position and a behaviour are, and the behaviour system then calls timePassed only on the
+ * entities with a behaviour, so static blocks are never visited. When given a viewport, the render system
+ * finds the boxes that never move through a uniform grid (the broadphase of
+ * spritesAndCollisonDetection.BlockStore) and draws them first, so that what is not visible costs next to
+ * nothing in a large world. Those boxes can also be drawn apart from what moves, into a cached layer that
+ * only needs drawing again when getStaticVersion changes. spritesAndCollisonDetection.Block,
+ * spritesAndCollisonDetection.Ball and spritesAndCollisonDetection.Paddle are thin facades over an entity
+ * created directly in the game's store.
+ * An object removed from the game leaves the systems at once, but its entity is destroyed only when the next
+ * step begins, so the object can still be read for the rest of the step it was removed in.
+ * Entities entering or leaving a store are recorded as gameLogic.SpriteChangeEvent events when Flight
+ * Recorder is on.
+ */
+public class EntityStore implements Sprite {
+    // Components
+    public static final int POSITION = 1;      // A point, e.g. the center of a circle
+    public static final int PREVIOUS = 2;      // The position before the last step, to draw between steps
+    public static final int VELOCITY = 4;      // A velocity
+    public static final int RECTANGLE = 8;     // An axis-aligned rectangle
+    public static final int COLOR = 16;        // A color
+    public static final int SHAPE = 32;        // How the entity is drawn
+    public static final int HIT_LISTENERS = 64; // Listeners notified when the entity is hit
+    public static final int BEHAVIOUR = 128;   // An object notified every step
+    // Shapes
+    public static final int CIRCLE = 1;        // A filled circle around the position
+    public static final int BOX = 2;           // A filled rectangle, optionally outlined in black
+    private static final double CELL_SIZE = 128; // Side of a cell of the grid of static boxes
+    private static final int MOVABLE = POSITION | PREVIOUS | VELOCITY | BEHAVIOUR; // Components of what moves
+    private static final int REBUILD_SLACK = 64; // Entities outside the grid tolerated on top of 1/8 of those in it
+    private int capacity;                      // Length of the component arrays
+    private int nextId;                        // The lowest id never used
+    private int[] freeIds;                     // Ids of destroyed entities, reused first
+    private int freeCount;                     // Number of reusable ids
+    private int liveCount;                     // Number of entities
+    private boolean[] alive;                   // Whether each id is an entity
+    private int[] mask;                        // The components of each entity
+    private Point[] position;
+    private Point[] previous;
+    private Velocity[] velocity;
+    private Rectangle[] rectangle;
+    private Color[] color;
+    private byte[] shape;
+    private boolean[] outlined;                // Whether a box is outlined
+    private int[] radius;                      // Radius of a circle
+    private double[] maxStep;                  // Largest move between steps drawn in between; larger moves jump
+    private List<List<HitListener>> hitListeners;
+    private Sprite[] behaviour;
+    private EntitySet drawn;                   // Entities with a shape, in drawing order
+    private EntitySet behaving;                // Entities with a behaviour, in update order
+    private Sprite[] updating;                 // Behaviours being notified; reused between steps
+    private UniformGrid grid;                  // Indexes the boxes that never move, for culling
+    private float[] boxBounds;                 // Bounds of the boxes in the grid, interleaved; NaN width if not
+    private EntitySet loose;                   // Entities with a shape that are not in the grid, checked one by one
+    private int indexedCount;                  // Number of boxes in the grid when it was built
+    private int unindexedCount;                // Entities that became loose since the grid was built
+    private boolean indexDirty;                // Whether the grid must be rebuilt before the next culled frame
+    private boolean[] retiring;                // Whether each entity was removed and awaits destruction
+    private int[] retired;                     // Entities removed since the last step, destroyed at the next
+    private int retiredCount;                  // Number of entities awaiting destruction
+    private long staticVersion;                // Changes whenever a box that never moves appears, changes or goes
+    private double drawX;                      // Where the entity being drawn is drawn
+    private double drawY;
+    private double boundsX;                    // The area the entity being culled draws in
+    private double boundsY;
+    private double boundsWidth;
+    private double boundsHeight;
+
+    /**
+     * Constructs a new empty spritesAndCollisonDetection.EntityStore.
+     */
+    public EntityStore() {
+        this(16);
+    }
+
+    /**
+     * Constructs a new empty spritesAndCollisonDetection.EntityStore with room for a number of entities.
+     *
+     * @param capacity the number of entities to make room for.
+     */
+    EntityStore(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.freeIds = new int[this.capacity];
+        this.alive = new boolean[this.capacity];
+        this.mask = new int[this.capacity];
+        this.position = new Point[this.capacity];
+        this.previous = new Point[this.capacity];
+        this.velocity = new Velocity[this.capacity];
+        this.rectangle = new Rectangle[this.capacity];
+        this.color = new Color[this.capacity];
+        this.shape = new byte[this.capacity];
+        this.outlined = new boolean[this.capacity];
+        this.radius = new int[this.capacity];
+        this.maxStep = new double[this.capacity];
+        this.hitListeners = new ArrayList<>();
+        this.behaviour = new Sprite[this.capacity];
+        this.drawn = new EntitySet(this.capacity);
+        this.behaving = new EntitySet(this.capacity);
+        this.updating = new Sprite[0];
+        this.grid = new UniformGrid(CELL_SIZE);
+        this.boxBounds = new float[this.capacity * 4];
+        Arrays.fill(this.boxBounds, Float.NaN);
+        this.loose = new EntitySet(this.capacity);
+        this.indexDirty = true;
+        this.retiring = new boolean[this.capacity];
+        this.retired = new int[this.capacity];
+    }
+
+    /**
+     * Creates an entity with no components.
+     *
+     * @return the id of the entity.
+     */
+    public int create() {
+        int e = allocate();
+        reportChange(e, true);
+        return e;
+    }
+
+    /**
+     * Creates an entity with no components, without reporting it.
+     *
+     * @return the id of the entity.
+     */
+    private int allocate() {
+        int e;
+        if (this.freeCount > 0) {
+            e = this.freeIds[--this.freeCount];
+        } else {
+            if (this.nextId == this.capacity) {
+                grow();
+            }
+            e = this.nextId++;
+            this.hitListeners.add(null);
+        }
+        this.alive[e] = true;
+        this.maxStep[e] = Double.POSITIVE_INFINITY;
+        this.liveCount++;
+        return e;
+    }
+
+    /**
+     * Destroys an entity and all its components. Its id may be reused by a later entity.
+     *
+     * @param e the id of the entity.
+     */
+    public void destroy(int e) {
+        if (isAlive(e)) {
+            reportChange(e, false);
+            release(e);
+        }
+    }
+
+    /**
+     * Takes an entity out of the systems, and destroys it when the next step begins. Until then its
+     * components can still be read and written, e.g. by the object it belongs to finishing its step.
+     *
+     * @param e the id of the entity.
+     */
+    public void retire(int e) {
+        if (!isAlive(e) || this.retiring[e]) {
+            return;
+        }
+        reportChange(e, false);
+        staticChanged(e);
+        this.boxBounds[e * 4 + 2] = Float.NaN;
+        this.drawn.remove(e);
+        this.loose.remove(e);
+        this.behaving.remove(e);
+        this.retiring[e] = true;
+        if (this.retiredCount == this.retired.length) {
+            this.retired = Arrays.copyOf(this.retired, 2 * this.retiredCount);
+        }
+        this.retired[this.retiredCount++] = e;
+    }
+
+    /**
+     * Destroys the entities retired since the last step.
+     */
+    private void reclaim() {
+        for (int k = 0; k < this.retiredCount; k++) {
+            release(this.retired[k]);
+        }
+        this.retiredCount = 0;
+    }
+
+    /**
+     * Destroys a live entity and all its components, without reporting it.
+     *
+     * @param e the id of the entity.
+     */
+    private void release(int e) {
+        staticChanged(e);
+        this.boxBounds[e * 4 + 2] = Float.NaN; // Leaves the grid without a rebuild
+        this.drawn.remove(e);
+        this.loose.remove(e);
+        this.behaving.remove(e);
+        this.alive[e] = false;
+        this.mask[e] = 0;
+        this.position[e] = null;
+        this.previous[e] = null;
+        this.velocity[e] = null;
+        this.rectangle[e] = null;
+        this.color[e] = null;
+        this.hitListeners.set(e, null);
+        this.behaviour[e] = null;
+        this.retiring[e] = false;
+        this.freeIds[this.freeCount++] = e;
+        this.liveCount--;
+    }
+
+    /**
+     * Records an entity entering or leaving the store as a gameLogic.SpriteChangeEvent, unless Flight
+     * Recorder is off.
+     *
+     * @param e     the id of the entity.
+     * @param added true if the entity entered the store, false if it is leaving it.
+     */
+    private void reportChange(int e, boolean added) {
+        SpriteChangeEvent event = new SpriteChangeEvent();
+        if (event.shouldCommit()) {
+            event.setAdded(added);
+            event.setEntity(e);
+            event.setSpriteClass(this.behaviour[e] == null ? null : this.behaviour[e].getClass());
+            event.commit();
+        }
+    }
+
+    /**
+     * Checks whether an id is a live entity.
+     *
+     * @param e the id.
+     * @return true if it is an entity, false otherwise.
+     */
+    public boolean isAlive(int e) {
+        return e >= 0 && e < this.nextId && this.alive[e];
+    }
+
+    /**
+     * Returns the number of entities.
+     *
+     * @return the number of live entities.
+     */
+    public int size() {
+        return this.liveCount;
+    }
+
+    /**
+     * Checks whether an entity has a component.
+     *
+     * @param e         the id of the entity.
+     * @param component the component, e.g. POSITION.
+     * @return true if the entity has the component, false otherwise.
+     */
+    public boolean has(int e, int component) {
+        return (this.mask[e] & component) != 0;
+    }
+
+    /**
+     * Returns the position of an entity.
+     *
+     * @param e the id of the entity.
+     * @return the position, or null if it has none.
+     */
+    public Point getPosition(int e) {
+        return this.position[e];
+    }
+
+    /**
+     * Sets the position of an entity.
+     *
+     * @param e     the id of the entity.
+     * @param point the position.
+     */
+    public void setPosition(int e, Point point) {
+        staticChanged(e); // It may no longer be static
+        this.position[e] = point;
+        this.mask[e] |= POSITION;
+        unindex(e);
+    }
+
+    /**
+     * Returns the position of an entity before the last step, as set by setPrevious or recorded by the
+     * interpolation system: the center of a circle, or the upper-left corner of a rectangle.
+     *
+     * @param e the id of the entity.
+     * @return the previous position, or null if it has none.
+     */
+    public Point getPrevious(int e) {
+        return this.previous[e];
+    }
+
+    /**
+     * Sets the position of an entity before the last step, so that frames drawn before the next step show the
+     * entity between the two positions. An entity with a behaviour has it recorded at every step from then on.
+     *
+     * @param e     the id of the entity.
+     * @param point the previous position, or upper-left corner of the rectangle.
+     */
+    public void setPrevious(int e, Point point) {
+        staticChanged(e); // It may no longer be static
+        this.previous[e] = point;
+        this.mask[e] |= PREVIOUS;
+        unindex(e);
+    }
+
+    /**
+     * Sets the largest move between two steps that is drawn in between; an entity that moved further, e.g. by
+     * wrapping around, is drawn where it is. Unbounded by default.
+     *
+     * @param e    the id of the entity.
+     * @param step the largest move along either axis.
+     */
+    public void setMaxStep(int e, double step) {
+        this.maxStep[e] = step;
+    }
+
+    /**
+     * Returns the velocity of an entity.
+     *
+     * @param e the id of the entity.
+     * @return the velocity, or null if it has none.
+     */
+    public Velocity getVelocity(int e) {
+        return this.velocity[e];
+    }
+
+    /**
+     * Sets the velocity of an entity.
+     *
+     * @param e the id of the entity.
+     * @param v the velocity.
+     */
+    public void setVelocity(int e, Velocity v) {
+        staticChanged(e); // It may no longer be static
+        this.velocity[e] = v;
+        this.mask[e] |= VELOCITY;
+        unindex(e);
+    }
+
+    /**
+     * Returns the rectangle of an entity.
+     *
+     * @param e the id of the entity.
+     * @return the rectangle, or null if it has none.
+     */
+    public Rectangle getRectangle(int e) {
+        return this.rectangle[e];
+    }
+
+    /**
+     * Sets the rectangle of an entity.
+     *
+     * @param e    the id of the entity.
+     * @param rect the rectangle.
+     */
+    public void setRectangle(int e, Rectangle rect) {
+        this.rectangle[e] = rect;
+        this.mask[e] |= RECTANGLE;
+        unindex(e);
+        staticChanged(e);
+    }
+
+    /**
+     * Returns the color of an entity.
+     *
+     * @param e the id of the entity.
+     * @return the color, or null if it has none.
+     */
+    public Color getColor(int e) {
+        return this.color[e];
+    }
+
+    /**
+     * Sets the color of an entity.
+     *
+     * @param e the id of the entity.
+     * @param c the color.
+     */
+    public void setColor(int e, Color c) {
+        this.color[e] = c;
+        this.mask[e] |= COLOR;
+        staticChanged(e);
+    }
+
+    /**
+     * Makes an entity drawn as a filled circle of its color around its position.
+     *
+     * @param e the id of the entity.
+     * @param r the radius of the circle.
+     */
+    public void setCircle(int e, int r) {
+        setShape(e, CIRCLE);
+        this.radius[e] = r;
+    }
+
+    /**
+     * Returns the radius of an entity drawn as a circle.
+     *
+     * @param e the id of the entity.
+     * @return the radius.
+     */
+    public int getRadius(int e) {
+        return this.radius[e];
+    }
+
+    /**
+     * Makes an entity drawn as its rectangle, filled with its color.
+     *
+     * @param e        the id of the entity.
+     * @param outline true to outline the rectangle in black.
+     */
+    public void setBox(int e, boolean outline) {
+        this.outlined[e] = outline;
+        setShape(e, BOX);
+    }
+
+    /**
+     * Gives an entity a shape, which adds it to the entities the render system draws.
+     *
+     * @param e    the id of the entity.
+     * @param kind the shape.
+     */
+    private void setShape(int e, int kind) {
+        staticChanged(e);
+        this.shape[e] = (byte) kind;
+        this.mask[e] |= SHAPE;
+        if (!this.retiring[e]) {
+            this.drawn.add(e);
+        }
+        unindex(e);
+        staticChanged(e);
+    }
+
+    /**
+     * Returns how an entity is drawn.
+     *
+     * @param e the id of the entity.
+     * @return CIRCLE or BOX, or 0 if it has no shape.
+     */
+    public int getShape(int e) {
+        return has(e, SHAPE) ? this.shape[e] : 0;
+    }
+
+    /**
+     * Checks whether an entity drawn as a box is outlined in black.
+     *
+     * @param e the id of the entity.
+     * @return true if the box is outlined, false otherwise.
+     */
+    public boolean isOutlined(int e) {
+        return this.outlined[e];
+    }
+
+    /**
+     * Returns the number of entities with a shape, for systems outside the store that visit them.
+     *
+     * @return the number of drawn entities.
+     */
+    public int drawnCount() {
+        return this.drawn.size();
+    }
+
+    /**
+     * Returns an entity with a shape, in drawing order.
+     *
+     * @param k the index of the entity, from 0 to drawnCount() - 1.
+     * @return the id of the entity.
+     */
+    public int drawnAt(int k) {
+        return this.drawn.get(k);
+    }
+
+    /**
+     * Returns the listeners notified when an entity is hit.
+     *
+     * @param e the id of the entity.
+     * @return the listeners, or null if it has none.
+     */
+    public List<HitListener> getHitListeners(int e) {
+        return this.hitListeners.get(e);
+    }
+
+    /**
+     * Sets the listeners notified when an entity is hit.
+     *
+     * @param e         the id of the entity.
+     * @param listeners the listeners.
+     */
+    public void setHitListeners(int e, List<HitListener> listeners) {
+        this.hitListeners.set(e, listeners);
+        this.mask[e] |= HIT_LISTENERS;
+    }
+
+    /**
+     * Sets the object notified every step on behalf of an entity, which adds the entity to the entities
+     * the behaviour system updates.
+     *
+     * @param e the id of the entity.
+     * @param s the object to notify.
+     */
+    public void setBehaviour(int e, Sprite s) {
+        staticChanged(e); // It may no longer be static
+        this.behaviour[e] = s;
+        this.mask[e] |= BEHAVIOUR;
+        unindex(e);
+        if (!this.retiring[e]) {
+            this.behaving.add(e);
+        }
+    }
+
+    /**
+     * Runs the systems of a step. The entities retired since the last step are destroyed first; then the
+     * interpolation system records the position of every entity with a behaviour and a previous position,
+     * and the behaviour system notifies every entity with a behaviour that time has passed. Behaviours may
+     * add or remove entities meanwhile.
+     */
+    @Override
+    public void timePassed() {
+        reclaim();
+        int count = this.behaving.size();
+        if (this.updating.length < count) {
+            this.updating = new Sprite[Math.max(count, 2 * this.updating.length)];
+        }
+        for (int k = 0; k < count; k++) {
+            int e = this.behaving.get(k);
+            if (has(e, PREVIOUS)) {
+                this.previous[e] = current(e); // Already outside the grid: it has a behaviour
+            }
+            this.updating[k] = this.behaviour[e];
+        }
+        for (int k = 0; k < count; k++) {
+            this.updating[k].timePassed();
+            this.updating[k] = null;
+        }
+    }
+
+    /**
+     * The render system: draws every entity with a shape, at its current position.
+     *
+     * @param d the DrawSurface to draw on.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        drawOn(d, null, 1);
+    }
+
+    /**
+     * The render system: draws the entities with a shape that can be seen through a viewport.
+     *
+     * @param d        the DrawSurface to draw on.
+     * @param viewport the visible part of the world.
+     */
+    @Override
+    public void drawOn(DrawSurface d, Rectangle viewport) {
+        drawOn(d, viewport, 1);
+    }
+
+    /**
+     * The render system: draws the entities with a shape that can be seen through a viewport, between the
+     * last two steps. Without a viewport every entity is drawn, in drawing order. With one, the
+     * visible boxes that never move are found through the grid and drawn first, then the visible entities
+     * outside the grid: those that move, and boxes added or changed since the grid was built.
+     *
+     * @param d        the DrawSurface to draw on.
+     * @param viewport the visible part of the world, or null to draw every entity.
+     * @param alpha    how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    @Override
+    public void drawOn(DrawSurface d, Rectangle viewport, double alpha) {
+        if (viewport == null) {
+            for (int k = 0; k < this.drawn.size(); k++) {
+                drawEntity(d, this.drawn.get(k), alpha);
+            }
+            return;
+        }
+        drawVisible(d, viewport, alpha, true, true);
+    }
+
+    /**
+     * The render system, for a cached layer: draws the boxes that never move and can be seen through a
+     * viewport. Together with drawMovingOn it draws what drawOn draws; what it draws only changes when
+     * getStaticVersion does.
+     *
+     * @param d        the DrawSurface to draw on.
+     * @param viewport the part of the world to draw.
+     */
+    public void drawStaticOn(DrawSurface d, Rectangle viewport) {
+        drawVisible(d, viewport, 1, true, false);
+    }
+
+    /**
+     * The render system, over a cached layer: draws the entities that move and can be seen through a
+     * viewport, between the last two steps.
+     *
+     * @param d        the DrawSurface to draw on.
+     * @param viewport the visible part of the world.
+     * @param alpha    how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    public void drawMovingOn(DrawSurface d, Rectangle viewport, double alpha) {
+        drawVisible(d, viewport, alpha, false, true);
+    }
+
+    /**
+     * Returns a number that changes whenever a box that never moves is added, changed or removed, so that a
+     * layer drawn by drawStaticOn can be kept until it does.
+     *
+     * @return the version of the static boxes.
+     */
+    public long getStaticVersion() {
+        return this.staticVersion;
+    }
+
+    /**
+     * Draws the visible entities with a shape: the boxes that never move found through the grid first, then
+     * the entities outside the grid.
+     *
+     * @param d        the DrawSurface to draw on.
+     * @param viewport the visible part of the world.
+     * @param alpha    how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     * @param still    whether to draw the boxes that never move.
+     * @param moving   whether to draw the other entities.
+     */
+    private void drawVisible(DrawSurface d, Rectangle viewport, double alpha, boolean still, boolean moving) {
+        ensureIndex();
+        if (still) {
+            double left = viewport.getUpperLeft().getX();
+            double top = viewport.getUpperLeft().getY();
+            int count = this.grid.query(this.boxBounds, null, left, top, left + viewport.getWidth(),
+                    top + viewport.getHeight());
+            for (int k = 0; k < count; k++) {
+                drawEntity(d, this.grid.found(k), alpha);
+            }
+        }
+        for (int k = 0; k < this.loose.size(); k++) {
+            int e = this.loose.get(k);
+            if ((isStatic(e) ? still : moving) && isVisible(e, viewport)) {
+                drawEntity(d, e, alpha);
+            }
+        }
+    }
+
+    /**
+     * Counts a change to an entity if it is a drawn box that never moves. Called before a change that may
+     * make it move or stop it being drawn, and after one that may change how it looks.
+     *
+     * @param e the id of the entity.
+     */
+    private void staticChanged(int e) {
+        if (has(e, SHAPE) && isStatic(e)) {
+            this.staticVersion++;
+        }
+    }
+
+    /**
+     * Checks whether an entity is a box that never moves: it has a rectangle and none of the components of
+     * something that moves.
+     *
+     * @param e the id of the entity.
+     * @return true if the entity can be kept in the grid.
+     */
+    private boolean isStatic(int e) {
+        return this.shape[e] == BOX && (this.mask[e] & MOVABLE) == 0;
+    }
+
+    /**
+     * Takes an entity that was added or changed out of the grid, if it is in it, and checks it one by one
+     * until the grid is rebuilt. The grid is rebuilt once more than REBUILD_SLACK plus an eighth of the boxes
+     * in it were taken out, so adding or changing a few boxes does not rebuild it every time.
+     *
+     * @param e the id of the entity.
+     */
+    private void unindex(int e) {
+        if (this.indexDirty) {
+            return; // Everything is classified again at the rebuild
+        }
+        this.boxBounds[e * 4 + 2] = Float.NaN;
+        if (this.drawn.contains(e) && !this.loose.contains(e)) {
+            this.loose.add(e);
+            this.unindexedCount++;
+            if (this.unindexedCount > REBUILD_SLACK + this.indexedCount / 8) {
+                this.indexDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the grid of static boxes and the set of entities outside it, if asked to.
+     */
+    private void ensureIndex() {
+        if (!this.indexDirty) {
+            return;
+        }
+        this.indexDirty = false;
+        Arrays.fill(this.boxBounds, 0, this.nextId * 4, Float.NaN);
+        this.loose.clear();
+        this.indexedCount = 0;
+        this.unindexedCount = 0;
+        for (int k = 0; k < this.drawn.size(); k++) {
+            int e = this.drawn.get(k);
+            if (isStatic(e)) {
+                Rectangle rect = this.rectangle[e];
+                this.boxBounds[e * 4] = (float) rect.getUpperLeft().getX();
+                this.boxBounds[e * 4 + 1] = (float) rect.getUpperLeft().getY();
+                this.boxBounds[e * 4 + 2] = (float) rect.getWidth();
+                this.boxBounds[e * 4 + 3] = (float) rect.getHeight();
+                this.indexedCount++;
+            } else {
+                this.loose.add(e);
+            }
+        }
+        this.grid.build(this.boxBounds, this.nextId);
+    }
+
+    /**
+     * Returns null: the entities may be anywhere.
+     *
+     * @return null.
+     */
+    @Override
+    public Rectangle getBounds() {
+        return null;
+    }
+
+    /**
+     * Draws one entity with a shape, between the last two steps.
+     *
+     * @param d     the DrawSurface to draw on.
+     * @param e     the id of the entity.
+     * @param alpha how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    void drawEntity(DrawSurface d, int e, double alpha) {
+        locate(e, alpha);
+        int x = (int) this.drawX;
+        int y = (int) this.drawY;
+        d.setColor(this.color[e]);
+        if (this.shape[e] == CIRCLE) {
+            d.fillCircle(x, y, this.radius[e]);
+            return;
+        }
+        Rectangle rect = this.rectangle[e];
+        d.fillRectangle(x, y, (int) rect.getWidth(), (int) rect.getHeight());
+        if (this.outlined[e]) {
+            d.setColor(Color.BLACK);
+            d.drawRectangle(x, y, (int) rect.getWidth(), (int) rect.getHeight());
+        }
+    }
+
+    /**
+     * Returns where an entity is drawn between the last two steps: its position, or the upper-left corner of
+     * its rectangle if it has no position, moved back towards its previous position.
+     *
+     * @param e     the id of the entity.
+     * @param alpha how far from the previous step to the current one, from 0 to 1.
+     * @return the interpolated point.
+     */
+    Point interpolated(int e, double alpha) {
+        Point current = current(e);
+        locate(e, alpha);
+        if (this.drawX == current.getX() && this.drawY == current.getY()) {
+            return current;
+        }
+        return new Point(this.drawX, this.drawY);
+    }
+
+    /**
+     * Returns the x coordinate of an entity between its previous position and its current one, as
+     * interpolated; unlike interpolated, it allocates nothing.
+     *
+     * @param e     the id of the entity.
+     * @param alpha how far from the previous step to the current one, from 0 to 1.
+     * @return the interpolated x coordinate.
+     */
+    public double getInterpolatedX(int e, double alpha) {
+        locate(e, alpha);
+        return this.drawX;
+    }
+
+    /**
+     * Returns the y coordinate of an entity between its previous position and its current one, as
+     * interpolated; unlike interpolated, it allocates nothing.
+     *
+     * @param e     the id of the entity.
+     * @param alpha how far from the previous step to the current one, from 0 to 1.
+     * @return the interpolated y coordinate.
+     */
+    public double getInterpolatedY(int e, double alpha) {
+        locate(e, alpha);
+        return this.drawY;
+    }
+
+    /**
+     * Computes where an entity is drawn between the last two steps into drawX and drawY, without allocating.
+     *
+     * @param e     the id of the entity.
+     * @param alpha how far from the previous step to the current one, from 0 to 1.
+     */
+    private void locate(int e, double alpha) {
+        Point current = current(e);
+        Point from = this.previous[e];
+        this.drawX = current.getX();
+        this.drawY = current.getY();
+        if (from == null || alpha >= 1) {
+            return;
+        }
+        double dx = current.getX() - from.getX();
+        double dy = current.getY() - from.getY();
+        if (Math.abs(dx) > this.maxStep[e] || Math.abs(dy) > this.maxStep[e]) {
+            return; // Jumped, e.g. wrapped around
+        }
+        this.drawX = from.getX() + alpha * dx;
+        this.drawY = from.getY() + alpha * dy;
+    }
+
+    /**
+     * Returns the position of an entity, or the upper-left corner of its rectangle if it has no position.
+     *
+     * @param e the id of the entity.
+     * @return the point.
+     */
+    private Point current(int e) {
+        return has(e, POSITION) ? this.position[e] : this.rectangle[e].getUpperLeft();
+    }
+
+    /**
+     * Returns the area an entity draws in between the last two steps, which covers both its previous and its
+     * current position.
+     *
+     * @param e the id of the entity.
+     * @return the bounding rectangle.
+     */
+    Rectangle boundsOf(int e) {
+        measure(e);
+        if (this.shape[e] == BOX && this.boundsWidth == this.rectangle[e].getWidth()
+                && this.boundsHeight == this.rectangle[e].getHeight()) {
+            return this.rectangle[e]; // Has not moved
+        }
+        return new Rectangle(new Point(this.boundsX, this.boundsY), this.boundsWidth, this.boundsHeight);
+    }
+
+    /**
+     * Checks whether an entity may draw inside a viewport between the last two steps, without allocating.
+     *
+     * @param e        the id of the entity.
+     * @param viewport the viewport.
+     * @return true if the area the entity draws in overlaps the viewport, boundaries included.
+     */
+    private boolean isVisible(int e, Rectangle viewport) {
+        measure(e);
+        double left = viewport.getUpperLeft().getX();
+        double top = viewport.getUpperLeft().getY();
+        return this.boundsX <= left + viewport.getWidth() && left <= this.boundsX + this.boundsWidth
+                && this.boundsY <= top + viewport.getHeight() && top <= this.boundsY + this.boundsHeight;
+    }
+
+    /**
+     * Computes the area an entity draws in between the last two steps into boundsX, boundsY, boundsWidth and
+     * boundsHeight, without allocating.
+     *
+     * @param e the id of the entity.
+     */
+    private void measure(int e) {
+        double x;
+        double y;
+        double width;
+        double height;
+        double fromX;
+        double fromY;
+        Point from = this.previous[e];
+        if (this.shape[e] == CIRCLE) {
+            int r = this.radius[e];
+            x = this.position[e].getX() - r;
+            y = this.position[e].getY() - r;
+            width = 2 * r;
+            height = 2 * r;
+            fromX = from == null ? x : from.getX() - r;
+            fromY = from == null ? y : from.getY() - r;
+        } else {
+            x = this.rectangle[e].getUpperLeft().getX();
+            y = this.rectangle[e].getUpperLeft().getY();
+            width = this.rectangle[e].getWidth();
+            height = this.rectangle[e].getHeight();
+            fromX = from == null ? x : from.getX();
+            fromY = from == null ? y : from.getY();
+        }
+        this.boundsX = Math.min(fromX, x);
+        this.boundsY = Math.min(fromY, y);
+        this.boundsWidth = width + Math.abs(x - fromX);
+        this.boundsHeight = height + Math.abs(y - fromY);
+    }
+
+    /**
+     * Doubles the length of the component arrays.
+     */
+    private void grow() {
+        this.capacity *= 2;
+        this.freeIds = Arrays.copyOf(this.freeIds, this.capacity);
+        this.alive = Arrays.copyOf(this.alive, this.capacity);
+        this.mask = Arrays.copyOf(this.mask, this.capacity);
+        this.position = Arrays.copyOf(this.position, this.capacity);
+        this.previous = Arrays.copyOf(this.previous, this.capacity);
+        this.velocity = Arrays.copyOf(this.velocity, this.capacity);
+        this.rectangle = Arrays.copyOf(this.rectangle, this.capacity);
+        this.color = Arrays.copyOf(this.color, this.capacity);
+        this.shape = Arrays.copyOf(this.shape, this.capacity);
+        this.outlined = Arrays.copyOf(this.outlined, this.capacity);
+        this.radius = Arrays.copyOf(this.radius, this.capacity);
+        this.maxStep = Arrays.copyOf(this.maxStep, this.capacity);
+        this.behaviour = Arrays.copyOf(this.behaviour, this.capacity);
+        this.retiring = Arrays.copyOf(this.retiring, this.capacity);
+        int oldLength = this.boxBounds.length;
+        this.boxBounds = Arrays.copyOf(this.boxBounds, this.capacity * 4);
+        Arrays.fill(this.boxBounds, oldLength, this.boxBounds.length, Float.NaN);
+    }
+}
@@ -0,0 +1,473 @@
+package spritesAndCollisonDetection;
+
+import biuoop.AlphaChannelNotSupportedException;
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The spritesAndCollisonDetection.FramebufferSurface class is a software rasterizer: rectangles, circles,
+ * ovals and lines are written straight into the int array behind a BufferedImage, and the finished frame
+ * is handed to the window surface as a single image. The window surface then records one command per frame
+ * instead of one per primitive. Text, polygons and images are rare and are drawn through Java2D on the
+ * same image.
+ * Filled shapes cover the pixels whose centers lie inside them, and outlines are one pixel wide and cover
+ * the same pixels as Java2D's, except for ovals, which may differ from Java2D by a pixel along the edge.
+ * Two images are used in turn, so the frame being shown is not drawn over while the window paints it.
+ * The frame may be split into horizontal tiles: drawing calls are then recorded, binned into the tiles
+ * their rows cover, and the tiles are rasterized in parallel when the frame is finished. Each tile draws
+ * its shapes in the order they were drawn, so the result is the same as drawing serially.
+ */
+public class FramebufferSurface implements DrawSurface {
+    private static final int BUFFERS = 2;  // Number of images drawn in turn
+    // Kinds of recorded drawing calls
+    private static final int LINE = 0;
+    private static final int DRAW_OVAL = 1;
+    private static final int FILL_OVAL = 2;
+    private static final int DRAW_RECTANGLE = 3;
+    private static final int FILL_RECTANGLE = 4;
+    private static final int TEXT = 5;
+    private static final int DRAW_POLYGON = 6;
+    private static final int FILL_POLYGON = 7;
+    private static final int IMAGE = 8;
+    private static final int STRIDE = 7;   // Ints per recorded call: kind, color, four arguments and payload
+    private int width;                      // Width of the frame, in pixels
+    private int height;                     // Height of the frame, in pixels
+    private int background;                 // RGB value each frame starts from
+    private BufferedImage[] images;         // The images drawn in turn
+    private int[][] pixelsOf;               // The pixels of each image, row by row
+    private Graphics2D[][] graphicsOf;      // Java2D graphics of each image and tile, clipped to the tile
+    private int current;                    // Index of the image being drawn
+    private int rgb;                        // The drawing color, as an RGB value
+    private int tileHeight;                 // Height of a tile, in rows
+    private Rasterizer[] tiles;             // One rasterizer per tile, from top to bottom
+    // Drawing calls recorded for the frame when there are several tiles
+    private int[] calls;                    // The recorded calls, STRIDE ints each
+    private int callCount;                  // Number of recorded calls
+    private List<Object> payloads;          // Texts, polygons and images of the recorded calls
+    private int[][] bins;                   // Indices of the calls each tile draws, in drawing order
+    private int[] binSizes;                 // Number of calls in each tile's bin
+    private boolean pendingClear;           // Whether the tiles still have to be filled with the background
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.FramebufferSurface that draws serially.
+     *
+     * @param width      the width of the frame, in pixels.
+     * @param height     the height of the frame, in pixels.
+     * @param background the color each frame starts from.
+     */
+    public FramebufferSurface(int width, int height, Color background) {
+        this(width, height, background, height);
+    }
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.FramebufferSurface whose frame is split into horizontal
+     * tiles, rasterized in parallel.
+     *
+     * @param width      the width of the frame, in pixels.
+     * @param height     the height of the frame, in pixels.
+     * @param background the color each frame starts from.
+     * @param tileHeight the height of a tile, in rows; a tile as high as the frame draws serially.
+     */
+    public FramebufferSurface(int width, int height, Color background, int tileHeight) {
+        this.width = width;
+        this.height = height;
+        this.background = background.getRGB();
+        this.tileHeight = Math.max(1, Math.min(tileHeight, height));
+        int tileCount = (height + this.tileHeight - 1) / this.tileHeight;
+        this.tiles = new Rasterizer[tileCount];
+        for (int t = 0; t < tileCount; t++) {
+            this.tiles[t] = new Rasterizer(width, t * this.tileHeight, Math.min(height, (t + 1) * this.tileHeight));
+        }
+        this.images = new BufferedImage[BUFFERS];
+        this.pixelsOf = new int[BUFFERS][];
+        this.graphicsOf = new Graphics2D[BUFFERS][tileCount];
+        for (int i = 0; i < BUFFERS; i++) {
+            this.images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.pixelsOf[i] = ((DataBufferInt) this.images[i].getRaster().getDataBuffer()).getData();
+            for (int t = 0; t < tileCount; t++) {
+                Rasterizer tile = this.tiles[t];
+                this.graphicsOf[i][t] = this.images[i].createGraphics();
+                this.graphicsOf[i][t].setClip(0, tile.getClipTop(), width, tile.getClipBottom() - tile.getClipTop());
+            }
+        }
+        this.calls = new int[STRIDE * 64];
+        this.payloads = new ArrayList<>();
+        this.bins = new int[tileCount][16];
+        this.binSizes = new int[tileCount];
+        this.current = BUFFERS - 1;
+        clear();
+        setColor(Color.BLACK);
+    }
+
+    /**
+     * Starts a new frame on the next image, filled with the background color.
+     */
+    public void clear() {
+        nextImage();
+        if (this.tiles.length == 1) {
+            this.tiles[0].clear(this.background);
+            return;
+        }
+        this.pendingClear = true;
+    }
+
+    /**
+     * Starts a new frame on the next image, copied from part of the last frame of another surface instead of
+     * filled with the background, e.g. from a cached layer of what does not move.
+     *
+     * @param source the surface to copy from; its frame must cover the copied part.
+     * @param x      the left side of the copied part, in the source's pixels.
+     * @param y      the top side of the copied part, in the source's pixels.
+     */
+    public void clearFrom(FramebufferSurface source, int x, int y) {
+        source.finish();
+        nextImage();
+        int[] from = source.pixelsOf[source.current];
+        int[] to = this.pixelsOf[this.current];
+        for (int row = 0; row < this.height; row++) {
+            System.arraycopy(from, (y + row) * source.width + x, to, row * this.width, this.width);
+        }
+    }
+
+    /**
+     * Moves the tiles to the next image, and forgets the calls recorded for the last frame.
+     */
+    private void nextImage() {
+        this.current = (this.current + 1) % BUFFERS;
+        for (int t = 0; t < this.tiles.length; t++) {
+            this.tiles[t].setTarget(this.pixelsOf[this.current], this.graphicsOf[this.current][t]);
+        }
+        this.callCount = 0;
+        this.payloads.clear();
+        Arrays.fill(this.binSizes, 0);
+        this.pendingClear = false;
+    }
+
+    /**
+     * Finishes the frame: rasterizes the tiles in parallel with the calls recorded since the last call.
+     * Does nothing when the frame is drawn serially.
+     */
+    public void finish() {
+        if (this.tiles.length == 1 || (this.callCount == 0 && !this.pendingClear)) {
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new TileTask(this, 0, this.tiles.length));
+        this.callCount = 0;
+        this.payloads.clear();
+        Arrays.fill(this.binSizes, 0);
+        this.pendingClear = false;
+    }
+
+    /**
+     * Draws the calls binned into one tile, in the order they were made.
+     *
+     * @param t the index of the tile.
+     */
+    void rasterizeTile(int t) {
+        Rasterizer tile = this.tiles[t];
+        if (this.pendingClear) {
+            tile.clear(this.background);
+        }
+        int[] bin = this.bins[t];
+        for (int k = 0; k < this.binSizes[t]; k++) {
+            int base = bin[k] * STRIDE;
+            tile.setColor(this.calls[base + 1]);
+            int payload = this.calls[base + 6];
+            draw(tile, this.calls[base], this.calls[base + 2], this.calls[base + 3], this.calls[base + 4],
+                    this.calls[base + 5], payload < 0 ? null : this.payloads.get(payload));
+        }
+    }
+
+    /**
+     * Draws the finished frame on a window surface, as a single image.
+     *
+     * @param d the window surface.
+     */
+    public void blitTo(DrawSurface d) {
+        finish();
+        d.drawImage(0, 0, this.images[this.current]);
+    }
+
+    /**
+     * Returns the image of the frame being drawn, finishing the frame first.
+     *
+     * @return the image.
+     */
+    public BufferedImage getImage() {
+        finish();
+        return this.images[this.current];
+    }
+
+    /**
+     * Returns the width of the frame.
+     *
+     * @return the width, in pixels.
+     */
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the frame.
+     *
+     * @return the height, in pixels.
+     */
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Sets the drawing color.
+     *
+     * @param color the color, which must be opaque.
+     */
+    @Override
+    public void setColor(Color color) {
+        if (color.getAlpha() != 255) {
+            throw new AlphaChannelNotSupportedException("Alpha channel not supported: " + color.getAlpha());
+        }
+        this.rgb = color.getRGB();
+        this.tiles[0].setColor(this.rgb);
+    }
+
+    /**
+     * Draws a one pixel wide line, both ends included.
+     *
+     * @param x1 the x coordinate of the first end.
+     * @param y1 the y coordinate of the first end.
+     * @param x2 the x coordinate of the second end.
+     * @param y2 the y coordinate of the second end.
+     */
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        submit(LINE, x1, y1, x2, y2, null, Math.min(y1, y2), Math.max(y1, y2));
+    }
+
+    /**
+     * Draws the outline of the oval inscribed in a rectangle.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        submit(DRAW_OVAL, x, y, width, height, null, y, y + height);
+    }
+
+    /**
+     * Fills the oval inscribed in a rectangle.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        submit(FILL_OVAL, x, y, width, height, null, y, y + height - 1);
+    }
+
+    /**
+     * Draws the outline of a rectangle, covering the pixels from x to x + width and from y to y + height.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        submit(DRAW_RECTANGLE, x, y, width, height, null, y, y + height);
+    }
+
+    /**
+     * Fills a rectangle, covering the pixels from x to x + width - 1 and from y to y + height - 1.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        submit(FILL_RECTANGLE, x, y, width, height, null, y, y + height - 1);
+    }
+
+    /**
+     * Draws an image through Java2D.
+     *
+     * @param x     the left side.
+     * @param y     the top side.
+     * @param image the image.
+     */
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        int imageHeight = image.getHeight(null);
+        submit(IMAGE, x, y, 0, 0, image, imageHeight < 0 ? 0 : y, imageHeight < 0 ? this.height : y + imageHeight);
+    }
+
+    /**
+     * Draws the outline of a circle.
+     *
+     * @param x      the x coordinate of the center.
+     * @param y      the y coordinate of the center.
+     * @param radius the radius.
+     */
+    @Override
+    public void drawCircle(int x, int y, int radius) {
+        drawOval(x - radius, y - radius, 2 * radius, 2 * radius);
+    }
+
+    /**
+     * Fills a circle.
+     *
+     * @param x      the x coordinate of the center.
+     * @param y      the y coordinate of the center.
+     * @param radius the radius.
+     */
+    @Override
+    public void fillCircle(int x, int y, int radius) {
+        fillOval(x - radius, y - radius, 2 * radius, 2 * radius);
+    }
+
+    /**
+     * Draws text through Java2D, in the current font at the given size.
+     *
+     * @param x        the left side of the text.
+     * @param y        the baseline of the text.
+     * @param s        the text.
+     * @param fontSize the font size.
+     */
+    @Override
+    public void drawText(int x, int y, String s, int fontSize) {
+        // Glyphs may rise well above the font size and descend below the baseline
+        submit(TEXT, x, y, fontSize, 0, s, y - 2 * fontSize, y + fontSize);
+    }
+
+    /**
+     * Draws the outline of a polygon through Java2D.
+     *
+     * @param p the polygon.
+     */
+    @Override
+    public void drawPolygon(Polygon p) {
+        Rectangle bounds = p.getBounds();
+        submit(DRAW_POLYGON, 0, 0, 0, 0, p, bounds.y, bounds.y + bounds.height);
+    }
+
+    /**
+     * Fills a polygon through Java2D.
+     *
+     * @param p the polygon.
+     */
+    @Override
+    public void fillPolygon(Polygon p) {
+        Rectangle bounds = p.getBounds();
+        submit(FILL_POLYGON, 0, 0, 0, 0, p, bounds.y, bounds.y + bounds.height);
+    }
+
+    /**
+     * Draws a call right away when the frame is drawn serially; otherwise records it in the bins of the
+     * tiles its rows cover.
+     *
+     * @param kind    the kind of call.
+     * @param a       the first argument.
+     * @param b       the second argument.
+     * @param c       the third argument.
+     * @param d       the fourth argument.
+     * @param payload the text, polygon or image of the call, or null.
+     * @param top     the first row the call may cover.
+     * @param bottom  the last row the call may cover.
+     */
+    private void submit(int kind, int a, int b, int c, int d, Object payload, int top, int bottom) {
+        if (this.tiles.length == 1) {
+            draw(this.tiles[0], kind, a, b, c, d, payload);
+            return;
+        }
+        int firstTile = Math.max(0, top) / this.tileHeight;
+        int lastTile = Math.min(this.height - 1, bottom) / this.tileHeight;
+        if (top >= this.height || bottom < 0 || firstTile > lastTile) {
+            return; // Outside the frame
+        }
+        int index = this.callCount++;
+        int base = index * STRIDE;
+        if (base + STRIDE > this.calls.length) {
+            this.calls = Arrays.copyOf(this.calls, 2 * this.calls.length);
+        }
+        this.calls[base] = kind;
+        this.calls[base + 1] = this.rgb;
+        this.calls[base + 2] = a;
+        this.calls[base + 3] = b;
+        this.calls[base + 4] = c;
+        this.calls[base + 5] = d;
+        this.calls[base + 6] = -1;
+        if (payload != null) {
+            this.calls[base + 6] = this.payloads.size();
+            this.payloads.add(payload);
+        }
+        for (int t = firstTile; t <= lastTile; t++) {
+            if (this.binSizes[t] == this.bins[t].length) {
+                this.bins[t] = Arrays.copyOf(this.bins[t], 2 * this.bins[t].length);
+            }
+            this.bins[t][this.binSizes[t]++] = index;
+        }
+    }
+
+    /**
+     * Draws a call with a rasterizer.
+     *
+     * @param tile    the rasterizer, already set to the call's color.
+     * @param kind    the kind of call.
+     * @param a       the first argument.
+     * @param b       the second argument.
+     * @param c       the third argument.
+     * @param d       the fourth argument.
+     * @param payload the text, polygon or image of the call, or null.
+     */
+    private static void draw(Rasterizer tile, int kind, int a, int b, int c, int d, Object payload) {
+        switch (kind) {
+            case LINE:
+                tile.drawLine(a, b, c, d);
+                break;
+            case DRAW_OVAL:
+                tile.drawOval(a, b, c, d);
+                break;
+            case FILL_OVAL:
+                tile.fillOval(a, b, c, d);
+                break;
+            case DRAW_RECTANGLE:
+                tile.drawRectangle(a, b, c, d);
+                break;
+            case FILL_RECTANGLE:
+                tile.fillRectangle(a, b, c, d);
+                break;
+            case TEXT:
+                tile.drawText(a, b, (String) payload, c);
+                break;
+            case DRAW_POLYGON:
+                tile.drawPolygon((Polygon) payload);
+                break;
+            case FILL_POLYGON:
+                tile.fillPolygon((Polygon) payload);
+                break;
+            default:
+                tile.drawImage(a, b, (Image) payload);
+                break;
+        }
+    }
+}
@@ -3,25 +3,35 @@ package spritesAndCollisonDetection;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import gameLogic.Game;
-import geometry.Line;
+import gameLogic.GameEnvironment;
+import gameLogic.KeyInput;
 import geometry.Point;
 import geometry.Rectangle;
 import geometry.Velocity;
 
 import java.awt.Color;
+import java.util.List;
 
 /**
  * The spritesAndCollisonDetection.Paddle class represents the player's paddle in the game.
  * It is responsible for rendering the paddle, moving it based on user input,
  * and handling collisions with the ball.
+ * The paddle is a facade over an entity of a spritesAndCollisonDetection.EntityStore, which holds its
+ * rectangle and color, and notifies the paddle every step as the entity's behaviour. The entity is created in
+ * the store of the game the paddle is for.
  * Author: Afek Nuttman
  * Version: 14.7.2024
  */
 public class Paddle implements Sprite, Collidable {
-    private Rectangle rectangle; // The rectangle representing the paddle's shape and position
-    private Color color; // The color of the paddle
+    private EntityStore entities; // The store holding the paddle's entity
+    private int entity; // The id of the paddle's entity, whose rectangle is the paddle's shape and position
     private KeyboardSensor keyboard; // The keyboard sensor to detect user input
     private int speed; // The speed at which the paddle moves
+    private GameEnvironment gameEnvironment; // The environment notified when the paddle moves, or null
+    private KeyInput input; // Timestamped keyboard input moving the paddle, or null to poll the keyboard sensor
+    private double minX; // The leftmost x coordinate the paddle may cover
+    private double maxX; // The rightmost x coordinate the paddle may cover
+    private List<Ball> balls; // The balls the paddle pushes aside when it moves into them, or null
 
     // Constants defining the regions of the paddle
     private static final int NUM_REGIONS = 5;
@@ -33,65 +43,179 @@ public class Paddle implements Sprite, Collidable {
     }
 
     /**
-     * Constructs a spritesAndCollisonDetection.Paddle with the specified properties.
+     * Constructs a spritesAndCollisonDetection.Paddle with the specified properties, whose entity is created
+     * directly in a store, the store of the game it is about to be added to.
      *
+     * @param entities  the store to create the paddle's entity in, from gameLogic.Game.getEntities().
      * @param rectangle the rectangle representing the paddle's shape and position.
      * @param color     the color of the paddle.
      * @param keyboard  the keyboard sensor to detect user input.
      * @param speed     the speed at which the paddle moves.
      */
-    public Paddle(Rectangle rectangle, Color color, KeyboardSensor keyboard, int speed) {
-        this.rectangle = rectangle;
-        this.color = color;
+    public Paddle(EntityStore entities, Rectangle rectangle, Color color, KeyboardSensor keyboard, int speed) {
+        this.entities = entities;
+        this.entity = entities.create();
+        entities.setRectangle(this.entity, rectangle);
+        entities.setPrevious(this.entity, rectangle.getUpperLeft());
+        entities.setMaxStep(this.entity, 2 * speed); // A longer move wraps around, and is not drawn in between
+        entities.setColor(this.entity, color);
+        entities.setBox(this.entity, false);
+        entities.setBehaviour(this.entity, this);
         this.keyboard = keyboard;
         this.speed = speed;
+        this.minX = Double.NEGATIVE_INFINITY;
+        this.maxX = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the horizontal range the paddle moves in. A paddle leaving the range on one side wraps
+     * around to the other. By default the range is unbounded.
+     *
+     * @param left  the leftmost x coordinate the paddle may cover.
+     * @param right the rightmost x coordinate the paddle may cover.
+     */
+    public void setMovementBounds(double left, double right) {
+        this.minX = left;
+        this.maxX = right;
+    }
+
+    /**
+     * Sets the speed at which the paddle moves.
+     *
+     * @param speed the distance the paddle moves in one step while a key is pressed.
+     */
+    public void setSpeed(int speed) {
+        this.speed = speed;
+        entities.setMaxStep(entity, 2 * speed);
+    }
+
+    /**
+     * Moves the paddle with timestamped keyboard input instead of polling the keyboard sensor.
+     *
+     * @param input the input, sampled by the game before each step.
+     */
+    public void setInput(KeyInput input) {
+        this.input = input;
+    }
+
+    /**
+     * Sets the balls the paddle pushes aside when it moves into them from the side, instead of leaving them
+     * inside it.
+     *
+     * @param balls the balls of the game, read as they change.
+     */
+    public void setBalls(List<Ball> balls) {
+        this.balls = balls;
+    }
+
+    /**
+     * Sets the game environment that is notified whenever the paddle moves.
+     *
+     * @param gameEnvironment the game environment.
+     */
+    public void setGameEnvironment(GameEnvironment gameEnvironment) {
+        this.gameEnvironment = gameEnvironment;
+    }
+
+    /**
+     * Notifies the game environment, if any, that the paddle's collision rectangle changed.
+     */
+    private void notifyMoved() {
+        if (gameEnvironment != null) {
+            gameEnvironment.collidableMoved(this);
+        }
     }
 
     /**
      * Moves the paddle to the left by the specified speed.
-     * Ensures the paddle stays within the left boundary of the screen.
+     * Ensures the paddle stays within the left boundary of its movement range.
      */
     public void moveLeft() {
-        double newX = rectangle.getUpperLeft().getX() - speed;
-        // Ensure the paddle does not move out of the screen on the left
-        if (newX > 5) {
-            rectangle = new Rectangle(new Point(newX, rectangle.getUpperLeft().getY()),
-                    rectangle.getWidth(), rectangle.getHeight());
-        } else {
-            // Wrap the paddle to the right side if it goes out of the left boundary
-            rectangle = new Rectangle(new Point(795 - rectangle.getWidth(), rectangle.getUpperLeft().getY()),
-                    rectangle.getWidth(), rectangle.getHeight());
-        }
+        moveBy(-speed);
     }
 
     /**
      * Moves the paddle to the right by the specified speed.
-     * Ensures the paddle stays within the right boundary of the screen.
+     * Ensures the paddle stays within the right boundary of its movement range.
      */
     public void moveRight() {
-        double newX = rectangle.getUpperLeft().getX() + speed;
-        // Ensure the paddle does not move out of the screen on the right
-        if (newX + rectangle.getWidth() < 795) { // Assuming the game width is 800
-            rectangle = new Rectangle(new Point(newX, rectangle.getUpperLeft().getY()),
-                    rectangle.getWidth(), rectangle.getHeight());
-        } else {
-            // Wrap the paddle to the left side if it goes out of the right boundary
-            rectangle = new Rectangle(new Point(5, rectangle.getUpperLeft().getY()),
-                    rectangle.getWidth(), rectangle.getHeight());
+        moveBy(speed);
+    }
+
+    /**
+     * Moves the paddle horizontally. A paddle leaving its movement range on one side wraps around to the other.
+     *
+     * @param dx the distance to move, negative to move left.
+     */
+    private void moveBy(double dx) {
+        Rectangle rectangle = getCollisionRectangle();
+        double newX = rectangle.getUpperLeft().getX() + dx;
+        double y = rectangle.getUpperLeft().getY();
+        if (dx < 0 && newX <= minX) {
+            newX = maxX - rectangle.getWidth(); // Wrap the paddle to the right side
+        } else if (dx > 0 && newX + rectangle.getWidth() >= maxX) {
+            newX = minX; // Wrap the paddle to the left side
+        }
+        entities.setRectangle(entity, new Rectangle(new Point(newX, y), rectangle.getWidth(), rectangle.getHeight()));
+        pushBalls(newX, y, rectangle.getWidth(), rectangle.getHeight());
+        notifyMoved();
+    }
+
+    /**
+     * Pushes the balls the paddle moved into below its top edge out of its nearer side. A ball left inside the
+     * paddle would be pushed out through its closest edge when it moves next, which for a ball low beside the
+     * paddle is the bottom one, into the floor the paddle rests on; the further the paddle moves in one step,
+     * the deeper it reaches into such balls. A side with no room for the ball between it and a wall pushes the
+     * ball out of the other side rather than wedge it between the two.
+     *
+     * @param x      the paddle's new left edge.
+     * @param y      the paddle's top edge.
+     * @param width  the paddle's width.
+     * @param height the paddle's height.
+     */
+    private void pushBalls(double x, double y, double width, double height) {
+        if (balls == null) {
+            return;
+        }
+        for (int i = 0; i < balls.size(); i++) {
+            Ball ball = balls.get(i);
+            Point center = ball.getCenter();
+            int radius = ball.getSize();
+            if (center.getY() <= y || center.getY() >= y + height + radius
+                    || center.getX() <= x - radius || center.getX() >= x + width + radius) {
+                continue; // Above the paddle, where it bounces off the top as usual, or clear of it
+            }
+            boolean left = center.getX() < x + width / 2;
+            if (left && x - 2 * radius <= minX) {
+                left = false;
+            } else if (!left && x + width + 2 * radius >= maxX) {
+                left = true;
+            }
+            ball.setCenter(new Point(left ? x - radius : x + width + radius, center.getY()));
         }
     }
 
     /**
      * Notifies the paddle that time has passed.
-     * Moves the paddle left or right based on the user's key presses.
+     * Moves the paddle left or right based on the user's key presses. With timestamped input, the paddle
+     * moves by the part of the step each key was held, so a tap shorter than a step still moves it.
+     * The entity store has already recorded the position before the step for drawing between steps.
      */
     @Override
     public void timePassed() {
+        int length = gameEnvironment == null ? 1 : gameEnvironment.getStepLength(); // Frames in the step
+        if (input != null) {
+            double direction = input.getHeld(KeyboardSensor.RIGHT_KEY) - input.getHeld(KeyboardSensor.LEFT_KEY);
+            if (direction != 0) {
+                moveBy(direction * speed * length);
+            }
+            return;
+        }
         if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
-            moveLeft();
+            moveBy(-speed * length);
         }
         if (keyboard.isPressed(KeyboardSensor.RIGHT_KEY)) {
-            moveRight();
+            moveBy(speed * length);
         }
     }
 
@@ -102,10 +226,30 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public void drawOn(DrawSurface d) {
-        d.setColor(this.color);
-        Point upperLeft = rectangle.getUpperLeft();
-        d.fillRectangle((int) upperLeft.getX(), (int) upperLeft.getY(),
-                (int) rectangle.getWidth(), (int) rectangle.getHeight());
+        entities.drawEntity(d, entity, 1);
+    }
+
+    /**
+     * Draws the paddle between its position before the last simulation step and its current one.
+     * A paddle that wrapped around during the step is drawn where it is now.
+     *
+     * @param d        the DrawSurface to draw the paddle on.
+     * @param viewport the visible part of the world.
+     * @param alpha    how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    @Override
+    public void drawOn(DrawSurface d, Rectangle viewport, double alpha) {
+        entities.drawEntity(d, entity, alpha);
+    }
+
+    /**
+     * Returns the area the paddle draws in, which covers both its previous and its current position.
+     *
+     * @return the bounding rectangle of the paddle.
+     */
+    @Override
+    public Rectangle getBounds() {
+        return entities.boundsOf(entity);
     }
 
     /**
@@ -115,44 +259,43 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public Rectangle getCollisionRectangle() {
-        return this.rectangle;
+        return entities.getRectangle(entity);
+    }
+
+    /**
+     * Returns the color of the paddle.
+     *
+     * @return the color.
+     */
+    public Color getColor() {
+        return entities.getColor(entity);
     }
 
     /**
      * Handles the collision with the paddle.
-     * Determines the new velocity of the ball based on the collision point.
+     * A hit on the top edge sends the ball off at the angle of the paddle region that was hit;
+     * any other hit reflects the ball about the surface normal.
      *
      * @param hitter          the ball that hit the paddle.
-     * @param collisionPoint  the point where the collision occurred.
+     * @param collision       the collision, including the collision point, hit edge and normal.
      * @param currentVelocity the current velocity of the ball.
      * @return the new velocity of the ball after the collision.
      */
     @Override
-    public Velocity hit(Ball hitter, Point collisionPoint, Velocity currentVelocity) {
-        // Calculate the region of the paddle where the collision occurred
-        Line[] edges = rectangle.getEdges();
-        Velocity newVelocity = currentVelocity;
-        for (Line edge : edges) {
-            if (edge.isOnLine(collisionPoint)) {
-                if (edge.equals(new Line(rectangle.getUpperLeft(), new Point(rectangle.getUpperLeft().getX()
-                        + rectangle.getWidth(), rectangle.getUpperLeft().getY() + rectangle.getHeight())))) {
-                    int region = getCollisionRegion(collisionPoint);
-                    double newAngle = calculateNewAngle(region);
-                    if (newAngle == 0) {
-                        newVelocity = new Velocity(currentVelocity.getDx(), -currentVelocity.getDy());
-                    } else {
-                        newVelocity = Velocity.fromAngleAndSpeed(newAngle, currentVelocity.getSpeed());
-                    }
-                } else {
-                    // If the collision is with a vertical edge
-                    if (edge.isVertical()) {
-                        newVelocity.setDy(-newVelocity.getDy());
-                    } else if (edge.isHorizontal()) {
-                        newVelocity.setDx(-newVelocity.getDx());
-                    }
-                }
-                break;
+    public Velocity hit(Ball hitter, CollisionInfo collision, Velocity currentVelocity) {
+        Velocity newVelocity;
+        if (collision.edge() == CollisionInfo.TOP_EDGE) {
+            // Calculate the region of the paddle where the collision occurred
+            int region = getCollisionRegion(collision.collisionPoint());
+            double newAngle = calculateNewAngle(region);
+            if (newAngle == 0) {
+                newVelocity = new Velocity(currentVelocity.getDx(), -currentVelocity.getDy());
+            } else {
+                // Region angles are measured clockwise from straight up
+                newVelocity = Velocity.fromAngleAndSpeed(newAngle - 90, currentVelocity.getSpeed());
             }
+        } else {
+            newVelocity = currentVelocity.reflect(collision.normalX(), collision.normalY());
         }
         // Ensure the ball always bounces upwards
         if (newVelocity.getDy() > 0) {
@@ -169,12 +312,10 @@ public class Paddle implements Sprite, Collidable {
      */
     private int getCollisionRegion(Point collisionPoint) {
         // Calculate the x-coordinate relative to the paddle's position
-        double relativeX = collisionPoint.getX() - this.rectangle.getUpperLeft().getX();
-        // Determine the region based on the relative x-coordinate
-        if (relativeX == REGION_WIDTH) {
-            return (int) (relativeX / REGION_WIDTH);
-        }
-        return (int) (relativeX / REGION_WIDTH) + 1;
+        double relativeX = collisionPoint.getX() - getCollisionRectangle().getUpperLeft().getX();
+        // Determine the region based on the relative x-coordinate; the right end belongs to the last region
+        int region = (int) (relativeX / REGION_WIDTH) + 1;
+        return Math.max(1, Math.min(NUM_REGIONS, region));
     }
 
     /**
@@ -192,12 +333,16 @@ public class Paddle implements Sprite, Collidable {
     }
 
     /**
-     * Adds the paddle to the game as both a sprite and a collidable object.
+     * Adds the paddle to the game: the paddle is registered as a collidable object. Its entity is already in
+     * the game's entity store, which draws and moves it.
      *
      * @param g the game to add the paddle to.
+     * @throws IllegalArgumentException if the paddle's entity was created in another store.
      */
     public void addToGame(Game g) {
-        g.addSprite(this);
+        if (entities != g.getEntities()) {
+            throw new IllegalArgumentException("the paddle was created in another game's entity store");
+        }
         g.addCollidable(this);
     }
 }
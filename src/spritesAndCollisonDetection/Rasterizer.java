@@ -0,0 +1,350 @@
+package spritesAndCollisonDetection;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.Arrays;
+
+/**
+ * The spritesAndCollisonDetection.Rasterizer class writes shapes into a band of rows of a framebuffer.
+ * Every shape is computed row by row from its own coordinates only, so a shape drawn by several rasterizers
+ * over adjacent bands covers exactly the pixels it covers when drawn over the whole frame at once.
+ * Text, polygons and images are drawn through Java2D graphics clipped to the same band.
+ */
+class Rasterizer {
+    private int width;           // Width of the frame, in pixels
+    private int clipTop;         // First row this rasterizer writes
+    private int clipBottom;      // Row after the last row this rasterizer writes
+    private int[] pixels;        // The pixels of the frame, row by row
+    private Graphics2D graphics; // Java2D graphics of the frame, clipped to the band
+    private int rgb;             // The drawing color, as an RGB value
+    private Color color;         // The drawing color last set on the Java2D graphics, or null
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.Rasterizer for a band of rows.
+     *
+     * @param width      the width of the frame, in pixels.
+     * @param clipTop    the first row to write.
+     * @param clipBottom the row after the last row to write.
+     */
+    Rasterizer(int width, int clipTop, int clipBottom) {
+        this.width = width;
+        this.clipTop = clipTop;
+        this.clipBottom = clipBottom;
+    }
+
+    /**
+     * Returns the first row this rasterizer writes.
+     *
+     * @return the row.
+     */
+    int getClipTop() {
+        return this.clipTop;
+    }
+
+    /**
+     * Returns the row after the last row this rasterizer writes.
+     *
+     * @return the row.
+     */
+    int getClipBottom() {
+        return this.clipBottom;
+    }
+
+    /**
+     * Sets the frame to draw into.
+     *
+     * @param pixels   the pixels of the frame.
+     * @param graphics Java2D graphics of the frame, clipped to this rasterizer's band.
+     */
+    void setTarget(int[] pixels, Graphics2D graphics) {
+        this.pixels = pixels;
+        this.graphics = graphics;
+        if (this.color != null) {
+            graphics.setColor(this.color); // Keeps the color rather than creating it again every frame
+        }
+    }
+
+    /**
+     * Sets the drawing color.
+     *
+     * @param rgb the color, as an RGB value.
+     */
+    void setColor(int rgb) {
+        this.rgb = rgb;
+    }
+
+    /**
+     * Fills the band with a color.
+     *
+     * @param background the color, as an RGB value.
+     */
+    void clear(int background) {
+        Arrays.fill(this.pixels, this.clipTop * this.width, this.clipBottom * this.width, background);
+    }
+
+    /**
+     * Draws a one pixel wide line with Bresenham's algorithm, both ends included.
+     *
+     * @param x1 the x coordinate of the first end.
+     * @param y1 the y coordinate of the first end.
+     * @param x2 the x coordinate of the second end.
+     * @param y2 the y coordinate of the second end.
+     */
+    void drawLine(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int stepX = x1 < x2 ? 1 : -1;
+        int stepY = y1 < y2 ? 1 : -1;
+        int error = dx + dy;
+        int x = x1;
+        int y = y1;
+        while (true) {
+            plot(x, y);
+            if (x == x2 && y == y2) {
+                return;
+            }
+            int doubled = 2 * error;
+            if (doubled >= dy) {
+                error += dy;
+                x += stepX;
+            }
+            if (doubled <= dx) {
+                error += dx;
+                y += stepY;
+            }
+        }
+    }
+
+    /**
+     * Draws the outline of the oval inscribed in a rectangle.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    void drawOval(int x, int y, int width, int height) {
+        // The outline runs through the centers of the rectangle's edge pixels and is one pixel thick
+        double centerX = x + width / 2.0 + 0.5;
+        double centerY = y + height / 2.0 + 0.5;
+        double outerA = width / 2.0 + 0.5;
+        double outerB = height / 2.0 + 0.5;
+        double innerA = width / 2.0 - 0.5;
+        double innerB = height / 2.0 - 0.5;
+        for (int row = Math.max(y, this.clipTop); row < Math.min(y + height + 1, this.clipBottom); row++) {
+            double offset = row + 0.5 - centerY;
+            double outer = halfSpan(outerA, outerB, offset);
+            if (outer < 0) {
+                continue;
+            }
+            int outerLeft = spanStart(centerX - outer);
+            int outerRight = spanEnd(centerX + outer);
+            double inner = halfSpan(innerA, innerB, offset);
+            if (inner < 0) {
+                fillSpan(row, outerLeft, outerRight);
+            } else {
+                fillSpan(row, outerLeft, Math.min(outerRight, spanStart(centerX - inner) - 1));
+                fillSpan(row, Math.max(outerLeft, spanEnd(centerX + inner) + 1), outerRight);
+            }
+        }
+    }
+
+    /**
+     * Fills the oval inscribed in a rectangle.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    void fillOval(int x, int y, int width, int height) {
+        double centerX = x + width / 2.0;
+        double centerY = y + height / 2.0;
+        for (int row = Math.max(y, this.clipTop); row < Math.min(y + height, this.clipBottom); row++) {
+            double half = halfSpan(width / 2.0, height / 2.0, row + 0.5 - centerY);
+            if (half >= 0) {
+                fillSpan(row, spanStart(centerX - half), spanEnd(centerX + half));
+            }
+        }
+    }
+
+    /**
+     * Draws the outline of a rectangle, covering the pixels from x to x + width and from y to y + height.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    void drawRectangle(int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            return;
+        }
+        fillSpan(y, x, x + width);
+        fillSpan(y + height, x, x + width);
+        int fromRow = Math.max(y + 1, this.clipTop);
+        int toRow = Math.min(y + height, this.clipBottom);
+        if (x >= 0 && x < this.width) {
+            for (int i = fromRow * this.width + x; i < toRow * this.width; i += this.width) {
+                this.pixels[i] = this.rgb;
+            }
+        }
+        int right = x + width;
+        if (right >= 0 && right < this.width) {
+            for (int i = fromRow * this.width + right; i < toRow * this.width; i += this.width) {
+                this.pixels[i] = this.rgb;
+            }
+        }
+    }
+
+    /**
+     * Fills a rectangle, covering the pixels from x to x + width - 1 and from y to y + height - 1.
+     *
+     * @param x      the left side.
+     * @param y      the top side.
+     * @param width  the width.
+     * @param height the height.
+     */
+    void fillRectangle(int x, int y, int width, int height) {
+        int start = Math.max(x, 0);
+        int end = Math.min(x + width, this.width);
+        if (start >= end) {
+            return;
+        }
+        int toRow = Math.min(y + height, this.clipBottom);
+        for (int rowStart = Math.max(y, this.clipTop) * this.width; rowStart < toRow * this.width;
+             rowStart += this.width) {
+            Arrays.fill(this.pixels, rowStart + start, rowStart + end, this.rgb);
+        }
+    }
+
+    /**
+     * Draws text through Java2D, in the current font at the given size.
+     *
+     * @param x        the left side of the text.
+     * @param y        the baseline of the text.
+     * @param s        the text.
+     * @param fontSize the font size.
+     */
+    void drawText(int x, int y, String s, int fontSize) {
+        Graphics2D g = java2d();
+        Font font = g.getFont();
+        if (font.getSize() != fontSize) {
+            g.setFont(new Font(font.getFontName(), font.getStyle(), fontSize));
+        }
+        g.drawString(s, x, y);
+    }
+
+    /**
+     * Draws the outline of a polygon through Java2D.
+     *
+     * @param p the polygon.
+     */
+    void drawPolygon(Polygon p) {
+        java2d().drawPolygon(p);
+    }
+
+    /**
+     * Fills a polygon through Java2D.
+     *
+     * @param p the polygon.
+     */
+    void fillPolygon(Polygon p) {
+        java2d().fillPolygon(p);
+    }
+
+    /**
+     * Draws an image through Java2D.
+     *
+     * @param x     the left side.
+     * @param y     the top side.
+     * @param image the image.
+     */
+    void drawImage(int x, int y, Image image) {
+        java2d().drawImage(image, x, y, null);
+    }
+
+    /**
+     * Returns the Java2D graphics of the frame, set to the drawing color.
+     *
+     * @return the graphics.
+     */
+    private Graphics2D java2d() {
+        // Colors are opaque: compare without the alpha bits, or a color set without them never matches
+        if (this.color == null || (this.color.getRGB() & 0xFFFFFF) != (this.rgb & 0xFFFFFF)) {
+            this.color = new Color(this.rgb);
+            this.graphics.setColor(this.color);
+        }
+        return this.graphics;
+    }
+
+    /**
+     * Returns half the width of an ellipse centered at the origin at a given height.
+     *
+     * @param a      the horizontal semi-axis.
+     * @param b      the vertical semi-axis.
+     * @param offset the height, relative to the center.
+     * @return half the width of the ellipse at that height, or -1 if the ellipse does not reach it.
+     */
+    private static double halfSpan(double a, double b, double offset) {
+        if (a <= 0 || b <= 0 || Math.abs(offset) > b) {
+            return -1;
+        }
+        double t = offset / b;
+        return a * Math.sqrt(1 - t * t);
+    }
+
+    /**
+     * Returns the first pixel whose center lies at or right of a position.
+     *
+     * @param left the position.
+     * @return the pixel column.
+     */
+    private static int spanStart(double left) {
+        return (int) Math.ceil(left - 0.5);
+    }
+
+    /**
+     * Returns the last pixel whose center lies at or left of a position.
+     *
+     * @param right the position.
+     * @return the pixel column.
+     */
+    private static int spanEnd(double right) {
+        return (int) Math.floor(right - 0.5);
+    }
+
+    /**
+     * Sets a single pixel to the drawing color, if it lies in the band.
+     *
+     * @param x the pixel column.
+     * @param y the pixel row.
+     */
+    private void plot(int x, int y) {
+        if (x >= 0 && x < this.width && y >= this.clipTop && y < this.clipBottom) {
+            this.pixels[y * this.width + x] = this.rgb;
+        }
+    }
+
+    /**
+     * Sets a run of pixels in a row to the drawing color, clipped to the band.
+     *
+     * @param y    the pixel row.
+     * @param from the first pixel column.
+     * @param to   the last pixel column, included.
+     */
+    private void fillSpan(int y, int from, int to) {
+        if (y < this.clipTop || y >= this.clipBottom) {
+            return;
+        }
+        int start = Math.max(from, 0);
+        int end = Math.min(to, this.width - 1);
+        if (start <= end) {
+            int rowStart = y * this.width;
+            Arrays.fill(this.pixels, rowStart + start, rowStart + end + 1, this.rgb);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package spritesAndCollisonDetection;
 
 import biuoop.DrawSurface;
+import geometry.Rectangle;
 
 /**
  * The spritesAndCollisonDetection.Sprite interface represents an object that can be drawn on a DrawSurface
@@ -20,4 +21,37 @@ public interface Sprite {
      * Notifies the sprite that a unit of time has passed, allowing it to update its state.
      */
     void timePassed();
+
+    /**
+     * Returns the area the sprite draws in, so that sprites outside the viewport can be skipped.
+     *
+     * @return the bounding rectangle, or null if the sprite may draw anywhere.
+     */
+    default Rectangle getBounds() {
+        return null;
+    }
+
+    /**
+     * Draws the part of the sprite inside a viewport. Sprites made of many parts override this to
+     * look up only their visible parts; by default the whole sprite is drawn.
+     *
+     * @param d        the DrawSurface on which to draw the sprite.
+     * @param viewport the visible part of the world.
+     */
+    default void drawOn(DrawSurface d, Rectangle viewport) {
+        drawOn(d);
+    }
+
+    /**
+     * Draws the part of the sprite inside a viewport, between two simulation steps. Moving sprites
+     * override this to draw themselves between their position before the last step and their current one;
+     * by default the sprite is drawn where it is.
+     *
+     * @param d        the DrawSurface on which to draw the sprite.
+     * @param viewport the visible part of the world.
+     * @param alpha    how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    default void drawOn(DrawSurface d, Rectangle viewport, double alpha) {
+        drawOn(d, viewport);
+    }
 }
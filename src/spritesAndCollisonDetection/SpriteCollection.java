@@ -2,8 +2,11 @@ package spritesAndCollisonDetection;
 // 213459381 Afek Nuttman
 
 import biuoop.DrawSurface;
+import gameLogic.SpriteChangeEvent;
+import geometry.Rectangle;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -14,12 +17,14 @@ import java.util.List;
  */
 public class SpriteCollection {
     private List<Sprite> sprites; // List to hold all sprites
+    private Sprite[] snapshot;    // Copy of the sprites iterated over while they may change, reused
 
     /**
      * Constructs an empty spritesAndCollisonDetection.SpriteCollection.
      */
     public SpriteCollection() {
         this.sprites = new ArrayList<>();
+        this.snapshot = new Sprite[0];
     }
 
     /**
@@ -29,6 +34,12 @@ public class SpriteCollection {
      */
     public void addSprite(Sprite s) {
         this.sprites.add(s);
+        SpriteChangeEvent event = new SpriteChangeEvent();
+        if (event.shouldCommit()) {
+            event.setAdded(true);
+            event.setSpriteClass(s.getClass());
+            event.commit();
+        }
     }
 
     /**
@@ -38,6 +49,20 @@ public class SpriteCollection {
      */
     public void removeSprite(Sprite s) {
         sprites.remove(s);
+        SpriteChangeEvent event = new SpriteChangeEvent();
+        if (event.shouldCommit()) {
+            event.setSpriteClass(s.getClass());
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the number of sprites in the collection.
+     *
+     * @return the number of sprites.
+     */
+    public int size() {
+        return this.sprites.size();
     }
 
     /**
@@ -46,11 +71,57 @@ public class SpriteCollection {
      * @param d the DrawSurface on which to draw the sprites.
      */
     public void drawAllOn(DrawSurface d) {
-        // Create a copy of the sprites list to avoid ConcurrentModificationException
-        List<Sprite> spritesCopy = new ArrayList<>(this.sprites);
-        for (Sprite s : spritesCopy) {
-            s.drawOn(d);
+        int count = takeSnapshot();
+        for (int i = 0; i < count; i++) {
+            this.snapshot[i].drawOn(d);
         }
+        releaseSnapshot(count);
+    }
+
+    /**
+     * Draws the sprites that can be seen through a viewport, in the order they were added.
+     * Sprites whose bounds lie outside the viewport are skipped, and sprites made of many parts
+     * only draw their visible parts, so the cost depends on what is visible rather than on the world size.
+     *
+     * @param d        the DrawSurface on which to draw the sprites, in world coordinates.
+     * @param viewport the visible part of the world.
+     */
+    public void drawAllOn(DrawSurface d, Rectangle viewport) {
+        drawAllOn(d, viewport, 1);
+    }
+
+    /**
+     * Draws the sprites that can be seen through a viewport, between two simulation steps.
+     * Moving sprites are drawn at the given fraction of the way from their previous position to their current one.
+     *
+     * @param d        the DrawSurface on which to draw the sprites, in world coordinates.
+     * @param viewport the visible part of the world.
+     * @param alpha    how far the drawn frame is from the previous step to the current one, from 0 to 1.
+     */
+    public void drawAllOn(DrawSurface d, Rectangle viewport, double alpha) {
+        int count = takeSnapshot();
+        for (int i = 0; i < count; i++) {
+            Sprite s = this.snapshot[i];
+            Rectangle bounds = s.getBounds();
+            if (bounds == null || overlaps(bounds, viewport)) {
+                s.drawOn(d, viewport, alpha);
+            }
+        }
+        releaseSnapshot(count);
+    }
+
+    /**
+     * Checks whether two rectangles overlap, boundaries included.
+     *
+     * @param a the first rectangle.
+     * @param b the second rectangle.
+     * @return true if they overlap, false otherwise.
+     */
+    private static boolean overlaps(Rectangle a, Rectangle b) {
+        return a.getUpperLeft().getX() <= b.getUpperLeft().getX() + b.getWidth()
+                && b.getUpperLeft().getX() <= a.getUpperLeft().getX() + a.getWidth()
+                && a.getUpperLeft().getY() <= b.getUpperLeft().getY() + b.getHeight()
+                && b.getUpperLeft().getY() <= a.getUpperLeft().getY() + a.getHeight();
     }
 
     /**
@@ -58,10 +129,31 @@ public class SpriteCollection {
      * allowing them to update their state.
      */
     public void notifyAllTimePassed() {
-        // Create a copy of the sprites list to avoid ConcurrentModificationException
-        List<Sprite> spritesCopy = new ArrayList<>(this.sprites);
-        for (Sprite s : spritesCopy) {
-            s.timePassed();
+        int count = takeSnapshot();
+        for (int i = 0; i < count; i++) {
+            this.snapshot[i].timePassed();
         }
+        releaseSnapshot(count);
+    }
+
+    /**
+     * Copies the sprites into the snapshot, so that sprites may be added or removed while it is iterated over
+     * without a ConcurrentModificationException. The snapshot array is reused, and only grows with the
+     * collection, so iterating allocates nothing; the iterations over one collection must not nest.
+     *
+     * @return the number of sprites in the snapshot.
+     */
+    private int takeSnapshot() {
+        this.snapshot = this.sprites.toArray(this.snapshot);
+        return this.sprites.size();
+    }
+
+    /**
+     * Clears the snapshot once iterated over, so that it holds no removed sprite.
+     *
+     * @param count the number of sprites in the snapshot.
+     */
+    private void releaseSnapshot(int count) {
+        Arrays.fill(this.snapshot, 0, count, null);
     }
 }
@@ -0,0 +1,114 @@
+package spritesAndCollisonDetection;
+
+import biuoop.DrawSurface;
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+
+/**
+ * The spritesAndCollisonDetection.StaticLayer class caches the part of a frame that does not move, such as
+ * the walls and the blocks, as an image. A frame then starts from the image and only draws what moves on
+ * top, instead of drawing every block again. The layer covers the viewport plus a margin on every side, so
+ * the camera may move a little before the layer has to be drawn again; it is also drawn again whenever the
+ * version of what it shows changes. Two images are drawn in turn, so the layer a window is painting is not
+ * drawn over.
+ */
+public class StaticLayer {
+    private static final int MARGIN = 128;  // Pixels cached beyond each side of the viewport
+    private FramebufferSurface surface;     // The cached layer
+    private int viewportWidth;              // Width of the viewports the layer is drawn under
+    private int viewportHeight;             // Height of the viewports the layer is drawn under
+    private int originX;                    // World x coordinate of the layer's left side
+    private int originY;                    // World y coordinate of the layer's top side
+    private long version;                   // Version of what the layer shows, when it was drawn
+    private boolean drawn;                  // Whether the layer was drawn at least once
+    private int redraws;                    // Number of times the layer was drawn
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.StaticLayer, not drawn yet.
+     *
+     * @param viewportWidth  the width of the viewports the layer is drawn under.
+     * @param viewportHeight the height of the viewports the layer is drawn under.
+     * @param background     the color the layer starts from.
+     */
+    public StaticLayer(int viewportWidth, int viewportHeight, Color background) {
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+        this.surface = new FramebufferSurface(viewportWidth + 2 * MARGIN, viewportHeight + 2 * MARGIN, background);
+    }
+
+    /**
+     * Checks whether the layer can be drawn under a viewport as it is.
+     *
+     * @param version  the version of what the layer shows now.
+     * @param viewport the visible part of the world, in whole pixels.
+     * @return true if the layer was drawn from that version and covers the viewport, false otherwise.
+     */
+    public boolean isCurrent(long version, Rectangle viewport) {
+        int x = (int) viewport.getUpperLeft().getX();
+        int y = (int) viewport.getUpperLeft().getY();
+        return this.drawn && this.version == version && x >= this.originX && y >= this.originY
+                && x + this.viewportWidth <= this.originX + this.surface.getWidth()
+                && y + this.viewportHeight <= this.originY + this.surface.getHeight();
+    }
+
+    /**
+     * Starts drawing the layer again, centered on a viewport.
+     *
+     * @param version  the version of what the layer will show.
+     * @param viewport the visible part of the world, in whole pixels.
+     * @return a surface to draw the layer on, in world coordinates.
+     */
+    public DrawSurface redraw(long version, Rectangle viewport) {
+        this.originX = (int) viewport.getUpperLeft().getX() - MARGIN;
+        this.originY = (int) viewport.getUpperLeft().getY() - MARGIN;
+        this.version = version;
+        this.drawn = true;
+        this.redraws++;
+        this.surface.clear();
+        return new CameraSurface(this.surface, this.originX, this.originY);
+    }
+
+    /**
+     * Returns the part of the world the layer covers.
+     *
+     * @return the area, in world coordinates.
+     */
+    public Rectangle getArea() {
+        return new Rectangle(new Point(this.originX, this.originY), this.surface.getWidth(),
+                this.surface.getHeight());
+    }
+
+    /**
+     * Draws the layer on a window surface, under a viewport.
+     *
+     * @param d        the window surface.
+     * @param viewport the visible part of the world, in whole pixels.
+     */
+    public void drawOn(DrawSurface d, Rectangle viewport) {
+        d.drawImage(this.originX - (int) viewport.getUpperLeft().getX(),
+                this.originY - (int) viewport.getUpperLeft().getY(), this.surface.getImage());
+    }
+
+    /**
+     * Starts a frame of the software rasterizer from the layer, under a viewport, which is faster than
+     * clearing the frame and drawing the layer on it.
+     *
+     * @param frame    the frame to start.
+     * @param viewport the visible part of the world, in whole pixels, as large as the frame.
+     */
+    public void startFrame(FramebufferSurface frame, Rectangle viewport) {
+        frame.clearFrom(this.surface, (int) viewport.getUpperLeft().getX() - this.originX,
+                (int) viewport.getUpperLeft().getY() - this.originY);
+    }
+
+    /**
+     * Returns the number of times the layer was drawn.
+     *
+     * @return the number of redraws.
+     */
+    public int getRedraws() {
+        return this.redraws;
+    }
+}
@@ -0,0 +1,41 @@
+package spritesAndCollisonDetection;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The spritesAndCollisonDetection.TileTask class rasterizes a range of tiles of a
+ * spritesAndCollisonDetection.FramebufferSurface, splitting the range in halves until each task draws
+ * a single tile.
+ */
+class TileTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L; // Version of the serialized form
+    private FramebufferSurface surface; // The surface whose tiles are drawn
+    private int fromTile;               // The first tile of the range
+    private int toTile;                 // The tile after the last tile of the range
+
+    /**
+     * Constructs a new spritesAndCollisonDetection.TileTask.
+     *
+     * @param surface  the surface whose tiles are drawn.
+     * @param fromTile the first tile of the range.
+     * @param toTile   the tile after the last tile of the range.
+     */
+    TileTask(FramebufferSurface surface, int fromTile, int toTile) {
+        this.surface = surface;
+        this.fromTile = fromTile;
+        this.toTile = toTile;
+    }
+
+    /**
+     * Draws the tiles of the range, forking one half of the range while drawing the other.
+     */
+    @Override
+    protected void compute() {
+        if (this.toTile - this.fromTile == 1) {
+            this.surface.rasterizeTile(this.fromTile);
+            return;
+        }
+        int middle = (this.fromTile + this.toTile) >>> 1;
+        invokeAll(new TileTask(this.surface, this.fromTile, middle), new TileTask(this.surface, middle, this.toTile));
+    }
+}
@@ -0,0 +1,260 @@
+package spritesAndCollisonDetection;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The spritesAndCollisonDetection.UniformGrid class is the broadphase of the block and entity stores:
+ * a uniform grid over the bounding box of a set of axis-aligned boxes that lists, for every cell, the ids
+ * of the boxes covering it. The boxes are kept by the owner as interleaved x, y, width and height floats
+ * indexed by id; the grid is built from them in two passes (count, then fill) and never modified after,
+ * only rebuilt, so copies of a grid share its arrays.
+ */
+final class UniformGrid {
+    private static final int INITIAL_FOUND = 64; // Length of the result buffer
+    private double cellSize;                 // Side of a grid cell
+    private double minX;                     // Left side of the grid
+    private double minY;                     // Top side of the grid
+    private double maxX;                     // Right side of the boxes' bounding box
+    private double maxY;                     // Bottom side of the boxes' bounding box
+    private int columns;                     // Number of grid columns
+    private int rows;                        // Number of grid rows
+    private int[] cellStart;                 // Start of every cell's entries in cellIds, plus the end
+    private int[] cellIds;                   // Ids of the boxes covering each cell, cell after cell
+    private int[] found;                     // Result buffer of the last query
+    private int foundCount;                  // Number of ids in the result buffer
+
+    /**
+     * Constructs an empty spritesAndCollisonDetection.UniformGrid.
+     *
+     * @param cellSize the side of a grid cell; a few box sizes works well.
+     */
+    UniformGrid(double cellSize) {
+        this.cellSize = cellSize;
+        this.found = new int[INITIAL_FOUND];
+    }
+
+    /**
+     * Constructs a copy of a grid, sharing its cells; only the result buffer is the copy's own.
+     *
+     * @param source the grid to copy.
+     */
+    UniformGrid(UniformGrid source) {
+        this.cellSize = source.cellSize;
+        this.minX = source.minX;
+        this.minY = source.minY;
+        this.maxX = source.maxX;
+        this.maxY = source.maxY;
+        this.columns = source.columns;
+        this.rows = source.rows;
+        this.cellStart = source.cellStart;
+        this.cellIds = source.cellIds;
+        this.found = new int[INITIAL_FOUND];
+    }
+
+    /**
+     * Returns the side of a grid cell.
+     *
+     * @return the cell size.
+     */
+    double getCellSize() {
+        return this.cellSize;
+    }
+
+    /**
+     * Checks whether the grid holds no box.
+     *
+     * @return true if the grid was never built, or built from no box.
+     */
+    boolean isEmpty() {
+        return this.cellIds == null || this.cellIds.length == 0;
+    }
+
+    /**
+     * Returns the left side of the boxes' bounding box.
+     *
+     * @return the smallest x coordinate of the boxes.
+     */
+    double getMinX() {
+        return this.minX;
+    }
+
+    /**
+     * Returns the top side of the boxes' bounding box.
+     *
+     * @return the smallest y coordinate of the boxes.
+     */
+    double getMinY() {
+        return this.minY;
+    }
+
+    /**
+     * Returns the right side of the boxes' bounding box.
+     *
+     * @return the largest x coordinate of the boxes.
+     */
+    double getMaxX() {
+        return this.maxX;
+    }
+
+    /**
+     * Returns the bottom side of the boxes' bounding box.
+     *
+     * @return the largest y coordinate of the boxes.
+     */
+    double getMaxY() {
+        return this.maxY;
+    }
+
+    /**
+     * Rebuilds the grid over the boxes with ids below a count. Boxes whose width is NaN are left out.
+     *
+     * @param bounds x, y, width and height of every box, interleaved.
+     * @param count  the number of ids.
+     */
+    void build(float[] bounds, int count) {
+        double left = Double.POSITIVE_INFINITY;
+        double top = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY;
+        double bottom = Double.NEGATIVE_INFINITY;
+        for (int id = 0; id < count; id++) {
+            if (!Float.isNaN(bounds[id * 4 + 2])) {
+                double x = bounds[id * 4];
+                double y = bounds[id * 4 + 1];
+                left = Math.min(left, x);
+                top = Math.min(top, y);
+                right = Math.max(right, x + bounds[id * 4 + 2]);
+                bottom = Math.max(bottom, y + bounds[id * 4 + 3]);
+            }
+        }
+        if (left > right) {
+            left = 0; // No box: an empty one-cell grid
+            top = 0;
+            right = 0;
+            bottom = 0;
+        }
+        this.minX = left;
+        this.minY = top;
+        this.maxX = right;
+        this.maxY = bottom;
+        this.columns = Math.max(1, (int) Math.ceil((right - left) / this.cellSize));
+        this.rows = Math.max(1, (int) Math.ceil((bottom - top) / this.cellSize));
+        this.cellStart = new int[this.columns * this.rows + 1];
+        for (int id = 0; id < count; id++) {
+            if (Float.isNaN(bounds[id * 4 + 2])) {
+                continue;
+            }
+            double x = bounds[id * 4];
+            double y = bounds[id * 4 + 1];
+            for (int row = row(y); row <= row(y + bounds[id * 4 + 3]); row++) {
+                for (int col = column(x); col <= column(x + bounds[id * 4 + 2]); col++) {
+                    this.cellStart[row * this.columns + col + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < this.columns * this.rows; cell++) {
+            this.cellStart[cell + 1] += this.cellStart[cell];
+        }
+        this.cellIds = new int[this.cellStart[this.columns * this.rows]];
+        int[] next = Arrays.copyOf(this.cellStart, this.columns * this.rows);
+        for (int id = 0; id < count; id++) {
+            if (Float.isNaN(bounds[id * 4 + 2])) {
+                continue;
+            }
+            double x = bounds[id * 4];
+            double y = bounds[id * 4 + 1];
+            for (int row = row(y); row <= row(y + bounds[id * 4 + 3]); row++) {
+                for (int col = column(x); col <= column(x + bounds[id * 4 + 2]); col++) {
+                    this.cellIds[next[row * this.columns + col]++] = id;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the boxes that overlap a region, boundaries included, each once. The ids can be read with
+     * found(k) until the next query. A box whose width was set to NaN after the build is never found,
+     * so an owner can drop a box from the grid without rebuilding it.
+     *
+     * @param bounds   the boxes the grid was built from.
+     * @param excluded ids to leave out, such as removed boxes, or null.
+     * @param left     the left side of the region.
+     * @param top      the top side of the region.
+     * @param right    the right side of the region.
+     * @param bottom   the bottom side of the region.
+     * @return the number of boxes found.
+     */
+    int query(float[] bounds, BitSet excluded, double left, double top, double right, double bottom) {
+        this.foundCount = 0;
+        if (isEmpty()) {
+            return 0;
+        }
+        int col0 = column(left);
+        int col1 = column(right);
+        int row0 = row(top);
+        int row1 = row(bottom);
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                int cell = row * this.columns + col;
+                for (int k = this.cellStart[cell]; k < this.cellStart[cell + 1]; k++) {
+                    int id = this.cellIds[k];
+                    double x = bounds[id * 4];
+                    double y = bounds[id * 4 + 1];
+                    // A box covering several cells is reported by the first of them inside the region only
+                    if (col == Math.max(col0, column(x)) && row == Math.max(row0, row(y))
+                            && (excluded == null || !excluded.get(id))
+                            && x <= right && x + bounds[id * 4 + 2] >= left
+                            && y <= bottom && y + bounds[id * 4 + 3] >= top) {
+                        if (this.foundCount == this.found.length) {
+                            this.found = Arrays.copyOf(this.found, this.foundCount * 2);
+                        }
+                        this.found[this.foundCount++] = id;
+                    }
+                }
+            }
+        }
+        return this.foundCount;
+    }
+
+    /**
+     * Returns a box found by the last query.
+     *
+     * @param k the index of the result, below the count returned by query.
+     * @return the box's id.
+     */
+    int found(int k) {
+        return this.found[k];
+    }
+
+    /**
+     * Returns the grid column of an x coordinate, clamped to the grid.
+     *
+     * @param x the x coordinate.
+     * @return the column.
+     */
+    private int column(double x) {
+        return (int) Math.max(0, Math.min(this.columns - 1, Math.floor((x - this.minX) / this.cellSize)));
+    }
+
+    /**
+     * Returns the grid row of a y coordinate, clamped to the grid.
+     *
+     * @param y the y coordinate.
+     * @return the row.
+     */
+    private int row(double y) {
+        return (int) Math.max(0, Math.min(this.rows - 1, Math.floor((y - this.minY) / this.cellSize)));
+    }
+
+    /**
+     * Estimates the memory used by the cells.
+     *
+     * @return the estimated size in bytes.
+     */
+    long estimateBytes() {
+        if (this.cellStart == null) {
+            return 0;
+        }
+        return this.cellStart.length * 4L + this.cellIds.length * 4L;
+    }
+}
@@ -0,0 +1,106 @@
+package gameLogic;
+
+import biuoop.KeyboardSensor;
+
+/**
+ * The gameLogic.AllocationBudgetTest class runs headless games through gameLogic.Game.tick with the allocation
+ * meter on, and checks that the bytes each phase allocates per tick stay within the budgets the game is known
+ * to meet, so that a change that starts allocating on a hot path fails here rather than in a player's session.
+ * Every game plays the built-in level with the paddle swept left and right, in one of the game's physics
+ * modes, drawing each frame halfway between two steps so that interpolation is measured too; ticks are not
+ * checked until the game has played WARMUP_TICKS.
+ * The drawing is allocation-free once the JIT's last tier has compiled it, which it does after about 5000
+ * frames; until then Java2D's image blits allocate. Counting ticks rather than time, and running the JVM
+ * with -Xbatch so that compilation finishes on the tick that triggers it, checks the same ticks on every
+ * machine. Drawing and hit dispatch are then held to a few bytes per tick. Updates keep a slack budget:
+ * moving a ball still allocates immutable Points, Velocities and CollisionInfos.
+ */
+public class AllocationBudgetTest {
+    private static final int WARMUP_TICKS = 5500;          // Ticks before ticks are checked
+    private static final int TICKS = 8500;                 // Ticks played by each game, warm-up included
+    private static final int MIN_STEADY_TICKS = 1000;      // Ticks each game must be checked on
+    private static final long TICK_BUDGET = 16_384;        // Most bytes any single tick may allocate
+    private static final double[] AVERAGE_BUDGETS = {512, 8, 4}; // Most bytes per tick, on average, by phase
+    private static final String[] MODES = {"default", "compact-blocks", "ball-collisions", "event-driven",
+            "fixed-point"};
+    private static int tick;                               // The tick being played, which moves the paddle
+    private static int failures;                           // Checks that failed
+
+    /**
+     * Runs a game in every mode, and exits with status 1 if any of them allocates over budget.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        for (String mode : MODES) {
+            check(mode, play(mode));
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays a headless game in a mode, measuring its allocations.
+     *
+     * @param mode the mode, one of MODES.
+     * @return the meter, holding the measurements of the game.
+     */
+    private static AllocationMeter play(String mode) {
+        // Sweeps the paddle across the arena, 40 ticks each way
+        KeyboardSensor keyboard = key -> ((tick / 40) % 2 == 0) == key.equals(KeyboardSensor.LEFT_KEY);
+        Game game = new Game(keyboard);
+        if (mode.equals("compact-blocks")) {
+            game.enableCompactBlocks();
+        } else if (mode.equals("ball-collisions")) {
+            game.enableBallCollisions();
+        } else if (mode.equals("event-driven")) {
+            game.enableEventDrivenCollisions();
+        } else if (mode.equals("fixed-point")) {
+            game.enableFixedPointPhysics();
+        }
+        AllocationMeter meter = game.enableAllocationMeter();
+        meter.setBudgetAfterTicks(TICK_BUDGET, WARMUP_TICKS);
+        game.initialize();
+        for (tick = 0; tick < TICKS; tick++) {
+            if (!game.tick(0.5)) { // Drawn between two steps, as at a frame rate above the step rate
+                break;
+            }
+        }
+        return meter;
+    }
+
+    /**
+     * Checks the measurements of a game against the budgets, and reports them.
+     *
+     * @param mode  the mode the game was played in.
+     * @param meter the meter of the game.
+     */
+    private static void check(String mode, AllocationMeter meter) {
+        System.out.println("AllocationBudgetTest " + mode + ": " + meter.report());
+        if (meter.getSteadyTicks() < MIN_STEADY_TICKS) {
+            fail(mode, "only " + meter.getSteadyTicks() + " ticks after the warm-up");
+        }
+        if (meter.getOverBudgetTicks() > 0) {
+            fail(mode, meter.getOverBudgetTicks() + " ticks allocated more than " + TICK_BUDGET + " bytes");
+        }
+        String[] phases = {"update", "hits", "draw"};
+        for (int phase = 0; phase < AVERAGE_BUDGETS.length; phase++) {
+            if (meter.getAverageTick(phase) > AVERAGE_BUDGETS[phase]) {
+                fail(mode, phases[phase] + " allocated " + meter.getAverageTick(phase) + " bytes per tick, over "
+                        + AVERAGE_BUDGETS[phase]);
+            }
+        }
+    }
+
+    /**
+     * Counts a failed check and reports it.
+     *
+     * @param mode    the mode the game was played in.
+     * @param message what went wrong.
+     */
+    private static void fail(String mode, String message) {
+        failures++;
+        System.out.println("FAIL " + mode + ": " + message);
+    }
+}
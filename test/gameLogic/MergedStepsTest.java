@@ -0,0 +1,221 @@
+package gameLogic;
+
+import biuoop.KeyboardSensor;
+import geometry.Point;
+import geometry.Velocity;
+import spritesAndCollisonDetection.Ball;
+import spritesAndCollisonDetection.EntityStore;
+
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * The gameLogic.MergedStepsTest class plays headless games with steps of one frame, and with the steps of two
+ * frames gameLogic.FrameGovernor falls back to under load, and checks the merged steps against the full-rate
+ * run: with the paddle swept around by random keys, no ball may leave the arena in either; with the paddle
+ * still and balls passing through each other, the balls must be where they are at full rate after every
+ * merged step; and two balls that touch in the middle of a merged step must bounce off each other as they do
+ * at full rate.
+ */
+public class MergedStepsTest {
+    private static final int TICKS = 6000;            // Frames played per game, 100 seconds of play
+    private static final int SEEDS = 3;               // Random key sequences played per mode and step length
+    private static final int KEY_FRAMES = 10;         // Frames each random key choice is held
+    private static final int TRAJECTORY_TICKS = 1200; // Frames compared between a full-rate and a merged game
+    private static final double TOLERANCE = 1e-6;     // Distance between positions considered the same
+    private static final double LEFT = 5;             // The arena's inner edges, inside the walls
+    private static final double RIGHT = 795;
+    private static final double TOP = 25;
+    private static final double BOTTOM = 595;
+    private static final String[] MODES = {"per-frame", "ball collisions", "event-driven"};
+    private static int[] keys;                        // Keys held in each span of KEY_FRAMES: 0, left or right
+    private static int tick;                          // The frame being played, which picks the keys held
+    private static int failures;                      // Checks that failed
+
+    /**
+     * Runs the checks, and exits with status 1 if any of them fails.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        for (int mode = 0; mode < MODES.length; mode++) {
+            for (int merged = 1; merged <= 2; merged++) {
+                for (int seed = 1; seed <= SEEDS; seed++) {
+                    checkArena(mode, merged, seed);
+                }
+            }
+        }
+        checkTrajectory(0);
+        checkTrajectory(2);
+        checkBallCollision();
+        System.out.println("MergedStepsTest: " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a headless game whose keys are read from the key sequence, in one of the modes.
+     *
+     * @param mode the index of the mode in MODES.
+     * @return the initialized game.
+     */
+    private static Game game(int mode) {
+        KeyboardSensor keyboard = key -> {
+            int held = keys[tick / KEY_FRAMES];
+            return held == 1 && key.equals(KeyboardSensor.LEFT_KEY)
+                    || held == 2 && key.equals(KeyboardSensor.RIGHT_KEY);
+        };
+        Game game = new Game(keyboard);
+        if (mode == 1) {
+            game.enableBallCollisions();
+        } else if (mode == 2) {
+            game.enableEventDrivenCollisions();
+        }
+        game.initialize();
+        return game;
+    }
+
+    /**
+     * Plays a game with a random key sequence and checks after every step that the balls are in the arena.
+     *
+     * @param mode   the index of the mode in MODES.
+     * @param merged the number of frames per step.
+     * @param seed   the seed of the key sequence.
+     */
+    private static void checkArena(int mode, int merged, int seed) {
+        Random random = new Random(seed);
+        keys = new int[TICKS / KEY_FRAMES];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(3);
+        }
+        Game game = game(mode);
+        EntityStore entities = game.getEntities();
+        for (tick = 0; tick < TICKS; tick += merged) {
+            boolean goesOn = game.tick(0.5, merged);
+            for (int k = 0; k < entities.drawnCount(); k++) {
+                int e = entities.drawnAt(k);
+                if (entities.getShape(e) != EntityStore.CIRCLE) {
+                    continue;
+                }
+                Point center = entities.getPosition(e);
+                if (center.getX() < LEFT || center.getX() > RIGHT || center.getY() < TOP
+                        || center.getY() > BOTTOM) {
+                    check(false, MODES[mode] + ", " + merged + " frames per step, seed " + seed + ": ball " + e
+                            + " left the arena at frame " + tick + ", at " + center.getX() + "," + center.getY());
+                    return;
+                }
+            }
+            if (!goesOn) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Plays a game at full rate and one with merged steps side by side, with the paddle still, and checks
+     * after every merged step that the balls are where they are in the full-rate game.
+     *
+     * @param mode the index of the mode in MODES; balls must pass through each other in it.
+     */
+    private static void checkTrajectory(int mode) {
+        keys = new int[TRAJECTORY_TICKS / KEY_FRAMES];
+        Game full = game(mode);
+        Game merged = game(mode);
+        EntityStore fullEntities = full.getEntities();
+        EntityStore mergedEntities = merged.getEntities();
+        for (tick = 0; tick < TRAJECTORY_TICKS; tick += 2) {
+            boolean goesOn = full.tick(0.5) && full.tick(0.5);
+            check(goesOn == merged.tick(0.5, 2), MODES[mode] + ": one game ended before the other");
+            for (int k = 0; k < fullEntities.drawnCount(); k++) {
+                int e = fullEntities.drawnAt(k);
+                if (fullEntities.getShape(e) != EntityStore.CIRCLE) {
+                    continue;
+                }
+                Point expected = fullEntities.getPosition(e);
+                Point actual = mergedEntities.getPosition(e);
+                if (Math.abs(expected.getX() - actual.getX()) > TOLERANCE
+                        || Math.abs(expected.getY() - actual.getY()) > TOLERANCE) {
+                    check(false, MODES[mode] + ": ball " + e + " at " + actual.getX() + "," + actual.getY()
+                            + " after frame " + tick + ", at " + expected.getX() + "," + expected.getY()
+                            + " at full rate");
+                    return;
+                }
+            }
+            if (!goesOn) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves two balls head-on through each other, one frame at a time and in one merged step of two frames,
+     * with ball collisions detected after each step. The balls touch after the first frame and have passed
+     * each other's centers after the second, so only a merged step swept back over its first frame finds the
+     * collision; both must end where the full-rate balls do.
+     */
+    private static void checkBallCollision() {
+        Ball[] full = pair();
+        Ball[] merged = pair();
+        BallCollisionDetector fullDetector = detector(full);
+        BallCollisionDetector mergedDetector = detector(merged);
+        for (int frame = 0; frame < 2; frame++) {
+            full[0].advance(1);
+            full[1].advance(1);
+            fullDetector.detect(1);
+        }
+        merged[0].advance(2);
+        merged[1].advance(2);
+        mergedDetector.detect(2);
+        for (int i = 0; i < 2; i++) {
+            Point expected = full[i].getCenter();
+            Point actual = merged[i].getCenter();
+            check(Math.abs(expected.getX() - actual.getX()) <= TOLERANCE
+                    && Math.abs(expected.getY() - actual.getY()) <= TOLERANCE
+                    && full[i].getVelocity().getDx() == merged[i].getVelocity().getDx(),
+                    "ball-ball collision: ball " + i + " at " + actual.getX() + "," + actual.getY() + " moving "
+                    + merged[i].getVelocity().getDx() + " after a merged step, at " + expected.getX() + ","
+                    + expected.getY() + " moving " + full[i].getVelocity().getDx() + " at full rate");
+        }
+    }
+
+    /**
+     * Creates two balls 18 pixels apart on the x-axis, moving towards each other at 5 pixels per frame.
+     *
+     * @return the balls.
+     */
+    private static Ball[] pair() {
+        EntityStore entities = new EntityStore();
+        Ball first = new Ball(entities, new Point(100, 300), 5, Color.BLUE);
+        Ball second = new Ball(entities, new Point(118, 300), 5, Color.RED);
+        first.setVelocity(new Velocity(5, 0));
+        second.setVelocity(new Velocity(-5, 0));
+        return new Ball[] {first, second};
+    }
+
+    /**
+     * Creates a ball collision detector for two balls.
+     *
+     * @param balls the balls.
+     * @return the detector.
+     */
+    private static BallCollisionDetector detector(Ball[] balls) {
+        BallCollisionDetector detector = new BallCollisionDetector();
+        detector.addBall(balls[0]);
+        detector.addBall(balls[1]);
+        return detector;
+    }
+
+    /**
+     * Counts a check, and reports it if it failed.
+     *
+     * @param ok      whether the check succeeded.
+     * @param message what went wrong.
+     */
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAIL " + message);
+        }
+    }
+}
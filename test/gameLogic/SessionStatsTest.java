@@ -0,0 +1,168 @@
+package gameLogic;
+
+import geometry.Point;
+import geometry.Rectangle;
+import spritesAndCollisonDetection.Ball;
+import spritesAndCollisonDetection.Block;
+import spritesAndCollisonDetection.EntityStore;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The gameLogic.SessionStatsTest class writes hit logs with gameLogic.HitLog, the way the blocks, the floor
+ * and the listeners do during a game, and checks what gameLogic.SessionStats makes of them. A session that
+ * loses balls of every color at the floor, between two hits of one block, must count the losses where they
+ * happened and nowhere else: not as hits, and not as color-swap chains of the floor.
+ */
+public class SessionStatsTest {
+    private static int failures; // Checks that failed
+
+    /**
+     * Runs the checks, and exits with status 1 if any of them fails.
+     *
+     * @param args not used.
+     * @throws IOException if a log cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        Path root = Files.createTempDirectory("session-stats");
+        try {
+            checkLossesOnly(root.resolve("losses"));
+            checkHitsAndLosses(root.resolve("mixed"));
+        } finally {
+            delete(root);
+        }
+        System.out.println("SessionStatsTest: " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Checks a session in which three balls of different colors reach the floor and nothing else is hit.
+     *
+     * @param session the directory to write the session's log in.
+     * @throws IOException if the log cannot be written or read.
+     */
+    private static void checkLossesOnly(Path session) throws IOException {
+        EntityStore entities = new EntityStore();
+        Block floor = floor(entities);
+        HitLog log = new HitLog(session, 16);
+        lose(log, floor, new Ball(entities, new Point(50, 580), 5, Color.BLUE), 10);
+        lose(log, floor, new Ball(entities, new Point(130, 580), 5, Color.GREEN), 20);
+        lose(log, floor, new Ball(entities, new Point(140, 580), 5, Color.YELLOW), 30);
+        log.close();
+        SessionStats stats = new SessionStats();
+        stats.addSession(session);
+        check(stats.getHits() == 0, "losses only: " + stats.getHits() + " hits, expected 0");
+        for (int length = 1; length <= 16; length++) {
+            check(stats.getChains(length) == 0, "losses only: " + stats.getChains(length) + " chains of "
+                    + length + ", expected none");
+        }
+        check(stats.getLosses(0) == 0 && stats.getLosses(1) == 1 && stats.getLosses(3) == 2,
+                "losses only: losses by x are not 1 at 40 and 2 at 120");
+    }
+
+    /**
+     * Checks a session in which a block is hit twice, swapping colors and then removed, with balls lost at
+     * the floor before, between and after the hits; the segments are small, so the log spans several.
+     *
+     * @param session the directory to write the session's log in.
+     * @throws IOException if the log cannot be written or read.
+     */
+    private static void checkHitsAndLosses(Path session) throws IOException {
+        EntityStore entities = new EntityStore();
+        Block floor = floor(entities);
+        Block block = new Block(entities, new Rectangle(new Point(100, 100), 50, 20), Color.RED);
+        Ball ball = new Ball(entities, new Point(120, 125), 5, Color.BLUE);
+        HitLog log = new HitLog(session, 2);
+        lose(log, floor, new Ball(entities, new Point(300, 580), 5, Color.GREEN), 5);
+        log.setFrame(10);
+        log.begin(block, ball); // Colors before and after differ: a swap
+        log.scored(5);
+        log.append();
+        lose(log, floor, ball, 20);
+        log.setFrame(30);
+        log.begin(block, ball);
+        log.scored(10);
+        log.mark(HitLog.BLOCK_REMOVED);
+        log.append();
+        lose(log, floor, new Ball(entities, new Point(700, 580), 5, Color.PINK), 40);
+        log.close();
+        SessionStats stats = new SessionStats();
+        stats.addSession(session);
+        check(stats.getHits() == 2, "hits and losses: " + stats.getHits() + " hits, expected 2");
+        check(stats.getChains(2) == 1, "hits and losses: " + stats.getChains(2) + " chains of 2, expected 1");
+        for (int length = 1; length <= 16; length++) {
+            check(length == 2 || stats.getChains(length) == 0, "hits and losses: " + stats.getChains(length)
+                    + " chains of " + length + ", expected none");
+        }
+        check(stats.getCleared(0) == 1, "hits and losses: " + stats.getCleared(0) + " blocks cleared, expected 1");
+        check(stats.getScoreCount(0) == 1, "hits and losses: the 15 points are not in the first bucket");
+        check(stats.getLosses(3) == 1 && stats.getLosses(7) == 1 && stats.getLosses(17) == 1,
+                "hits and losses: losses by x are not at 120, 280 and 680");
+    }
+
+    /**
+     * Creates the floor of an arena, as gameLogic.Game does.
+     *
+     * @param entities the store to create it in.
+     * @return the floor.
+     */
+    private static Block floor(EntityStore entities) {
+        Block floor = new Block(entities, new Rectangle(new Point(0, 595), 800, 5), Color.GRAY);
+        floor.setBorder(true);
+        floor.setFloor(true);
+        return floor;
+    }
+
+    /**
+     * Logs a ball reaching the floor, as the floor does.
+     *
+     * @param log   the log.
+     * @param floor the floor.
+     * @param ball  the ball.
+     * @param frame the simulation step.
+     */
+    private static void lose(HitLog log, Block floor, Ball ball, int frame) {
+        log.setFrame(frame);
+        log.begin(floor, ball);
+        log.mark(HitLog.BALL_LOST);
+        log.append();
+    }
+
+    /**
+     * Deletes the test's directories and logs.
+     *
+     * @param directory the directory to delete.
+     * @throws IOException if a file cannot be deleted.
+     */
+    private static void delete(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    delete(path);
+                } else {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Counts a check, and reports it if it failed.
+     *
+     * @param ok      whether the check succeeded.
+     * @param message what went wrong.
+     */
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAIL " + message);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package gameLogic;
+
+import biuoop.KeyboardSensor;
+import geometry.Rectangle;
+import spritesAndCollisonDetection.EntityStore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The gameLogic.SpectatorLocalhostTest class streams a headless game over localhost, through a
+ * gameLogic.SpectatorServer on an ephemeral port, to CLIENTS gameLogic.SpectatorClient instances that read
+ * every tick and to one spectator that reads nothing while the game is played, so that it falls behind and
+ * is resynchronized. When the game stops, the stuck spectator starts reading and a late one joins; every
+ * spectator must then show the game's state: score, paddle, balls, and the boxes with their colors. The
+ * stuck spectator must not have made the feed send keyframes to the others: the spectators reading every
+ * tick may only receive the first keyframe and the periodic ones.
+ */
+public class SpectatorLocalhostTest {
+    private static final int CLIENTS = 4;                  // Spectators reading every tick
+    private static final int TICKS = 3600;                 // Ticks played, one minute of play
+    private static final int STUCK_RECEIVE_BUFFER = 4096;  // Receive buffer of the spectator that never reads
+    private static final double MAX_KEYFRAMES_PER_TICK = 1.0 / SpectatorFeed.KEYFRAME_INTERVAL; // Periodic ones
+    private static final long TIMEOUT_NANOS = 5_000_000_000L; // Time spectators get to connect or catch up
+    private static int tick;                               // The tick being played, which moves the paddle
+    private static int failures;                           // Checks that failed
+
+    /**
+     * Runs the check, and exits with status 1 if it fails.
+     *
+     * @param args not used.
+     * @throws IOException          if a connection fails.
+     * @throws InterruptedException if interrupted while waiting for the spectators.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Sweeps the paddle across the arena, 90 ticks each way
+        KeyboardSensor keyboard = key -> ((tick / 90) % 2 == 0) == key.equals(KeyboardSensor.LEFT_KEY);
+        Game game = new Game(keyboard);
+        SpectatorServer server = game.enableSpectators(0);
+        game.initialize();
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", server.getPort());
+        List<SpectatorClient> clients = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            clients.add(new SpectatorClient(SocketChannel.open(address)));
+        }
+        SocketChannel stuck = SocketChannel.open();
+        stuck.setOption(StandardSocketOptions.SO_RCVBUF, STUCK_RECEIVE_BUFFER);
+        stuck.connect(address);
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (server.getSpectators() < CLIENTS + 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        check(server.getSpectators() == CLIENTS + 1, server.getSpectators() + " of " + (CLIENTS + 1)
+                + " spectators connected");
+
+        int played = 0;
+        for (tick = 0; tick < TICKS; tick++) {
+            boolean goesOn = game.tick(1);
+            played++;
+            for (SpectatorClient client : clients) {
+                client.poll();
+            }
+            if (!goesOn) {
+                break;
+            }
+        }
+        check(server.getResyncs() > 0, "the stuck spectator never fell behind; make the game stream more");
+        check(server.getSpectators() == CLIENTS + 1, "a spectator was disconnected");
+        long keyframes = clients.get(0).getKeyframes();
+        check(keyframes <= MAX_KEYFRAMES_PER_TICK * played + 1, keyframes + " keyframes sent in " + played
+                + " ticks: the stuck spectator made the feed send keyframes to everyone");
+
+        clients.add(new SpectatorClient(stuck));
+        clients.add(new SpectatorClient(SocketChannel.open(address))); // Joins after the game stopped
+        deadline = System.nanoTime() + TIMEOUT_NANOS;
+        String mismatch;
+        do {
+            Thread.sleep(10);
+            mismatch = null;
+            for (int c = 0; c < clients.size() && mismatch == null; c++) {
+                clients.get(c).poll();
+                mismatch = compare(game, clients.get(c));
+                if (mismatch != null) {
+                    mismatch = "spectator " + c + ": " + mismatch;
+                }
+            }
+        } while (mismatch != null && System.nanoTime() < deadline);
+        check(mismatch == null, mismatch);
+        System.out.printf("SpectatorLocalhostTest: %d ticks, %d spectators, %d resyncs, %d keyframes, %d bytes "
+                + "received by a reading spectator%n", played, clients.size(), server.getResyncs(), keyframes,
+                clients.get(0).getBytesReceived());
+        server.close();
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares what a spectator shows with the state of the game.
+     *
+     * @param game   the game.
+     * @param client the spectator.
+     * @return what differs, or null if the spectator shows the game's state.
+     */
+    private static String compare(Game game, SpectatorClient client) {
+        if (!client.isSynced()) {
+            return "no keyframe received";
+        }
+        if (client.getScore() != game.getScore()) {
+            return "score " + client.getScore() + ", expected " + game.getScore();
+        }
+        Rectangle paddle = game.getPaddle().getCollisionRectangle();
+        if (client.getPaddleX() != Math.round(paddle.getUpperLeft().getX())) {
+            return "paddle at " + client.getPaddleX() + ", expected " + Math.round(paddle.getUpperLeft().getX());
+        }
+        EntityStore entities = game.getEntities();
+        int boxes = 0;
+        int balls = 0;
+        for (int k = 0; k < entities.drawnCount(); k++) {
+            int e = entities.drawnAt(k);
+            int color = entities.getColor(e).getRGB();
+            if (entities.getShape(e) == EntityStore.CIRCLE) {
+                balls++;
+                int[] ball = client.getBall(e); // A ball's id is its entity
+                if (ball == null || ball[0] != Math.round(entities.getPosition(e).getX())
+                        || ball[1] != Math.round(entities.getPosition(e).getY()) || ball[3] != color) {
+                    return "ball " + e + " differs";
+                }
+            } else if (entities.getShape(e) == EntityStore.BOX && entities.getRectangle(e) != paddle) {
+                boxes++;
+                Rectangle box = entities.getRectangle(e);
+                int x = (int) Math.round(box.getUpperLeft().getX());
+                int y = (int) Math.round(box.getUpperLeft().getY());
+                if (client.getBoxColor(x, y) != color) {
+                    return "box at " + x + "," + y + " differs";
+                }
+            }
+        }
+        if (client.getBallCount() != balls || client.getBoxCount() != boxes) {
+            return client.getBallCount() + " balls and " + client.getBoxCount() + " boxes, expected " + balls
+                    + " and " + boxes;
+        }
+        return null;
+    }
+
+    /**
+     * Counts a check, and reports it if it failed.
+     *
+     * @param ok      whether the check succeeded.
+     * @param message what went wrong.
+     */
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAIL " + message);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The geometry.BaselineLine class is the slope-and-intercept segment intersection geometry.Line used before
+ * the parametric kernels of geometry.Intersections, kept unchanged as the oracle of the differential tests.
+ * It is not used by the game. Its collinear flag is state, as it was; create one per comparison.
+ */
+public class BaselineLine {
+    private Point start; // The start point of the line
+    private Point end; // The end point of the line
+    private boolean findInfinite = false; // Flag to indicate if the line is infinite
+    private static final double THRESHOLD = 1e-10; // A small threshold for comparing doubles
+
+    /**
+     * Constructs a geometry.BaselineLine with the specified coordinates.
+     *
+     * @param x1 the x coordinate of the start point.
+     * @param y1 the y coordinate of the start point.
+     * @param x2 the x coordinate of the end point.
+     * @param y2 the y coordinate of the end point.
+     */
+    public BaselineLine(double x1, double y1, double x2, double y2) {
+        this.start = new Point(x1, y1);
+        this.end = new Point(x2, y2);
+    }
+
+    /**
+     * Checks if this line intersects with another line, as the baseline did: an intersection point, or a
+     * collinear case flagged by intersectionWith.
+     *
+     * @param other the other line to check intersection with.
+     * @return true if the lines intersect, false otherwise.
+     */
+    public boolean isIntersecting(BaselineLine other) {
+        boolean isInter = this.intersectionWith(other) != null;
+        if (findInfinite) {
+            return true; // Infinite lines are considered intersecting
+        }
+        return isInter;
+    }
+
+    /**
+     * Checks if a number is within a specified range, considering a small threshold.
+     *
+     * @param numIn the number to check.
+     * @param num1  the lower bound of the range.
+     * @param num2  the upper bound of the range.
+     * @return true if numIn is within the range, false otherwise.
+     */
+    private boolean checkInLimit(double numIn, double num1, double num2) {
+        return (almostEqual(numIn, num1) || almostEqual(numIn, num2)
+                || (numIn < num2 && numIn > num1) || (numIn > num2 && numIn < num1));
+    }
+
+    /**
+     * Checks if two numbers are approximately equal within a small threshold.
+     *
+     * @param num1 the first number.
+     * @param num2 the second number.
+     * @return true if the numbers are approximately equal, false otherwise.
+     */
+    private boolean almostEqual(double num1, double num2) {
+        return Math.abs(num1 - num2) < THRESHOLD;
+    }
+
+    /**
+     * Returns the intersection point if the lines intersect, and null otherwise.
+     *
+     * @param other the other line to check intersection with.
+     * @return the intersection point if the lines intersect, and null otherwise.
+     */
+    public Point intersectionWith(BaselineLine other) {
+        boolean found = false;
+        boolean foundOtherX = false;
+        boolean foundThisX = false;
+        double xIntersect = Double.MAX_VALUE;
+        double yIntersect = Double.MAX_VALUE;
+        double inclineL1;
+        double inclineL2;
+
+        // Check for vertical lines
+        if (almostEqual(other.start.getX(), other.end.getX())) {
+            foundOtherX = true;
+            found = true;
+            xIntersect = other.start.getX();
+        }
+        if (almostEqual(this.start.getX(), this.end.getX())) {
+            foundThisX = true;
+            found = true;
+            xIntersect = this.start.getX();
+        }
+
+        // Check for horizontal lines
+        if (almostEqual(this.start.getY(), this.end.getY())) {
+            yIntersect = this.start.getY();
+        }
+        if (almostEqual(other.start.getY(), other.end.getY())) {
+            yIntersect = other.start.getY();
+        }
+
+        if (!found) {
+            // Calculate slopes and y-intercepts for non-vertical lines
+            inclineL1 = (this.start.getY() - this.end.getY()) / (this.start.getX() - this.end.getX());
+            inclineL2 = (other.start.getY() - other.end.getY()) / (other.start.getX() - other.end.getX());
+
+            double b1 = this.start.getY() - (inclineL1 * this.start.getX());
+            double b2 = other.start.getY() - (inclineL2 * other.start.getX());
+
+            // Check for parallel lines
+            if (almostEqual(inclineL1, inclineL2)) {
+                if (almostEqual(b1, b2)) {
+                    this.findInfinite = true;
+                }
+                return null;
+            }
+
+            // Calculate intersection point
+            xIntersect = (b2 - b1) / (inclineL1 - inclineL2);
+            yIntersect = xIntersect * inclineL1 + b1;
+        } else if (foundOtherX && foundThisX) {
+            if (almostEqual(other.start.getX(), this.end.getX())) {
+                // Check if the y-coordinate intersections are within bounds
+                if (checkInLimit(other.start.getY(), this.start.getY(), this.end.getY())) {
+                    this.findInfinite = true;
+                    return null;
+                }
+                if (checkInLimit(other.end.getY(), this.start.getY(), this.end.getY())) {
+                    this.findInfinite = true;
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        } else if (foundOtherX) {
+            // If only other line is vertical, calculate y-intersection
+            inclineL1 = (this.start.getY() - this.end.getY()) / (this.start.getX() - this.end.getX());
+            double b1 = this.start.getY() - (inclineL1 * this.start.getX());
+            yIntersect = xIntersect * inclineL1 + b1;
+        } else {
+            // If only this line is vertical, calculate y-intersection
+            inclineL2 = (other.start.getY() - other.end.getY()) / (other.start.getX() - other.end.getX());
+            double b2 = other.start.getY() - (inclineL2 * other.start.getX());
+            yIntersect = xIntersect * inclineL2 + b2;
+        }
+
+        // Check if the intersection point is within the bounds of both lines
+        if ((checkInLimit(yIntersect, this.end.getY(), this.start.getY())
+                && checkInLimit(yIntersect, other.end.getY(), other.start.getY()))) {
+            if (checkInLimit(xIntersect, other.end.getX(), other.start.getX())
+                    && checkInLimit(xIntersect, this.end.getX(), this.start.getX())) {
+                return new Point(xIntersect, yIntersect);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the closest intersection point to the start of the line with a given rectangle, intersecting
+     * the line with each edge of the rectangle as the baseline geometry.Rectangle.intersectionPoints did.
+     *
+     * @param rect the rectangle to check for intersection.
+     * @return the closest intersection point to the start of the line, or null if no intersection occurs.
+     */
+    public Point closestIntersectionToStartOfLine(Rectangle rect) {
+        List<Point> points = new ArrayList<>();
+        double x = rect.getUpperLeft().getX();
+        double y = rect.getUpperLeft().getY();
+        double w = rect.getWidth();
+        double h = rect.getHeight();
+        BaselineLine[] edges = {
+                new BaselineLine(x, y, x + w, y),
+                new BaselineLine(x + w, y, x + w, y + h),
+                new BaselineLine(x + w, y + h, x, y + h),
+                new BaselineLine(x, y + h, x, y)
+        };
+        for (BaselineLine edge : edges) {
+            Point intersection = edge.intersectionWith(this);
+            if (intersection != null) {
+                points.add(intersection);
+            }
+        }
+        if (points.isEmpty()) {
+            return null;
+        }
+        Point closest = points.get(0);
+        for (Point point : points) {
+            if (this.start.distance(point) < this.start.distance(closest)) {
+                closest = point;
+            }
+        }
+        return closest;
+    }
+}
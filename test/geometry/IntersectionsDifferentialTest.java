@@ -0,0 +1,295 @@
+package geometry;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The geometry.IntersectionsDifferentialTest class checks the parametric kernels of geometry.Intersections,
+ * through geometry.Line, against the slope-and-intercept code they replaced, kept as geometry.BaselineLine.
+ * Segment pairs are drawn at random from three families: arbitrary coordinates, small integer grids (which
+ * produce many axis-aligned, touching, parallel and collinear pairs), and axis-aligned segments crossing
+ * arbitrary ones; rectangles are crossed by segments of the same families.
+ * <p>
+ * Well-conditioned cases must agree exactly, up to rounding. Two kinds of cases are allowed to differ:
+ * <ul>
+ * <li>touching within the baseline's 1e-10 tolerance, where the baseline accepts a near miss and the
+ * kernels decide exactly; both must still agree on the point when both find one;</li>
+ * <li>collinear segments, where the baseline's isIntersecting was wrong: it reported any two collinear
+ * non-vertical segments as intersecting, even disjoint ones, and missed a vertical segment lying inside
+ * another. For those the kernels are checked against the overlap of the segments' intervals instead.</li>
+ * </ul>
+ * Zero-length segments are not generated: the baseline treats them as vertical lines.
+ */
+public class IntersectionsDifferentialTest {
+    private static final int PAIRS = 200_000;        // Segment pairs per family
+    private static final double POINT_TOLERANCE = 1e-6; // Distance within which two points agree
+    private static final double EDGE_TOLERANCE = 1e-9;  // Parameters this close to 0 or 1 touch an end
+    private static int checks;                       // Comparisons made
+    private static int failures;                     // Comparisons that failed
+    private static int boundaryCases;                // Comparisons skipped as touching within tolerance
+    private static int collinearFixes;               // Collinear pairs where the baseline was wrong
+
+    /**
+     * Runs the differential tests, and exits with status 1 if any comparison fails.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(29);
+        for (int family = 0; family < 3; family++) {
+            for (int i = 0; i < PAIRS; i++) {
+                double[] a = segment(random, family, false);
+                double[] b = segment(random, family, family == 2);
+                compareSegments(a, b);
+                compareBox(a, box(random, family));
+            }
+        }
+        System.out.printf("IntersectionsDifferentialTest: %d checks, %d failures, %d touching within the "
+                + "baseline tolerance, %d collinear pairs the baseline got wrong%n", checks, failures,
+                boundaryCases, collinearFixes);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares the intersection point and the intersection test of two segments.
+     *
+     * @param a the first segment, as x1, y1, x2, y2.
+     * @param b the second segment.
+     */
+    private static void compareSegments(double[] a, double[] b) {
+        Line line = new Line(a[0], a[1], a[2], a[3]);
+        Line other = new Line(b[0], b[1], b[2], b[3]);
+        Point expected = new BaselineLine(a[0], a[1], a[2], a[3])
+                .intersectionWith(new BaselineLine(b[0], b[1], b[2], b[3]));
+        Point actual = line.intersectionWith(other);
+        boolean collinear = collinear(a, b);
+        if (!collinear && !touchesEnd(a, b)) {
+            check(samePoint(expected, actual), "intersectionWith", a, b, expected, actual);
+            boolean baseline = new BaselineLine(a[0], a[1], a[2], a[3])
+                    .isIntersecting(new BaselineLine(b[0], b[1], b[2], b[3]));
+            check(baseline == line.isIntersecting(other), "isIntersecting", a, b, baseline);
+        } else if (collinear) {
+            check(actual == null, "intersectionWith of collinear segments", a, b, null, actual);
+            boolean overlap = intervalsOverlap(a, b);
+            boolean baseline = new BaselineLine(a[0], a[1], a[2], a[3])
+                    .isIntersecting(new BaselineLine(b[0], b[1], b[2], b[3]));
+            if (baseline != overlap) {
+                collinearFixes++;
+            }
+            check(overlap == line.isIntersecting(other), "isIntersecting of collinear segments", a, b, overlap);
+        } else {
+            boundaryCases++;
+            if (expected != null && actual != null) {
+                check(samePoint(expected, actual), "intersectionWith touching an end", a, b, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Compares the closest crossing of a segment with the boundary of a rectangle.
+     *
+     * @param a    the segment, as x1, y1, x2, y2.
+     * @param rect the rectangle.
+     */
+    private static void compareBox(double[] a, Rectangle rect) {
+        Point expected = new BaselineLine(a[0], a[1], a[2], a[3]).closestIntersectionToStartOfLine(rect);
+        Point actual = new Line(a[0], a[1], a[2], a[3]).closestIntersectionToStartOfLine(rect);
+        double x = rect.getUpperLeft().getX();
+        double y = rect.getUpperLeft().getY();
+        double[][] edges = {
+                {x, y, x + rect.getWidth(), y}, {x + rect.getWidth(), y, x + rect.getWidth(), y + rect.getHeight()},
+                {x + rect.getWidth(), y + rect.getHeight(), x, y + rect.getHeight()}, {x, y + rect.getHeight(), x, y}
+        };
+        for (double[] edge : edges) {
+            if (collinear(a, edge) || touchesEnd(a, edge)) {
+                boundaryCases++; // Grazing an edge or a corner
+                if (expected != null && actual != null) {
+                    check(samePoint(expected, actual), "closestIntersectionToStartOfLine grazing", a, edge,
+                            expected, actual);
+                }
+                return;
+            }
+        }
+        check(samePoint(expected, actual), "closestIntersectionToStartOfLine", a,
+                new double[] {x, y, rect.getWidth(), rect.getHeight()}, expected, actual);
+    }
+
+    /**
+     * Draws a segment of a family.
+     *
+     * @param random  the random generator.
+     * @param family  0 for arbitrary coordinates, 1 for a small integer grid, 2 for arbitrary or axis-aligned.
+     * @param aligned true to make the segment horizontal or vertical.
+     * @return the segment, as x1, y1, x2, y2, never of zero length.
+     */
+    private static double[] segment(Random random, int family, boolean aligned) {
+        double[] s = new double[4];
+        do {
+            for (int k = 0; k < 4; k++) {
+                s[k] = family == 1 ? random.nextInt(7) : 100 * random.nextDouble();
+            }
+            if (aligned) {
+                int axis = random.nextInt(2);
+                s[2 + axis] = s[axis]; // Same x, vertical; or same y, horizontal
+            }
+        } while (s[0] == s[2] && s[1] == s[3]);
+        return s;
+    }
+
+    /**
+     * Draws a rectangle of a family.
+     *
+     * @param random the random generator.
+     * @param family 1 for a small integer grid, otherwise arbitrary coordinates.
+     * @return the rectangle, never empty.
+     */
+    private static Rectangle box(Random random, int family) {
+        if (family == 1) {
+            return new Rectangle(new Point(random.nextInt(5), random.nextInt(5)), 1 + random.nextInt(3),
+                    1 + random.nextInt(3));
+        }
+        return new Rectangle(new Point(80 * random.nextDouble(), 80 * random.nextDouble()),
+                1 + 30 * random.nextDouble(), 1 + 30 * random.nextDouble());
+    }
+
+    /**
+     * Checks whether two segments lie on one line, exactly.
+     *
+     * @param a the first segment.
+     * @param b the second segment.
+     * @return true if both ends of b are on the line through a.
+     */
+    private static boolean collinear(double[] a, double[] b) {
+        double rx = a[2] - a[0];
+        double ry = a[3] - a[1];
+        return Intersections.cross(rx, ry, b[0] - a[0], b[1] - a[1]) == 0
+                && Intersections.cross(rx, ry, b[2] - a[0], b[3] - a[1]) == 0;
+    }
+
+    /**
+     * Checks whether two segments are parallel, or cross within EDGE_TOLERANCE of an end of either, where the
+     * baseline's tolerance may accept what the kernels reject.
+     *
+     * @param a the first segment.
+     * @param b the second segment.
+     * @return true if the comparison is ill-conditioned.
+     */
+    private static boolean touchesEnd(double[] a, double[] b) {
+        double rx = a[2] - a[0];
+        double ry = a[3] - a[1];
+        double sx = b[2] - b[0];
+        double sy = b[3] - b[1];
+        double denominator = Intersections.cross(rx, ry, sx, sy);
+        if (Math.abs(denominator) <= EDGE_TOLERANCE * Math.hypot(rx, ry) * Math.hypot(sx, sy)) {
+            return true; // Parallel, or nearly: the baseline compares slopes within 1e-10
+        }
+        double t = Intersections.cross(b[0] - a[0], b[1] - a[1], sx, sy) / denominator;
+        double u = Intersections.cross(b[0] - a[0], b[1] - a[1], rx, ry) / denominator;
+        return nearEnd(t, a) || nearEnd(u, b);
+    }
+
+    /**
+     * Checks whether a parameter along a segment is within EDGE_TOLERANCE of an end, in length units.
+     *
+     * @param t the parameter.
+     * @param s the segment.
+     * @return true if the point is near an end of the segment.
+     */
+    private static boolean nearEnd(double t, double[] s) {
+        double length = Math.hypot(s[2] - s[0], s[3] - s[1]);
+        double tolerance = EDGE_TOLERANCE * Math.max(1, 100 / length);
+        return Math.abs(t) <= tolerance || Math.abs(t - 1) <= tolerance;
+    }
+
+    /**
+     * Checks whether two collinear segments share a point, by the overlap of their bounding intervals.
+     *
+     * @param a the first segment.
+     * @param b the second segment.
+     * @return true if the segments overlap.
+     */
+    private static boolean intervalsOverlap(double[] a, double[] b) {
+        return Math.max(Math.min(a[0], a[2]), Math.min(b[0], b[2])) <= Math.min(Math.max(a[0], a[2]),
+                Math.max(b[0], b[2])) && Math.max(Math.min(a[1], a[3]), Math.min(b[1], b[3]))
+                <= Math.min(Math.max(a[1], a[3]), Math.max(b[1], b[3]));
+    }
+
+    /**
+     * Checks whether two points are both missing, or both present and within POINT_TOLERANCE.
+     *
+     * @param p the first point, or null.
+     * @param q the second point, or null.
+     * @return true if the points agree.
+     */
+    private static boolean samePoint(Point p, Point q) {
+        if (p == null || q == null) {
+            return p == q;
+        }
+        return p.distance(q) <= POINT_TOLERANCE;
+    }
+
+    /**
+     * Counts a comparison of points, and reports it if it failed.
+     *
+     * @param ok       whether the comparison succeeded.
+     * @param what     what was compared.
+     * @param a        the first input.
+     * @param b        the second input.
+     * @param expected the baseline's point, or null.
+     * @param actual   the kernels' point, or null.
+     */
+    private static void check(boolean ok, String what, double[] a, double[] b, Point expected, Point actual) {
+        checks++;
+        if (!ok) {
+            fail(what, a, b, describe(expected), describe(actual));
+        }
+    }
+
+    /**
+     * Counts a comparison of answers, and reports it if it failed.
+     *
+     * @param ok       whether the comparison succeeded.
+     * @param what     what was compared.
+     * @param a        the first input.
+     * @param b        the second input.
+     * @param expected the expected answer.
+     */
+    private static void check(boolean ok, String what, double[] a, double[] b, boolean expected) {
+        checks++;
+        if (!ok) {
+            fail(what, a, b, String.valueOf(expected), String.valueOf(!expected));
+        }
+    }
+
+    /**
+     * Counts a failed comparison, and reports the first ones.
+     *
+     * @param what     what was compared.
+     * @param a        the first input.
+     * @param b        the second input.
+     * @param expected the expected result.
+     * @param actual   the kernels' result.
+     */
+    private static void fail(String what, double[] a, double[] b, String expected, String actual) {
+        failures++;
+        if (failures <= 20) {
+            System.out.printf("FAIL %s: %s vs %s: expected %s, got %s%n", what, Arrays.toString(a),
+                    Arrays.toString(b), expected, actual);
+        }
+    }
+
+    /**
+     * Describes a point for a failure report.
+     *
+     * @param point the point, or null.
+     * @return the description.
+     */
+    private static String describe(Point point) {
+        if (point == null) {
+            return "none";
+        }
+        return "(" + point.getX() + ", " + point.getY() + ")";
+    }
+}
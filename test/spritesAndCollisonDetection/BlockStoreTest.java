@@ -0,0 +1,93 @@
+package spritesAndCollisonDetection;
+
+import geometry.Point;
+import geometry.Rectangle;
+
+import java.awt.Color;
+
+/**
+ * The spritesAndCollisonDetection.BlockStoreTest class checks that a spritesAndCollisonDetection.BlockStore
+ * keeps growing after trimToSize, which gameLogic.PreparedLevel calls on every store it builds: stores of
+ * zero, one and a few blocks are trimmed, then blocks are added until the arrays have grown several times,
+ * and every block must read back as it was added.
+ */
+public class BlockStoreTest {
+    private static final int ADDED = 200; // Blocks added after trimming, enough to grow the arrays many times
+    private static int failures;          // Checks that failed
+
+    /**
+     * Runs the checks, and exits with status 1 if any of them fails.
+     *
+     * @param args not used.
+     */
+    public static void main(String[] args) {
+        for (int before : new int[] {0, 1, 2, 3}) {
+            checkGrowthAfterTrim(before);
+        }
+        System.out.println("BlockStoreTest: " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Fills a store, trims it, adds more blocks and reads all of them back.
+     *
+     * @param before the number of blocks added before trimming.
+     */
+    private static void checkGrowthAfterTrim(int before) {
+        BlockStore store = new BlockStore(64);
+        for (int i = 0; i < before; i++) {
+            store.add(block(i), color(i));
+        }
+        store.trimToSize();
+        try {
+            for (int i = before; i < before + ADDED; i++) {
+                int id = store.add(block(i), color(i));
+                check(id == i, before, "block " + i + " got id " + id);
+            }
+        } catch (RuntimeException e) {
+            check(false, before, "add after trimToSize threw " + e);
+            return;
+        }
+        check(store.size() == before + ADDED, before, "size " + store.size());
+        for (int i = 0; i < store.size(); i++) {
+            check(store.getX(i) == block(i).getUpperLeft().getX() && store.getY(i) == block(i).getUpperLeft().getY()
+                    && store.getColor(i).equals(color(i)), before, "block " + i + " reads back differently");
+        }
+    }
+
+    /**
+     * Returns the rectangle of the i-th block of a test store.
+     *
+     * @param i the index of the block.
+     * @return the rectangle.
+     */
+    private static Rectangle block(int i) {
+        return new Rectangle(new Point(20 * (i % 30), 10 * (i / 30)), 20, 10);
+    }
+
+    /**
+     * Returns the color of the i-th block of a test store.
+     *
+     * @param i the index of the block.
+     * @return the color.
+     */
+    private static Color color(int i) {
+        return i % 2 == 0 ? Color.RED : Color.BLUE;
+    }
+
+    /**
+     * Counts a check, and reports it if it failed.
+     *
+     * @param ok      whether the check succeeded.
+     * @param before  the number of blocks the store held when it was trimmed.
+     * @param message what went wrong.
+     */
+    private static void check(boolean ok, int before, String message) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAIL trimmed at " + before + " blocks: " + message);
+        }
+    }
+}